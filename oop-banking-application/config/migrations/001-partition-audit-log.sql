@@ -0,0 +1,16 @@
+-- Converts an existing audit_log table to the monthly partitioned layout of schema.sql.
+-- MySQL requires the partitioning column in every unique key and does not allow
+-- TO_DAYS() on TIMESTAMP columns, hence the DATETIME column and composite primary key.
+-- Rebuilds the table; run it during a maintenance window.
+USE bankdb;
+
+ALTER TABLE audit_log
+    MODIFY created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, created_at);
+
+ALTER TABLE audit_log
+    PARTITION BY RANGE (TO_DAYS(created_at)) (
+        PARTITION p_start VALUES LESS THAN (TO_DAYS('2026-10-01')),
+        PARTITION p_future VALUES LESS THAN MAXVALUE
+    );
@@ -0,0 +1,19 @@
+-- Adds the INTEREST transaction type and the checkpoint table used by the
+-- end-of-day interest accrual job.
+USE bankdb;
+
+ALTER TABLE transactions
+    MODIFY transaction_type ENUM('DEPOSIT', 'WITHDRAWAL', 'TRANSFER_IN', 'TRANSFER_OUT', 'INTEREST') NOT NULL;
+
+CREATE TABLE IF NOT EXISTS batch_checkpoints (
+    job_name VARCHAR(100) NOT NULL,
+    run_date DATE NOT NULL,
+    partition_id INT NOT NULL,
+    lower_bound VARCHAR(100),
+    upper_bound VARCHAR(100),
+    last_account_id VARCHAR(100),
+    accounts_processed BIGINT NOT NULL DEFAULT 0,
+    completed BOOLEAN NOT NULL DEFAULT FALSE,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    PRIMARY KEY (job_name, run_date, partition_id)
+);
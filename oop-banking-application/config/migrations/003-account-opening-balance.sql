@@ -0,0 +1,7 @@
+-- Records the balance each account was created with, so the ledger
+-- reconciliation job can rebuild balances from the transaction history.
+-- Accounts created through the application start at zero, which is the default.
+USE bankdb;
+
+ALTER TABLE accounts
+    ADD COLUMN opening_balance DECIMAL(19, 4) NOT NULL DEFAULT 0 AFTER balance;
@@ -0,0 +1,13 @@
+-- Sub-ledger slots for striped hot accounts. Postings to a striped account
+-- update one of its slots instead of its accounts row, so they do not all
+-- queue on a single row lock. Accounts are striped and unstriped at runtime
+-- through Bank.stripeAccount and Bank.unstripeAccount.
+USE bankdb;
+
+CREATE TABLE IF NOT EXISTS account_slots (
+    account_id VARCHAR(100) NOT NULL,
+    slot INT NOT NULL,
+    balance DECIMAL(19, 4) NOT NULL DEFAULT 0,
+    PRIMARY KEY (account_id, slot),
+    FOREIGN KEY (account_id) REFERENCES accounts(id) ON DELETE CASCADE
+);
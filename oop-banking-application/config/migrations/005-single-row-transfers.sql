@@ -0,0 +1,35 @@
+-- Adds the TRANSFER transaction type, which records a transfer as one row on
+-- the source account referencing the destination, and converts existing
+-- TRANSFER_OUT / TRANSFER_IN pairs to it. Pairs are matched by accounts and
+-- amount, the n-th TRANSFER_OUT with the n-th TRANSFER_IN in ID order; halves
+-- whose other account was deleted stay as they are. Readers handle both forms,
+-- so the conversion is optional and may run while the application is up.
+-- Enable writing single-row transfers with -Dbank.transfers.singleRow=true.
+USE bankdb;
+
+ALTER TABLE transactions
+    MODIFY transaction_type ENUM('DEPOSIT', 'WITHDRAWAL', 'TRANSFER_IN', 'TRANSFER_OUT', 'INTEREST', 'TRANSFER') NOT NULL;
+
+CREATE TEMPORARY TABLE transfer_pairs AS
+SELECT o.id AS out_id, i.id AS in_id
+FROM (SELECT id, account_id, related_account_id, amount,
+             ROW_NUMBER() OVER (PARTITION BY account_id, related_account_id, amount ORDER BY id) AS n
+      FROM transactions WHERE transaction_type = 'TRANSFER_OUT') o
+JOIN (SELECT id, account_id, related_account_id, amount,
+             ROW_NUMBER() OVER (PARTITION BY related_account_id, account_id, amount ORDER BY id) AS n
+      FROM transactions WHERE transaction_type = 'TRANSFER_IN') i
+  ON i.account_id = o.related_account_id
+ AND i.related_account_id = o.account_id
+ AND i.amount = o.amount
+ AND i.n = o.n;
+
+START TRANSACTION;
+
+UPDATE transactions t JOIN transfer_pairs p ON t.id = p.out_id
+SET t.transaction_type = 'TRANSFER';
+
+DELETE t FROM transactions t JOIN transfer_pairs p ON t.id = p.in_id;
+
+COMMIT;
+
+DROP TEMPORARY TABLE transfer_pairs;
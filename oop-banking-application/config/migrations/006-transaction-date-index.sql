@@ -0,0 +1,6 @@
+-- Indexes transactions by date, so rebuilding the velocity limit counters at
+-- startup reads only the last day of transactions instead of scanning the
+-- whole table. Only needed when -Dbank.limits.* limits are enabled.
+USE bankdb;
+
+CREATE INDEX idx_transactions_date ON transactions(transaction_date);
@@ -0,0 +1,19 @@
+-- Transactional outbox. With -Dbank.outbox.enabled=true every committed
+-- deposit, withdrawal, transfer and ownership change also writes a row to
+-- outbox in the same transaction, and OutboxRelay publishes the rows in ID
+-- order to in-process listeners, recording its progress in outbox_offsets.
+USE bankdb;
+
+CREATE TABLE IF NOT EXISTS outbox (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    event_type VARCHAR(20) NOT NULL,
+    account_id VARCHAR(100) NOT NULL,
+    related_account_id VARCHAR(100),
+    amount DECIMAL(19, 4),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS outbox_offsets (
+    relay_name VARCHAR(100) PRIMARY KEY,
+    last_id BIGINT NOT NULL
+);
@@ -18,6 +18,7 @@ CREATE TABLE IF NOT EXISTS customers (
 CREATE TABLE IF NOT EXISTS accounts (
     id VARCHAR(100) PRIMARY KEY,
     balance DECIMAL(19, 4) NOT NULL DEFAULT 0,
+    opening_balance DECIMAL(19, 4) NOT NULL DEFAULT 0,
     customer_id VARCHAR(100) NOT NULL,
     account_type ENUM('PERSONAL', 'CORPORATE') NOT NULL,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
@@ -34,11 +35,22 @@ CREATE TABLE IF NOT EXISTS account_owners (
     FOREIGN KEY (customer_id) REFERENCES customers(id) ON DELETE CASCADE
 );
 
--- Transaction history table
+-- Sub-ledger slots of striped hot accounts. A striped account's balance is
+-- accounts.balance plus the sum of its slots; see AccountSlots.
+CREATE TABLE IF NOT EXISTS account_slots (
+    account_id VARCHAR(100) NOT NULL,
+    slot INT NOT NULL,
+    balance DECIMAL(19, 4) NOT NULL DEFAULT 0,
+    PRIMARY KEY (account_id, slot),
+    FOREIGN KEY (account_id) REFERENCES accounts(id) ON DELETE CASCADE
+);
+
+-- Transaction history table. A TRANSFER row records a whole transfer on its
+-- source account; older transfers are TRANSFER_OUT and TRANSFER_IN pairs.
 CREATE TABLE IF NOT EXISTS transactions (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
     account_id VARCHAR(100) NOT NULL,
-    transaction_type ENUM('DEPOSIT', 'WITHDRAWAL', 'TRANSFER_IN', 'TRANSFER_OUT') NOT NULL,
+    transaction_type ENUM('DEPOSIT', 'WITHDRAWAL', 'TRANSFER_IN', 'TRANSFER_OUT', 'INTEREST', 'TRANSFER') NOT NULL,
     amount DECIMAL(19, 4) NOT NULL,
     related_account_id VARCHAR(100),
     transaction_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
@@ -46,18 +58,57 @@ CREATE TABLE IF NOT EXISTS transactions (
     FOREIGN KEY (related_account_id) REFERENCES accounts(id) ON DELETE SET NULL
 );
 
--- Audit log table for security tracking
+-- Audit log table for security tracking, partitioned by month.
+-- AuditLogArchiver splits monthly partitions off p_future ahead of time and
+-- moves cold months to compressed archive files.
 CREATE TABLE IF NOT EXISTS audit_log (
-    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    id BIGINT AUTO_INCREMENT,
     action_type VARCHAR(50) NOT NULL,
     entity_type VARCHAR(50) NOT NULL,
     entity_id VARCHAR(100) NOT NULL,
     description TEXT,
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, created_at)
+)
+PARTITION BY RANGE (TO_DAYS(created_at)) (
+    PARTITION p_start VALUES LESS THAN (TO_DAYS('2026-10-01')),
+    PARTITION p_future VALUES LESS THAN MAXVALUE
+);
+
+-- Progress of resumable batch jobs, one row per job run and partition
+CREATE TABLE IF NOT EXISTS batch_checkpoints (
+    job_name VARCHAR(100) NOT NULL,
+    run_date DATE NOT NULL,
+    partition_id INT NOT NULL,
+    lower_bound VARCHAR(100),
+    upper_bound VARCHAR(100),
+    last_account_id VARCHAR(100),
+    accounts_processed BIGINT NOT NULL DEFAULT 0,
+    completed BOOLEAN NOT NULL DEFAULT FALSE,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    PRIMARY KEY (job_name, run_date, partition_id)
+);
+
+-- Change events written in the same transaction as the change they describe,
+-- published in ID order by OutboxRelay
+CREATE TABLE IF NOT EXISTS outbox (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    event_type VARCHAR(20) NOT NULL,
+    account_id VARCHAR(100) NOT NULL,
+    related_account_id VARCHAR(100),
+    amount DECIMAL(19, 4),
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
+-- Last outbox ID each relay has published
+CREATE TABLE IF NOT EXISTS outbox_offsets (
+    relay_name VARCHAR(100) PRIMARY KEY,
+    last_id BIGINT NOT NULL
+);
+
 -- Indexes for performance optimization
 CREATE INDEX idx_customers_names ON customers(first_name, last_name);
 CREATE INDEX idx_accounts_customer ON accounts(customer_id);
 CREATE INDEX idx_transactions_account ON transactions(account_id);
+CREATE INDEX idx_transactions_date ON transactions(transaction_date);
 CREATE INDEX idx_audit_entity ON audit_log(entity_type, entity_id);
\ No newline at end of file
@@ -23,7 +23,7 @@ public abstract class Account {
      * Retrieves the current balance of the account.
      * @return the current balance as a BigDecimal
      */
-    public BigDecimal getBalance() {
+    public synchronized BigDecimal getBalance() {
         return balance;
     }
 
@@ -39,7 +39,7 @@ public abstract class Account {
      * Sets the account's balance. This method is protected to ensure it is only
      * called within the bank package.
      */
-    protected void setBalance(BigDecimal balance) {
+    protected synchronized void setBalance(BigDecimal balance) {
         this.balance = balance;
     }
 
@@ -0,0 +1,332 @@
+package bank;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import bank.database.TransactionService;
+
+/**
+ * Serializes balance changes per account on single-threaded lanes instead of
+ * letting them queue on the account's row lock.
+ * <p>
+ * Each account ID hashes to one of a fixed number of lanes, and each lane
+ * applies its queue in order on its own thread. Deposits and withdrawals
+ * queued for the same account are merged and applied in one transaction with
+ * a single balance update, so a hot account costs one round of locking per
+ * batch instead of one per operation. Accounts on different lanes proceed in
+ * parallel.
+ * <p>
+ * A transfer between accounts on different lanes is queued on both lanes at
+ * once, while holding both queue locks taken in lane order. Any two
+ * transfers sharing a lane are therefore queued in the same order on every
+ * lane they share, so lanes can never wait for each other in a cycle. When
+ * both lanes reach the transfer, the lower lane runs it while the other waits.
+ */
+public class AccountLanes {
+    private final TransactionService transactionService;
+    private final int maxBatchSize;
+    private final Lane[] lanes;
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong postings = new AtomicLong();
+    
+    /**
+     * Starts the lane threads.
+     * @param transactionService Service applying the changes
+     * @param laneCount Number of lanes, each with its own thread
+     * @param maxBatchSize Most queued operations a lane takes at once
+     */
+    public AccountLanes(TransactionService transactionService, int laneCount, int maxBatchSize) {
+        if (laneCount < 1 || maxBatchSize < 1) {
+            throw new IllegalArgumentException("Lane count and batch size must be at least 1");
+        }
+        this.transactionService = transactionService;
+        this.maxBatchSize = maxBatchSize;
+        this.lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(i);
+            Thread thread = new Thread(lanes[i], "account-lane-" + i);
+            thread.setDaemon(true);
+            lanes[i].thread = thread;
+            thread.start();
+        }
+    }
+    
+    /**
+     * Deposits to an account on its lane, waiting for the result.
+     * @return false if the account does not exist
+     */
+    public boolean deposit(String accountId, BigDecimal amount) {
+        return post(accountId, amount, false);
+    }
+    
+    /**
+     * Withdraws from an account on its lane, waiting for the result.
+     * @return false if the account does not exist or has insufficient funds
+     */
+    public boolean withdraw(String accountId, BigDecimal amount, boolean allowNegativeBalance) {
+        return post(accountId, amount.negate(), allowNegativeBalance);
+    }
+    
+    /**
+     * Transfers between two accounts once both of their lanes reach it,
+     * waiting for the result.
+     * @return false if either account does not exist or the source has insufficient funds
+     */
+    public boolean transfer(String fromAccountId, String toAccountId, BigDecimal amount, boolean allowNegativeBalance) {
+        Lane from = laneFor(fromAccountId);
+        Lane to = laneFor(toAccountId);
+        Transfer transfer = new Transfer(fromAccountId, toAccountId, amount, allowNegativeBalance,
+                                         Math.min(from.index, to.index));
+        if (from == to) {
+            from.enqueue(transfer);
+        } else {
+            Lane first = from.index < to.index ? from : to;
+            Lane second = first == from ? to : from;
+            first.lock.lock();
+            second.lock.lock();
+            try {
+                if (second.stopped) {
+                    throw new IllegalStateException("Account lanes are shut down");
+                }
+                first.add(transfer);
+                second.add(transfer);
+            } finally {
+                second.lock.unlock();
+                first.lock.unlock();
+            }
+        }
+        return await(transfer.result);
+    }
+    
+    private boolean post(String accountId, BigDecimal amount, boolean allowNegativeBalance) {
+        Posting posting = new Posting(accountId, amount, allowNegativeBalance);
+        laneFor(accountId).enqueue(posting);
+        return await(posting.result);
+    }
+    
+    private Lane laneFor(String accountId) {
+        return lanes[Math.floorMod(accountId.hashCode(), lanes.length)];
+    }
+    
+    private static boolean await(CompletableFuture<Boolean> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Average number of deposits and withdrawals applied per batch.
+     */
+    public double getAverageBatchSize() {
+        long batchCount = batches.get();
+        return batchCount == 0 ? 0.0 : (double) postings.get() / batchCount;
+    }
+    
+    public int getLaneCount() {
+        return lanes.length;
+    }
+    
+    /**
+     * Finishes everything already queued, then stops the lane threads.
+     * Operations submitted afterwards fail with an {@link IllegalStateException}.
+     */
+    public void shutdown() {
+        for (Lane lane : lanes) {
+            lane.lock.lock();
+            try {
+                lane.stopped = true;
+                lane.notEmpty.signal();
+            } finally {
+                lane.lock.unlock();
+            }
+        }
+        for (Lane lane : lanes) {
+            try {
+                lane.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+    
+    private abstract static class Task {
+        final CompletableFuture<Boolean> result = new CompletableFuture<>();
+    }
+    
+    private static final class Posting extends Task {
+        final String accountId;
+        final BigDecimal amount;
+        final boolean allowNegativeBalance;
+        
+        Posting(String accountId, BigDecimal amount, boolean allowNegativeBalance) {
+            this.accountId = accountId;
+            this.amount = amount;
+            this.allowNegativeBalance = allowNegativeBalance;
+        }
+    }
+    
+    private static final class Transfer extends Task {
+        final String fromAccountId;
+        final String toAccountId;
+        final BigDecimal amount;
+        final boolean allowNegativeBalance;
+        final int runningLane;
+        // The waiting lane signals its arrival; the running lane signals when the transfer is applied
+        final CountDownLatch partnerArrived = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        
+        Transfer(String fromAccountId, String toAccountId, BigDecimal amount, boolean allowNegativeBalance,
+                 int runningLane) {
+            this.fromAccountId = fromAccountId;
+            this.toAccountId = toAccountId;
+            this.amount = amount;
+            this.allowNegativeBalance = allowNegativeBalance;
+            this.runningLane = runningLane;
+        }
+    }
+    
+    private final class Lane implements Runnable {
+        final int index;
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition notEmpty = lock.newCondition();
+        final ArrayDeque<Task> queue = new ArrayDeque<>();
+        Thread thread;
+        boolean stopped;
+        
+        Lane(int index) {
+            this.index = index;
+        }
+        
+        void enqueue(Task task) {
+            lock.lock();
+            try {
+                add(task);
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        /**
+         * Queues a task; the caller holds the lock.
+         */
+        void add(Task task) {
+            if (stopped) {
+                throw new IllegalStateException("Account lanes are shut down");
+            }
+            queue.add(task);
+            notEmpty.signal();
+        }
+        
+        @Override
+        public void run() {
+            List<Posting> batch = new ArrayList<>();
+            while (true) {
+                Transfer transfer = null;
+                lock.lock();
+                try {
+                    while (queue.isEmpty() && !stopped) {
+                        notEmpty.awaitUninterruptibly();
+                    }
+                    if (queue.isEmpty()) {
+                        return;
+                    }
+                    if (queue.peek() instanceof Transfer) {
+                        transfer = (Transfer) queue.poll();
+                    } else {
+                        // Take postings up to the next transfer so order on every account is kept
+                        while (batch.size() < maxBatchSize && queue.peek() instanceof Posting) {
+                            batch.add((Posting) queue.poll());
+                        }
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                
+                if (transfer != null) {
+                    runTransfer(transfer);
+                } else {
+                    applyPostings(batch);
+                    batch.clear();
+                }
+            }
+        }
+        
+        private void runTransfer(Transfer transfer) {
+            boolean crossLane = laneFor(transfer.fromAccountId) != laneFor(transfer.toAccountId);
+            if (crossLane && transfer.runningLane != index) {
+                // Hold this lane still until the other lane has applied the transfer
+                transfer.partnerArrived.countDown();
+                awaitUninterruptibly(transfer.done);
+                return;
+            }
+            if (crossLane) {
+                awaitUninterruptibly(transfer.partnerArrived);
+            }
+            try {
+                transfer.result.complete(transactionService.recordTransfer(
+                    transfer.fromAccountId, transfer.toAccountId, transfer.amount, transfer.allowNegativeBalance));
+            } catch (RuntimeException e) {
+                transfer.result.completeExceptionally(e);
+            } finally {
+                transfer.done.countDown();
+            }
+        }
+        
+        private void applyPostings(List<Posting> batch) {
+            Map<String, List<Posting>> byAccount = new LinkedHashMap<>();
+            for (Posting posting : batch) {
+                byAccount.computeIfAbsent(posting.accountId, id -> new ArrayList<>()).add(posting);
+            }
+            for (Map.Entry<String, List<Posting>> entry : byAccount.entrySet()) {
+                List<Posting> accountPostings = entry.getValue();
+                List<BigDecimal> amounts = new ArrayList<>(accountPostings.size());
+                boolean allowNegativeBalance = false;
+                for (Posting posting : accountPostings) {
+                    amounts.add(posting.amount);
+                    allowNegativeBalance |= posting.allowNegativeBalance;
+                }
+                batches.incrementAndGet();
+                postings.addAndGet(accountPostings.size());
+                try {
+                    boolean[] applied = transactionService.recordPostings(entry.getKey(), amounts, allowNegativeBalance);
+                    for (int i = 0; i < applied.length; i++) {
+                        accountPostings.get(i).result.complete(applied[i]);
+                    }
+                } catch (RuntimeException e) {
+                    accountPostings.forEach(posting -> posting.result.completeExceptionally(e));
+                }
+            }
+        }
+    }
+    
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
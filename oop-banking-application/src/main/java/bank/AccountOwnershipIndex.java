@@ -0,0 +1,98 @@
+package bank;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory bidirectional index between owners (customers) and accounts.
+ * Covers both the primary owner stored on the account and the co-owners of
+ * corporate accounts, so ownership lookups never have to touch the database.
+ * Reads are lock-free; writes are serialized to keep both directions in sync.
+ */
+public class AccountOwnershipIndex {
+    private final Map<String, Set<String>> accountsByOwner = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> ownersByAccount = new ConcurrentHashMap<>();
+
+    /**
+     * Builds an index from a map of account IDs to their owners.
+     * @param ownersByAccount the owners of each account
+     */
+    public AccountOwnershipIndex(Map<String, ? extends Collection<String>> ownersByAccount) {
+        ownersByAccount.forEach((accountId, ownerIds) -> link(this.ownersByAccount, accountsByOwner, accountId, ownerIds));
+    }
+
+    public AccountOwnershipIndex() {
+    }
+
+    /**
+     * Adds owners to an account, creating the account entry if needed.
+     * @param accountId The account ID
+     * @param ownerIds The customer IDs owning the account
+     */
+    public synchronized void addOwners(String accountId, Collection<String> ownerIds) {
+        link(ownersByAccount, accountsByOwner, accountId, ownerIds);
+    }
+
+    // Static so the constructor can fill the maps without calling an overridable method
+    private static void link(Map<String, Set<String>> ownersByAccount, Map<String, Set<String>> accountsByOwner,
+                             String accountId, Collection<String> ownerIds) {
+        Set<String> owners = ownersByAccount.computeIfAbsent(accountId, id -> ConcurrentHashMap.newKeySet());
+        for (String ownerId : ownerIds) {
+            owners.add(ownerId);
+            accountsByOwner.computeIfAbsent(ownerId, id -> ConcurrentHashMap.newKeySet()).add(accountId);
+        }
+    }
+
+    /**
+     * Replaces the full owner set of an account.
+     * @param accountId The account ID
+     * @param ownerIds The new customer IDs owning the account
+     */
+    public synchronized void replaceOwners(String accountId, Collection<String> ownerIds) {
+        removeAccount(accountId);
+        addOwners(accountId, ownerIds);
+    }
+
+    /**
+     * Removes an account and all of its ownership links.
+     * @param accountId The account ID
+     */
+    public synchronized void removeAccount(String accountId) {
+        Set<String> owners = ownersByAccount.remove(accountId);
+        if (owners == null) {
+            return;
+        }
+        for (String ownerId : owners) {
+            Set<String> accounts = accountsByOwner.get(ownerId);
+            if (accounts != null) {
+                accounts.remove(accountId);
+                if (accounts.isEmpty()) {
+                    accountsByOwner.remove(ownerId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Retrieves the accounts owned or co-owned by a customer.
+     * @param ownerId The customer ID
+     * @return read-only view of the account IDs, empty if none
+     */
+    public Set<String> getAccounts(String ownerId) {
+        Set<String> accounts = accountsByOwner.get(ownerId);
+        return accounts == null ? Collections.emptySet() : Collections.unmodifiableSet(accounts);
+    }
+
+    /**
+     * Retrieves the owners of an account.
+     * @param accountId The account ID
+     * @return read-only view of the customer IDs, empty if unknown
+     */
+    public Set<String> getOwners(String accountId) {
+        Set<String> owners = ownersByAccount.get(accountId);
+        return owners == null ? Collections.emptySet() : Collections.unmodifiableSet(owners);
+    }
+}
@@ -0,0 +1,265 @@
+package bank;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Deadline-aware admission control in front of {@link Bank}.
+ * <p>
+ * At most {@link #getLimit()} operations run at once. The limit adapts with
+ * AIMD: it grows by one per limit's worth of fast completions while the
+ * limit is in use, and shrinks by a tenth, at most once per target latency,
+ * when an operation takes longer than the target. A slowing database therefore
+ * gets fewer concurrent requests instead of a growing queue.
+ * <p>
+ * Operations over the limit wait in a queue ordered by priority, then by
+ * deadline. A request is rejected at once with an {@link OverloadedException}
+ * when its priority's share of the queue is full, or when the expected wait
+ * (the requests ahead of it divided by the limit, times the recent average
+ * latency) would pass its deadline. Low-priority work has the smallest queue
+ * share, so statements are shed well before transfers.
+ */
+public class AdmissionController {
+    private static final double DECREASE_FACTOR = 0.9;
+    private static final double LATENCY_WEIGHT = 0.1;
+    
+    /**
+     * Importance of an operation, most important first.
+     */
+    public enum Priority {
+        /** Deposits, withdrawals and transfers */
+        CRITICAL(4.0),
+        /** Balance and account lookups */
+        NORMAL(1.0),
+        /** Statements and histories */
+        LOW(0.25);
+        
+        private final double queueShare;
+        
+        Priority(double queueShare) {
+            this.queueShare = queueShare;
+        }
+    }
+    
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final PriorityQueue<Waiter> queue = new PriorityQueue<>(
+        Comparator.comparing((Waiter waiter) -> waiter.priority).thenComparingLong(waiter -> waiter.deadline));
+    private final int[] queuedByPriority = new int[Priority.values().length];
+    private final AtomicLong rejected = new AtomicLong();
+    private double limit;
+    private int inFlight;
+    private double averageLatencyNanos;
+    private long lastDecrease;
+    
+    /**
+     * @param initialLimit Concurrency limit to start with
+     * @param minLimit Lowest the limit may fall to
+     * @param maxLimit Highest the limit may grow to
+     * @param targetLatency Operations slower than this shrink the limit
+     */
+    public AdmissionController(int initialLimit, int minLimit, int maxLimit, Duration targetLatency) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min <= initial <= max");
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetLatencyNanos = targetLatency.toNanos();
+        this.averageLatencyNanos = targetLatencyNanos / 2.0;
+        this.lastDecrease = System.nanoTime();
+    }
+    
+    /**
+     * Runs an operation once admitted.
+     *
+     * @param priority Importance of the operation
+     * @param timeout Time allowed to start the operation, or null to wait as long as needed
+     * @param operation The operation to run
+     * @return The operation's result
+     * @throws OverloadedException If the operation was shed
+     * @throws InterruptedException If interrupted while queued; the operation was not run
+     */
+    public <T> T execute(Priority priority, Duration timeout, Supplier<T> operation) throws InterruptedException {
+        long deadline = timeout == null ? Long.MAX_VALUE : System.nanoTime() + timeout.toNanos();
+        acquire(priority, deadline);
+        long start = System.nanoTime();
+        try {
+            return operation.get();
+        } finally {
+            release(System.nanoTime() - start);
+        }
+    }
+    
+    private void acquire(Priority priority, long deadline) throws InterruptedException {
+        Waiter waiter;
+        lock.lock();
+        try {
+            if (queue.isEmpty() && inFlight < (int) limit) {
+                inFlight++;
+                return;
+            }
+            if (queuedByPriority[priority.ordinal()] >= Math.max(1, (int) (limit * priority.queueShare))) {
+                throw shed("Queue full for " + priority + " requests");
+            }
+            if (deadline != Long.MAX_VALUE) {
+                int ahead = 1;
+                for (Waiter queued : queue) {
+                    if (queued.priority.compareTo(priority) <= 0) {
+                        ahead++;
+                    }
+                }
+                long expectedWait = (long) (ahead / limit * averageLatencyNanos);
+                if (deadline - System.nanoTime() < expectedWait) {
+                    throw shed("Deadline too close for the current queue");
+                }
+            }
+            waiter = new Waiter(priority, deadline, lock.newCondition());
+            queue.add(waiter);
+            queuedByPriority[priority.ordinal()]++;
+            
+            while (!waiter.granted) {
+                long remaining = deadline == Long.MAX_VALUE ? Long.MAX_VALUE : deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    dequeue(waiter);
+                    throw shed("Deadline expired waiting for admission");
+                }
+                try {
+                    if (deadline == Long.MAX_VALUE) {
+                        waiter.condition.await();
+                    } else {
+                        waiter.condition.awaitNanos(remaining);
+                    }
+                } catch (InterruptedException e) {
+                    if (waiter.granted) {
+                        // Admitted concurrently; hand the slot on rather than leak it
+                        inFlight--;
+                        grantWaiting();
+                    } else {
+                        dequeue(waiter);
+                    }
+                    throw e;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void release(long latencyNanos) {
+        lock.lock();
+        try {
+            averageLatencyNanos += LATENCY_WEIGHT * (latencyNanos - averageLatencyNanos);
+            long now = System.nanoTime();
+            if (latencyNanos > targetLatencyNanos) {
+                if (now - lastDecrease >= targetLatencyNanos) {
+                    limit = Math.max(minLimit, limit * DECREASE_FACTOR);
+                    lastDecrease = now;
+                }
+            } else if (inFlight >= (int) limit) {
+                // Only grow while the limit is actually the constraint
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+            inFlight--;
+            grantWaiting();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Hands free slots to queued requests, most important first.
+     */
+    private void grantWaiting() {
+        while (inFlight < (int) limit && !queue.isEmpty()) {
+            Waiter next = queue.poll();
+            queuedByPriority[next.priority.ordinal()]--;
+            if (next.deadline == Long.MAX_VALUE || next.deadline - System.nanoTime() > 0) {
+                next.granted = true;
+                inFlight++;
+            }
+            // An expired waiter wakes up, finds itself not granted and sheds itself
+            next.condition.signal();
+        }
+    }
+    
+    private void dequeue(Waiter waiter) {
+        if (queue.remove(waiter)) {
+            queuedByPriority[waiter.priority.ordinal()]--;
+        }
+    }
+    
+    private OverloadedException shed(String reason) {
+        rejected.incrementAndGet();
+        return new OverloadedException(reason);
+    }
+    
+    /**
+     * Current concurrency limit.
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Recent average operation latency.
+     */
+    public Duration getAverageLatency() {
+        lock.lock();
+        try {
+            return Duration.ofNanos((long) averageLatencyNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Number of requests shed since startup.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+    
+    private static final class Waiter {
+        final Priority priority;
+        final long deadline;
+        final Condition condition;
+        boolean granted;
+        
+        Waiter(Priority priority, long deadline, Condition condition) {
+            this.priority = priority;
+            this.deadline = deadline;
+            this.condition = condition;
+        }
+    }
+}
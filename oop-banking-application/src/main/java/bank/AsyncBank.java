@@ -0,0 +1,184 @@
+package bank;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import bank.AdmissionController.Priority;
+import bank.database.DatabaseConnectionManager;
+
+/**
+ * Asynchronous facade over {@link Bank}. Every call runs on its own virtual
+ * thread, so callers can keep tens of thousands of requests in flight without
+ * a platform thread each.
+ * <p>
+ * An {@link AdmissionController} bounds how many calls run against the
+ * database at once, adapting the limit to observed latency up to the size of
+ * the {@link DatabaseConnectionManager} pool; the remaining calls wait cheaply
+ * on their virtual threads, most important first. Calls that cannot start
+ * before their deadline fail fast with an {@link OverloadedException}, and
+ * statements and histories are shed before transfers. Cancelling the returned
+ * future, or reaching its deadline, abandons the call while it is still
+ * queued. Once an operation has started it runs to completion so no database
+ * transaction is left half-applied; its result is then discarded.
+ */
+public class AsyncBank implements AutoCloseable {
+    private final Bank bank;
+    private final AdmissionController admission;
+    private final Duration defaultTimeout;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    
+    /**
+     * Creates a facade limited to the connection pool size, without a default deadline.
+     * @param bank The bank to delegate to
+     */
+    public AsyncBank(Bank bank) {
+        this(bank, DatabaseConnectionManager.getInstance().getMaxPoolSize(), null);
+    }
+    
+    /**
+     * @param bank The bank to delegate to
+     * @param maxConcurrency Maximum number of operations running at once
+     * @param defaultTimeout Deadline applied to calls without an explicit one, or null for none
+     */
+    public AsyncBank(Bank bank, int maxConcurrency, Duration defaultTimeout) {
+        this(bank, new AdmissionController(maxConcurrency, 1, maxConcurrency, Duration.ofMillis(100)), defaultTimeout);
+    }
+    
+    /**
+     * @param bank The bank to delegate to
+     * @param admission Decides when each call may run
+     * @param defaultTimeout Deadline applied to calls without an explicit one, or null for none
+     */
+    public AsyncBank(Bank bank, AdmissionController admission, Duration defaultTimeout) {
+        this.bank = bank;
+        this.admission = admission;
+        this.defaultTimeout = defaultTimeout;
+    }
+    
+    public CompletableFuture<String> registerCustomerAsync(String firstName, String lastName, Date birthDay) {
+        return call(Priority.NORMAL, b -> b.registerCustomer(firstName, lastName, birthDay), defaultTimeout);
+    }
+    
+    public CompletableFuture<Optional<String>> registerPersonalAccountAsync(String customerId) {
+        return call(Priority.NORMAL, b -> b.registerPersonalAccount(customerId), defaultTimeout);
+    }
+    
+    public CompletableFuture<Optional<String>> registerCorporateAccountAsync(String[] customerIds) {
+        return call(Priority.NORMAL, b -> b.registerCorporateAccount(customerIds), defaultTimeout);
+    }
+    
+    public CompletableFuture<Boolean> depositAsync(String accountId, BigDecimal amount) {
+        return call(Priority.CRITICAL, b -> b.deposit(accountId, amount), defaultTimeout);
+    }
+    
+    public CompletableFuture<Boolean> withdrawAsync(String accountId, BigDecimal amount) {
+        return call(Priority.CRITICAL, b -> b.withdraw(accountId, amount), defaultTimeout);
+    }
+    
+    public CompletableFuture<Boolean> transferAsync(String fromAccountId, String toAccountId, BigDecimal amount) {
+        return call(Priority.CRITICAL, b -> b.transfer(fromAccountId, toAccountId, amount), defaultTimeout);
+    }
+    
+    public CompletableFuture<Optional<BigDecimal>> getBalanceAsync(String accountId) {
+        return call(Priority.NORMAL, b -> b.getBalance(accountId), defaultTimeout);
+    }
+    
+    public CompletableFuture<Optional<Collection<String>>> getAccountsAsync(String customerId) {
+        return call(Priority.NORMAL, b -> b.getAccounts(customerId), defaultTimeout);
+    }
+    
+    public CompletableFuture<Optional<BigDecimal>> getTotalBalanceAsync(String customerId) {
+        return call(Priority.NORMAL, b -> b.getTotalBalance(customerId), defaultTimeout);
+    }
+    
+    public CompletableFuture<List<Map<String, Object>>> getTransactionHistoryAsync(String accountId) {
+        return call(Priority.LOW, b -> b.getTransactionHistory(accountId), defaultTimeout);
+    }
+    
+    public CompletableFuture<Map<String, Object>> getAccountStatementAsync(String accountId, Date startDate, Date endDate) {
+        return call(Priority.LOW, b -> b.getAccountStatement(accountId, startDate, endDate), defaultTimeout);
+    }
+    
+    /**
+     * Runs any Bank operation asynchronously at normal priority with an explicit deadline.
+     *
+     * @param operation The operation to run against the bank
+     * @param timeout Time allowed before the future fails with a {@link TimeoutException}, or null for none
+     * @return A future completed with the operation's result
+     */
+    public <T> CompletableFuture<T> call(Function<Bank, T> operation, Duration timeout) {
+        return call(Priority.NORMAL, operation, timeout);
+    }
+    
+    /**
+     * Runs any Bank operation asynchronously with an explicit priority and deadline.
+     *
+     * @param priority Importance of the operation when the database is overloaded
+     * @param operation The operation to run against the bank
+     * @param timeout Time allowed before the future fails with a {@link TimeoutException}, or null for none
+     * @return A future completed with the operation's result, or failed with an
+     *         {@link OverloadedException} if it was shed before starting
+     */
+    public <T> CompletableFuture<T> call(Priority priority, Function<Bank, T> operation, Duration timeout) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        // Claimed either by the worker when it starts, or by cancellation while it still waits
+        AtomicBoolean claimed = new AtomicBoolean();
+        
+        Future<?> task = executor.submit(() -> {
+            try {
+                admission.execute(priority, timeout, () -> {
+                    // The caller may have given up while we were queued
+                    if (claimed.compareAndSet(false, true)) {
+                        try {
+                            result.complete(operation.apply(bank));
+                        } catch (Throwable t) {
+                            result.completeExceptionally(t);
+                        }
+                    }
+                    return null;
+                });
+            } catch (OverloadedException e) {
+                result.completeExceptionally(e);
+            } catch (InterruptedException e) {
+                result.completeExceptionally(new CancellationException("Cancelled waiting for admission"));
+            }
+        });
+        
+        if (timeout != null) {
+            result.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        }
+        // Propagate cancellation and deadline expiry to a call still waiting for admission
+        result.whenComplete((value, error) -> {
+            if (error != null && claimed.compareAndSet(false, true)) {
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+    
+    public AdmissionController getAdmissionController() {
+        return admission;
+    }
+    
+    /**
+     * Stops accepting new calls and waits for running ones to finish.
+     */
+    @Override
+    public void close() {
+        executor.close();
+    }
+}
@@ -1,16 +1,35 @@
 package bank;
 
 import java.util.stream.Collectors;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.util.Collection;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
+import bank.batch.InterestAccrualJob;
+import bank.batch.LedgerReconciliationJob;
 import bank.database.*;
+import bank.monitoring.BankMetrics;
+import bank.monitoring.BankOperationEvent;
+import bank.monitoring.CacheMetrics;
+import bank.monitoring.OperationContext;
+import bank.monitoring.OperationMetrics;
+import bank.monitoring.Outcome;
+import bank.outbox.OutboxRelay;
 
 /**
  * Manages banking operations including customer and account management.
@@ -18,14 +37,61 @@ import bank.database.*;
  */
 public class Bank {
     // These maps now serve as a cache to reduce database queries
-    private Map<String, Customer> customerCache = new HashMap<>();
-    private Map<String, Account> accountCache = new HashMap<>();
+    private Map<String, Customer> customerCache = new ConcurrentHashMap<>();
+    private Map<String, Account> accountCache = new ConcurrentHashMap<>();
+    
+    // Owner <-> account index covering primary owners and corporate co-owners
+    private AccountOwnershipIndex ownershipIndex = new AccountOwnershipIndex();
     
     // DAOs for database access
     private CustomerDAO customerDAO;
     private AccountDAO accountDAO;
     private TransactionService transactionService;
     
+    // Batch loaders merging concurrent cache misses, null until coalescing is enabled
+    private volatile CoalescingLoader<String, Account> accountLoader;
+    private volatile CoalescingLoader<String, Boolean> customerLoader;
+    
+    // Every known account and customer ID, so lookups of unknown IDs skip the database
+    private final Object idFilterLock = new Object();
+    private volatile CuckooFilter idFilter;
+    // Accounts removed since the filter was built, guarded by idFilterLock
+    private int removedSinceRebuild;
+    
+    // Per-account lanes applying balance changes, null unless enabled
+    private volatile AccountLanes accountLanes;
+    
+    // Hourly and daily debit limits per account, null unless enabled
+    private volatile VelocityLimits velocityLimits;
+    
+    // Publishes committed changes from the outbox table, null unless enabled
+    private volatile OutboxRelay outboxRelay;
+    
+    // Statements of closed periods, null unless enabled
+    private volatile StatementCache statementCache;
+    
+    // Operation and cache metrics, resolved once so the hot path skips the registry
+    private final BankMetrics metrics = BankMetrics.getInstance();
+    private final OperationMetrics registerCustomerMetrics = metrics.operation("registerCustomer");
+    private final OperationMetrics getCustomersMetrics = metrics.operation("getCustomers");
+    private final OperationMetrics removeAccountMetrics = metrics.operation("removeAccount");
+    private final OperationMetrics registerCorporateAccountMetrics = metrics.operation("registerCorporateAccount");
+    private final OperationMetrics updateAccountOwnershipMetrics = metrics.operation("updateAccountOwnership");
+    private final OperationMetrics registerPersonalAccountMetrics = metrics.operation("registerPersonalAccount");
+    private final OperationMetrics getBalanceMetrics = metrics.operation("getBalance");
+    private final OperationMetrics depositMetrics = metrics.operation("deposit");
+    private final OperationMetrics withdrawMetrics = metrics.operation("withdraw");
+    private final OperationMetrics transferMetrics = metrics.operation("transfer");
+    private final OperationMetrics getAccountsMetrics = metrics.operation("getAccounts");
+    private final OperationMetrics getTotalBalanceMetrics = metrics.operation("getTotalBalance");
+    private final OperationMetrics getTransactionHistoryMetrics = metrics.operation("getTransactionHistory");
+    private final OperationMetrics getAccountStatementMetrics = metrics.operation("getAccountStatement");
+    private final OperationMetrics postCorrectionMetrics = metrics.operation("postCorrection");
+    private final OperationMetrics updateCustomerMetrics = metrics.operation("updateCustomer");
+    private final CacheMetrics accountCacheMetrics = metrics.cache("account");
+    private final CacheMetrics customerCacheMetrics = metrics.cache("customer");
+    private final CacheMetrics statementCacheMetrics = metrics.cache("statement");
+    
     public Bank() {
         // Initialize DAOs
         this.customerDAO = new CustomerDAOImpl();
@@ -35,34 +101,42 @@ public class Bank {
         // Optionally preload cache for better performance
         preloadCache();
     }
-    
+
     /**
      * Preloads the cache with data from the database for faster access.
      */
     private void preloadCache() {
         // Load customers to cache
-        customerDAO.findAll().forEach(customer -> 
+        customerDAO.findAll().forEach(customer ->
             customerCache.put(customer.getId(), customer));
-            
+        
         // Load accounts to cache
-        accountDAO.findAll().forEach(account -> 
+        accountDAO.findAll().forEach(account ->
             accountCache.put(account.getId(), account));
+        
+        // Build the ownership index from accounts and account_owners
+        ownershipIndex = new AccountOwnershipIndex(accountDAO.findAllOwners());
+        
+        idFilter = buildIdFilter(customerCache.keySet(), accountCache.keySet());
     }
-    
+
     /**
      * Registers a customer and returns a unique customer ID.
      */
     public String registerCustomer(String firstName, String lastName, Date birthDay) {
-        String id = firstName.substring(0, 1) + lastName + System.nanoTime();  // Generate a unique ID
-        Customer newCustomer = new Customer(id, firstName, lastName, birthDay);
-        
-        // Save to database
-        customerDAO.save(newCustomer);
-        
-        // Update cache
-        customerCache.put(id, newCustomer);
-        
-        return id;
+        return timed(registerCustomerMetrics, null, () -> {
+            String id = firstName.substring(0, 1) + lastName + System.nanoTime();  // Generate a unique ID
+            Customer newCustomer = new Customer(id, firstName, lastName, birthDay);
+            
+            // Save to database
+            customerDAO.save(newCustomer);
+            
+            // Update cache
+            customerCache.put(id, newCustomer);
+            addKnownId(id);
+            
+            return id;
+        }, id -> true);
     }
 
     /**
@@ -70,136 +144,229 @@ public class Bank {
      */
     public Collection<String> getCustomers(String firstName, String lastName, Date birthDay) {
         // Query database directly rather than using cache for this operation
-        return customerDAO.findByNameAndBirthDay(firstName, lastName, birthDay);
+        return timed(getCustomersMetrics, null,
+            () -> customerDAO.findByNameAndBirthDay(firstName, lastName, birthDay), ids -> !ids.isEmpty());
     }
 
     /**
      * Removes an account by ID.
      */
     public boolean removeAccount(String accountId) {
-        boolean removed = accountDAO.deleteById(accountId);
-        
-        // Update cache if successful
-        if (removed) {
-            accountCache.remove(accountId);
-        }
-        
-        return removed;
+        return timed(removeAccountMetrics, accountId, () -> {
+            boolean removed = accountDAO.deleteById(accountId);
+            
+            // Update cache if successful
+            if (removed) {
+                accountCache.remove(accountId);
+                ownershipIndex.removeAccount(accountId);
+                StatementCache cache = statementCache;
+                if (cache != null) {
+                    cache.invalidateAccount(accountId);
+                }
+                // The ID stays in the filter: removing it could delete the fingerprint of an ID the
+                // filter never saw, such as one bulk loaded since. It costs a query until the next rebuild.
+                synchronized (idFilterLock) {
+                    if (++removedSinceRebuild > idFilter.size() / 8) {
+                        rebuildIdFilter();
+                    }
+                }
+            }
+            
+            return removed;
+        }, removed -> removed);
     }
 
     /**
      * Registers a corporate account for multiple customers.
      */
     public Optional<String> registerCorporateAccount(String[] customerData) {
-        // Verify all customers exist
-        for (String customerId : customerData) {
-            if (!customerDAO.exists(customerId)) {
-                return Optional.empty();  // Return empty if any customer ID is invalid
+        return timed(registerCorporateAccountMetrics, null, () -> {
+            // Verify all customers exist
+            for (String customerId : customerData) {
+                if (!customerDAO.exists(customerId)) {
+                    return Optional.<String>empty();  // Return empty if any customer ID is invalid
+                }
             }
-        }
-        
-        String accountId = "C-" + System.nanoTime();  // Generate a unique ID
-        CorporateAccount newAccount = new CorporateAccount(accountId, BigDecimal.ZERO, customerData[0]);
-        
-        // Save to database
-        accountDAO.save(newAccount);
-        
-        // For corporate accounts, record ownership information
-        transactionService.recordAccountOwnership(accountId, customerData);
-        
-        // Update cache
-        accountCache.put(accountId, newAccount);
-        
-        return Optional.of(accountId);
-    }
-
-    /**
-     * Registers a personal account for a single customer.
-     */
-    public Optional<String> registerPersonalAccount(String customerId) {
-        if (customerDAO.exists(customerId)) {
-            String accountId = "P-" + System.nanoTime();  // Generate a unique ID
-            PersonalAccount newAccount = new PersonalAccount(accountId, BigDecimal.ZERO, customerId);
+            
+            String accountId = "C-" + System.nanoTime();  // Generate a unique ID
+            CorporateAccount newAccount = new CorporateAccount(accountId, BigDecimal.ZERO, customerData[0]);
             
             // Save to database
             accountDAO.save(newAccount);
             
+            // For corporate accounts, record ownership information
+            transactionService.recordAccountOwnership(accountId, customerData);
+            
             // Update cache
             accountCache.put(accountId, newAccount);
+            ownershipIndex.addOwners(accountId, Arrays.asList(customerData));
+            addKnownId(accountId);
             
             return Optional.of(accountId);
-        }
-        return Optional.empty();
+        }, Optional::isPresent);
+    }
+
+    /**
+     * Replaces the co-owners of a corporate account. The primary owner
+     * always remains an owner of the account.
+     *
+     * @param accountId The corporate account ID
+     * @param customerIds The new co-owner customer IDs
+     * @return true if the ownership was updated
+     */
+    public boolean updateAccountOwnership(String accountId, String[] customerIds) {
+        return timedOutcome(updateAccountOwnershipMetrics, accountId, null, null, () -> {
+            Optional<Account> account = Optional.ofNullable(accountCache.get(accountId));
+            if (!accountCacheMetrics.record(account.isPresent())) {
+                account = accountDAO.findById(accountId);
+            }
+            if (!account.isPresent()) {
+                return Outcome.NOT_FOUND;
+            }
+            if (!(account.get() instanceof CorporateAccount)) {
+                return Outcome.INVALID;
+            }
+            
+            for (String customerId : customerIds) {
+                if (!customerCacheMetrics.record(customerCache.containsKey(customerId))
+                        && !customerDAO.exists(customerId)) {
+                    return Outcome.NOT_FOUND;
+                }
+            }
+            
+            boolean updated = transactionService.recordAccountOwnership(accountId, customerIds);
+            if (updated) {
+                Set<String> owners = new HashSet<>(Arrays.asList(customerIds));
+                owners.add(account.get().getCustomerId());
+                ownershipIndex.replaceOwners(accountId, owners);
+            }
+            return updated ? Outcome.SUCCESS : Outcome.ERROR;
+        }) == Outcome.SUCCESS;
+    }
+
+    /**
+     * Registers a personal account for a single customer.
+     */
+    public Optional<String> registerPersonalAccount(String customerId) {
+        return timed(registerPersonalAccountMetrics, null, () -> {
+            if (customerDAO.exists(customerId)) {
+                String accountId = "P-" + System.nanoTime();  // Generate a unique ID
+                PersonalAccount newAccount = new PersonalAccount(accountId, BigDecimal.ZERO, customerId);
+                
+                // Save to database
+                accountDAO.save(newAccount);
+                
+                // Update cache
+                accountCache.put(accountId, newAccount);
+                ownershipIndex.addOwners(accountId, List.of(customerId));
+                addKnownId(accountId);
+                
+                return Optional.of(accountId);
+            }
+            return Optional.<String>empty();
+        }, Optional::isPresent);
     }
 
     /**
      * Retrieves the balance for a specified account.
      */
     public Optional<BigDecimal> getBalance(String accountId) {
-        // Try cache first
-        if (accountCache.containsKey(accountId)) {
-            return Optional.of(accountCache.get(accountId).getBalance());
-        }
-        
-        // If not in cache, try database
-        Optional<Account> account = accountDAO.findById(accountId);
-        account.ifPresent(acc -> accountCache.put(accountId, acc));
-        
-        return account.map(Account::getBalance);
+        return timed(getBalanceMetrics, accountId, () -> {
+            // Try cache first
+            Account cached = accountCache.get(accountId);
+            if (accountCacheMetrics.record(cached != null)) {
+                return Optional.of(cached.getBalance());
+            }
+            
+            // If not in cache, try database
+            Optional<Account> account = lookupAccount(accountId);
+            account.ifPresent(acc -> accountCache.put(accountId, acc));
+            
+            return account.map(Account::getBalance);
+        }, Optional::isPresent);
     }
 
     /**
      * Deposits an amount to a specific account.
      */
     public boolean deposit(String accountId, BigDecimal amount) {
-        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
-            return false;  // Validation failed
-        }
-        
-        // Use transaction service to ensure ACID properties
-        boolean success = transactionService.recordDeposit(accountId, amount);
-        
-        if (success) {
+        return timedOutcome(depositMetrics, accountId, null, amount, () -> {
+            if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+                return Outcome.INVALID;  // Validation failed
+            }
+            
+            // Use transaction service to ensure ACID properties
+            AccountLanes lanes = accountLanes;
+            boolean success = lanes != null ? lanes.deposit(accountId, amount)
+                                            : transactionService.recordDeposit(accountId, amount);
+            
+            if (!success) {
+                return Outcome.NOT_FOUND;  // No account row was updated
+            }
+            
             // Update cache if account exists in cache
-            if (accountCache.containsKey(accountId)) {
-                Account account = accountCache.get(accountId);
-                account.deposit(amount);
+            Account cached = accountCache.get(accountId);
+            if (accountCacheMetrics.record(cached != null)) {
+                cached.deposit(amount);
             } else {
                 // Refresh account from database
                 Optional<Account> account = accountDAO.findById(accountId);
                 account.ifPresent(acc -> accountCache.put(accountId, acc));
             }
-        }
-        
-        return success;
+            return Outcome.SUCCESS;
+        }) == Outcome.SUCCESS;
     }
 
     /**
      * Withdraws an amount from a specific account.
      */
     public boolean withdraw(String accountId, BigDecimal amount) {
-        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
-            return false;  // Validation failed
-        }
-        
-        // Determine if this is a corporate account (allows negative balance)
-        boolean isCorporate = false;
-        if (accountCache.containsKey(accountId)) {
-            isCorporate = accountCache.get(accountId) instanceof CorporateAccount;
-        } else {
-            Optional<Account> account = accountDAO.findById(accountId);
-            if (account.isPresent()) {
-                isCorporate = account.get() instanceof CorporateAccount;
-                accountCache.put(accountId, account.get());
+        return timedOutcome(withdrawMetrics, accountId, null, amount, () -> {
+            if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+                return Outcome.INVALID;  // Validation failed
+            }
+            
+            // Determine if this is a corporate account (allows negative balance)
+            boolean isCorporate = false;
+            Account cached = accountCache.get(accountId);
+            if (accountCacheMetrics.record(cached != null)) {
+                isCorporate = cached instanceof CorporateAccount;
             } else {
-                return false;  // Account not found
+                Optional<Account> account = lookupAccount(accountId);
+                if (account.isPresent()) {
+                    isCorporate = account.get() instanceof CorporateAccount;
+                    accountCache.put(accountId, account.get());
+                } else {
+                    return Outcome.NOT_FOUND;  // Account not found
+                }
             }
-        }
-        
-        // Use transaction service to ensure ACID properties
-        boolean success = transactionService.recordWithdrawal(accountId, amount, isCorporate);
-        
-        if (success) {
+            
+            // Count the withdrawal against the account's limits before touching the ledger
+            VelocityLimits limits = velocityLimits;
+            long recordedAt = 0;
+            if (limits != null) {
+                recordedAt = limits.tryRecord(accountId, VelocityLimits.Kind.WITHDRAWAL, amount);
+                if (recordedAt < 0) {
+                    return Outcome.LIMIT_EXCEEDED;
+                }
+            }
+            
+            // Use transaction service to ensure ACID properties
+            AccountLanes lanes = accountLanes;
+            boolean success = false;
+            try {
+                success = lanes != null ? lanes.withdraw(accountId, amount, isCorporate)
+                                        : transactionService.recordWithdrawal(accountId, amount, isCorporate);
+            } finally {
+                if (limits != null && !success) {
+                    limits.release(accountId, VelocityLimits.Kind.WITHDRAWAL, amount, recordedAt);
+                }
+            }
+            
+            if (!success) {
+                return refusalOutcome(accountId);
+            }
+            
             // Update cache if account exists in cache
             if (accountCache.containsKey(accountId)) {
                 Account account = accountCache.get(accountId);
@@ -209,42 +376,67 @@ public class Bank {
                 Optional<Account> account = accountDAO.findById(accountId);
                 account.ifPresent(acc -> accountCache.put(accountId, acc));
             }
-        }
-        
-        return success;
+            return Outcome.SUCCESS;
+        }) == Outcome.SUCCESS;
     }
 
     /**
      * Transfers an amount from one account to another.
      */
     public boolean transfer(String fromAccountId, String toAccountId, BigDecimal amount) {
-        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
-            return false;  // Validation failed
-        }
-        
-        // Determine if the source account is corporate (allows negative balance)
-        boolean isCorporate = false;
-        if (accountCache.containsKey(fromAccountId)) {
-            isCorporate = accountCache.get(fromAccountId) instanceof CorporateAccount;
-        } else {
-            Optional<Account> account = accountDAO.findById(fromAccountId);
-            if (account.isPresent()) {
-                isCorporate = account.get() instanceof CorporateAccount;
-                accountCache.put(fromAccountId, account.get());
+        return timedOutcome(transferMetrics, fromAccountId, toAccountId, amount, () -> {
+            if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+                return Outcome.INVALID;  // Validation failed
+            }
+            
+            // Determine if the source account is corporate (allows negative balance)
+            boolean isCorporate = false;
+            Account cached = accountCache.get(fromAccountId);
+            if (accountCacheMetrics.record(cached != null)) {
+                isCorporate = cached instanceof CorporateAccount;
             } else {
-                return false;  // Account not found
+                Optional<Account> account = lookupAccount(fromAccountId);
+                if (account.isPresent()) {
+                    isCorporate = account.get() instanceof CorporateAccount;
+                    accountCache.put(fromAccountId, account.get());
+                } else {
+                    return Outcome.NOT_FOUND;  // Account not found
+                }
             }
-        }
-        
-        // Verify destination account exists
-        if (!accountCache.containsKey(toAccountId) && !accountDAO.findById(toAccountId).isPresent()) {
-            return false;  // Destination account not found
-        }
-        
-        // Use transaction service to ensure ACID properties
-        boolean success = transactionService.recordTransfer(fromAccountId, toAccountId, amount, isCorporate);
-        
-        if (success) {
+            
+            // Verify destination account exists
+            if (!accountCacheMetrics.record(accountCache.containsKey(toAccountId))
+                    && !lookupAccount(toAccountId).isPresent()) {
+                return Outcome.NOT_FOUND;  // Destination account not found
+            }
+            
+            // Count the transfer against the source account's limits before touching the ledger
+            VelocityLimits limits = velocityLimits;
+            long recordedAt = 0;
+            if (limits != null) {
+                recordedAt = limits.tryRecord(fromAccountId, VelocityLimits.Kind.TRANSFER, amount);
+                if (recordedAt < 0) {
+                    return Outcome.LIMIT_EXCEEDED;
+                }
+            }
+            
+            // Use transaction service to ensure ACID properties
+            AccountLanes lanes = accountLanes;
+            boolean success = false;
+            try {
+                success = lanes != null
+                    ? lanes.transfer(fromAccountId, toAccountId, amount, isCorporate)
+                    : transactionService.recordTransfer(fromAccountId, toAccountId, amount, isCorporate);
+            } finally {
+                if (limits != null && !success) {
+                    limits.release(fromAccountId, VelocityLimits.Kind.TRANSFER, amount, recordedAt);
+                }
+            }
+            
+            if (!success) {
+                return refusalOutcome(fromAccountId, toAccountId);
+            }
+            
             // Update cache for source account
             if (accountCache.containsKey(fromAccountId)) {
                 Account account = accountCache.get(fromAccountId);
@@ -256,60 +448,122 @@ public class Bank {
                 Account account = accountCache.get(toAccountId);
                 account.deposit(amount);
             }
-        }
-        
-        return success;
+            return Outcome.SUCCESS;
+        }) == Outcome.SUCCESS;
     }
 
     /**
-     * Retrieves a list of all account IDs for a given customer.
+     * Retrieves a list of all account IDs for a given customer, including
+     * corporate accounts the customer co-owns.
      */
     public Optional<Collection<String>> getAccounts(String customerId) {
-        if (!customerDAO.exists(customerId)) {
-            return Optional.empty();
-        }
-        
-        List<String> accountIds = accountDAO.findByCustomerId(customerId);
-        return Optional.of(accountIds);
+        return timed(getAccountsMetrics, null, () -> {
+            if (!customerCacheMetrics.record(customerCache.containsKey(customerId))
+                    && !customerExists(customerId)) {
+                return Optional.<Collection<String>>empty();
+            }
+            
+            List<String> accountIds = new ArrayList<>(ownershipIndex.getAccounts(customerId));
+            return Optional.<Collection<String>>of(accountIds);
+        }, Optional::isPresent);
     }
 
     /**
      * Calculates the total balance of all accounts owned by a customer.
      */
     public Optional<BigDecimal> getTotalBalance(String customerId) {
-        if (!customerDAO.exists(customerId)) {
-            return Optional.empty();
-        }
-        
-        BigDecimal totalBalance = accountDAO.getTotalBalanceByCustomerId(customerId);
-        return Optional.of(totalBalance);
+        return timed(getTotalBalanceMetrics, null, () -> {
+            if (!customerExists(customerId)) {
+                return Optional.<BigDecimal>empty();
+            }
+            
+            BigDecimal totalBalance = accountDAO.getTotalBalanceByCustomerId(customerId);
+            return Optional.of(totalBalance);
+        }, Optional::isPresent);
     }
-    
+
     /**
      * Gets transaction history for an account.
-     * 
+     *
      * @param accountId The account ID
      * @return List of transaction details
      */
     public List<Map<String, Object>> getTransactionHistory(String accountId) {
-        return transactionService.getTransactionHistory(accountId);
+        return timed(getTransactionHistoryMetrics, accountId,
+            () -> transactionService.getTransactionHistory(accountId), history -> true);
     }
-    
+
     /**
      * Gets account statement for a specified period.
-     * 
+     *
      * @param accountId The account ID
      * @param startDate Start date of the statement period
      * @param endDate End date of the statement period
      * @return Map containing statement details
      */
     public Map<String, Object> getAccountStatement(String accountId, Date startDate, Date endDate) {
-        return transactionService.getAccountStatement(accountId, startDate, endDate);
+        return timed(getAccountStatementMetrics, accountId, () -> {
+            StatementCache cache = statementCache;
+            if (cache == null || !StatementCache.isClosed(endDate)) {
+                return transactionService.getAccountStatement(accountId, startDate, endDate);
+            }
+            
+            Map<String, Object> statement = cache.get(accountId, startDate, endDate);
+            if (statementCacheMetrics.record(statement != null)) {
+                // Only the balance is live; take it from the account cache like getBalance does
+                Account account = accountCache.get(accountId);
+                Optional<Account> current = account != null ? Optional.of(account) : lookupAccount(accountId);
+                statement.put("startDate", startDate);
+                statement.put("endDate", endDate);
+                statement.put("currentBalance", current.map(Account::getBalance).orElse(BigDecimal.ZERO));
+                return statement;
+            }
+            
+            long generation = cache.getGeneration();
+            statement = transactionService.getAccountStatement(accountId, startDate, endDate);
+            cache.put(accountId, startDate, endDate, statement, generation);
+            return statement;
+        }, statement -> true);
     }
-    
+
+    /**
+     * Records a back-dated correction to an account: a credit or debit that
+     * should have been posted at an earlier time. The current balance
+     * changes at once, and cached statements of periods containing the
+     * effective date are dropped.
+     *
+     * @param accountId The account ID
+     * @param amount The correction, positive to credit and negative to debit
+     * @param effectiveDate When the corrected transaction took place; not in the future
+     * @return true if recorded, false if the account does not exist or the arguments are invalid
+     */
+    public boolean postCorrection(String accountId, BigDecimal amount, Date effectiveDate) {
+        return timedOutcome(postCorrectionMetrics, accountId, null, amount, () -> {
+            if (amount == null || amount.signum() == 0 || effectiveDate == null
+                    || effectiveDate.getTime() > System.currentTimeMillis()) {
+                return Outcome.INVALID;  // Validation failed
+            }
+            if (!accountCacheMetrics.record(accountCache.containsKey(accountId))
+                    && !lookupAccount(accountId).isPresent()) {
+                return Outcome.NOT_FOUND;  // Account not found
+            }
+            if (!transactionService.recordCorrection(accountId, amount, effectiveDate)) {
+                return Outcome.NOT_FOUND;  // No account row was updated
+            }
+            
+            StatementCache cache = statementCache;
+            if (cache != null) {
+                cache.invalidate(accountId, effectiveDate);
+            }
+            // A debit may take even a personal account below zero, so reload instead of applying it
+            accountDAO.findById(accountId).ifPresent(acc -> accountCache.put(accountId, acc));
+            return Outcome.SUCCESS;
+        }) == Outcome.SUCCESS;
+    }
+
     /**
      * Updates customer information.
-     * 
+     *
      * @param customerId The customer ID
      * @param firstName New first name
      * @param lastName New last name
@@ -317,28 +571,413 @@ public class Bank {
      * @return true if updated successfully
      */
     public boolean updateCustomer(String customerId, String firstName, String lastName, Date birthDay) {
-        Optional<Customer> existingCustomer = customerDAO.findById(customerId);
-        
-        if (!existingCustomer.isPresent()) {
-            return false;  // Customer not found
+        return timed(updateCustomerMetrics, null, () -> {
+            Optional<Customer> existingCustomer = customerDAO.findById(customerId);
+            
+            if (!existingCustomer.isPresent()) {
+                return false;  // Customer not found
+            }
+            
+            Customer updatedCustomer = new Customer(customerId, firstName, lastName, birthDay);
+            
+            // Update database
+            customerDAO.update(updatedCustomer);
+            
+            // Update cache
+            customerCache.put(customerId, updatedCustomer);
+            
+            return true;
+        }, updated -> updated);
+    }
+
+    /**
+     * Accrues one day of interest on all accounts and applies the postings to
+     * cached accounts. Resumes an interrupted run for the same date.
+     *
+     * @param businessDate The day interest is accrued for
+     * @param parallelism Number of account ranges processed at once
+     * @return Summary of the run (accounts, totalInterest, partitions, elapsedMillis)
+     */
+    public Map<String, Object> accrueInterest(LocalDate businessDate, int parallelism) {
+        InterestAccrualJob job = new InterestAccrualJob(parallelism, 5000);
+        job.setOutboxEnabled(outboxRelay != null);
+        return job.run(businessDate, (accountId, interest) -> {
+            Account cached = accountCache.get(accountId);
+            if (cached != null) {
+                cached.deposit(interest);
+            }
+        });
+    }
+
+    /**
+     * Compares every account's balance with its transaction history and
+     * optionally corrects drifted balances. Repaired accounts are dropped from
+     * the cache so the next read loads the corrected balance.
+     *
+     * @param parallelism Number of account ranges scanned at once
+     * @param repair Whether drifted balances are corrected
+     * @return The discrepancies found
+     */
+    public LedgerReconciliationJob.Report reconcileLedger(int parallelism, boolean repair) {
+        LedgerReconciliationJob job = new LedgerReconciliationJob(parallelism, repair);
+        job.setOutboxEnabled(outboxRelay != null);
+        LedgerReconciliationJob.Report report = job.run();
+        for (LedgerReconciliationJob.Discrepancy discrepancy : report.discrepancies) {
+            if (discrepancy.isRepaired()) {
+                accountCache.remove(discrepancy.accountId);
+            }
         }
-        
-        Customer customer = existingCustomer.get();
-        Customer updatedCustomer = new Customer(customerId, firstName, lastName, birthDay);
-        
-        // Update database
-        customerDAO.update(updatedCustomer);
-        
-        // Update cache
-        customerCache.put(customerId, updatedCustomer);
-        
-        return true;
+        return report;
     }
-    
+
+    /**
+     * Spreads a hot account's balance over sub-ledger slots so concurrent
+     * postings to it lock different rows. Restriping an account changes its
+     * number of slots. The balance seen by callers does not change.
+     *
+     * @param accountId The account ID
+     * @param slots Number of slots
+     * @return false if the account does not exist
+     */
+    public boolean stripeAccount(String accountId, int slots) {
+        return AccountSlots.getInstance().stripe(accountId, slots);
+    }
+
+    /**
+     * Folds a striped account's slots back into its single balance row.
+     *
+     * @param accountId The account ID
+     * @return false if the account does not exist
+     */
+    public boolean unstripeAccount(String accountId) {
+        return AccountSlots.getInstance().unstripe(accountId);
+    }
+
+    /**
+     * Merges concurrent cache-miss lookups of accounts and customers into
+     * batched {@code IN (...)} queries. A batch closes after the window or
+     * once it holds the maximum number of keys; concurrent lookups of the same
+     * key share one result. Lookups that follow a write still read directly.
+     *
+     * @param window How long a batch waits for more lookups
+     * @param maxBatchSize Number of keys that closes a batch early
+     */
+    public synchronized void enableLookupCoalescing(Duration window, int maxBatchSize) {
+        disableLookupCoalescing();
+        accountLoader = new CoalescingLoader<>("account", accountDAO::findAllById, window, maxBatchSize);
+        customerLoader = new CoalescingLoader<>("customer", ids -> customerDAO.findExisting(ids).stream()
+            .collect(Collectors.toMap(id -> id, id -> Boolean.TRUE)), window, maxBatchSize);
+    }
+
+    /**
+     * Returns cache-miss lookups to one query per key.
+     */
+    public synchronized void disableLookupCoalescing() {
+        if (accountLoader != null) {
+            accountLoader.close();
+            customerLoader.close();
+            accountLoader = null;
+            customerLoader = null;
+        }
+    }
+
+    /**
+     * Reads an account missing from the cache, through the batch loader when
+     * enabled. IDs the filter has never seen are rejected without a query.
+     */
+    private Optional<Account> lookupAccount(String accountId) {
+        CuckooFilter filter = idFilter;
+        if (!filter.mightContain(accountId)) {
+            return Optional.empty();
+        }
+        CoalescingLoader<String, Account> loader = accountLoader;
+        Optional<Account> account = loader != null
+            ? Optional.ofNullable(loader.load(accountId)) : accountDAO.findById(accountId);
+        if (!account.isPresent()) {
+            filter.recordFalsePositive();
+        }
+        return account;
+    }
+
+    /**
+     * Classifies a posting the ledger refused: an account deleted since it
+     * was looked up is dropped from the cache and reported as not found,
+     * anything else as insufficient funds.
+     */
+    private Outcome refusalOutcome(String... accountIds) {
+        for (String accountId : accountIds) {
+            if (!accountDAO.findById(accountId).isPresent()) {
+                accountCache.remove(accountId);
+                return Outcome.NOT_FOUND;
+            }
+        }
+        return Outcome.INSUFFICIENT_FUNDS;
+    }
+
+    /**
+     * Checks that a customer exists, through the batch loader when enabled.
+     * IDs the filter has never seen are rejected without a query.
+     */
+    private boolean customerExists(String customerId) {
+        CuckooFilter filter = idFilter;
+        if (!filter.mightContain(customerId)) {
+            return false;
+        }
+        CoalescingLoader<String, Boolean> loader = customerLoader;
+        boolean exists = loader != null ? loader.load(customerId) != null : customerDAO.exists(customerId);
+        if (!exists) {
+            filter.recordFalsePositive();
+        }
+        return exists;
+    }
+
+    /**
+     * Rebuilds the known-ID filter from the database. Call this after
+     * accounts or customers are created outside this {@code Bank}, for
+     * example by the bulk loader; until then lookups of those IDs report
+     * them as unknown. Removed accounts stay in the filter until it is
+     * rebuilt, which also happens once they make up an eighth of it.
+     */
+    public void rebuildIdFilter() {
+        synchronized (idFilterLock) {
+            removedSinceRebuild = 0;
+            Set<String> customerIds = customerDAO.findAll().stream().map(Customer::getId).collect(Collectors.toSet());
+            Set<String> accountIds = accountDAO.findAll().stream().map(Account::getId).collect(Collectors.toSet());
+            idFilter = buildIdFilter(customerIds, accountIds);
+        }
+    }
+
+    /**
+     * The filter of known account and customer IDs, for monitoring its
+     * false-positive rate.
+     */
+    public CuckooFilter getIdFilter() {
+        return idFilter;
+    }
+
+    private void addKnownId(String id) {
+        synchronized (idFilterLock) {
+            if (!idFilter.add(id)) {
+                // Full: replace it with one sized for twice the current IDs
+                rebuildIdFilter();
+            }
+        }
+    }
+
+    private static CuckooFilter buildIdFilter(Collection<String> customerIds, Collection<String> accountIds) {
+        CuckooFilter filter = new CuckooFilter(Math.max(1024, 2 * (customerIds.size() + accountIds.size())));
+        customerIds.forEach(filter::add);
+        accountIds.forEach(filter::add);
+        return filter;
+    }
+
+    /**
+     * Chooses whether new transfers are stored as one TRANSFER row
+     * referencing both accounts instead of a TRANSFER_OUT and TRANSFER_IN
+     * pair. Histories and statements show both accounts' sides either way.
+     *
+     * @param singleRowTransfers true to write one row per transfer
+     */
+    public void setSingleRowTransfers(boolean singleRowTransfers) {
+        transactionService.setSingleRowTransfers(singleRowTransfers);
+    }
+
+    /**
+     * Routes deposits, withdrawals and transfers through per-account lanes:
+     * operations on one account are applied in order by a single thread,
+     * with queued deposits and withdrawals merged into one transaction, so
+     * they stop contending for the account's row lock.
+     *
+     * @param laneCount Number of lanes; accounts hash onto them
+     * @param maxBatchSize Most operations a lane applies at once
+     */
+    public synchronized void enableAccountLanes(int laneCount, int maxBatchSize) {
+        disableAccountLanes();
+        accountLanes = new AccountLanes(transactionService, laneCount, maxBatchSize);
+    }
+
+    /**
+     * Finishes the operations queued on the lanes and returns to applying
+     * each operation on its caller's thread.
+     */
+    public synchronized void disableAccountLanes() {
+        if (accountLanes != null) {
+            AccountLanes lanes = accountLanes;
+            accountLanes = null;
+            lanes.shutdown();
+        }
+    }
+
+    /**
+     * Limits how much can be withdrawn from, and separately transferred out
+     * of, each account per hour and per day. The counters are rebuilt from
+     * the last day of transactions, then kept in memory, so checking a limit
+     * costs no query. Operations over a limit fail without reaching the
+     * ledger and are recorded as {@link Outcome#LIMIT_EXCEEDED}.
+     *
+     * @param limits The limits to enforce, with no debits counted yet
+     */
+    public synchronized void enableVelocityLimits(VelocityLimits limits) {
+        try {
+            transactionService.streamDebitsSince(new Date(System.currentTimeMillis() - 86_400_000L), row ->
+                limits.replay(row.accountId, "WITHDRAWAL".equals(row.type) ? VelocityLimits.Kind.WITHDRAWAL
+                                                                             : VelocityLimits.Kind.TRANSFER,
+                              row.amount, row.dateMillis));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);  // The sink never throws
+        }
+        disableVelocityLimits();
+        velocityLimits = limits;
+        limits.start();
+    }
+
+    /**
+     * Stops enforcing velocity limits.
+     */
+    public synchronized void disableVelocityLimits() {
+        if (velocityLimits != null) {
+            VelocityLimits limits = velocityLimits;
+            velocityLimits = null;
+            limits.close();
+        }
+    }
+
+    public VelocityLimits getVelocityLimits() {
+        return velocityLimits;
+    }
+
+    /**
+     * Writes an outbox event in the same transaction as every committed
+     * deposit, withdrawal, transfer, correction, ownership change, interest
+     * posting and ledger repair, and starts a relay publishing the events in
+     * order to the listeners subscribed to it. The relay resumes after the
+     * last event it published under the same name.
+     *
+     * @param relayName Name the relay's progress is stored under
+     * @param batchSize Most events delivered to listeners at once
+     * @param pollInterval Delay between polls of an empty outbox
+     * @param gapTimeout How long a missing event ID is waited for before it is taken as rolled back
+     * @return The relay, for subscribing listeners
+     */
+    public synchronized OutboxRelay enableOutbox(String relayName, int batchSize, Duration pollInterval,
+                                                 Duration gapTimeout) {
+        disableOutbox();
+        transactionService.setOutboxEnabled(true);
+        outboxRelay = new OutboxRelay(relayName, batchSize, gapTimeout);
+        outboxRelay.start(pollInterval);
+        return outboxRelay;
+    }
+
+    /**
+     * Stops writing outbox events and stops the relay.
+     */
+    public synchronized void disableOutbox() {
+        transactionService.setOutboxEnabled(false);
+        if (outboxRelay != null) {
+            OutboxRelay relay = outboxRelay;
+            outboxRelay = null;
+            relay.close();
+        }
+    }
+
+    public OutboxRelay getOutboxRelay() {
+        return outboxRelay;
+    }
+
+    /**
+     * Caches statements of periods that are over, so reopening one skips the
+     * transaction query. Only back-dated corrections and bulk loads of
+     * transactions change such statements; corrections posted through
+     * {@link #postCorrection} drop the affected entries.
+     * <p>
+     * A directory filled earlier is reused only if no correction or bulk
+     * load was recorded since, by any process; otherwise it is cleared.
+     * Corrections and loads recorded by another process while the cache is
+     * enabled are not seen, and their statements stay stale until the cache
+     * is enabled again.
+     *
+     * @param maxEntries Most statements kept in memory
+     * @param directory Directory keeping every cached statement across restarts, or null for memory only
+     */
+    public synchronized void enableStatementCache(int maxEntries, Path directory) {
+        long revision = directory != null ? transactionService.getHistoryRevision() : 0;
+        statementCache = new StatementCache(maxEntries, directory, revision);
+    }
+
+    public synchronized void disableStatementCache() {
+        statementCache = null;
+    }
+
+    public StatementCache getStatementCache() {
+        return statementCache;
+    }
+
     /**
      * Closes the database connections when the application shuts down.
      */
     public void shutdown() {
+        disableVelocityLimits();
+        disableAccountLanes();
+        disableLookupCoalescing();
+        disableOutbox();
         DatabaseConnectionManager.getInstance().closeAllConnections();
     }
+
+    /**
+     * Runs an operation and records its latency and outcome, plus a Flight
+     * Recorder event when enabled. A thrown exception is recorded as
+     * {@link Outcome#ERROR} and rethrown.
+     */
+    private Outcome timedOutcome(OperationMetrics operationMetrics, String accountId, String relatedAccountId,
+                                 BigDecimal amount, Supplier<Outcome> operation) {
+        BankOperationEvent event = new BankOperationEvent();
+        event.begin();
+        OperationContext previous = OperationContext.enter(operationMetrics.getName(), accountId, relatedAccountId,
+                                                           amount);
+        long start = System.nanoTime();
+        Outcome outcome = Outcome.ERROR;
+        try {
+            outcome = operation.get();
+            return outcome;
+        } finally {
+            OperationContext.restore(previous);
+            operationMetrics.record(outcome, System.nanoTime() - start);
+            commitEvent(event, operationMetrics, accountId, relatedAccountId, amount, outcome);
+        }
+    }
+
+    /**
+     * Runs an operation and records its latency, classifying the result as
+     * success or not found.
+     */
+    private <T> T timed(OperationMetrics operationMetrics, String accountId, Supplier<T> operation,
+                        Predicate<T> found) {
+        BankOperationEvent event = new BankOperationEvent();
+        event.begin();
+        OperationContext previous = OperationContext.enter(operationMetrics.getName(), accountId, null, null);
+        long start = System.nanoTime();
+        Outcome outcome = Outcome.ERROR;
+        try {
+            T result = operation.get();
+            outcome = found.test(result) ? Outcome.SUCCESS : Outcome.NOT_FOUND;
+            return result;
+        } finally {
+            OperationContext.restore(previous);
+            operationMetrics.record(outcome, System.nanoTime() - start);
+            commitEvent(event, operationMetrics, accountId, null, null, outcome);
+        }
+    }
+    
+    private static void commitEvent(BankOperationEvent event, OperationMetrics operationMetrics, String accountId,
+                                    String relatedAccountId, BigDecimal amount, Outcome outcome) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operationMetrics.getName();
+            event.accountId = accountId;
+            event.relatedAccountId = relatedAccountId;
+            event.amount = amount == null ? 0.0 : amount.doubleValue();
+            event.outcome = outcome.label();
+            event.commit();
+        }
+    }
 }
\ No newline at end of file
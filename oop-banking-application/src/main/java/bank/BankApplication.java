@@ -1,7 +1,28 @@
 package bank;
 
+import bank.archive.TransactionArchive;
+import bank.archive.TransactionTieringJob;
+import bank.audit.AuditArchive;
+import bank.audit.AuditLogArchiver;
+import bank.database.AccountSlots;
 import bank.database.DatabaseInitializer;
+import bank.monitoring.BankMetrics;
+import bank.monitoring.PrometheusEndpoint;
+import bank.outbox.OutboxRelay;
+import bank.server.BankRequestHandler;
+import bank.server.BankServer;
+import bank.database.DatabaseConnectionManager;
 import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.Scanner;
 
 /**
@@ -12,6 +33,42 @@ public class BankApplication {
     
     private static Bank bank;
     
+    // Set -Dbank.metrics.port to expose Prometheus metrics over HTTP
+    private static final String METRICS_PORT_PROPERTY = "bank.metrics.port";
+    
+    // Set -Dbank.server.port to accept requests over the network
+    private static final String SERVER_PORT_PROPERTY = "bank.server.port";
+    
+    // Set -Dbank.audit.archiveDir to move cold audit_log months into compressed files
+    private static final String AUDIT_ARCHIVE_DIR_PROPERTY = "bank.audit.archiveDir";
+    
+    // Set -Dbank.transactions.hotMonths to move older transactions into columnar segments
+    private static final String HOT_MONTHS_PROPERTY = "bank.transactions.hotMonths";
+    
+    // Set -Dbank.interest.accrualTime (HH:mm) to accrue interest once a day
+    private static final String ACCRUAL_TIME_PROPERTY = "bank.interest.accrualTime";
+    
+    // Set -Dbank.striping.accounts (id:slots,...) to spread hot accounts over sub-ledger slots
+    private static final String STRIPED_ACCOUNTS_PROPERTY = "bank.striping.accounts";
+    
+    // Set -Dbank.coalescing.windowMicros to batch concurrent cache-miss lookups into IN (...) queries
+    private static final String COALESCING_WINDOW_PROPERTY = "bank.coalescing.windowMicros";
+    
+    // Set -Dbank.lanes.count to serialize balance changes per account on that many lanes
+    private static final String LANE_COUNT_PROPERTY = "bank.lanes.count";
+    
+    // Set -Dbank.transfers.singleRow=true to store each transfer as one ledger row
+    private static final String SINGLE_ROW_TRANSFERS_PROPERTY = "bank.transfers.singleRow";
+    
+    // Set -Dbank.limits.{withdrawal,transfer}.{hourly,daily} to cap how much each account can send per window
+    private static final String VELOCITY_LIMITS_PREFIX = "bank.limits.";
+    
+    // Set -Dbank.outbox.enabled=true to write an outbox event with every committed change and relay it to listeners
+    private static final String OUTBOX_ENABLED_PROPERTY = "bank.outbox.enabled";
+    
+    // Set -Dbank.statements.cacheSize to keep that many closed-period statements in memory
+    private static final String STATEMENT_CACHE_SIZE_PROPERTY = "bank.statements.cacheSize";
+    
     public static void main(String[] args) {
         System.out.println("Initializing Banking System...");
         
@@ -27,6 +84,126 @@ public class BankApplication {
         bank = new Bank();
         System.out.println("Banking System initialized successfully!");
         
+        // Stripe hot accounts if requested
+        String stripedAccounts = System.getProperty(STRIPED_ACCOUNTS_PROPERTY);
+        if (stripedAccounts != null) {
+            for (String entry : stripedAccounts.split(",")) {
+                String[] parts = entry.trim().split(":");
+                int slots = Integer.parseInt(parts[1]);
+                if (AccountSlots.getInstance().getSlotCount(parts[0]) == slots) {
+                    continue;  // Already striped this way by an earlier run
+                }
+                if (bank.stripeAccount(parts[0], slots)) {
+                    System.out.println("Striped account " + parts[0] + " over " + slots + " slots");
+                } else {
+                    System.err.println("Cannot stripe unknown account " + parts[0]);
+                }
+            }
+        }
+        
+        // Batch concurrent cache-miss lookups if requested
+        String coalescingWindow = System.getProperty(COALESCING_WINDOW_PROPERTY);
+        if (coalescingWindow != null) {
+            bank.enableLookupCoalescing(Duration.ofNanos(Long.parseLong(coalescingWindow) * 1000),
+                                        Integer.getInteger("bank.coalescing.maxBatchSize", 64));
+        }
+        
+        // Store each transfer as one ledger row if requested
+        bank.setSingleRowTransfers(Boolean.getBoolean(SINGLE_ROW_TRANSFERS_PROPERTY));
+        
+        // Apply balance changes on per-account lanes if requested
+        String laneCount = System.getProperty(LANE_COUNT_PROPERTY);
+        if (laneCount != null) {
+            bank.enableAccountLanes(Integer.parseInt(laneCount), Integer.getInteger("bank.lanes.maxBatchSize", 64));
+        }
+        
+        // Enforce hourly and daily debit limits if requested
+        BigDecimal[] limits = new BigDecimal[4];
+        String[] limitNames = {"withdrawal.hourly", "withdrawal.daily", "transfer.hourly", "transfer.daily"};
+        boolean anyLimit = false;
+        for (int i = 0; i < limits.length; i++) {
+            String limit = System.getProperty(VELOCITY_LIMITS_PREFIX + limitNames[i]);
+            if (limit != null) {
+                limits[i] = new BigDecimal(limit);
+                anyLimit = true;
+            }
+        }
+        if (anyLimit) {
+            bank.enableVelocityLimits(new VelocityLimits(limits[0], limits[1], limits[2], limits[3]));
+            System.out.println("Velocity limits enabled for " + bank.getVelocityLimits().getTrackedAccountCount() +
+                               " recently active accounts");
+        }
+        
+        // Publish committed changes through the outbox if requested
+        if (Boolean.getBoolean(OUTBOX_ENABLED_PROPERTY)) {
+            OutboxRelay relay = bank.enableOutbox(System.getProperty("bank.outbox.relayName", "default"),
+                                                  Integer.getInteger("bank.outbox.batchSize", 500),
+                                                  Duration.ofMillis(Long.getLong("bank.outbox.pollMillis", 100)),
+                                                  Duration.ofMillis(Long.getLong("bank.outbox.gapTimeoutMillis", 30_000)));
+            System.out.println("Outbox relay resuming after event " + relay.getOffset());
+        }
+        
+        // Cache statements of closed periods if requested, on disk as well when a directory is given
+        String statementCacheSize = System.getProperty(STATEMENT_CACHE_SIZE_PROPERTY);
+        if (statementCacheSize != null) {
+            String statementCacheDir = System.getProperty("bank.statements.cacheDir");
+            bank.enableStatementCache(Integer.parseInt(statementCacheSize),
+                                      statementCacheDir != null ? Paths.get(statementCacheDir) : null);
+        }
+        
+        // Start the metrics endpoint if requested
+        String metricsPort = System.getProperty(METRICS_PORT_PROPERTY);
+        if (metricsPort != null) {
+            PrometheusEndpoint endpoint = new PrometheusEndpoint(BankMetrics.getInstance());
+            endpoint.start(Integer.parseInt(metricsPort));
+            System.out.println("Metrics available at http://localhost:" + endpoint.getPort() + "/metrics");
+        }
+        
+        // Start the network server if requested
+        String serverPort = System.getProperty(SERVER_PORT_PROPERTY);
+        if (serverPort != null) {
+            // Requests wait on cheap virtual threads; the admission controller decides how many reach the database
+            int maxConcurrency = DatabaseConnectionManager.getInstance().getMaxPoolSize();
+            AdmissionController admission = new AdmissionController(
+                maxConcurrency, 1, maxConcurrency,
+                Duration.ofMillis(Long.getLong("bank.admission.targetLatencyMillis", 100)));
+            BankRequestHandler handler = new BankRequestHandler(
+                bank, admission, Duration.ofMillis(Long.getLong("bank.server.requestTimeoutMillis", 1000)));
+            BankServer server = new BankServer(handler, Executors.newVirtualThreadPerTaskExecutor());
+            try {
+                server.start(Integer.parseInt(serverPort));
+                System.out.println("Bank server listening on port " + server.getPort());
+            } catch (IOException e) {
+                System.err.println("Failed to start bank server: " + e.getMessage());
+            }
+        }
+        
+        // Start the audit log archiver if requested
+        String auditArchiveDir = System.getProperty(AUDIT_ARCHIVE_DIR_PROPERTY);
+        if (auditArchiveDir != null) {
+            AuditLogArchiver archiver = new AuditLogArchiver(new AuditArchive(Paths.get(auditArchiveDir)),
+                                                             Integer.getInteger("bank.audit.retentionMonths", 3));
+            archiver.start(Duration.ofMinutes(Long.getLong("bank.audit.archiveIntervalMinutes", 60)));
+            System.out.println("Archiving cold audit log months to " + auditArchiveDir);
+        }
+        
+        // Start transaction tiering if requested
+        String hotMonths = System.getProperty(HOT_MONTHS_PROPERTY);
+        if (hotMonths != null) {
+            TransactionTieringJob tiering = new TransactionTieringJob(TransactionArchive.getInstance(),
+                                                                      Integer.parseInt(hotMonths));
+            tiering.start(Duration.ofHours(Long.getLong("bank.transactions.tierIntervalHours", 24)));
+            System.out.println("Tiering transactions older than " + hotMonths + " months to " +
+                               TransactionArchive.getInstance().getDirectory());
+        }
+        
+        // Schedule end-of-day interest accrual if requested
+        String accrualTime = System.getProperty(ACCRUAL_TIME_PROPERTY);
+        if (accrualTime != null) {
+            scheduleInterestAccrual(LocalTime.parse(accrualTime), Integer.getInteger("bank.interest.parallelism", 8));
+            System.out.println("Accruing interest daily at " + accrualTime);
+        }
+        
         // Start command line interface
         startCommandLineInterface();
         
@@ -37,6 +214,29 @@ public class BankApplication {
         }));
     }
     
+    /**
+     * Runs the interest accrual job every day at the given time for that day's date.
+     */
+    private static void scheduleInterestAccrual(LocalTime time, int parallelism) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "interest-accrual");
+            thread.setDaemon(true);
+            return thread;
+        });
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime firstRun = now.toLocalDate().atTime(time);
+        if (firstRun.isBefore(now)) {
+            firstRun = firstRun.plusDays(1);
+        }
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                bank.accrueInterest(LocalDate.now(), parallelism);
+            } catch (RuntimeException e) {
+                System.err.println("Interest accrual failed: " + e.getMessage());
+            }
+        }, Duration.between(now, firstRun).toMillis(), Duration.ofDays(1).toMillis(), TimeUnit.MILLISECONDS);
+    }
+    
     /**
      * Simple command line interface for demonstration purposes.
      * In a real application, this would be replaced with a GUI or web interface.
@@ -7,12 +7,15 @@ import java.math.BigDecimal;
  * multiple customers and are allowed to have a negative balance.
  */
 public class CorporateAccount extends Account {
+    /** Annual interest rate (0.5%) accrued daily on positive balances. */
+    public static final BigDecimal ANNUAL_INTEREST_RATE = new BigDecimal("0.0050");
+    
     public CorporateAccount(String id, BigDecimal initialBalance, String customerId) {
         super(id, initialBalance, customerId);
     }
 
     @Override
-    public boolean deposit(BigDecimal amount) {
+    public synchronized boolean deposit(BigDecimal amount) {
         if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
             return false;
         }
@@ -21,7 +24,7 @@ public class CorporateAccount extends Account {
     }
 
     @Override
-    public boolean withdraw(BigDecimal amount) {
+    public synchronized boolean withdraw(BigDecimal amount) {
         if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
             return false;
         }
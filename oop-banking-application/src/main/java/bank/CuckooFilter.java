@@ -0,0 +1,237 @@
+package bank;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Approximate set of string IDs that answers "definitely absent" or "maybe
+ * present" and, unlike a Bloom filter, supports removal.
+ * <p>
+ * Each ID is reduced to a 16-bit fingerprint stored in one of two candidate
+ * buckets of four slots. A lookup probes both buckets, so a present ID is
+ * never reported absent, while an absent ID is reported present with
+ * probability of roughly 8 in 65536 at full load. A full table fails the
+ * insert; the filter then answers "maybe present" for everything until it is
+ * replaced by a larger one.
+ * <p>
+ * Only remove IDs that were added: removing an ID that was never added can
+ * delete another ID's fingerprint. All methods are thread-safe.
+ */
+public class CuckooFilter {
+    private static final int SLOTS_PER_BUCKET = 4;
+    private static final int FINGERPRINT_BITS = 16;
+    private static final int MAX_KICKS = 500;
+    private static final double TARGET_LOAD = 0.9;
+    
+    private final short[] table;
+    private final int bucketMask;
+    private int size;
+    private boolean saturated;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    
+    /**
+     * Creates an empty filter.
+     * @param expectedItems Number of IDs the filter should hold without saturating
+     */
+    public CuckooFilter(int expectedItems) {
+        long buckets = Long.highestOneBit(Math.max(1, (long) Math.ceil(expectedItems / (SLOTS_PER_BUCKET * TARGET_LOAD))));
+        if (buckets * SLOTS_PER_BUCKET < expectedItems / TARGET_LOAD) {
+            buckets <<= 1;
+        }
+        if (buckets * SLOTS_PER_BUCKET > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many items for one filter: " + expectedItems);
+        }
+        this.table = new short[(int) buckets * SLOTS_PER_BUCKET];
+        this.bucketMask = (int) buckets - 1;
+    }
+    
+    /**
+     * Adds an ID.
+     * @param id The ID
+     * @return false if the table is full; the filter is then saturated
+     */
+    public synchronized boolean add(String id) {
+        if (saturated) {
+            return false;
+        }
+        long hash = hash(id);
+        short fingerprint = fingerprint(hash);
+        int first = (int) hash & bucketMask;
+        int second = alternate(first, fingerprint);
+        if (insert(first, fingerprint) || insert(second, fingerprint)) {
+            size++;
+            return true;
+        }
+        
+        // Evict fingerprints to their alternate buckets until one finds room
+        int bucket = ThreadLocalRandom.current().nextBoolean() ? first : second;
+        for (int kick = 0; kick < MAX_KICKS; kick++) {
+            int slot = bucket * SLOTS_PER_BUCKET + ThreadLocalRandom.current().nextInt(SLOTS_PER_BUCKET);
+            short evicted = table[slot];
+            table[slot] = fingerprint;
+            fingerprint = evicted;
+            bucket = alternate(bucket, fingerprint);
+            if (insert(bucket, fingerprint)) {
+                size++;
+                return true;
+            }
+        }
+        // One fingerprint is left homeless, so a later "absent" answer could be wrong
+        saturated = true;
+        return false;
+    }
+    
+    /**
+     * Checks whether an ID may have been added. A false answer is certain
+     * and is counted as a rejection.
+     * @param id The ID
+     * @return false if the ID was definitely never added (or was removed)
+     */
+    public boolean mightContain(String id) {
+        long hash = hash(id);
+        short fingerprint = fingerprint(hash);
+        int first = (int) hash & bucketMask;
+        boolean found;
+        synchronized (this) {
+            found = saturated || contains(first, fingerprint) || contains(alternate(first, fingerprint), fingerprint);
+        }
+        if (!found) {
+            rejected.increment();
+        }
+        return found;
+    }
+    
+    /**
+     * Removes an ID that was previously added.
+     * @param id The ID
+     * @return false if no matching fingerprint was found
+     */
+    public synchronized boolean remove(String id) {
+        long hash = hash(id);
+        short fingerprint = fingerprint(hash);
+        int first = (int) hash & bucketMask;
+        if (delete(first, fingerprint) || delete(alternate(first, fingerprint), fingerprint)) {
+            size--;
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Records that an ID the filter passed turned out not to exist, for
+     * {@link #getObservedFalsePositiveRate()}.
+     */
+    public void recordFalsePositive() {
+        falsePositives.increment();
+    }
+    
+    /**
+     * Share of absent IDs looked up so far that the filter let through: false
+     * positives over false positives plus rejections.
+     */
+    public double getObservedFalsePositiveRate() {
+        long passed = falsePositives.sum();
+        long total = passed + rejected.sum();
+        return total == 0 ? 0.0 : (double) passed / total;
+    }
+    
+    /**
+     * False-positive rate expected at the current load: the chance that some
+     * fingerprint in either candidate bucket matches an absent ID.
+     */
+    public synchronized double getExpectedFalsePositiveRate() {
+        if (saturated) {
+            return 1.0;
+        }
+        double occupiedPerBucket = (double) size / (bucketMask + 1);
+        return 1.0 - Math.pow(1.0 - 1.0 / ((1 << FINGERPRINT_BITS) - 1), 2 * occupiedPerBucket);
+    }
+    
+    /**
+     * Number of lookups answered "definitely absent".
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+    
+    public synchronized int size() {
+        return size;
+    }
+    
+    public int capacity() {
+        return table.length;
+    }
+    
+    /**
+     * Whether an insert has failed, leaving the filter unable to reject anything.
+     */
+    public synchronized boolean isSaturated() {
+        return saturated;
+    }
+    
+    private boolean insert(int bucket, short fingerprint) {
+        int base = bucket * SLOTS_PER_BUCKET;
+        for (int i = base; i < base + SLOTS_PER_BUCKET; i++) {
+            if (table[i] == 0) {
+                table[i] = fingerprint;
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private boolean contains(int bucket, short fingerprint) {
+        int base = bucket * SLOTS_PER_BUCKET;
+        for (int i = base; i < base + SLOTS_PER_BUCKET; i++) {
+            if (table[i] == fingerprint) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private boolean delete(int bucket, short fingerprint) {
+        int base = bucket * SLOTS_PER_BUCKET;
+        for (int i = base; i < base + SLOTS_PER_BUCKET; i++) {
+            if (table[i] == fingerprint) {
+                table[i] = 0;
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * The other candidate bucket for a fingerprint. Applying it twice returns
+     * the original bucket, so an evicted fingerprint can always move back.
+     */
+    private int alternate(int bucket, short fingerprint) {
+        return (bucket ^ (int) mix(fingerprint)) & bucketMask;
+    }
+    
+    private static short fingerprint(long hash) {
+        // Zero marks an empty slot, so it is never used as a fingerprint
+        short fingerprint = (short) (hash >>> (64 - FINGERPRINT_BITS));
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+    
+    private static long hash(String id) {
+        // 64-bit FNV-1a over the characters, then mixed so similar IDs spread out
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            hash ^= id.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+    
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,14 @@
+package bank;
+
+/**
+ * Thrown when the {@link AdmissionController} sheds a request instead of
+ * running it: its queue is full, or it could not start before its deadline.
+ * The request was never started, so it is safe to retry later.
+ */
+public class OverloadedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    
+    public OverloadedException(String message) {
+        super(message);
+    }
+}
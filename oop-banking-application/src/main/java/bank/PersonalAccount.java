@@ -7,12 +7,15 @@ import java.math.BigDecimal;
  * individual customers and do not allow a negative balance.
  */
 public class PersonalAccount extends Account {
+    /** Annual interest rate (1.5%) accrued daily on positive balances. */
+    public static final BigDecimal ANNUAL_INTEREST_RATE = new BigDecimal("0.0150");
+    
     public PersonalAccount(String id, BigDecimal initialBalance, String customerId) {
         super(id, initialBalance, customerId);
     }
 
     @Override
-    public boolean deposit(BigDecimal amount) {
+    public synchronized boolean deposit(BigDecimal amount) {
         if (amount.compareTo(BigDecimal.ZERO) > 0) {
             setBalance(getBalance().add(amount));
             return true;
@@ -21,7 +24,7 @@ public class PersonalAccount extends Account {
     }
 
     @Override
-    public boolean withdraw(BigDecimal amount) {
+    public synchronized boolean withdraw(BigDecimal amount) {
         if (amount.compareTo(BigDecimal.ZERO) > 0 && getBalance().compareTo(amount) >= 0) {
             setBalance(getBalance().subtract(amount));
             return true;
@@ -0,0 +1,388 @@
+package bank;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Cache of account statements for periods that are over, whose transactions
+ * no longer change except through back-dated corrections.
+ * <p>
+ * Statements are kept in a bounded in-memory tier, least recently used
+ * first out, backed by an optional directory holding every cached statement
+ * in one small binary file per account and period, so the cache survives
+ * restarts. A statement evicted from memory is read back from its file.
+ * <p>
+ * The directory records the history revision it was filled under, see
+ * {@link bank.database.TransactionService#getHistoryRevision()}. When the
+ * cache is created with a different revision, because corrections or bulk
+ * loads were recorded while no cache was watching, every file is deleted.
+ * <p>
+ * The cache holds the period's transactions and totals only; the current
+ * balance in a statement is live and is filled in by the caller on every
+ * hit. {@link #invalidate} drops the statements a correction dated within
+ * their period would change; nothing else removes an entry, so corrections
+ * recorded by another process while the cache is in use are not seen until
+ * the cache is created again.
+ */
+public class StatementCache {
+    // Transactions are timestamped before they commit, so a period counts as over only after this long
+    private static final long SETTLE_MILLIS = 60_000L;
+    private static final int FILE_VERSION = 1;
+    private static final String FILE_SUFFIX = ".stmt";
+    private static final String REVISION_FILE = "revision";
+    
+    private final int maxEntries;
+    private final Path directory;
+    private final LinkedHashMap<Key, Map<String, Object>> entries;
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder diskHits = new LongAdder();
+    
+    /**
+     * @param maxEntries Most statements kept in memory
+     * @param directory Directory for the on-disk tier, created if missing, or null to keep statements in memory only
+     * @param historyRevision The current history revision; the directory is cleared if it was filled under another
+     */
+    public StatementCache(int maxEntries, Path directory, long historyRevision) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Cache size must be at least 1");
+        }
+        this.maxEntries = maxEntries;
+        this.directory = directory;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        if (directory != null) {
+            try {
+                Files.createDirectories(directory);
+                if (historyRevision != readRevision()) {
+                    clearDirectory();
+                    writeRevision(historyRevision);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot prepare statement cache directory " + directory, e);
+            }
+        }
+    }
+    
+    /**
+     * Whether a statement period ending at the given time is over, so its
+     * statement can be cached.
+     */
+    public static boolean isClosed(Date endDate) {
+        return endDate.getTime() < System.currentTimeMillis() - SETTLE_MILLIS;
+    }
+    
+    /**
+     * Looks up a statement, from memory or else from disk.
+     * @return A copy of the cached statement without its current balance, or null if not cached
+     */
+    public Map<String, Object> get(String accountId, Date startDate, Date endDate) {
+        Key key = new Key(accountId, startDate.getTime(), endDate.getTime());
+        Map<String, Object> statement;
+        synchronized (this) {
+            statement = entries.get(key);
+        }
+        if (statement == null && directory != null) {
+            long generationBefore = generation.get();
+            statement = readFile(key);
+            if (statement != null) {
+                diskHits.increment();
+                remember(key, statement, generationBefore);
+            }
+        }
+        return statement == null ? null : new HashMap<>(statement);
+    }
+    
+    /**
+     * Current invalidation generation, to pass to {@link #put} for a
+     * statement computed afterwards.
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+    
+    /**
+     * Caches a statement of a closed period, unless an invalidation happened
+     * since the given generation, in which case the statement may predate a
+     * correction.
+     * @param statement The statement as computed by the transaction service
+     * @param generationBefore {@link #getGeneration()} read before computing the statement
+     */
+    public void put(String accountId, Date startDate, Date endDate, Map<String, Object> statement,
+                    long generationBefore) {
+        Key key = new Key(accountId, startDate.getTime(), endDate.getTime());
+        Map<String, Object> cached = freeze(statement);
+        if (!remember(key, cached, generationBefore)) {
+            return;
+        }
+        if (directory != null) {
+            writeFile(key, cached);
+            if (generation.get() != generationBefore) {
+                deleteFile(key);  // An invalidation may have missed the file while it was being written
+            }
+        }
+    }
+    
+    /**
+     * Drops the cached statements of an account whose period includes the
+     * effective date of a correction.
+     */
+    public void invalidate(String accountId, Date effectiveDate) {
+        long effective = effectiveDate.getTime();
+        drop(accountId, key -> key.startMillis <= effective && effective <= key.endMillis);
+    }
+    
+    /**
+     * Drops every cached statement of an account.
+     */
+    public void invalidateAccount(String accountId) {
+        drop(accountId, key -> true);
+    }
+    
+    /**
+     * Number of statements in memory.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+    
+    /**
+     * Number of lookups answered from disk after missing in memory.
+     */
+    public long getDiskHitCount() {
+        return diskHits.sum();
+    }
+    
+    private synchronized boolean remember(Key key, Map<String, Object> statement, long generationBefore) {
+        if (generation.get() != generationBefore) {
+            return false;
+        }
+        entries.put(key, statement);
+        if (entries.size() > maxEntries) {
+            Iterator<Key> eldest = entries.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+        return true;
+    }
+    
+    private void drop(String accountId, Predicate<Key> affected) {
+        synchronized (this) {
+            generation.incrementAndGet();
+            entries.keySet().removeIf(key -> key.accountId.equals(accountId) && affected.test(key));
+        }
+        if (directory == null) {
+            return;
+        }
+        Path accountDirectory = directory.resolve(fileName(accountId));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(accountDirectory, "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                String[] range = file.getFileName().toString().replace(FILE_SUFFIX, "").split("_");
+                Key key = new Key(accountId, Long.parseLong(range[0]), Long.parseLong(range[1]));
+                if (affected.test(key)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // Nothing cached on disk for the account
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot invalidate cached statements of " + accountId, e);
+        }
+    }
+    
+    /**
+     * @return The revision the directory was filled under, or -1 if unknown
+     */
+    private long readRevision() throws IOException {
+        try {
+            return Long.parseLong(Files.readString(directory.resolve(REVISION_FILE)).trim());
+        } catch (NoSuchFileException | NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    private void writeRevision(long revision) throws IOException {
+        Path temp = Files.createTempFile(directory, REVISION_FILE, ".tmp");
+        Files.writeString(temp, Long.toString(revision));
+        Files.move(temp, directory.resolve(REVISION_FILE), StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * Deletes every cached statement file, and the account directories left empty.
+     */
+    private void clearDirectory() throws IOException {
+        try (DirectoryStream<Path> accounts = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path accountDirectory : accounts) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(accountDirectory, "*" + FILE_SUFFIX)) {
+                    for (Path file : files) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+                try (DirectoryStream<Path> rest = Files.newDirectoryStream(accountDirectory)) {
+                    if (!rest.iterator().hasNext()) {
+                        Files.delete(accountDirectory);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Makes the cached copy read-only, so callers cannot change what later
+     * hits return.
+     */
+    private static Map<String, Object> freeze(Map<String, Object> statement) {
+        Map<String, Object> cached = new HashMap<>(statement);
+        cached.remove("currentBalance");
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> transactions = (List<Map<String, Object>>) statement.get("transactions");
+        List<Map<String, Object>> frozen = new ArrayList<>(transactions.size());
+        for (Map<String, Object> transaction : transactions) {
+            frozen.add(Collections.unmodifiableMap(new HashMap<>(transaction)));
+        }
+        cached.put("transactions", Collections.unmodifiableList(frozen));
+        return cached;
+    }
+    
+    private Path filePath(Key key) {
+        return directory.resolve(fileName(key.accountId)).resolve(key.startMillis + "_" + key.endMillis + FILE_SUFFIX);
+    }
+    
+    /**
+     * Escapes an account ID into a safe directory name.
+     */
+    private static String fileName(String accountId) {
+        StringBuilder name = new StringBuilder(accountId.length());
+        for (int i = 0; i < accountId.length(); i++) {
+            char c = accountId.charAt(i);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-') {
+                name.append(c);
+            } else {
+                name.append('_').append(String.format("%04x", (int) c));
+            }
+        }
+        return name.toString();
+    }
+    
+    private void writeFile(Key key, Map<String, Object> statement) {
+        Path file = filePath(key);
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), "statement", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                @SuppressWarnings("unchecked")
+                List<Map<String, Object>> transactions = (List<Map<String, Object>>) statement.get("transactions");
+                out.writeInt(FILE_VERSION);
+                out.writeUTF(((BigDecimal) statement.get("totalDeposits")).toPlainString());
+                out.writeUTF(((BigDecimal) statement.get("totalWithdrawals")).toPlainString());
+                out.writeInt(transactions.size());
+                for (Map<String, Object> transaction : transactions) {
+                    String relatedAccountId = (String) transaction.get("relatedAccountId");
+                    out.writeLong((Long) transaction.get("id"));
+                    out.writeUTF((String) transaction.get("type"));
+                    out.writeUTF(((BigDecimal) transaction.get("amount")).toPlainString());
+                    out.writeBoolean(relatedAccountId != null);
+                    if (relatedAccountId != null) {
+                        out.writeUTF(relatedAccountId);
+                    }
+                    out.writeLong(((Date) transaction.get("date")).getTime());
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write cached statement " + file, e);
+        }
+    }
+    
+    private Map<String, Object> readFile(Key key) {
+        Path file = filePath(key);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_VERSION) {
+                return null;  // Written by another version; recompute and overwrite it
+            }
+            BigDecimal totalDeposits = new BigDecimal(in.readUTF());
+            BigDecimal totalWithdrawals = new BigDecimal(in.readUTF());
+            int count = in.readInt();
+            List<Map<String, Object>> transactions = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Map<String, Object> transaction = new HashMap<>();
+                transaction.put("id", in.readLong());
+                transaction.put("type", in.readUTF());
+                transaction.put("amount", new BigDecimal(in.readUTF()));
+                transaction.put("relatedAccountId", in.readBoolean() ? in.readUTF() : null);
+                transaction.put("date", new Timestamp(in.readLong()));
+                transactions.add(Collections.unmodifiableMap(transaction));
+            }
+            
+            Map<String, Object> statement = new HashMap<>();
+            statement.put("accountId", key.accountId);
+            statement.put("startDate", new Date(key.startMillis));
+            statement.put("endDate", new Date(key.endMillis));
+            statement.put("transactions", Collections.unmodifiableList(transactions));
+            statement.put("totalDeposits", totalDeposits);
+            statement.put("totalWithdrawals", totalWithdrawals);
+            statement.put("netChange", totalDeposits.subtract(totalWithdrawals));
+            return statement;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read cached statement " + file, e);
+        }
+    }
+    
+    private void deleteFile(Key key) {
+        try {
+            Files.deleteIfExists(filePath(key));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot delete cached statement " + filePath(key), e);
+        }
+    }
+    
+    private static final class Key {
+        final String accountId;
+        final long startMillis;
+        final long endMillis;
+        
+        Key(String accountId, long startMillis, long endMillis) {
+            this.accountId = accountId;
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return startMillis == other.startMillis && endMillis == other.endMillis && accountId.equals(other.accountId);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(accountId, startMillis, endMillis);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package bank;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Hourly and daily limits on the amounts withdrawn and transferred out of
+ * each account, checked against in-memory sliding-window counters instead
+ * of summing the account's recent transactions.
+ * <p>
+ * Every account with recent debits has one array of time buckets per kind:
+ * 60 one-minute buckets covering the last hour and 24 one-hour buckets
+ * covering the last day. Each bucket packs the minute or hour it belongs to
+ * with the amount debited in it, in cents, into a single long, so a bucket is
+ * reused for a new period and added to with one compare-and-set and no lock.
+ * <p>
+ * A debit is counted first and checked afterwards, and taken back if the
+ * sum then exceeds a limit. Two concurrent debits that together exceed a
+ * limit may therefore both be refused, but the limit is never exceeded.
+ * <p>
+ * Once {@link #start() started}, a background thread drops the counters of
+ * accounts without debits in the last day. It marks an array retired before
+ * checking it is idle, and a debit checks the mark after counting, so a
+ * debit counted in an array being dropped is always counted again in its
+ * replacement.
+ */
+public class VelocityLimits {
+    
+    /** The kinds of debit limited separately. */
+    public enum Kind {
+        WITHDRAWAL,
+        TRANSFER
+    }
+    
+    private static final long MINUTE_MILLIS = 60_000L;
+    private static final long HOUR_MILLIS = 3_600_000L;
+    private static final int MINUTE_BUCKETS = 60;
+    private static final int HOUR_BUCKETS = 24;
+    private static final int BUCKETS_PER_KIND = MINUTE_BUCKETS + HOUR_BUCKETS;
+    // Last slot of each array: 1 while the purger is deciding whether to drop it
+    private static final int RETIRED = Kind.values().length * BUCKETS_PER_KIND;
+    
+    // Low 40 bits hold the amount in cents, high 24 bits the period number modulo 2^24
+    private static final int AMOUNT_BITS = 40;
+    private static final long AMOUNT_MASK = (1L << AMOUNT_BITS) - 1;
+    private static final long PERIOD_MASK = (1L << (64 - AMOUNT_BITS)) - 1;
+    private static final BigDecimal MAX_CENTS = BigDecimal.valueOf(AMOUNT_MASK);
+    
+    private final long[] hourlyLimits = new long[Kind.values().length];
+    private final long[] dailyLimits = new long[Kind.values().length];
+    private final Map<String, AtomicLongArray> counters = new ConcurrentHashMap<>();
+    private final LongSupplier clock;
+    private ScheduledExecutorService purger;
+    
+    /**
+     * Starts with no debits counted and no purger running.
+     * @param hourlyWithdrawalLimit Most withdrawn per account in any hour, or null for no limit
+     * @param dailyWithdrawalLimit Most withdrawn per account in any day, or null for no limit
+     * @param hourlyTransferLimit Most transferred out per account in any hour, or null for no limit
+     * @param dailyTransferLimit Most transferred out per account in any day, or null for no limit
+     */
+    public VelocityLimits(BigDecimal hourlyWithdrawalLimit, BigDecimal dailyWithdrawalLimit,
+                          BigDecimal hourlyTransferLimit, BigDecimal dailyTransferLimit) {
+        this(hourlyWithdrawalLimit, dailyWithdrawalLimit, hourlyTransferLimit, dailyTransferLimit,
+             System::currentTimeMillis);
+    }
+    
+    /**
+     * Reads the time from the given clock instead of the system clock, so
+     * tests can move it across bucket boundaries.
+     */
+    VelocityLimits(BigDecimal hourlyWithdrawalLimit, BigDecimal dailyWithdrawalLimit,
+                   BigDecimal hourlyTransferLimit, BigDecimal dailyTransferLimit, LongSupplier clock) {
+        this.clock = clock;
+        hourlyLimits[Kind.WITHDRAWAL.ordinal()] = limitCents(hourlyWithdrawalLimit);
+        dailyLimits[Kind.WITHDRAWAL.ordinal()] = limitCents(dailyWithdrawalLimit);
+        hourlyLimits[Kind.TRANSFER.ordinal()] = limitCents(hourlyTransferLimit);
+        dailyLimits[Kind.TRANSFER.ordinal()] = limitCents(dailyTransferLimit);
+    }
+    
+    /**
+     * Starts purging idle accounts' counters every ten minutes on a
+     * background thread.
+     */
+    public synchronized void start() {
+        if (purger != null) {
+            return;
+        }
+        purger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "velocity-purger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        purger.scheduleWithFixedDelay(this::purgeIdle, 10, 10, TimeUnit.MINUTES);
+    }
+    
+    /**
+     * Counts a debit if it keeps the account within its limits.
+     * @param accountId The account debited
+     * @param kind The kind of debit
+     * @param amount The amount debited
+     * @return The time the debit was counted at, to pass to {@link #release}, or -1 if it would exceed a limit
+     */
+    public long tryRecord(String accountId, Kind kind, BigDecimal amount) {
+        long cents = toCents(amount);
+        int k = kind.ordinal();
+        while (true) {
+            long now = clock.getAsLong();
+            AtomicLongArray buckets = counters.computeIfAbsent(accountId, id -> newBuckets());
+            add(buckets, k, now, cents);
+            if (hourlySum(buckets, k, now) > hourlyLimits[k] || dailySum(buckets, k, now) > dailyLimits[k]) {
+                subtract(buckets, k, now, cents);
+                return -1;
+            }
+            if (buckets.get(RETIRED) == 0) {
+                return now;
+            }
+            // The purger may be dropping these buckets; take the debit back and count it again
+            subtract(buckets, k, now, cents);
+            Thread.onSpinWait();
+        }
+    }
+    
+    /**
+     * Takes back a debit counted by {@link #tryRecord} that did not happen.
+     * @param accountId The account
+     * @param kind The kind of debit
+     * @param amount The amount counted
+     * @param recordedAt The time returned by {@link #tryRecord}
+     */
+    public void release(String accountId, Kind kind, BigDecimal amount, long recordedAt) {
+        AtomicLongArray buckets = counters.get(accountId);
+        if (buckets != null) {
+            subtract(buckets, kind.ordinal(), recordedAt, toCents(amount));
+        }
+    }
+    
+    /**
+     * Counts a debit that has already happened, without checking the
+     * limits. Used to rebuild the counters from stored transactions; debits
+     * older than a day are ignored.
+     * @param accountId The account debited
+     * @param kind The kind of debit
+     * @param amount The amount debited
+     * @param time When the debit happened
+     */
+    public void replay(String accountId, Kind kind, BigDecimal amount, long time) {
+        long now = clock.getAsLong();
+        if (time > now || now / HOUR_MILLIS - time / HOUR_MILLIS >= HOUR_BUCKETS) {
+            return;
+        }
+        AtomicLongArray buckets = counters.computeIfAbsent(accountId, id -> newBuckets());
+        long cents = toCents(amount);
+        int k = kind.ordinal();
+        if (now / MINUTE_MILLIS - time / MINUTE_MILLIS < MINUTE_BUCKETS) {
+            addToBucket(buckets, minuteIndex(k, time), time / MINUTE_MILLIS, cents);
+        }
+        addToBucket(buckets, hourIndex(k, time), time / HOUR_MILLIS, cents);
+    }
+    
+    /**
+     * Amount of a kind debited from an account within the last hour.
+     */
+    public BigDecimal getHourlyTotal(String accountId, Kind kind) {
+        AtomicLongArray buckets = counters.get(accountId);
+        long cents = buckets == null ? 0 : hourlySum(buckets, kind.ordinal(), clock.getAsLong());
+        return BigDecimal.valueOf(cents, 2);
+    }
+    
+    /**
+     * Amount of a kind debited from an account within the last day, counted
+     * in whole clock hours.
+     */
+    public BigDecimal getDailyTotal(String accountId, Kind kind) {
+        AtomicLongArray buckets = counters.get(accountId);
+        long cents = buckets == null ? 0 : dailySum(buckets, kind.ordinal(), clock.getAsLong());
+        return BigDecimal.valueOf(cents, 2);
+    }
+    
+    /**
+     * Number of accounts with counters in memory.
+     */
+    public int getTrackedAccountCount() {
+        return counters.size();
+    }
+    
+    /**
+     * Drops the counters of accounts with no debits within the last day.
+     */
+    public void purgeIdle() {
+        long hour = clock.getAsLong() / HOUR_MILLIS;
+        for (String accountId : counters.keySet()) {
+            counters.computeIfPresent(accountId, (id, buckets) -> {
+                // Mark first, then check: a debit counted before the mark is seen here,
+                // one counted after it sees the mark and is counted again
+                buckets.set(RETIRED, 1);
+                if (isIdle(buckets, hour)) {
+                    return null;
+                }
+                buckets.set(RETIRED, 0);
+                return buckets;
+            });
+        }
+    }
+    
+    /**
+     * Stops the purger thread.
+     */
+    public synchronized void close() {
+        if (purger != null) {
+            purger.shutdownNow();
+            purger = null;
+        }
+    }
+    
+    private static AtomicLongArray newBuckets() {
+        return new AtomicLongArray(RETIRED + 1);
+    }
+    
+    private static int minuteIndex(int kind, long time) {
+        return kind * BUCKETS_PER_KIND + (int) (time / MINUTE_MILLIS % MINUTE_BUCKETS);
+    }
+    
+    private static int hourIndex(int kind, long time) {
+        return kind * BUCKETS_PER_KIND + MINUTE_BUCKETS + (int) (time / HOUR_MILLIS % HOUR_BUCKETS);
+    }
+    
+    private static void add(AtomicLongArray buckets, int kind, long time, long cents) {
+        addToBucket(buckets, minuteIndex(kind, time), time / MINUTE_MILLIS, cents);
+        addToBucket(buckets, hourIndex(kind, time), time / HOUR_MILLIS, cents);
+    }
+    
+    private static void subtract(AtomicLongArray buckets, int kind, long time, long cents) {
+        subtractFromBucket(buckets, minuteIndex(kind, time), time / MINUTE_MILLIS, cents);
+        subtractFromBucket(buckets, hourIndex(kind, time), time / HOUR_MILLIS, cents);
+    }
+    
+    private static void addToBucket(AtomicLongArray buckets, int index, long period, long cents) {
+        long stamp = period & PERIOD_MASK;
+        while (true) {
+            long current = buckets.get(index);
+            // A bucket still holding an older period is reset as it is reused
+            long amount = (current >>> AMOUNT_BITS) == stamp ? current & AMOUNT_MASK : 0;
+            long updated = (stamp << AMOUNT_BITS) | Math.min(AMOUNT_MASK, amount + cents);
+            if (buckets.compareAndSet(index, current, updated)) {
+                return;
+            }
+        }
+    }
+    
+    private static void subtractFromBucket(AtomicLongArray buckets, int index, long period, long cents) {
+        long stamp = period & PERIOD_MASK;
+        while (true) {
+            long current = buckets.get(index);
+            if ((current >>> AMOUNT_BITS) != stamp) {
+                return;  // The period has left the window, taking the amount with it
+            }
+            long updated = (stamp << AMOUNT_BITS) | Math.max(0, (current & AMOUNT_MASK) - cents);
+            if (buckets.compareAndSet(index, current, updated)) {
+                return;
+            }
+        }
+    }
+    
+    private static long hourlySum(AtomicLongArray buckets, int kind, long now) {
+        return windowSum(buckets, kind * BUCKETS_PER_KIND, MINUTE_BUCKETS, now / MINUTE_MILLIS);
+    }
+    
+    private static long dailySum(AtomicLongArray buckets, int kind, long now) {
+        return windowSum(buckets, kind * BUCKETS_PER_KIND + MINUTE_BUCKETS, HOUR_BUCKETS, now / HOUR_MILLIS);
+    }
+    
+    /**
+     * Sums the buckets of a ring whose periods fall within the ring's length
+     * of the current period.
+     */
+    private static long windowSum(AtomicLongArray buckets, int offset, int length, long period) {
+        long sum = 0;
+        for (int i = offset; i < offset + length; i++) {
+            long value = buckets.get(i);
+            if (((period - (value >>> AMOUNT_BITS)) & PERIOD_MASK) < length) {
+                sum += value & AMOUNT_MASK;
+            }
+        }
+        return sum;
+    }
+    
+    private static boolean isIdle(AtomicLongArray buckets, long hour) {
+        for (int kind = 0; kind < Kind.values().length; kind++) {
+            int offset = kind * BUCKETS_PER_KIND + MINUTE_BUCKETS;
+            for (int i = offset; i < offset + HOUR_BUCKETS; i++) {
+                long value = buckets.get(i);
+                if ((value & AMOUNT_MASK) != 0 && ((hour - (value >>> AMOUNT_BITS)) & PERIOD_MASK) < HOUR_BUCKETS) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    private static long toCents(BigDecimal amount) {
+        // Rounded up, so sub-cent debits still count against the limit
+        BigDecimal cents = amount.movePointRight(2).setScale(0, RoundingMode.CEILING);
+        return cents.compareTo(MAX_CENTS) >= 0 ? AMOUNT_MASK : cents.longValue();
+    }
+    
+    private static long limitCents(BigDecimal limit) {
+        if (limit == null) {
+            return Long.MAX_VALUE;
+        }
+        if (limit.signum() < 0) {
+            throw new IllegalArgumentException("Limit must not be negative: " + limit);
+        }
+        return limit.movePointRight(2).setScale(0, RoundingMode.FLOOR).min(MAX_CENTS).longValue();
+    }
+}
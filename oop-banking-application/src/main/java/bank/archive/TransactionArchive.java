@@ -0,0 +1,212 @@
+package bank.archive;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cold tier of the transaction history, following the Singleton pattern.
+ * Holds one memory-mapped {@link TransactionSegment} per archived month,
+ * loaded from the directory named by the {@code bank.transactions.archiveDir}
+ * system property (default {@code archive/transactions}). With no segments
+ * present every lookup returns immediately, so callers can merge archived rows
+ * unconditionally.
+ * <p>
+ * Segments published by another process, such as the running application
+ * while a command line tool has the archive open, are picked up by
+ * {@link #reload()}. Readers that must not see months change under them work
+ * on a {@link #snapshot()}.
+ */
+public class TransactionArchive {
+    private static final Logger logger = LoggerFactory.getLogger(TransactionArchive.class);
+    public static final String DIRECTORY_PROPERTY = "bank.transactions.archiveDir";
+    private static final Pattern FILE_NAME = Pattern.compile("transactions-(\\d{4}-\\d{2})\\.seg");
+    private static TransactionArchive instance;
+    
+    private final Path directory;
+    private final NavigableMap<YearMonth, TransactionSegment> segments;
+    // Identity of the file each segment was mapped from, to notice files replaced by another process
+    private final Map<YearMonth, Object> loadedFiles = new ConcurrentHashMap<>();
+    
+    private TransactionArchive() {
+        directory = Paths.get(System.getProperty(DIRECTORY_PROPERTY, "archive/transactions"));
+        segments = new ConcurrentSkipListMap<>();
+        loadSegments();
+    }
+    
+    private TransactionArchive(Path directory, NavigableMap<YearMonth, TransactionSegment> segments) {
+        this.directory = directory;
+        this.segments = segments;
+    }
+    
+    public static synchronized TransactionArchive getInstance() {
+        if (instance == null) {
+            instance = new TransactionArchive();
+        }
+        return instance;
+    }
+    
+    private void loadSegments() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    open(YearMonth.parse(matcher.group(1)), file);
+                }
+            }
+            logger.info("Loaded {} transaction segments from {}", segments.size(), directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error loading transaction segments from " + directory, e);
+        }
+    }
+    
+    /**
+     * Maps the segment files written or replaced since they were last
+     * loaded, e.g. by another process tiering months into the same directory.
+     * @return Whether any segment was loaded
+     */
+    public synchronized boolean reload() {
+        if (!Files.isDirectory(directory)) {
+            return false;
+        }
+        boolean loaded = false;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    YearMonth month = YearMonth.parse(matcher.group(1));
+                    if (!fileIdentity(file).equals(loadedFiles.get(month))) {
+                        open(month, file);
+                        loaded = true;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reloading transaction segments from " + directory, e);
+        }
+        return loaded;
+    }
+    
+    private void open(YearMonth month, Path file) throws IOException {
+        // Identify the file before mapping it, so a replacement written in between is loaded again next time
+        Object identity = fileIdentity(file);
+        segments.put(month, TransactionSegment.open(file));
+        loadedFiles.put(month, identity);
+    }
+    
+    /**
+     * Identifies a file so that a replacement moved into its place compares
+     * unequal, by inode where the file system has one.
+     */
+    private static Object fileIdentity(Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        Object key = attributes.fileKey();
+        return key != null ? key : attributes.lastModifiedTime() + "/" + attributes.size();
+    }
+    
+    /**
+     * A fixed view of the segments archived now. Months published or
+     * reloaded later do not appear in it, so a reader that derives the
+     * start of the hot months from it sees one consistent split between the
+     * database and the archive.
+     */
+    public TransactionArchive snapshot() {
+        return new TransactionArchive(directory, new TreeMap<>(segments));
+    }
+    
+    /**
+     * Whether a month was published or replaced since a snapshot was taken,
+     * after reloading segments written by other processes. When it returns
+     * false, no rows can have been moved out of the database since the
+     * snapshot, as tiering publishes a month before deleting its rows.
+     */
+    public boolean changedSince(TransactionArchive snapshot) {
+        reload();
+        if (segments.size() != snapshot.segments.size()) {
+            return true;
+        }
+        for (Map.Entry<YearMonth, TransactionSegment> entry : segments.entrySet()) {
+            if (snapshot.segments.get(entry.getKey()) != entry.getValue()) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    public Path getDirectory() {
+        return directory;
+    }
+    
+    /**
+     * Path a month's segment is written to.
+     */
+    public Path segmentFile(YearMonth month) {
+        return directory.resolve("transactions-" + month + ".seg");
+    }
+    
+    /**
+     * The archived months in chronological order.
+     */
+    public Collection<YearMonth> months() {
+        return Collections.unmodifiableSet(segments.keySet());
+    }
+    
+    public TransactionSegment getSegment(YearMonth month) {
+        return segments.get(month);
+    }
+    
+    /**
+     * Maps a newly written segment and makes it visible to readers,
+     * replacing any earlier segment for the same month.
+     */
+    public synchronized void publish(YearMonth month) throws IOException {
+        open(month, segmentFile(month));
+    }
+    
+    /**
+     * Reads an account's archived transactions within a time range.
+     *
+     * @param accountId The account ID
+     * @param fromMillis Inclusive lower bound on the transaction date
+     * @param toMillis Inclusive upper bound on the transaction date
+     * @return The rows in ascending date order
+     */
+    public List<TransactionSegment.Row> read(String accountId, long fromMillis, long toMillis) {
+        List<TransactionSegment.Row> rows = new ArrayList<>();
+        if (segments.isEmpty()) {
+            return rows;
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        for (Map.Entry<YearMonth, TransactionSegment> entry : segments.entrySet()) {
+            long monthStart = entry.getKey().atDay(1).atStartOfDay(zone).toInstant().toEpochMilli();
+            long monthEnd = entry.getKey().plusMonths(1).atDay(1).atStartOfDay(zone).toInstant().toEpochMilli();
+            if (monthEnd <= fromMillis || monthStart > toMillis) {
+                continue;
+            }
+            rows.addAll(entry.getValue().read(accountId, fromMillis, toMillis));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,223 @@
+package bank.archive;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, memory-mapped columnar file holding one month of archived
+ * transactions, written by {@link TransactionSegmentWriter}.
+ * <p>
+ * Layout (big-endian):
+ * <pre>
+ * header:     int magic | short version | long monthStartMillis | int rowCount
+ * types:      byte count | count x string
+ * dictionary: int count | count x string           (account IDs)
+ * directory:  count x (int firstRow | int rowCount | int dateOffset | int idOffset | int amountOffset)
+ * lengths:    int dateBytes | int idBytes | int amountBytes
+ * columns:    rowCount x byte type
+ *             rowCount x int relatedAccount          (dictionary index, -1 for none)
+ *             dateBytes of varint date deltas        (millis from the previous row, or from monthStartMillis)
+ *             idBytes of zigzag varint id deltas
+ *             amountBytes of zigzag varint amounts   (unscaled, scale 4)
+ * string:     unsigned short byteLength | UTF-8 bytes
+ * </pre>
+ * Rows are grouped by account and ordered by date within each account, so an
+ * account's rows form one contiguous run per column and its directory entry
+ * locates them without touching other accounts' data. Only the dictionary is
+ * read onto the heap; columns are decoded straight from the mapping.
+ */
+public class TransactionSegment {
+    static final int MAGIC = 0x42545853;  // "BTXS"
+    static final short VERSION = 1;
+    static final int AMOUNT_SCALE = 4;
+    static final int DIRECTORY_ENTRY_BYTES = 5 * Integer.BYTES;
+    
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final long monthStartMillis;
+    private final int rowCount;
+    private final String[] types;
+    private final String[] dictionary;
+    private final Map<String, Integer> accountIndex;
+    private final int directoryStart;
+    private final int typeColumn;
+    private final int relatedColumn;
+    private final int dateColumn;
+    private final int idColumn;
+    private final int amountColumn;
+    
+    private TransactionSegment(Path file, MappedByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        ByteBuffer header = buffer.duplicate();
+        if (header.getInt() != MAGIC || header.getShort() != VERSION) {
+            throw new IOException("Not a transaction segment: " + file);
+        }
+        monthStartMillis = header.getLong();
+        rowCount = header.getInt();
+        
+        types = new String[Byte.toUnsignedInt(header.get())];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = getString(header);
+        }
+        dictionary = new String[header.getInt()];
+        accountIndex = new HashMap<>(dictionary.length * 2);
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = getString(header);
+            accountIndex.put(dictionary[i], i);
+        }
+        
+        directoryStart = header.position();
+        header.position(directoryStart + dictionary.length * DIRECTORY_ENTRY_BYTES);
+        int dateBytes = header.getInt();
+        int idBytes = header.getInt();
+        int amountBytes = header.getInt();
+        typeColumn = header.position();
+        relatedColumn = typeColumn + rowCount;
+        dateColumn = relatedColumn + rowCount * Integer.BYTES;
+        idColumn = dateColumn + dateBytes;
+        amountColumn = idColumn + idBytes;
+        if (amountColumn + amountBytes != buffer.capacity()) {
+            throw new IOException("Truncated transaction segment: " + file);
+        }
+    }
+    
+    /**
+     * Maps a segment file read-only.
+     */
+    public static TransactionSegment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            return new TransactionSegment(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+    
+    public Path getFile() {
+        return file;
+    }
+    
+    public int getRowCount() {
+        return rowCount;
+    }
+    
+    /**
+     * Reads an account's transactions within a time range, in date order.
+     *
+     * @param accountId The account ID
+     * @param fromMillis Inclusive lower bound on the transaction date
+     * @param toMillis Inclusive upper bound on the transaction date
+     * @return The matching rows, empty if the account has none in this segment
+     */
+    public List<Row> read(String accountId, long fromMillis, long toMillis) {
+        List<Row> rows = new ArrayList<>();
+        Integer account = accountIndex.get(accountId);
+        if (account == null) {
+            return rows;
+        }
+        int entry = directoryStart + account * DIRECTORY_ENTRY_BYTES;
+        int firstRow = buffer.getInt(entry);
+        int count = buffer.getInt(entry + 4);
+        long[] cursors = {
+            dateColumn + buffer.getInt(entry + 8),
+            idColumn + buffer.getInt(entry + 12),
+            amountColumn + buffer.getInt(entry + 16)
+        };
+        
+        long date = monthStartMillis;
+        long id = 0;
+        for (int row = firstRow; row < firstRow + count; row++) {
+            date += readVarLong(cursors, 0);
+            id += zigZagDecode(readVarLong(cursors, 1));
+            long unscaledAmount = zigZagDecode(readVarLong(cursors, 2));
+            if (date > toMillis) {
+                break;
+            }
+            if (date >= fromMillis) {
+                int related = buffer.getInt(relatedColumn + row * Integer.BYTES);
+                rows.add(new Row(id, accountId, types[buffer.get(typeColumn + row)],
+                                 BigDecimal.valueOf(unscaledAmount, AMOUNT_SCALE),
+                                 related < 0 ? null : dictionary[related], date));
+            }
+        }
+        return rows;
+    }
+    
+    /**
+     * Reads every row in the segment, grouped by account.
+     */
+    public List<Row> readAll() {
+        List<Row> rows = new ArrayList<>(rowCount);
+        for (String accountId : dictionary) {
+            rows.addAll(read(accountId, Long.MIN_VALUE, Long.MAX_VALUE));
+        }
+        return rows;
+    }
+    
+    private long readVarLong(long[] cursors, int column) {
+        int position = (int) cursors[column];
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get(position++);
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        cursors[column] = position;
+        return value;
+    }
+    
+    static long zigZagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * One archived transaction.
+     */
+    public static final class Row {
+        public final long id;
+        public final String accountId;
+        public final String type;
+        public final BigDecimal amount;
+        public final String relatedAccountId;
+        public final long dateMillis;
+        
+        public Row(long id, String accountId, String type, BigDecimal amount, String relatedAccountId, long dateMillis) {
+            this.id = id;
+            this.accountId = accountId;
+            this.type = type;
+            this.amount = amount;
+            this.relatedAccountId = relatedAccountId;
+            this.dateMillis = dateMillis;
+        }
+        
+        /**
+         * Converts the row to the map layout used by TransactionService.
+         */
+        public Map<String, Object> toMap() {
+            Map<String, Object> transaction = new HashMap<>();
+            transaction.put("id", id);
+            transaction.put("accountId", accountId);
+            transaction.put("type", type);
+            transaction.put("amount", amount);
+            transaction.put("relatedAccountId", relatedAccountId);
+            transaction.put("date", new Timestamp(dateMillis));
+            return transaction;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package bank.archive;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds a {@link TransactionSegment} file from a stream of rows.
+ * <p>
+ * Rows must arrive grouped by account and in date order within each account,
+ * which is what {@code ORDER BY account_id, transaction_date, id} produces.
+ * Column data is spooled to temporary files while rows stream in, so a month
+ * of any size is written with only the dictionary and directory on the heap.
+ */
+public class TransactionSegmentWriter implements AutoCloseable {
+    private final Path target;
+    private final long monthStartMillis;
+    private final List<String> types = new ArrayList<>();
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Integer> dictionaryIndex = new HashMap<>();
+    private final Map<Integer, int[]> directory = new HashMap<>();
+    private final Path[] columnFiles = new Path[5];
+    private final DataOutputStream typeColumn;
+    private final DataOutputStream relatedColumn;
+    private final CountingVarintStream dateColumn;
+    private final CountingVarintStream idColumn;
+    private final CountingVarintStream amountColumn;
+    
+    private int rowCount;
+    private int currentAccount = -1;
+    private long previousDate;
+    private long previousId;
+    
+    /**
+     * @param target The segment file to create; replaced atomically on {@link #finish()}
+     * @param month The month the segment covers
+     */
+    public TransactionSegmentWriter(Path target, YearMonth month) throws IOException {
+        this.target = target;
+        this.monthStartMillis = month.atDay(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        for (int i = 0; i < columnFiles.length; i++) {
+            columnFiles[i] = Files.createTempFile(target.toAbsolutePath().getParent(), "column", ".tmp");
+        }
+        typeColumn = open(columnFiles[0]);
+        relatedColumn = open(columnFiles[1]);
+        dateColumn = new CountingVarintStream(open(columnFiles[2]));
+        idColumn = new CountingVarintStream(open(columnFiles[3]));
+        amountColumn = new CountingVarintStream(open(columnFiles[4]));
+    }
+    
+    private static DataOutputStream open(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024));
+    }
+    
+    /**
+     * Appends one transaction.
+     * @throws IllegalStateException If the account's rows are not contiguous
+     */
+    public void add(long id, String accountId, String type, BigDecimal amount, String relatedAccountId,
+                    long dateMillis) throws IOException {
+        int account = lookup(accountId);
+        if (account != currentAccount) {
+            if (directory.containsKey(account)) {
+                throw new IllegalStateException("Rows for account " + accountId + " are not contiguous");
+            }
+            directory.put(account, new int[] {
+                rowCount, 0, dateColumn.size(), idColumn.size(), amountColumn.size()
+            });
+            currentAccount = account;
+            previousDate = monthStartMillis;
+            previousId = 0;
+        }
+        if (dateMillis < previousDate) {
+            throw new IllegalStateException("Rows for account " + accountId + " are not in date order");
+        }
+        
+        int typeIndex = types.indexOf(type);
+        if (typeIndex < 0) {
+            types.add(type);
+            typeIndex = types.size() - 1;
+        }
+        typeColumn.writeByte(typeIndex);
+        relatedColumn.writeInt(relatedAccountId == null ? -1 : lookup(relatedAccountId));
+        dateColumn.writeVarLong(dateMillis - previousDate);
+        idColumn.writeVarLong(zigZagEncode(id - previousId));
+        amountColumn.writeVarLong(zigZagEncode(amount.setScale(TransactionSegment.AMOUNT_SCALE).unscaledValue().longValueExact()));
+        
+        previousDate = dateMillis;
+        previousId = id;
+        directory.get(account)[1]++;
+        rowCount++;
+    }
+    
+    private int lookup(String accountId) {
+        return dictionaryIndex.computeIfAbsent(accountId, id -> {
+            dictionary.add(id);
+            return dictionary.size() - 1;
+        });
+    }
+    
+    public int getRowCount() {
+        return rowCount;
+    }
+    
+    /**
+     * Writes the header and columns and moves the segment into place.
+     */
+    public void finish() throws IOException {
+        closeColumns();
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (DataOutputStream out = open(tmp)) {
+            out.writeInt(TransactionSegment.MAGIC);
+            out.writeShort(TransactionSegment.VERSION);
+            out.writeLong(monthStartMillis);
+            out.writeInt(rowCount);
+            
+            out.writeByte(types.size());
+            for (String type : types) {
+                writeString(out, type);
+            }
+            out.writeInt(dictionary.size());
+            for (String accountId : dictionary) {
+                writeString(out, accountId);
+            }
+            // Accounts seen only as a transfer counterparty have an empty run
+            for (int i = 0; i < dictionary.size(); i++) {
+                int[] entry = directory.getOrDefault(i, new int[5]);
+                for (int value : entry) {
+                    out.writeInt(value);
+                }
+            }
+            out.writeInt(dateColumn.size());
+            out.writeInt(idColumn.size());
+            out.writeInt(amountColumn.size());
+            for (Path column : columnFiles) {
+                Files.copy(column, out);
+            }
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("String too long for segment: " + bytes.length + " bytes");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+    
+    private void closeColumns() throws IOException {
+        typeColumn.close();
+        relatedColumn.close();
+        dateColumn.close();
+        idColumn.close();
+        amountColumn.close();
+    }
+    
+    static long zigZagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+    
+    /**
+     * Removes the temporary column files.
+     */
+    @Override
+    public void close() throws IOException {
+        closeColumns();
+        for (Path column : columnFiles) {
+            Files.deleteIfExists(column);
+        }
+    }
+    
+    /**
+     * Column of unsigned LEB128 varints that tracks its own length.
+     */
+    private static final class CountingVarintStream {
+        private final OutputStream out;
+        private int size;
+        
+        CountingVarintStream(OutputStream out) {
+            this.out = out;
+        }
+        
+        void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+                size++;
+            }
+            out.write((int) value);
+            size++;
+        }
+        
+        int size() {
+            return size;
+        }
+        
+        void close() throws IOException {
+            out.close();
+        }
+    }
+}
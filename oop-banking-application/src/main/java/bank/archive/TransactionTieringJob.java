@@ -0,0 +1,225 @@
+package bank.archive;
+
+import bank.database.ConnectionLane;
+import bank.database.DatabaseConnectionManager;
+import bank.database.DatabaseException;
+import bank.database.InstrumentedStatements;
+import bank.database.TransactionService;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background job that moves old transactions out of the {@code transactions}
+ * table into the {@link TransactionArchive}.
+ * <p>
+ * Every month older than the hot window is streamed into a columnar segment,
+ * the segment is published to readers, and only then are the month's rows
+ * deleted in batches. Readers de-duplicate by transaction ID, so the brief
+ * overlap between publishing and deleting is invisible. If a run is
+ * interrupted after publishing, the next run merges the month's remaining
+ * rows into the existing segment before deleting them.
+ */
+public class TransactionTieringJob implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(TransactionTieringJob.class);
+    private static final int DELETE_BATCH_SIZE = 10_000;
+    
+    private final DatabaseConnectionManager connectionManager;
+    private final TransactionArchive archive;
+    private final int hotMonths;
+    private ScheduledExecutorService scheduler;
+    
+    /**
+     * @param archive Destination for archived months
+     * @param hotMonths Number of months kept in the database, including the current one
+     */
+    public TransactionTieringJob(TransactionArchive archive, int hotMonths) {
+        if (hotMonths < 1) {
+            throw new IllegalArgumentException("At least one month must stay in the database");
+        }
+        this.connectionManager = DatabaseConnectionManager.getInstance();
+        this.archive = archive;
+        this.hotMonths = hotMonths;
+    }
+    
+    /**
+     * Runs the job now and then periodically on a background thread.
+     * @param interval Delay between the end of one run and the start of the next
+     */
+    public synchronized void start(Duration interval) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "transaction-tiering");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                runOnce();
+            } catch (RuntimeException e) {
+                logger.error("Transaction tiering failed", e);
+            }
+        }, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Archives every month older than the hot window.
+     * @return Number of months written to segments
+     */
+    public int runOnce() {
+        YearMonth cutoff = YearMonth.now().minusMonths(hotMonths - 1);
+        YearMonth oldest = oldestMonth();
+        int archived = 0;
+        for (YearMonth month = oldest; month != null && month.isBefore(cutoff); month = month.plusMonths(1)) {
+            if (archiveMonth(month)) {
+                archived++;
+            }
+        }
+        return archived;
+    }
+    
+    private boolean archiveMonth(YearMonth month) {
+        Timestamp start = Timestamp.valueOf(month.atDay(1).atStartOfDay());
+        Timestamp end = Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay());
+        TransactionSegment existing = archive.getSegment(month);
+        Connection connection = connectionManager.getConnection(ConnectionLane.REPORTING);
+        try {
+            Files.createDirectories(archive.getDirectory());
+            int rows;
+            try (TransactionSegmentWriter writer = new TransactionSegmentWriter(archive.segmentFile(month), month)) {
+                if (existing == null) {
+                    copyMonth(connection, start, end, writer);
+                } else {
+                    mergeMonth(connection, start, end, existing, writer);
+                }
+                rows = writer.getRowCount();
+                if (rows == 0) {
+                    return false;  // Nothing to archive for this month
+                }
+                writer.finish();
+            }
+            archive.publish(month);
+            
+            // Readers now see the segment; remove the month from the hot table
+            String deleteSql = "DELETE FROM transactions WHERE transaction_date >= ? AND transaction_date < ? LIMIT " +
+                               DELETE_BATCH_SIZE;
+            try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "transactions.tier_delete", deleteSql)) {
+                stmt.setTimestamp(1, start);
+                stmt.setTimestamp(2, end);
+                while (stmt.executeUpdate() == DELETE_BATCH_SIZE) {
+                    logger.debug("Deleted a batch of tiered transactions");
+                }
+            }
+            logger.info("Tiered {} transactions for {} into {}", rows, month, archive.segmentFile(month));
+            return true;
+        } catch (SQLException e) {
+            throw new DatabaseException("Error tiering transactions for " + month + ": " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing transaction segment for " + month, e);
+        } finally {
+            connectionManager.releaseConnection(connection);
+        }
+    }
+    
+    /**
+     * Streams the month straight from the database into the writer.
+     */
+    private void copyMonth(Connection connection, Timestamp start, Timestamp end,
+                           TransactionSegmentWriter writer) throws SQLException, IOException {
+        try (PreparedStatement stmt = selectMonth(connection, start, end);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                writer.add(rs.getLong("id"), rs.getString("account_id"), rs.getString("transaction_type"),
+                           rs.getBigDecimal("amount"), rs.getString("related_account_id"),
+                           rs.getTimestamp("transaction_date").getTime());
+            }
+        }
+    }
+    
+    /**
+     * Recovery path: combines an existing segment with rows still in the
+     * database, in memory, since both sources must be interleaved per account.
+     */
+    private void mergeMonth(Connection connection, Timestamp start, Timestamp end, TransactionSegment existing,
+                            TransactionSegmentWriter writer) throws SQLException, IOException {
+        List<TransactionSegment.Row> rows = existing.readAll();
+        Set<Long> archivedIds = new HashSet<>();
+        for (TransactionSegment.Row row : rows) {
+            archivedIds.add(row.id);
+        }
+        try (PreparedStatement stmt = selectMonth(connection, start, end);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                if (!archivedIds.contains(rs.getLong("id"))) {
+                    rows.add(new TransactionSegment.Row(rs.getLong("id"), rs.getString("account_id"),
+                                                        rs.getString("transaction_type"), rs.getBigDecimal("amount"),
+                                                        rs.getString("related_account_id"),
+                                                        rs.getTimestamp("transaction_date").getTime()));
+                }
+            }
+        }
+        rows.sort(Comparator.comparing((TransactionSegment.Row row) -> row.accountId)
+                            .thenComparingLong(row -> row.dateMillis)
+                            .thenComparingLong(row -> row.id));
+        for (TransactionSegment.Row row : rows) {
+            writer.add(row.id, row.accountId, row.type, row.amount, row.relatedAccountId, row.dateMillis);
+        }
+    }
+    
+    private static PreparedStatement selectMonth(Connection connection, Timestamp start, Timestamp end) throws SQLException {
+        // Segments hold each account's view, so a single-row transfer is archived under both accounts
+        String sql = "SELECT id, account_id, transaction_type, amount, related_account_id, transaction_date FROM (" +
+                     TransactionService.accountEntriesSql("transaction_date >= ? AND transaction_date < ?") +
+                     ") t ORDER BY account_id, transaction_date, id";
+        PreparedStatement stmt = InstrumentedStatements.prepare(connection, "transactions.tier_select", sql);
+        stmt.setTimestamp(1, start);
+        stmt.setTimestamp(2, end);
+        stmt.setTimestamp(3, start);
+        stmt.setTimestamp(4, end);
+        stmt.setFetchSize(1000);
+        return stmt;
+    }
+    
+    private YearMonth oldestMonth() {
+        Connection connection = connectionManager.getConnection(ConnectionLane.REPORTING);
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "transactions.oldest",
+                                                                     "SELECT MIN(transaction_date) FROM transactions");
+             ResultSet rs = stmt.executeQuery()) {
+            Timestamp oldest = rs.next() ? rs.getTimestamp(1) : null;
+            return oldest == null ? null : YearMonth.from(oldest.toLocalDateTime());
+        } catch (SQLException e) {
+            throw new DatabaseException("Error finding oldest transaction: " + e.getMessage(), e);
+        } finally {
+            connectionManager.releaseConnection(connection);
+        }
+    }
+    
+    /**
+     * Stops the background schedule.
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+}
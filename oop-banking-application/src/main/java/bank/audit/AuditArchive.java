@@ -0,0 +1,382 @@
+package bank.audit;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Directory of archived {@code audit_log} months.
+ * <p>
+ * Each month is stored as {@code audit_log-YYYY-MM.tsv.gz}: tab-separated rows
+ * (id, created_at, action_type, entity_type, entity_id, description) sorted by
+ * entity ID and time, compressed as a series of independent gzip members of
+ * {@value #BLOCK_ROWS} rows. The file is a valid gzip stream, so standard tools
+ * such as {@code zcat} can read it. A sidecar {@code .idx} file records the
+ * offset and entity ID range of every block, letting entity searches
+ * decompress only the blocks that can contain the entity.
+ */
+public class AuditArchive {
+    private static final int BLOCK_ROWS = 4096;
+    private static final String NULL = "\\N";
+    private static final Pattern FILE_NAME = Pattern.compile("audit_log-(\\d{4}-\\d{2})\\.tsv\\.gz");
+    
+    private final Path directory;
+    
+    /**
+     * @param directory Directory holding the archive files
+     */
+    public AuditArchive(Path directory) {
+        this.directory = directory;
+    }
+    
+    public Path getDirectory() {
+        return directory;
+    }
+    
+    /**
+     * Lists the archived months in chronological order.
+     */
+    public List<YearMonth> months() throws IOException {
+        List<YearMonth> months = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return months;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    months.add(YearMonth.parse(matcher.group(1)));
+                }
+            });
+        }
+        months.sort(null);
+        return months;
+    }
+    
+    /**
+     * Writes one month of audit rows. If the month is already archived, for
+     * example because an earlier run failed after removing some of its rows
+     * from the database, the rows are merged into the existing archive and
+     * rows it already holds are skipped. Both files are written to temporary
+     * names first and moved into place, so a crash never leaves a partial archive.
+     *
+     * @param month The month being archived
+     * @param rows Result set with id, action_type, entity_type, entity_id, description and created_at
+     *             columns, ordered by entity_id, created_at and id
+     * @return Number of rows in the month's archive; 0 if there were none, in which case nothing is written
+     */
+    public long write(YearMonth month, ResultSet rows) throws IOException, SQLException {
+        Files.createDirectories(directory);
+        if (!isArchived(month)) {
+            return writeRows(month, () -> rows.next() ? ArchivedRow.from(rows) : null);
+        }
+        
+        // Recovery path: both sources must be interleaved per entity, so merge in memory
+        List<ArchivedRow> merged = new ArrayList<>();
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(dataFile(month)))) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                merged.add(ArchivedRow.parse(line));
+            }
+        }
+        Set<Long> archivedIds = new HashSet<>();
+        for (ArchivedRow row : merged) {
+            archivedIds.add(row.id);
+        }
+        while (rows.next()) {
+            if (!archivedIds.contains(rows.getLong("id"))) {
+                merged.add(ArchivedRow.from(rows));
+            }
+        }
+        merged.sort(Comparator.comparing((ArchivedRow row) -> row.entityId)
+                              .thenComparing(row -> row.createdAt)
+                              .thenComparingLong(row -> row.id));
+        Iterator<ArchivedRow> iterator = merged.iterator();
+        return writeRows(month, () -> iterator.hasNext() ? iterator.next() : null);
+    }
+    
+    private long writeRows(YearMonth month, RowSource rows) throws IOException, SQLException {
+        Path data = dataFile(month);
+        Path index = indexFile(month);
+        Path dataTmp = data.resolveSibling(data.getFileName() + ".tmp");
+        Path indexTmp = index.resolveSibling(index.getFileName() + ".tmp");
+        
+        long count = 0;
+        try (OutputStream out = Files.newOutputStream(dataTmp);
+             Writer indexOut = Files.newBufferedWriter(indexTmp, StandardCharsets.UTF_8)) {
+            StringBuilder block = new StringBuilder();
+            String minEntity = null;
+            String maxEntity = null;
+            int blockRows = 0;
+            long offset = 0;
+            
+            ArchivedRow row;
+            while ((row = rows.next()) != null) {
+                String entityId = row.entityId;
+                // Track the range in Java order; the database collation may sort differently
+                if (blockRows == 0 || entityId.compareTo(minEntity) < 0) {
+                    minEntity = entityId;
+                }
+                if (blockRows == 0 || entityId.compareTo(maxEntity) > 0) {
+                    maxEntity = entityId;
+                }
+                appendField(block, String.valueOf(row.id)).append('\t');
+                appendField(block, row.createdAt.toString()).append('\t');
+                appendField(block, row.actionType).append('\t');
+                appendField(block, row.entityType).append('\t');
+                appendField(block, entityId).append('\t');
+                appendField(block, row.description).append('\n');
+                count++;
+                
+                if (++blockRows == BLOCK_ROWS) {
+                    offset = writeBlock(out, indexOut, block, offset, minEntity, maxEntity);
+                    blockRows = 0;
+                }
+            }
+            if (blockRows > 0) {
+                writeBlock(out, indexOut, block, offset, minEntity, maxEntity);
+            }
+        }
+        
+        if (count == 0) {
+            Files.delete(dataTmp);
+            Files.delete(indexTmp);
+            return 0;
+        }
+        
+        // Without an index the reader falls back to a full scan, so a stale one must go first
+        Files.deleteIfExists(index);
+        Files.move(dataTmp, data, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(indexTmp, index, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+    
+    private static long writeBlock(OutputStream out, Writer indexOut, StringBuilder block, long offset,
+                                   String minEntity, String maxEntity) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(block.length() / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(block.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        compressed.writeTo(out);
+        block.setLength(0);
+        
+        StringBuilder line = new StringBuilder();
+        line.append(offset).append('\t');
+        appendField(line, minEntity).append('\t');
+        appendField(line, maxEntity).append('\n');
+        indexOut.write(line.toString());
+        return offset + compressed.size();
+    }
+    
+    /**
+     * Searches the archive.
+     *
+     * @param entityId Entity ID to match, or null for all entities
+     * @param from Inclusive lower bound on created_at, or null
+     * @param to Exclusive upper bound on created_at, or null
+     * @return Matching rows as maps (id, actionType, entityType, entityId, description, createdAt),
+     *         ordered by month, then entity ID and time
+     */
+    public List<Map<String, Object>> search(String entityId, LocalDateTime from, LocalDateTime to) throws IOException {
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (YearMonth month : months()) {
+            // Skip months entirely outside the range
+            LocalDateTime monthStart = month.atDay(1).atStartOfDay();
+            LocalDateTime monthEnd = month.plusMonths(1).atDay(1).atStartOfDay();
+            if ((from != null && !monthEnd.isAfter(from)) || (to != null && !monthStart.isBefore(to))
+                || !isArchived(month)) {
+                continue;
+            }
+            searchMonth(month, entityId, from, to, results);
+        }
+        return results;
+    }
+    
+    private void searchMonth(YearMonth month, String entityId, LocalDateTime from, LocalDateTime to,
+                             List<Map<String, Object>> results) throws IOException {
+        Path data = dataFile(month);
+        Path index = indexFile(month);
+        if (entityId == null || !Files.exists(index)) {
+            // No entity to narrow by, or no index: scan the whole file
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(data))) {
+                scan(in, entityId, from, to, results);
+            }
+            return;
+        }
+        
+        List<String[]> blocks = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(index, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                blocks.add(line.split("\t", -1));
+            }
+        }
+        try (FileChannel channel = FileChannel.open(data)) {
+            for (int i = 0; i < blocks.size(); i++) {
+                String[] block = blocks.get(i);
+                if (entityId.compareTo(unescape(block[1])) < 0 || entityId.compareTo(unescape(block[2])) > 0) {
+                    continue;
+                }
+                long start = Long.parseLong(block[0]);
+                long end = i + 1 < blocks.size() ? Long.parseLong(blocks.get(i + 1)[0]) : channel.size();
+                ByteBuffer bytes = ByteBuffer.allocate((int) (end - start));
+                while (bytes.hasRemaining()) {
+                    if (channel.read(bytes, start + bytes.position()) < 0) {
+                        throw new EOFException("Truncated archive block in " + data);
+                    }
+                }
+                try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes.array()))) {
+                    scan(in, entityId, from, to, results);
+                }
+            }
+        }
+    }
+    
+    private static void scan(InputStream in, String entityId, LocalDateTime from, LocalDateTime to,
+                             List<Map<String, Object>> results) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] fields = line.split("\t", -1);
+            String rowEntity = unescape(fields[4]);
+            if (entityId != null && !entityId.equals(rowEntity)) {
+                continue;
+            }
+            LocalDateTime createdAt = LocalDateTime.parse(fields[1]);
+            if ((from != null && createdAt.isBefore(from)) || (to != null && !createdAt.isBefore(to))) {
+                continue;
+            }
+            Map<String, Object> row = new HashMap<>();
+            row.put("id", Long.parseLong(fields[0]));
+            row.put("createdAt", Timestamp.valueOf(createdAt));
+            row.put("actionType", unescape(fields[2]));
+            row.put("entityType", unescape(fields[3]));
+            row.put("entityId", rowEntity);
+            row.put("description", unescape(fields[5]));
+            results.add(row);
+        }
+    }
+    
+    /**
+     * Whether the month has a non-empty archive; empty files were left by
+     * earlier versions for months without rows.
+     */
+    private boolean isArchived(YearMonth month) throws IOException {
+        Path data = dataFile(month);
+        return Files.exists(data) && Files.size(data) > 0;
+    }
+    
+    Path dataFile(YearMonth month) {
+        return directory.resolve("audit_log-" + month + ".tsv.gz");
+    }
+    
+    private Path indexFile(YearMonth month) {
+        return directory.resolve("audit_log-" + month + ".idx");
+    }
+    
+    private static StringBuilder appendField(StringBuilder out, String value) {
+        if (value == null) {
+            return out.append(NULL);
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\': out.append("\\\\"); break;
+                case '\t': out.append("\\t"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                default: out.append(c);
+            }
+        }
+        return out;
+    }
+    
+    private static String unescape(String field) {
+        if (NULL.equals(field)) {
+            return null;
+        }
+        if (field.indexOf('\\') < 0) {
+            return field;
+        }
+        StringBuilder out = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '\\' && i + 1 < field.length()) {
+                char next = field.charAt(++i);
+                out.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+    
+    /**
+     * Supplies rows to write, returning null after the last one.
+     */
+    private interface RowSource {
+        ArchivedRow next() throws IOException, SQLException;
+    }
+    
+    private static final class ArchivedRow {
+        final long id;
+        final LocalDateTime createdAt;
+        final String actionType;
+        final String entityType;
+        final String entityId;
+        final String description;
+        
+        ArchivedRow(long id, LocalDateTime createdAt, String actionType, String entityType, String entityId,
+                    String description) {
+            this.id = id;
+            this.createdAt = createdAt;
+            this.actionType = actionType;
+            this.entityType = entityType;
+            this.entityId = entityId;
+            this.description = description;
+        }
+        
+        static ArchivedRow from(ResultSet rs) throws SQLException {
+            return new ArchivedRow(rs.getLong("id"), rs.getTimestamp("created_at").toLocalDateTime(),
+                                   rs.getString("action_type"), rs.getString("entity_type"),
+                                   rs.getString("entity_id"), rs.getString("description"));
+        }
+        
+        static ArchivedRow parse(String line) {
+            String[] fields = line.split("\t", -1);
+            return new ArchivedRow(Long.parseLong(fields[0]), LocalDateTime.parse(fields[1]), unescape(fields[2]),
+                                   unescape(fields[3]), unescape(fields[4]), unescape(fields[5]));
+        }
+    }
+}
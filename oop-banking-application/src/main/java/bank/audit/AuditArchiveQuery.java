@@ -0,0 +1,47 @@
+package bank.audit;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line search over archived audit log months.
+ * <p>
+ * Usage: {@code AuditArchiveQuery [--dir archive/audit_log] [--entity <id>]
+ * [--from <date or date-time>] [--to <date or date-time>]}. Bounds are ISO
+ * values such as {@code 2026-03-01} or {@code 2026-03-01T12:00}; the upper
+ * bound is exclusive. Matching rows are printed tab-separated.
+ */
+public class AuditArchiveQuery {
+    
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Expected --option value pairs, got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        
+        AuditArchive archive = new AuditArchive(Paths.get(options.getOrDefault("dir", "archive/audit_log")));
+        List<Map<String, Object>> rows = archive.search(options.get("entity"),
+                                                        parseBound(options.get("from")),
+                                                        parseBound(options.get("to")));
+        for (Map<String, Object> row : rows) {
+            System.out.println(row.get("createdAt") + "\t" + row.get("id") + "\t" + row.get("actionType") + "\t" +
+                               row.get("entityType") + "\t" + row.get("entityId") + "\t" + row.get("description"));
+        }
+        System.err.println(rows.size() + " matching entries");
+    }
+    
+    private static LocalDateTime parseBound(String value) {
+        if (value == null) {
+            return null;
+        }
+        return value.contains("T") ? LocalDateTime.parse(value) : LocalDate.parse(value).atStartOfDay();
+    }
+}
@@ -0,0 +1,268 @@
+package bank.audit;
+
+import bank.database.ConnectionLane;
+import bank.database.DatabaseConnectionManager;
+import bank.database.DatabaseException;
+import bank.database.InstrumentedStatements;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background job that keeps the live {@code audit_log} table small.
+ * <p>
+ * Each run first makes sure monthly partitions exist a few months ahead by
+ * splitting them off the catch-all {@code p_future} partition, so inserts never
+ * land in one ever-growing partition. It then moves every month older than the
+ * retention window into the {@link AuditArchive}: the month is exported, the
+ * partitions lying entirely within it are dropped, and any remaining rows of
+ * the month (for example in the initial {@code p_start} partition) are deleted
+ * in batches. On databases without partitioning the batched delete does all
+ * the work, so the job also runs against the embedded H2 database.
+ * <p>
+ * A run that fails after removing some of a month's rows leaves the month
+ * both archived and partly live; the next run merges the remaining rows into
+ * the existing archive rather than replacing it.
+ */
+public class AuditLogArchiver implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(AuditLogArchiver.class);
+    private static final int MONTHS_AHEAD = 2;
+    private static final int DELETE_BATCH_SIZE = 10_000;
+    // TO_DAYS('1970-01-01') in MySQL
+    private static final long TO_DAYS_EPOCH = 719_528;
+    
+    private final DatabaseConnectionManager connectionManager;
+    private final AuditArchive archive;
+    private final int retentionMonths;
+    private ScheduledExecutorService scheduler;
+    
+    /**
+     * @param archive Destination for archived months
+     * @param retentionMonths Number of months kept live, including the current one
+     */
+    public AuditLogArchiver(AuditArchive archive, int retentionMonths) {
+        if (retentionMonths < 1) {
+            throw new IllegalArgumentException("Retention must be at least one month");
+        }
+        this.connectionManager = DatabaseConnectionManager.getInstance();
+        this.archive = archive;
+        this.retentionMonths = retentionMonths;
+    }
+    
+    /**
+     * Runs the archiver now and then periodically on a background thread.
+     * @param interval Delay between the end of one run and the start of the next
+     */
+    public synchronized void start(Duration interval) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "audit-log-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                runOnce();
+            } catch (RuntimeException e) {
+                logger.error("Audit log archival failed", e);
+            }
+        }, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Creates upcoming partitions and archives all cold months.
+     * @return Number of months archived
+     */
+    public int runOnce() {
+        List<Partition> partitions = listPartitions();
+        if (!partitions.isEmpty()) {
+            addFuturePartitions(partitions);
+            partitions = listPartitions();
+        }
+        
+        YearMonth cutoff = YearMonth.now().minusMonths(retentionMonths - 1);
+        YearMonth oldest = oldestMonth();
+        int archived = 0;
+        for (YearMonth month = oldest; month != null && month.isBefore(cutoff); month = month.plusMonths(1)) {
+            if (archiveMonth(month, partitions)) {
+                archived++;
+            }
+        }
+        return archived;
+    }
+    
+    private boolean archiveMonth(YearMonth month, List<Partition> partitions) {
+        Timestamp start = Timestamp.valueOf(month.atDay(1).atStartOfDay());
+        Timestamp end = Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay());
+        String sql = "SELECT id, action_type, entity_type, entity_id, description, created_at FROM audit_log " +
+                     "WHERE created_at >= ? AND created_at < ? ORDER BY entity_id, created_at, id";
+        Connection connection = connectionManager.getConnection(ConnectionLane.REPORTING);
+        try {
+            long rows;
+            try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "audit_log.archive_select", sql)) {
+                stmt.setTimestamp(1, start);
+                stmt.setTimestamp(2, end);
+                stmt.setFetchSize(1000);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    rows = archive.write(month, rs);
+                }
+            }
+            
+            // The month is safely on disk; remove it from the live table
+            long monthStartDays = month.atDay(1).toEpochDay() + TO_DAYS_EPOCH;
+            long monthEndDays = month.plusMonths(1).atDay(1).toEpochDay() + TO_DAYS_EPOCH;
+            for (Partition partition : partitions) {
+                if (partition.lowerDays >= monthStartDays && partition.upperDays <= monthEndDays) {
+                    try (Statement stmt = connection.createStatement()) {
+                        stmt.execute("ALTER TABLE audit_log DROP PARTITION " + partition.name);
+                    }
+                }
+            }
+            deleteRange(connection, start, end);
+            if (rows == 0) {
+                return false;  // No audit rows in this month
+            }
+            logger.info("Archived {} audit rows for {} to {}", rows, month, archive.getDirectory());
+            return true;
+        } catch (SQLException e) {
+            throw new DatabaseException("Error archiving audit log for " + month + ": " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing audit archive for " + month, e);
+        } finally {
+            connectionManager.releaseConnection(connection);
+        }
+    }
+    
+    private void deleteRange(Connection connection, Timestamp start, Timestamp end) throws SQLException {
+        String sql = "DELETE FROM audit_log WHERE created_at >= ? AND created_at < ? LIMIT " + DELETE_BATCH_SIZE;
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "audit_log.archive_delete", sql)) {
+            stmt.setTimestamp(1, start);
+            stmt.setTimestamp(2, end);
+            // Small batches keep lock hold times and undo log size bounded
+            while (stmt.executeUpdate() == DELETE_BATCH_SIZE) {
+                logger.debug("Deleted a batch of archived audit rows");
+            }
+        }
+    }
+    
+    private YearMonth oldestMonth() {
+        Connection connection = connectionManager.getConnection(ConnectionLane.REPORTING);
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "audit_log.oldest",
+                                                                     "SELECT MIN(created_at) FROM audit_log");
+             ResultSet rs = stmt.executeQuery()) {
+            Timestamp oldest = rs.next() ? rs.getTimestamp(1) : null;
+            return oldest == null ? null : YearMonth.from(oldest.toLocalDateTime());
+        } catch (SQLException e) {
+            throw new DatabaseException("Error finding oldest audit entry: " + e.getMessage(), e);
+        } finally {
+            connectionManager.releaseConnection(connection);
+        }
+    }
+    
+    /**
+     * Splits monthly partitions off {@code p_future} up to {@value #MONTHS_AHEAD}
+     * months ahead of the current month.
+     */
+    private void addFuturePartitions(List<Partition> partitions) {
+        Partition last = partitions.get(partitions.size() - 1);
+        if (!"p_future".equals(last.name) || partitions.size() < 2) {
+            logger.warn("audit_log has no p_future partition; not adding monthly partitions");
+            return;
+        }
+        
+        LocalDate next = LocalDate.ofEpochDay(partitions.get(partitions.size() - 2).upperDays - TO_DAYS_EPOCH);
+        YearMonth horizon = YearMonth.now().plusMonths(MONTHS_AHEAD);
+        StringBuilder definitions = new StringBuilder();
+        while (!YearMonth.from(next).isAfter(horizon)) {
+            LocalDate bound = YearMonth.from(next).plusMonths(1).atDay(1);
+            definitions.append("PARTITION p").append(next.getYear()).append(String.format("%02d", next.getMonthValue()))
+                       .append(" VALUES LESS THAN (TO_DAYS('").append(bound).append("')), ");
+            next = bound;
+        }
+        if (definitions.length() == 0) {
+            return;
+        }
+        
+        String sql = "ALTER TABLE audit_log REORGANIZE PARTITION p_future INTO (" + definitions +
+                     "PARTITION p_future VALUES LESS THAN MAXVALUE)";
+        Connection connection = connectionManager.getConnection(ConnectionLane.REPORTING);
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(sql);
+            logger.info("Added audit_log partitions up to {}", horizon);
+        } catch (SQLException e) {
+            throw new DatabaseException("Error adding audit log partitions: " + e.getMessage(), e);
+        } finally {
+            connectionManager.releaseConnection(connection);
+        }
+    }
+    
+    /**
+     * Lists the range partitions of audit_log in order, or an empty list if the
+     * table is not partitioned or the database has no partition metadata.
+     */
+    private List<Partition> listPartitions() {
+        String sql = "SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS " +
+                     "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'audit_log' AND PARTITION_NAME IS NOT NULL " +
+                     "ORDER BY PARTITION_ORDINAL_POSITION";
+        List<Partition> partitions = new ArrayList<>();
+        Connection connection = connectionManager.getConnection(ConnectionLane.REPORTING);
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            long lower = Long.MIN_VALUE;
+            while (rs.next()) {
+                String description = rs.getString(2);
+                long upper = "MAXVALUE".equalsIgnoreCase(description) ? Long.MAX_VALUE : Long.parseLong(description);
+                partitions.add(new Partition(rs.getString(1), lower, upper));
+                lower = upper;
+            }
+        } catch (SQLException e) {
+            logger.debug("No partition metadata for audit_log: {}", e.getMessage());
+        } finally {
+            connectionManager.releaseConnection(connection);
+        }
+        return partitions;
+    }
+    
+    /**
+     * Stops the background schedule.
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+    
+    /**
+     * A range partition covering TO_DAYS values in [lowerDays, upperDays).
+     */
+    private static final class Partition {
+        final String name;
+        final long lowerDays;
+        final long upperDays;
+        
+        Partition(String name, long lowerDays, long upperDays) {
+            this.name = name;
+            this.lowerDays = lowerDays;
+            this.upperDays = upperDays;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package bank.batch;
+
+import bank.database.InstrumentedStatements;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the accounts table into ID ranges of roughly equal size for the
+ * batch jobs that process accounts in parallel.
+ */
+final class AccountRanges {
+    
+    private AccountRanges() {
+    }
+    
+    /**
+     * Computes the inclusive upper bound of each range; range {@code i} covers
+     * IDs after bound {@code i - 1} up to bound {@code i}. The last bound is
+     * null, leaving the last range open so accounts created while a job runs
+     * are included. Returns a single null bound when there are no accounts.
+     *
+     * @param connection Connection to query on
+     * @param count Number of ranges wanted
+     * @param statementName Statement name for metrics
+     */
+    static List<String> upperBounds(Connection connection, int count, String statementName) throws SQLException {
+        String sql = "SELECT MAX(id) AS upper_bound FROM " +
+                     "(SELECT id, NTILE(?) OVER (ORDER BY id) AS bucket FROM accounts) buckets " +
+                     "GROUP BY bucket ORDER BY upper_bound";
+        List<String> upperBounds = new ArrayList<>();
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, statementName, sql)) {
+            stmt.setInt(1, count);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    upperBounds.add(rs.getString("upper_bound"));
+                }
+            }
+        }
+        if (upperBounds.isEmpty()) {
+            upperBounds.add(null);
+        } else {
+            upperBounds.set(upperBounds.size() - 1, null);
+        }
+        return upperBounds;
+    }
+}
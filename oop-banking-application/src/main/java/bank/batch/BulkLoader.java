@@ -0,0 +1,516 @@
+package bank.batch;
+
+import bank.database.ConnectionLane;
+import bank.database.DatabaseConnectionManager;
+import bank.database.DatabaseException;
+import bank.database.InstrumentedStatements;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads customers, accounts, account ownerships and historical transactions
+ * from CSV files straight into the database, bypassing {@code Bank}.
+ * <p>
+ * Each file is parsed on the calling thread and cut into groups of rows that
+ * several writer threads insert as multi-row {@code INSERT} statements, each
+ * on its own pooled connection. Files are loaded in dependency order so
+ * foreign keys hold throughout. The repository's secondary indexes
+ * ({@code idx_*}) on the loaded tables are dropped before the load and
+ * rebuilt once it finishes, except those the database needs to enforce a
+ * foreign key. Progress is logged every few seconds.
+ * <p>
+ * The files, all optional, live in one directory and start with a header
+ * row naming their columns in any order:
+ * <pre>
+ * customers.csv       id, first_name, last_name, birth_day
+ * accounts.csv        id, customer_id, account_type, balance [, opening_balance]
+ * account_owners.csv  account_id, customer_id
+ * transactions.csv    account_id, transaction_type, amount, transaction_date [, related_account_id]
+ * </pre>
+ * Dates are ISO {@code yyyy-MM-dd}, timestamps {@code yyyy-MM-dd HH:mm:ss}.
+ * Empty fields load as NULL, except a missing opening balance, which is zero.
+ * The application's caches are filled at startup, so load before starting it.
+ * Loading transactions writes a {@code BULK_LOAD} audit entry first, which
+ * tells a statement cache directory kept across restarts that it is stale.
+ * <p>
+ * With outbox events enabled, each group of loaded accounts commits together
+ * with an {@code ACCOUNT_LOADED} event per account carrying its balance.
+ * Loaded customers, ownerships and historical transactions write no events;
+ * the account balances already reflect the loaded history.
+ */
+public class BulkLoader {
+    private static final Logger logger = LoggerFactory.getLogger(BulkLoader.class);
+    private static final List<Object[]> END_OF_FILE = new ArrayList<>();
+    
+    /**
+     * The loadable tables in dependency order.
+     */
+    public enum Table {
+        CUSTOMERS("customers", new String[] {"id", "first_name", "last_name", "birth_day"},
+                  new int[] {Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.DATE}, 0),
+        ACCOUNTS("accounts", new String[] {"id", "customer_id", "account_type", "balance", "opening_balance"},
+                 new int[] {Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.DECIMAL, Types.DECIMAL}, 1),
+        ACCOUNT_OWNERS("account_owners", new String[] {"account_id", "customer_id"},
+                       new int[] {Types.VARCHAR, Types.VARCHAR}, 0),
+        TRANSACTIONS("transactions",
+                     new String[] {"account_id", "transaction_type", "amount", "transaction_date", "related_account_id"},
+                     new int[] {Types.VARCHAR, Types.VARCHAR, Types.DECIMAL, Types.TIMESTAMP, Types.VARCHAR}, 1);
+        
+        final String name;
+        final String[] columns;
+        final int[] types;
+        final int optionalColumns;
+        
+        Table(String name, String[] columns, int[] types, int optionalColumns) {
+            this.name = name;
+            this.columns = columns;
+            this.types = types;
+            this.optionalColumns = optionalColumns;
+        }
+        
+        public String fileName() {
+            return name + ".csv";
+        }
+    }
+    
+    private final DatabaseConnectionManager connectionManager;
+    private final int writers;
+    private final int rowsPerStatement;
+    private volatile boolean outboxEnabled;
+    
+    /**
+     * @param writers Number of writer threads; each holds one pooled connection
+     * @param rowsPerStatement Rows per multi-row INSERT
+     */
+    public BulkLoader(int writers, int rowsPerStatement) {
+        if (writers < 1 || rowsPerStatement < 1) {
+            throw new IllegalArgumentException("Writers and rows per statement must be positive");
+        }
+        this.connectionManager = DatabaseConnectionManager.getInstance();
+        this.writers = writers;
+        this.rowsPerStatement = rowsPerStatement;
+    }
+    
+    /**
+     * Chooses whether loaded accounts also write {@code ACCOUNT_LOADED}
+     * events to the {@code outbox} table, in the same transaction as the rows.
+     * @param outboxEnabled true to write outbox events
+     */
+    public void setOutboxEnabled(boolean outboxEnabled) {
+        this.outboxEnabled = outboxEnabled;
+    }
+    
+    /**
+     * Loads every table whose CSV file exists in the directory.
+     * @return Rows loaded per table name
+     */
+    public Map<String, Long> load(Path directory) {
+        List<Table> tables = new ArrayList<>();
+        for (Table table : Table.values()) {
+            if (Files.exists(directory.resolve(table.fileName()))) {
+                tables.add(table);
+            }
+        }
+        
+        Map<String, Long> loaded = new LinkedHashMap<>();
+        Map<String, String> deferredIndexes = dropSecondaryIndexes(tables);
+        try {
+            for (Table table : tables) {
+                loaded.put(table.name, loadTable(table, directory.resolve(table.fileName())));
+            }
+        } finally {
+            createIndexes(deferredIndexes);
+        }
+        return loaded;
+    }
+    
+    /**
+     * Loads one CSV file into its table.
+     * @return Number of rows inserted
+     */
+    public long loadTable(Table table, Path file) {
+        if (table == Table.TRANSACTIONS) {
+            recordLoad(table, file);
+        }
+        long start = System.nanoTime();
+        AtomicLong rows = new AtomicLong();
+        BlockingQueue<List<Object[]>> queue = new ArrayBlockingQueue<>(writers * 2);
+        ExecutorService executor = Executors.newFixedThreadPool(writers, runnable -> {
+            Thread thread = new Thread(runnable, "bulk-loader-" + table.name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bulk-loader-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        progress.scheduleAtFixedRate(() -> logProgress(table, rows.get(), start), 5, 5, TimeUnit.SECONDS);
+        
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            futures.add(executor.submit(() -> {
+                writeBatches(table, queue, rows);
+                return null;
+            }));
+        }
+        try (CsvReader reader = new CsvReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+            int[] positions = mapHeader(table, reader.next(), file);
+            List<Object[]> batch = new ArrayList<>(rowsPerStatement);
+            String[] fields;
+            while ((fields = reader.next()) != null) {
+                if (fields.length == 1 && fields[0].isEmpty()) {
+                    continue;  // Blank line
+                }
+                batch.add(convert(table, positions, fields, file, reader.getLineNumber()));
+                if (batch.size() == rowsPerStatement) {
+                    enqueue(queue, batch, futures);
+                    batch = new ArrayList<>(rowsPerStatement);
+                }
+            }
+            if (!batch.isEmpty()) {
+                enqueue(queue, batch, futures);
+            }
+            for (int i = 0; i < writers; i++) {
+                enqueue(queue, END_OF_FILE, futures);
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading " + file, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("Bulk load of " + table.name + " interrupted", e);
+        } catch (ExecutionException e) {
+            throw unwrap(table, e);
+        } finally {
+            executor.shutdownNow();
+            progress.shutdownNow();
+        }
+        logProgress(table, rows.get(), start);
+        return rows.get();
+    }
+    
+    /**
+     * Audits a load before it starts, so even a load that fails halfway
+     * changes the history revision.
+     */
+    private void recordLoad(Table table, Path file) {
+        String auditSql = "INSERT INTO audit_log (action_type, entity_type, entity_id, description) VALUES (?, ?, ?, ?)";
+        Connection connection = connectionManager.getConnection(ConnectionLane.TRANSACTIONAL);
+        try (PreparedStatement auditStmt = InstrumentedStatements.prepare(connection, "audit_log.insert", auditSql)) {
+            auditStmt.setString(1, "BULK_LOAD");
+            auditStmt.setString(2, "TABLE");
+            auditStmt.setString(3, table.name);
+            auditStmt.setString(4, "Bulk load from " + file);
+            
+            auditStmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new DatabaseException("Error auditing bulk load of " + table.name + ": " + e.getMessage(), e);
+        } finally {
+            connectionManager.releaseConnection(connection);
+        }
+    }
+    
+    /**
+     * Hands a batch to the writers, failing fast if one of them has died
+     * instead of blocking on a queue nobody drains.
+     */
+    private static void enqueue(BlockingQueue<List<Object[]>> queue, List<Object[]> batch,
+                                List<Future<?>> futures) throws InterruptedException, ExecutionException {
+        while (!queue.offer(batch, 1, TimeUnit.SECONDS)) {
+            for (Future<?> future : futures) {
+                if (future.isDone()) {
+                    future.get();
+                }
+            }
+        }
+    }
+    
+    private static RuntimeException unwrap(Table table, ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+            return (RuntimeException) e.getCause();
+        }
+        return new DatabaseException("Bulk load of " + table.name + " failed: " + e.getCause().getMessage(), e.getCause());
+    }
+    
+    private static void logProgress(Table table, long rows, long start) {
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        logger.info("Loaded {} {} rows in {} ms ({} rows/s)", rows, table.name, elapsedMillis, rows * 1000 / elapsedMillis);
+    }
+    
+    /**
+     * Writer loop: inserts batches until it takes the end-of-file marker.
+     */
+    private void writeBatches(Table table, BlockingQueue<List<Object[]>> queue, AtomicLong rows) throws InterruptedException {
+        boolean outbox = outboxEnabled && table == Table.ACCOUNTS;
+        Connection connection = connectionManager.getConnection(ConnectionLane.TRANSACTIONAL);
+        PreparedStatement fullStatement = null;
+        try {
+            connection.setAutoCommit(!outbox);
+            fullStatement = InstrumentedStatements.prepare(connection, statementName(table),
+                                                           insertSql(table, rowsPerStatement));
+            while (true) {
+                List<Object[]> batch = queue.take();
+                if (batch == END_OF_FILE) {
+                    return;
+                }
+                if (batch.size() == rowsPerStatement) {
+                    bind(fullStatement, table, batch);
+                    fullStatement.executeUpdate();
+                } else {
+                    try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, statementName(table),
+                                                                                 insertSql(table, batch.size()))) {
+                        bind(stmt, table, batch);
+                        stmt.executeUpdate();
+                    }
+                }
+                if (outbox) {
+                    appendOutbox(connection, batch);
+                    connection.commit();
+                }
+                rows.addAndGet(batch.size());
+            }
+        } catch (SQLException e) {
+            if (outbox) {
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackEx) {
+                    logger.warn("Error rolling back bulk insert", rollbackEx);
+                }
+            }
+            throw new DatabaseException("Error loading " + table.name + ": " + e.getMessage(), e);
+        } finally {
+            try {
+                if (fullStatement != null) {
+                    fullStatement.close();
+                }
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                logger.warn("Error closing bulk insert statement", e);
+            }
+            connectionManager.releaseConnection(connection);
+        }
+    }
+    
+    /**
+     * Queues an ACCOUNT_LOADED event with the balance of each account
+     * in a batch, in the batch's transaction.
+     */
+    private static void appendOutbox(Connection connection, List<Object[]> accounts) throws SQLException {
+        String outboxSql = "INSERT INTO outbox (event_type, account_id, amount) VALUES ('ACCOUNT_LOADED', ?, ?)";
+        try (PreparedStatement outboxStmt = InstrumentedStatements.prepare(connection, "outbox.account_loaded_insert",
+                                                                           outboxSql)) {
+            for (Object[] values : accounts) {
+                outboxStmt.setString(1, (String) values[0]);
+                outboxStmt.setBigDecimal(2, (BigDecimal) values[3]);
+                outboxStmt.addBatch();
+            }
+            outboxStmt.executeBatch();
+        }
+    }
+    
+    /**
+     * Metric name shared by a table's inserts of any row count, e.g. {@code bulk.accounts_insert}.
+     */
+    private static String statementName(Table table) {
+        return "bulk." + table.name + "_insert";
+    }
+    
+    private static String insertSql(Table table, int rows) {
+        StringBuilder row = new StringBuilder("(");
+        for (int i = 0; i < table.columns.length; i++) {
+            row.append(i == 0 ? "?" : ", ?");
+        }
+        row.append(')');
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table.name)
+            .append(" (").append(String.join(", ", table.columns)).append(") VALUES ");
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "" : ", ").append(row);
+        }
+        return sql.toString();
+    }
+    
+    private static void bind(PreparedStatement stmt, Table table, List<Object[]> batch) throws SQLException {
+        int index = 1;
+        for (Object[] values : batch) {
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] == null) {
+                    stmt.setNull(index++, table.types[i]);
+                } else {
+                    stmt.setObject(index++, values[i]);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Finds the position of each table column in the file's header.
+     * @return Field index per column, -1 for an optional column the file lacks
+     */
+    private static int[] mapHeader(Table table, String[] header, Path file) {
+        if (header == null) {
+            throw new IllegalArgumentException(file + " is empty");
+        }
+        Map<String, Integer> fieldIndex = new HashMap<>();
+        for (int i = 0; i < header.length; i++) {
+            fieldIndex.put(header[i].trim().toLowerCase(), i);
+        }
+        int[] positions = new int[table.columns.length];
+        for (int i = 0; i < table.columns.length; i++) {
+            Integer position = fieldIndex.get(table.columns[i]);
+            if (position == null && i < table.columns.length - table.optionalColumns) {
+                throw new IllegalArgumentException(file + " has no " + table.columns[i] + " column");
+            }
+            positions[i] = position == null ? -1 : position;
+        }
+        return positions;
+    }
+    
+    private static Object[] convert(Table table, int[] positions, String[] fields, Path file, long line) {
+        Object[] values = new Object[positions.length];
+        try {
+            for (int i = 0; i < positions.length; i++) {
+                String field = positions[i] >= 0 && positions[i] < fields.length ? fields[positions[i]] : "";
+                if (field.isEmpty()) {
+                    values[i] = "opening_balance".equals(table.columns[i]) ? BigDecimal.ZERO : null;
+                    continue;
+                }
+                switch (table.types[i]) {
+                    case Types.DECIMAL:
+                        values[i] = new BigDecimal(field);
+                        break;
+                    case Types.DATE:
+                        values[i] = java.sql.Date.valueOf(LocalDate.parse(field));
+                        break;
+                    case Types.TIMESTAMP:
+                        values[i] = field.length() == 10 ? Timestamp.valueOf(field + " 00:00:00") : Timestamp.valueOf(field);
+                        break;
+                    default:
+                        values[i] = field;
+                }
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException(file + " line " + line + ": " + e.getMessage(), e);
+        }
+        return values;
+    }
+    
+    /**
+     * Drops the {@code idx_*} indexes on the given tables.
+     * @return CREATE INDEX statements that rebuild the dropped indexes, by index name
+     */
+    private Map<String, String> dropSecondaryIndexes(List<Table> tables) {
+        Map<String, String> dropped = new LinkedHashMap<>();
+        Connection connection = connectionManager.getConnection(ConnectionLane.TRANSACTIONAL);
+        try {
+            DatabaseMetaData metaData = connection.getMetaData();
+            for (Table table : tables) {
+                String tableName = metaData.storesUpperCaseIdentifiers() ? table.name.toUpperCase() : table.name;
+                Map<String, TreeMap<Short, String>> indexes = new LinkedHashMap<>();
+                try (ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), null, tableName, false, false)) {
+                    while (rs.next()) {
+                        String indexName = rs.getString("INDEX_NAME");
+                        if (indexName != null && indexName.toLowerCase().startsWith("idx_") && rs.getBoolean("NON_UNIQUE")) {
+                            indexes.computeIfAbsent(indexName, name -> new TreeMap<>())
+                                   .put(rs.getShort("ORDINAL_POSITION"), rs.getString("COLUMN_NAME"));
+                        }
+                    }
+                }
+                for (Map.Entry<String, TreeMap<Short, String>> index : indexes.entrySet()) {
+                    try (Statement stmt = connection.createStatement()) {
+                        stmt.execute("DROP INDEX " + index.getKey() + " ON " + table.name);
+                        dropped.put(index.getKey(), "CREATE INDEX " + index.getKey() + " ON " + table.name + "(" +
+                                                    String.join(", ", index.getValue().values()) + ")");
+                        logger.info("Dropped index {} for the load", index.getKey());
+                    } catch (SQLException e) {
+                        // Typically the index backs a foreign key
+                        logger.info("Keeping index {} during the load: {}", index.getKey(), e.getMessage());
+                    }
+                }
+            }
+            return dropped;
+        } catch (SQLException e) {
+            createIndexes(dropped);
+            throw new DatabaseException("Error reading index definitions: " + e.getMessage(), e);
+        } finally {
+            connectionManager.releaseConnection(connection);
+        }
+    }
+    
+    private void createIndexes(Map<String, String> indexes) {
+        if (indexes.isEmpty()) {
+            return;
+        }
+        Connection connection = connectionManager.getConnection(ConnectionLane.TRANSACTIONAL);
+        try {
+            for (Map.Entry<String, String> index : indexes.entrySet()) {
+                long start = System.nanoTime();
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.execute(index.getValue());
+                }
+                logger.info("Rebuilt index {} in {} ms", index.getKey(), (System.nanoTime() - start) / 1_000_000);
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException("Error rebuilding indexes after bulk load: " + e.getMessage(), e);
+        } finally {
+            connectionManager.releaseConnection(connection);
+        }
+    }
+    
+    /**
+     * Usage: {@code BulkLoader [--dir data] [--writers 4] [--rows 1000] [--outbox false]}.
+     */
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Expected --option value pairs, got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        
+        BulkLoader loader = new BulkLoader(Integer.parseInt(options.getOrDefault("writers", "4")),
+                                           Integer.parseInt(options.getOrDefault("rows", "1000")));
+        loader.setOutboxEnabled(Boolean.parseBoolean(options.getOrDefault("outbox", "false")));
+        long start = System.nanoTime();
+        Map<String, Long> loaded = loader.load(Paths.get(options.getOrDefault("dir", "data")));
+        for (Map.Entry<String, Long> entry : loaded.entrySet()) {
+            System.out.println(entry.getKey() + ": " + entry.getValue() + " rows");
+        }
+        System.out.println("Bulk load finished in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        DatabaseConnectionManager.getInstance().closeAllConnections();
+    }
+}
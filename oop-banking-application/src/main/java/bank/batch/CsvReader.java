@@ -0,0 +1,81 @@
+package bank.batch;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal streaming reader for RFC 4180 CSV: comma separated, fields
+ * optionally enclosed in double quotes, quotes escaped by doubling them.
+ * Quoted fields may span lines.
+ */
+class CsvReader implements AutoCloseable {
+    private final BufferedReader reader;
+    private long lineNumber;
+    
+    CsvReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+    
+    /**
+     * Reads the next record.
+     * @return The fields, or null at the end of the input
+     */
+    String[] next() throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            return null;
+        }
+        lineNumber++;
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int i = 0;
+        while (true) {
+            if (i == line.length()) {
+                if (!quoted) {
+                    break;
+                }
+                // Line break inside a quoted field
+                line = reader.readLine();
+                if (line == null) {
+                    throw new IOException("Unterminated quoted field at line " + lineNumber);
+                }
+                lineNumber++;
+                field.append('\n');
+                i = 0;
+                continue;
+            }
+            char c = line.charAt(i++);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i < line.length() && line.charAt(i) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+    
+    long getLineNumber() {
+        return lineNumber;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,435 @@
+package bank.batch;
+
+import bank.CorporateAccount;
+import bank.PersonalAccount;
+import bank.database.AccountSlots;
+import bank.database.ConnectionLane;
+import bank.database.DatabaseConnectionManager;
+import bank.database.DatabaseException;
+import bank.database.InstrumentedStatements;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * End-of-day job that accrues one day of interest on every account with a
+ * positive balance and posts it as an {@code INTEREST} transaction.
+ * <p>
+ * Accounts are split into ID ranges of roughly equal size, which run in
+ * parallel on virtual threads; a semaphore bounds how many hold a database
+ * connection at once. Each range is walked in chunks by keyset pagination, and
+ * every chunk is one database transaction: the balance updates and transaction
+ * inserts go out as JDBC batches, and the range's checkpoint row in
+ * {@code batch_checkpoints} advances in the same commit. A run that crashes can
+ * therefore be restarted for the same business date and continues exactly
+ * where each range stopped, without posting any account twice. Range
+ * boundaries are stored with the checkpoints so a resumed run reuses them.
+ * <p>
+ * Interest is balance x annual rate / 365, rounded half-even to the stored
+ * scale of four decimals. Balances are read without locking, so the amount is
+ * based on the balance at the moment the chunk is processed.
+ * <p>
+ * With outbox events enabled, each posting also queues an {@code INTEREST}
+ * event in its chunk's transaction.
+ */
+public class InterestAccrualJob {
+    private static final Logger logger = LoggerFactory.getLogger(InterestAccrualJob.class);
+    private static final String JOB_NAME = "interest-accrual";
+    private static final BigDecimal DAYS_PER_YEAR = new BigDecimal(365);
+    private static final int AMOUNT_SCALE = 4;
+    private static final int MAX_ATTEMPTS = 3;
+    
+    private final DatabaseConnectionManager connectionManager;
+    private final AccountSlots accountSlots;
+    private final Map<String, BigDecimal> annualRates;
+    private final int parallelism;
+    private final int chunkSize;
+    private volatile boolean outboxEnabled;
+    
+    /**
+     * Creates a job with the default rates of each account type.
+     * @param parallelism Number of ranges processed at once; each holds one pooled connection
+     * @param chunkSize Accounts per chunk and JDBC batch
+     */
+    public InterestAccrualJob(int parallelism, int chunkSize) {
+        this(defaultRates(), parallelism, chunkSize);
+    }
+    
+    /**
+     * @param annualRates Annual interest rate per account_type value
+     * @param parallelism Number of ranges processed at once; each holds one pooled connection
+     * @param chunkSize Accounts per chunk and JDBC batch
+     */
+    public InterestAccrualJob(Map<String, BigDecimal> annualRates, int parallelism, int chunkSize) {
+        if (parallelism < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException("Parallelism and chunk size must be positive");
+        }
+        this.connectionManager = DatabaseConnectionManager.getInstance();
+        this.accountSlots = AccountSlots.getInstance();
+        this.annualRates = annualRates;
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+    }
+    
+    /**
+     * Chooses whether each posting also writes an {@code INTEREST} event to
+     * the {@code outbox} table, in the chunk's transaction.
+     * @param outboxEnabled true to write outbox events
+     */
+    public void setOutboxEnabled(boolean outboxEnabled) {
+        this.outboxEnabled = outboxEnabled;
+    }
+    
+    public static Map<String, BigDecimal> defaultRates() {
+        Map<String, BigDecimal> rates = new HashMap<>();
+        rates.put("PERSONAL", PersonalAccount.ANNUAL_INTEREST_RATE);
+        rates.put("CORPORATE", CorporateAccount.ANNUAL_INTEREST_RATE);
+        return rates;
+    }
+    
+    /**
+     * Accrues interest for a business date, resuming an interrupted run for
+     * the same date if there is one.
+     *
+     * @param businessDate The day interest is accrued for
+     * @param listener Called with each account ID and posted amount after its chunk commits, may be null
+     * @return Summary with accounts, totalInterest, partitions and elapsedMillis
+     */
+    public Map<String, Object> run(LocalDate businessDate, BiConsumer<String, BigDecimal> listener) {
+        long start = System.nanoTime();
+        List<Range> ranges = loadOrCreateRanges(businessDate);
+        boolean alreadyCompleted = ranges.stream().allMatch(range -> range.completed);
+        AtomicLong accounts = new AtomicLong();
+        BigDecimal[] totals = new BigDecimal[ranges.size()];
+        Arrays.fill(totals, BigDecimal.ZERO);
+        
+        Semaphore permits = new Semaphore(Math.min(parallelism, connectionManager.getMaxConnections(ConnectionLane.REPORTING)));
+        List<Future<?>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < ranges.size(); i++) {
+                Range range = ranges.get(i);
+                int index = i;
+                futures.add(executor.submit(() -> {
+                    permits.acquireUninterruptibly();
+                    try {
+                        totals[index] = processRange(businessDate, range, accounts, listener);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("Interest accrual interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new DatabaseException("Interest accrual failed: " + e.getCause().getMessage(), e.getCause());
+        }
+        
+        BigDecimal totalInterest = BigDecimal.ZERO;
+        for (BigDecimal total : totals) {
+            totalInterest = totalInterest.add(total);
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        if (!alreadyCompleted) {
+            recordAudit(businessDate, accounts.get(), totalInterest);
+        }
+        logger.info("Accrued interest for {}: {} accounts, total {}, {} ms ({} accounts/s)", businessDate,
+                    accounts.get(), totalInterest, elapsedMillis, accounts.get() * 1000 / Math.max(1, elapsedMillis));
+        
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("accounts", accounts.get());
+        summary.put("totalInterest", totalInterest);
+        summary.put("partitions", ranges.size());
+        summary.put("elapsedMillis", elapsedMillis);
+        return summary;
+    }
+    
+    /**
+     * Processes one range chunk by chunk from its checkpoint.
+     * @return The interest posted in this run
+     */
+    private BigDecimal processRange(LocalDate businessDate, Range range, AtomicLong accounts,
+                                    BiConsumer<String, BigDecimal> listener) {
+        BigDecimal posted = BigDecimal.ZERO;
+        String after = range.lastAccountId != null ? range.lastAccountId : range.lowerBound;
+        while (!range.completed) {
+            Chunk chunk = processChunkWithRetry(businessDate, range, after);
+            accounts.addAndGet(chunk.postings.size());
+            for (Map.Entry<String, BigDecimal> posting : chunk.postings.entrySet()) {
+                posted = posted.add(posting.getValue());
+                if (listener != null) {
+                    listener.accept(posting.getKey(), posting.getValue());
+                }
+            }
+            after = chunk.lastAccountId;
+            range.completed = chunk.last;
+        }
+        return posted;
+    }
+    
+    private Chunk processChunkWithRetry(LocalDate businessDate, Range range, String after) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return processChunk(businessDate, range, after);
+            } catch (DatabaseException e) {
+                // Deadlocks with concurrent transfers roll the chunk back; it is safe to redo
+                if (attempt >= MAX_ATTEMPTS || !isRetryable(e.getCause())) {
+                    throw e;
+                }
+                logger.warn("Retrying interest chunk after {} in partition {}: {}", after, range.id, e.getMessage());
+            }
+        }
+    }
+    
+    private Chunk processChunk(LocalDate businessDate, Range range, String after) {
+        String selectSql = "SELECT a.id, a.account_type, " + AccountSlots.balanceExpression("a") + " AS balance " +
+                           "FROM accounts a WHERE a.id > ?" + (range.upperBound != null ? " AND a.id <= ?" : "") +
+                           " ORDER BY a.id LIMIT ?";
+        String creditSql = "UPDATE accounts SET balance = balance + ? WHERE id = ?";
+        String insertSql = "INSERT INTO transactions (account_id, transaction_type, amount) VALUES (?, 'INTEREST', ?)";
+        String checkpointSql = "UPDATE batch_checkpoints SET last_account_id = ?, accounts_processed = accounts_processed + ?, " +
+                               "completed = ? WHERE job_name = ? AND run_date = ? AND partition_id = ?";
+        
+        Connection connection = connectionManager.getConnection(ConnectionLane.REPORTING);
+        try {
+            connection.setAutoCommit(false);
+            
+            // Read the next chunk of the range and compute its interest
+            Map<String, BigDecimal> postings = new HashMap<>();
+            String lastAccountId = after;
+            int rows = 0;
+            try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "accounts.interest_chunk", selectSql)) {
+                int index = 1;
+                stmt.setString(index++, after == null ? "" : after);
+                if (range.upperBound != null) {
+                    stmt.setString(index++, range.upperBound);
+                }
+                stmt.setInt(index, chunkSize);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        rows++;
+                        lastAccountId = rs.getString("id");
+                        BigDecimal interest = dailyInterest(rs.getString("account_type"), rs.getBigDecimal("balance"));
+                        if (interest.signum() > 0) {
+                            postings.put(lastAccountId, interest);
+                        }
+                    }
+                }
+            }
+            boolean last = rows < chunkSize;
+            
+            if (!postings.isEmpty()) {
+                try (PreparedStatement credit = InstrumentedStatements.prepare(connection, "accounts.interest_credit", creditSql);
+                     PreparedStatement insert = InstrumentedStatements.prepare(connection, "transactions.interest_insert", insertSql)) {
+                    for (Map.Entry<String, BigDecimal> posting : postings.entrySet()) {
+                        if (!accountSlots.credit(connection, posting.getKey(), posting.getValue())) {
+                            credit.setBigDecimal(1, posting.getValue());
+                            credit.setString(2, posting.getKey());
+                            credit.addBatch();
+                        }
+                        insert.setString(1, posting.getKey());
+                        insert.setBigDecimal(2, posting.getValue());
+                        insert.addBatch();
+                    }
+                    credit.executeBatch();
+                    insert.executeBatch();
+                }
+                if (outboxEnabled) {
+                    appendOutbox(connection, postings);
+                }
+            }
+            
+            try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "batch_checkpoints.advance", checkpointSql)) {
+                stmt.setString(1, lastAccountId);
+                stmt.setLong(2, rows);
+                stmt.setBoolean(3, last);
+                stmt.setString(4, JOB_NAME);
+                stmt.setDate(5, java.sql.Date.valueOf(businessDate));
+                stmt.setInt(6, range.id);
+                stmt.executeUpdate();
+            }
+            
+            connection.commit();
+            return new Chunk(postings, lastAccountId, last);
+        } catch (SQLException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackEx) {
+                throw new DatabaseException("Error rolling back transaction", rollbackEx);
+            }
+            throw new DatabaseException("Error accruing interest: " + e.getMessage(), e);
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+                connectionManager.releaseConnection(connection);
+            } catch (SQLException e) {
+                throw new DatabaseException("Error resetting auto-commit", e);
+            }
+        }
+    }
+    
+    private static void appendOutbox(Connection connection, Map<String, BigDecimal> postings) throws SQLException {
+        String outboxSql = "INSERT INTO outbox (event_type, account_id, amount) VALUES ('INTEREST', ?, ?)";
+        try (PreparedStatement outboxStmt = InstrumentedStatements.prepare(connection, "outbox.interest_insert", outboxSql)) {
+            for (Map.Entry<String, BigDecimal> posting : postings.entrySet()) {
+                outboxStmt.setString(1, posting.getKey());
+                outboxStmt.setBigDecimal(2, posting.getValue());
+                outboxStmt.addBatch();
+            }
+            outboxStmt.executeBatch();
+        }
+    }
+    
+    private BigDecimal dailyInterest(String accountType, BigDecimal balance) {
+        BigDecimal rate = annualRates.get(accountType);
+        if (rate == null || balance.signum() <= 0) {
+            return BigDecimal.ZERO;
+        }
+        return balance.multiply(rate).divide(DAYS_PER_YEAR, AMOUNT_SCALE, RoundingMode.HALF_EVEN);
+    }
+    
+    private static boolean isRetryable(Throwable cause) {
+        // SQLState class 40 covers deadlocks and serialization failures
+        return cause instanceof SQLException && String.valueOf(((SQLException) cause).getSQLState()).startsWith("40");
+    }
+    
+    /**
+     * Loads the ranges of an interrupted run, or splits the accounts into new
+     * ranges and records them as checkpoints.
+     */
+    private List<Range> loadOrCreateRanges(LocalDate businessDate) {
+        String selectSql = "SELECT partition_id, lower_bound, upper_bound, last_account_id, completed " +
+                           "FROM batch_checkpoints WHERE job_name = ? AND run_date = ? ORDER BY partition_id";
+        String insertSql = "INSERT INTO batch_checkpoints (job_name, run_date, partition_id, lower_bound, upper_bound) " +
+                           "VALUES (?, ?, ?, ?, ?)";
+        
+        List<Range> ranges = new ArrayList<>();
+        Connection connection = connectionManager.getConnection(ConnectionLane.REPORTING);
+        try {
+            try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "batch_checkpoints.select", selectSql)) {
+                stmt.setString(1, JOB_NAME);
+                stmt.setDate(2, java.sql.Date.valueOf(businessDate));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        Range range = new Range(rs.getInt("partition_id"), rs.getString("lower_bound"),
+                                                rs.getString("upper_bound"));
+                        range.lastAccountId = rs.getString("last_account_id");
+                        range.completed = rs.getBoolean("completed");
+                        ranges.add(range);
+                    }
+                }
+            }
+            if (!ranges.isEmpty()) {
+                logger.info("Resuming interest accrual for {} from checkpoints", businessDate);
+                return ranges;
+            }
+            
+            // Split into several ranges per worker so faster ranges even out
+            List<String> upperBounds = AccountRanges.upperBounds(connection, parallelism * 4, "accounts.interest_bounds");
+            
+            connection.setAutoCommit(false);
+            try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "batch_checkpoints.insert", insertSql)) {
+                String lower = null;
+                for (int i = 0; i < upperBounds.size(); i++) {
+                    ranges.add(new Range(i, lower, upperBounds.get(i)));
+                    stmt.setString(1, JOB_NAME);
+                    stmt.setDate(2, java.sql.Date.valueOf(businessDate));
+                    stmt.setInt(3, i);
+                    stmt.setString(4, lower);
+                    stmt.setString(5, upperBounds.get(i));
+                    stmt.addBatch();
+                    lower = upperBounds.get(i);
+                }
+                stmt.executeBatch();
+            }
+            connection.commit();
+            return ranges;
+        } catch (SQLException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackEx) {
+                throw new DatabaseException("Error rolling back transaction", rollbackEx);
+            }
+            throw new DatabaseException("Error preparing interest accrual: " + e.getMessage(), e);
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+                connectionManager.releaseConnection(connection);
+            } catch (SQLException e) {
+                throw new DatabaseException("Error resetting auto-commit", e);
+            }
+        }
+    }
+    
+    private void recordAudit(LocalDate businessDate, long accounts, BigDecimal totalInterest) {
+        String auditSql = "INSERT INTO audit_log (action_type, entity_type, entity_id, description) VALUES (?, ?, ?, ?)";
+        Connection connection = connectionManager.getConnection(ConnectionLane.REPORTING);
+        try (PreparedStatement auditStmt = InstrumentedStatements.prepare(connection, "audit_log.insert", auditSql)) {
+            auditStmt.setString(1, "INTEREST_ACCRUAL");
+            auditStmt.setString(2, "BATCH");
+            auditStmt.setString(3, businessDate.toString());
+            auditStmt.setString(4, "Accrued " + totalInterest + " on " + accounts + " accounts");
+            auditStmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new DatabaseException("Error recording interest accrual audit entry: " + e.getMessage(), e);
+        } finally {
+            connectionManager.releaseConnection(connection);
+        }
+    }
+    
+    /**
+     * An account ID range (lowerBound, upperBound]; null bounds are open.
+     */
+    private static final class Range {
+        final int id;
+        final String lowerBound;
+        final String upperBound;
+        String lastAccountId;
+        boolean completed;
+        
+        Range(int id, String lowerBound, String upperBound) {
+            this.id = id;
+            this.lowerBound = lowerBound;
+            this.upperBound = upperBound;
+        }
+    }
+    
+    /**
+     * Result of one committed chunk.
+     */
+    private static final class Chunk {
+        final Map<String, BigDecimal> postings;
+        final String lastAccountId;
+        final boolean last;
+        
+        Chunk(Map<String, BigDecimal> postings, String lastAccountId, boolean last) {
+            this.postings = postings;
+            this.lastAccountId = lastAccountId;
+            this.last = last;
+        }
+    }
+}
@@ -0,0 +1,521 @@
+package bank.batch;
+
+import bank.archive.TransactionArchive;
+import bank.archive.TransactionSegment;
+import bank.database.AccountSlots;
+import bank.database.ConnectionLane;
+import bank.database.DatabaseConnectionManager;
+import bank.database.DatabaseException;
+import bank.database.InstrumentedStatements;
+import bank.database.TransactionService;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Recomputes every account's balance from its transactions and compares it
+ * with {@code accounts.balance}, plus the sub-ledger slots of striped accounts.
+ * <p>
+ * The ledger balance of an account is its {@code opening_balance} plus
+ * deposits, incoming transfers and interest, minus withdrawals and outgoing
+ * transfers, over both the {@code transactions} table and the months moved to
+ * the {@link TransactionArchive}. Accounts are split into ID ranges that are
+ * scanned in parallel on virtual threads. Each range is one streaming query
+ * joining the accounts with their aggregated transactions, so the balance and
+ * the ledger come from the same consistent read and no locks are taken.
+ * <p>
+ * Each range reads the archive through a snapshot taken before its query,
+ * which fixes the month the hot rows start at. Tiering may publish a month
+ * and delete its rows meanwhile, here or in another process; a range that
+ * sees the archive change by the end of its scan is scanned again on a new
+ * snapshot, so rows are neither counted twice nor missed.
+ * <p>
+ * Rows dated before the hot start that are still in the database, such as
+ * back-dated corrections to archived months that tiering has not merged
+ * yet, count unless the archive already holds them.
+ * <p>
+ * With repair enabled, each drifted account is rechecked and corrected in its
+ * own short transaction that locks only that account's row and slots, so postings made
+ * since the scan are taken into account and the table is never locked for
+ * long. Every correction is written to the audit log, and to the outbox if
+ * enabled.
+ */
+public class LedgerReconciliationJob {
+    private static final Logger logger = LoggerFactory.getLogger(LedgerReconciliationJob.class);
+    private static final String NET_AMOUNT =
+        "SUM(CASE WHEN transaction_type IN ('DEPOSIT', 'TRANSFER_IN', 'INTEREST') THEN amount ELSE -amount END)";
+    
+    private final DatabaseConnectionManager connectionManager;
+    private final AccountSlots accountSlots;
+    private final TransactionArchive archive;
+    private final int parallelism;
+    private final boolean repair;
+    private final Duration progressInterval;
+    private volatile boolean outboxEnabled;
+    
+    /**
+     * @param parallelism Number of ranges scanned at once; each holds one pooled connection
+     * @param repair Whether drifted balances are corrected
+     */
+    public LedgerReconciliationJob(int parallelism, boolean repair) {
+        this(TransactionArchive.getInstance(), parallelism, repair, Duration.ofSeconds(10));
+    }
+    
+    /**
+     * @param archive Archived months included in the ledger
+     * @param parallelism Number of ranges scanned at once; each holds one pooled connection
+     * @param repair Whether drifted balances are corrected
+     * @param progressInterval How often throughput is logged while the job runs
+     */
+    public LedgerReconciliationJob(TransactionArchive archive, int parallelism, boolean repair,
+                                   Duration progressInterval) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.connectionManager = DatabaseConnectionManager.getInstance();
+        this.accountSlots = AccountSlots.getInstance();
+        this.archive = archive;
+        this.parallelism = parallelism;
+        this.repair = repair;
+        this.progressInterval = progressInterval;
+    }
+    
+    /**
+     * Chooses whether each repair also writes a {@code LEDGER_REPAIR} event,
+     * carrying the signed change to the balance, to the {@code outbox} table
+     * in the repair's transaction.
+     * @param outboxEnabled true to write outbox events
+     */
+    public void setOutboxEnabled(boolean outboxEnabled) {
+        this.outboxEnabled = outboxEnabled;
+    }
+    
+    /**
+     * Scans all accounts once.
+     * @return The discrepancies found, and which of them were repaired
+     */
+    public Report run() {
+        long start = System.nanoTime();
+        List<String[]> ranges = splitRanges();
+        
+        AtomicLong scanned = new AtomicLong();
+        List<Discrepancy> discrepancies = Collections.synchronizedList(new ArrayList<>());
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ledger-reconciliation-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        progress.scheduleAtFixedRate(() -> {
+            long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+            logger.info("Reconciled {} accounts ({} accounts/s), {} discrepancies", scanned.get(),
+                        scanned.get() * 1000 / elapsedMillis, discrepancies.size());
+        }, progressInterval.toMillis(), progressInterval.toMillis(), TimeUnit.MILLISECONDS);
+        
+        Semaphore permits = new Semaphore(Math.min(parallelism, connectionManager.getMaxConnections(ConnectionLane.REPORTING)));
+        List<Future<?>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String[] range : ranges) {
+                futures.add(executor.submit(() -> {
+                    permits.acquireUninterruptibly();
+                    try {
+                        scanRange(range[0], range[1], scanned, discrepancies);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("Ledger reconciliation interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new DatabaseException("Ledger reconciliation failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            progress.shutdownNow();
+        }
+        
+        List<Discrepancy> found = new ArrayList<>(discrepancies);
+        found.sort((a, b) -> a.accountId.compareTo(b.accountId));
+        if (repair) {
+            for (Discrepancy discrepancy : found) {
+                discrepancy.repaired = repairAccount(discrepancy.accountId);
+            }
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        Report report = new Report(scanned.get(), found, elapsedMillis);
+        logger.info("Reconciled {} accounts in {} ms ({} accounts/s): {} discrepancies, {} repaired", report.accounts,
+                    elapsedMillis, report.accounts * 1000 / Math.max(1, elapsedMillis), found.size(),
+                    report.getRepairedCount());
+        return report;
+    }
+    
+    /**
+     * Splits the accounts into ID ranges (lower, upper]; null bounds are open.
+     */
+    private List<String[]> splitRanges() {
+        Connection connection = connectionManager.getConnection(ConnectionLane.REPORTING);
+        try {
+            // Several ranges per worker so faster ranges even out
+            List<String[]> ranges = new ArrayList<>();
+            String lower = null;
+            for (String upper : AccountRanges.upperBounds(connection, parallelism * 4, "accounts.reconcile_bounds")) {
+                ranges.add(new String[] {lower, upper});
+                lower = upper;
+            }
+            return ranges;
+        } catch (SQLException e) {
+            throw new DatabaseException("Error splitting accounts for reconciliation: " + e.getMessage(), e);
+        } finally {
+            connectionManager.releaseConnection(connection);
+        }
+    }
+    
+    /**
+     * Start of the rows read from the database rather than the archive: the
+     * month after the last archived one, so rows that are archived but not
+     * yet deleted are not counted twice.
+     * @return The start, or null if nothing is archived
+     */
+    private static Timestamp hotStart(TransactionArchive snapshot) {
+        Collection<YearMonth> months = snapshot.months();
+        return months.isEmpty() ? null : Timestamp.valueOf(Collections.max(months).plusMonths(1).atDay(1).atStartOfDay());
+    }
+    
+    /**
+     * Scans a range, again on a fresh snapshot for as long as the archive
+     * changes during the scan.
+     */
+    private void scanRange(String lower, String upper, AtomicLong scanned, List<Discrepancy> discrepancies) {
+        while (true) {
+            TransactionArchive snapshot = archive.snapshot();
+            List<Discrepancy> found = new ArrayList<>();
+            long accounts = scanRange(lower, upper, snapshot, scanned, found);
+            if (!archive.changedSince(snapshot)) {
+                discrepancies.addAll(found);
+                return;
+            }
+            scanned.addAndGet(-accounts);
+            logger.info("Transaction archive changed while reconciling accounts after {}; rescanning them", lower);
+        }
+    }
+    
+    /**
+     * @return Number of accounts scanned
+     */
+    private long scanRange(String lower, String upper, TransactionArchive snapshot, AtomicLong scanned,
+                           List<Discrepancy> discrepancies) {
+        Timestamp hotStart = hotStart(snapshot);
+        String rangeFilter = (lower != null ? " AND %1$s > ?" : "") + (upper != null ? " AND %1$s <= ?" : "");
+        String sql = "SELECT a.id, " + AccountSlots.balanceExpression("a") + " AS balance, a.opening_balance, t.net " +
+                     "FROM accounts a " +
+                     "LEFT JOIN (SELECT account_id, " + NET_AMOUNT + " AS net FROM (" +
+                     TransactionService.accountEntriesSql("1 = 1" + rangeFilter +
+                                                          (hotStart != null ? " AND transaction_date >= ?" : "")) +
+                     ") e GROUP BY account_id) t ON t.account_id = a.id " +
+                     "WHERE 1 = 1" + String.format(rangeFilter, "a.id") + " ORDER BY a.id";
+        
+        Connection connection = connectionManager.getConnection(ConnectionLane.REPORTING);
+        try {
+            List<String> bounds = new ArrayList<>();
+            if (lower != null) {
+                bounds.add(lower);
+            }
+            if (upper != null) {
+                bounds.add(upper);
+            }
+            Map<String, List<TransactionSegment.Row>> coldRows = readColdRows(connection, "1 = 1" + rangeFilter, bounds,
+                                                                              hotStart);
+            return scanRange(connection, sql, lower, upper, hotStart, snapshot, coldRows, scanned, discrepancies);
+        } catch (SQLException e) {
+            throw new DatabaseException("Error reconciling accounts after " + lower + ": " + e.getMessage(), e);
+        } finally {
+            connectionManager.releaseConnection(connection);
+        }
+    }
+    
+    private long scanRange(Connection connection, String sql, String lower, String upper, Timestamp hotStart,
+                           TransactionArchive snapshot, Map<String, List<TransactionSegment.Row>> coldRows,
+                           AtomicLong scanned, List<Discrepancy> discrepancies) throws SQLException {
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "accounts.reconcile_scan", sql)) {
+            int index = 1;
+            // Both halves of the ledger view take the range and hot start; the outer query only the range
+            for (int pass = 0; pass < 3; pass++) {
+                if (lower != null) {
+                    stmt.setString(index++, lower);
+                }
+                if (upper != null) {
+                    stmt.setString(index++, upper);
+                }
+                if (pass < 2 && hotStart != null) {
+                    stmt.setTimestamp(index++, hotStart);
+                }
+            }
+            stmt.setFetchSize(1000);
+            long accounts = 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String accountId = rs.getString("id");
+                    BigDecimal balance = rs.getBigDecimal("balance");
+                    BigDecimal ledger = ledgerBalance(snapshot, accountId, rs.getBigDecimal("opening_balance"),
+                                                      rs.getBigDecimal("net"), coldRows.get(accountId));
+                    if (balance.compareTo(ledger) != 0) {
+                        discrepancies.add(new Discrepancy(accountId, balance, ledger));
+                    }
+                    scanned.incrementAndGet();
+                    accounts++;
+                }
+            }
+            return accounts;
+        }
+    }
+    
+    /**
+     * Reads the rows still in the database from before the hot start, by
+     * account. They are few: corrections posted into archived months, and
+     * rows of a month being tiered that are archived but not yet deleted.
+     * @param condition Filter with {@code %1$s} for the account column
+     * @param params Values bound to the condition
+     */
+    private static Map<String, List<TransactionSegment.Row>> readColdRows(Connection connection, String condition,
+                                                                           List<String> params, Timestamp hotStart)
+            throws SQLException {
+        Map<String, List<TransactionSegment.Row>> rows = new HashMap<>();
+        if (hotStart == null) {
+            return rows;
+        }
+        String sql = "SELECT id, account_id, transaction_type, amount, related_account_id, transaction_date FROM (" +
+                     TransactionService.accountEntriesSql(condition + " AND transaction_date < ?") + ") e";
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "transactions.reconcile_cold", sql)) {
+            int index = 1;
+            for (int half = 0; half < 2; half++) {
+                for (String param : params) {
+                    stmt.setString(index++, param);
+                }
+                stmt.setTimestamp(index++, hotStart);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows.computeIfAbsent(rs.getString("account_id"), id -> new ArrayList<>())
+                        .add(new TransactionSegment.Row(rs.getLong("id"), rs.getString("account_id"),
+                                                        rs.getString("transaction_type"), rs.getBigDecimal("amount"),
+                                                        rs.getString("related_account_id"),
+                                                        rs.getTimestamp("transaction_date").getTime()));
+                }
+            }
+        }
+        return rows;
+    }
+    
+    private static BigDecimal ledgerBalance(TransactionArchive snapshot, String accountId, BigDecimal openingBalance,
+                                            BigDecimal hotNet, List<TransactionSegment.Row> coldRows) {
+        BigDecimal ledger = openingBalance.add(hotNet != null ? hotNet : BigDecimal.ZERO);
+        Set<Long> archivedIds = coldRows != null ? new HashSet<>() : null;
+        for (TransactionSegment.Row row : snapshot.read(accountId, Long.MIN_VALUE, Long.MAX_VALUE)) {
+            ledger = isCredit(row.type) ? ledger.add(row.amount) : ledger.subtract(row.amount);
+            if (archivedIds != null) {
+                archivedIds.add(row.id);
+            }
+        }
+        if (coldRows != null) {
+            for (TransactionSegment.Row row : coldRows) {
+                if (!archivedIds.contains(row.id)) {
+                    ledger = isCredit(row.type) ? ledger.add(row.amount) : ledger.subtract(row.amount);
+                }
+            }
+        }
+        return ledger;
+    }
+    
+    private static boolean isCredit(String type) {
+        return "DEPOSIT".equals(type) || "TRANSFER_IN".equals(type) || "INTEREST".equals(type);
+    }
+    
+    private enum RepairOutcome {
+        REPAIRED,
+        RESOLVED,
+        ARCHIVE_CHANGED
+    }
+    
+    /**
+     * Rechecks one account under a row lock and corrects its balance if it
+     * still differs from the ledger, again on a fresh snapshot if the
+     * archive changed while the ledger was read.
+     * @return Whether the balance was changed
+     */
+    private boolean repairAccount(String accountId) {
+        while (true) {
+            RepairOutcome outcome = repairAccount(accountId, archive.snapshot());
+            if (outcome != RepairOutcome.ARCHIVE_CHANGED) {
+                return outcome == RepairOutcome.REPAIRED;
+            }
+        }
+    }
+    
+    private RepairOutcome repairAccount(String accountId, TransactionArchive snapshot) {
+        Timestamp hotStart = hotStart(snapshot);
+        String lockSql = "SELECT balance, opening_balance FROM accounts WHERE id = ? FOR UPDATE";
+        String netSql = "SELECT " + NET_AMOUNT + " AS net FROM (" +
+                        TransactionService.accountEntriesSql("%1$s = ?" + (hotStart != null ? " AND transaction_date >= ?" : "")) +
+                        ") e";
+        String updateSql = "UPDATE accounts SET balance = ? WHERE id = ?";
+        String auditSql = "INSERT INTO audit_log (action_type, entity_type, entity_id, description) VALUES (?, ?, ?, ?)";
+        
+        Connection connection = connectionManager.getConnection(ConnectionLane.REPORTING);
+        try {
+            connection.setAutoCommit(false);
+            
+            BigDecimal balance;
+            BigDecimal openingBalance;
+            try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "accounts.reconcile_lock", lockSql)) {
+                stmt.setString(1, accountId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (!rs.next()) {
+                        connection.rollback();
+                        return RepairOutcome.RESOLVED;  // Account was deleted since the scan
+                    }
+                    balance = rs.getBigDecimal("balance");
+                    openingBalance = rs.getBigDecimal("opening_balance");
+                }
+            }
+            // Striped accounts keep most of their balance in slots; the correction goes to the account row
+            BigDecimal slotTotal = accountSlots.lockSlots(connection, accountId);
+            balance = balance.add(slotTotal);
+            BigDecimal net;
+            try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "transactions.reconcile_net", netSql)) {
+                for (int half = 0, index = 1; half < 2; half++) {
+                    stmt.setString(index++, accountId);
+                    if (hotStart != null) {
+                        stmt.setTimestamp(index++, hotStart);
+                    }
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    net = rs.next() ? rs.getBigDecimal("net") : null;
+                }
+            }
+            List<TransactionSegment.Row> coldRows = readColdRows(connection, "%1$s = ?", List.of(accountId), hotStart)
+                .get(accountId);
+            BigDecimal ledger = ledgerBalance(snapshot, accountId, openingBalance, net, coldRows);
+            if (archive.changedSince(snapshot)) {
+                connection.rollback();
+                return RepairOutcome.ARCHIVE_CHANGED;  // Rows may have left the database after the snapshot
+            }
+            if (balance.compareTo(ledger) == 0) {
+                connection.rollback();
+                return RepairOutcome.RESOLVED;  // Resolved by postings that were in flight during the scan
+            }
+            
+            try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "accounts.reconcile_repair", updateSql)) {
+                stmt.setBigDecimal(1, ledger.subtract(slotTotal));
+                stmt.setString(2, accountId);
+                stmt.executeUpdate();
+            }
+            try (PreparedStatement auditStmt = InstrumentedStatements.prepare(connection, "audit_log.insert", auditSql)) {
+                auditStmt.setString(1, "LEDGER_REPAIR");
+                auditStmt.setString(2, "ACCOUNT");
+                auditStmt.setString(3, accountId);
+                auditStmt.setString(4, "Balance corrected from " + balance + " to " + ledger);
+                auditStmt.executeUpdate();
+            }
+            if (outboxEnabled) {
+                String outboxSql = "INSERT INTO outbox (event_type, account_id, amount) VALUES ('LEDGER_REPAIR', ?, ?)";
+                try (PreparedStatement outboxStmt = InstrumentedStatements.prepare(connection, "outbox.repair_insert", outboxSql)) {
+                    outboxStmt.setString(1, accountId);
+                    outboxStmt.setBigDecimal(2, ledger.subtract(balance));
+                    outboxStmt.executeUpdate();
+                }
+            }
+            
+            connection.commit();
+            logger.warn("Corrected balance of account {} from {} to {}", accountId, balance, ledger);
+            return RepairOutcome.REPAIRED;
+        } catch (SQLException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackEx) {
+                throw new DatabaseException("Error rolling back transaction", rollbackEx);
+            }
+            throw new DatabaseException("Error repairing account " + accountId + ": " + e.getMessage(), e);
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+                connectionManager.releaseConnection(connection);
+            } catch (SQLException e) {
+                throw new DatabaseException("Error resetting auto-commit", e);
+            }
+        }
+    }
+    
+    /**
+     * An account whose stored balance differs from its ledger.
+     */
+    public static final class Discrepancy {
+        public final String accountId;
+        public final BigDecimal recordedBalance;
+        public final BigDecimal ledgerBalance;
+        volatile boolean repaired;
+        
+        Discrepancy(String accountId, BigDecimal recordedBalance, BigDecimal ledgerBalance) {
+            this.accountId = accountId;
+            this.recordedBalance = recordedBalance;
+            this.ledgerBalance = ledgerBalance;
+        }
+        
+        /**
+         * Recorded minus ledger balance; positive when the account holds more than its history explains.
+         */
+        public BigDecimal getDifference() {
+            return recordedBalance.subtract(ledgerBalance);
+        }
+        
+        public boolean isRepaired() {
+            return repaired;
+        }
+    }
+    
+    /**
+     * Outcome of one reconciliation run.
+     */
+    public static final class Report {
+        public final long accounts;
+        public final List<Discrepancy> discrepancies;
+        public final long elapsedMillis;
+        
+        Report(long accounts, List<Discrepancy> discrepancies, long elapsedMillis) {
+            this.accounts = accounts;
+            this.discrepancies = Collections.unmodifiableList(discrepancies);
+            this.elapsedMillis = elapsedMillis;
+        }
+        
+        public long getRepairedCount() {
+            return discrepancies.stream().filter(Discrepancy::isRepaired).count();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package bank.batch;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command line entry point for {@link LedgerReconciliationJob}.
+ * <p>
+ * Usage: {@code ReconcileLedger [--parallelism 8] [--repair true] [--report discrepancies.csv]}.
+ * The report lists one drifted account per line as
+ * {@code account_id,recorded_balance,ledger_balance,difference,repaired}; without
+ * {@code --report} it is printed to standard output. The exit status is 1 when
+ * any unrepaired discrepancy remains.
+ * <p>
+ * It may run while the application keeps tiering transactions into the same
+ * archive directory; segments written meanwhile are reloaded from disk.
+ */
+public class ReconcileLedger {
+    
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Expected --option value pairs, got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        
+        LedgerReconciliationJob job = new LedgerReconciliationJob(Integer.parseInt(options.getOrDefault("parallelism", "8")),
+                                                                  Boolean.parseBoolean(options.get("repair")));
+        LedgerReconciliationJob.Report report = job.run();
+        
+        String reportFile = options.get("report");
+        try (PrintWriter out = reportFile != null
+                 ? new PrintWriter(Files.newBufferedWriter(Paths.get(reportFile)))
+                 : new PrintWriter(System.out)) {
+            out.println("account_id,recorded_balance,ledger_balance,difference,repaired");
+            for (LedgerReconciliationJob.Discrepancy discrepancy : report.discrepancies) {
+                out.println(discrepancy.accountId + "," + discrepancy.recordedBalance.toPlainString() + "," +
+                            discrepancy.ledgerBalance.toPlainString() + "," +
+                            discrepancy.getDifference().toPlainString() + "," + discrepancy.isRepaired());
+            }
+        }
+        System.err.println(report.accounts + " accounts checked, " + report.discrepancies.size() +
+                           " discrepancies, " + report.getRepairedCount() + " repaired in " +
+                           report.elapsedMillis + " ms");
+        System.exit(report.discrepancies.size() > report.getRepairedCount() ? 1 : 0);
+    }
+}
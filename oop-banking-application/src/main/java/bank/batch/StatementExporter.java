@@ -0,0 +1,454 @@
+package bank.batch;
+
+import bank.archive.TransactionSegment;
+import bank.database.ConnectionLane;
+import bank.database.DatabaseConnectionManager;
+import bank.database.DatabaseException;
+import bank.database.TransactionService;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exports the transactions of every account over a period to files, for
+ * bulk statement requests.
+ * <p>
+ * Accounts are split into ID shards that are exported in parallel on virtual
+ * threads. Each shard streams its rows from
+ * {@link TransactionService#streamTransactions} straight into a sequence of
+ * part files, so memory use is bounded however many accounts a shard holds.
+ * A part is closed at the first account boundary after it reaches the
+ * configured size, and the shard's checkpoint file then records the part
+ * count and the last account written. Rerunning an interrupted export in the
+ * same directory deletes any unfinished part and continues every shard after
+ * its checkpoint. The shard bounds and export parameters are kept in
+ * {@code export.properties}, so a rerun with different parameters is refused.
+ * <p>
+ * Part files are named {@code shard-NNN-part-NNNNN.csv} or {@code .bin}, plus
+ * {@code .gz} when compressed. CSV parts start with the header
+ * {@code account_id,transaction_id,transaction_date,transaction_type,amount,related_account_id}.
+ * Binary parts start with the int magic {@code "BSTX"} and a short version,
+ * followed by records of: UTF account ID | long transaction ID | long date
+ * (epoch millis) | UTF type | long amount (unscaled, scale 4) | UTF related
+ * account ID (empty for none).
+ */
+public class StatementExporter {
+    private static final Logger logger = LoggerFactory.getLogger(StatementExporter.class);
+    private static final String MANIFEST = "export.properties";
+    private static final int BINARY_MAGIC = 0x42535458;  // "BSTX"
+    private static final short BINARY_VERSION = 1;
+    private static final int AMOUNT_SCALE = 4;
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    
+    public enum Format { CSV, BINARY }
+    
+    public enum Compression { GZIP, NONE }
+    
+    private final DatabaseConnectionManager connectionManager;
+    private final TransactionService transactionService;
+    private final Path directory;
+    private final Format format;
+    private final Compression compression;
+    private final int shards;
+    private final int parallelism;
+    private final long rowsPerPart;
+    
+    /**
+     * @param directory Output directory, also holding the checkpoints
+     * @param format Record format
+     * @param compression Compression applied to each part file
+     * @param shards Number of account shards; ignored when resuming
+     * @param parallelism Number of shards exported at once; each holds one pooled connection
+     * @param rowsPerPart Rows after which a part is closed at the next account boundary
+     */
+    public StatementExporter(Path directory, Format format, Compression compression, int shards, int parallelism,
+                             long rowsPerPart) {
+        if (shards < 1 || parallelism < 1 || rowsPerPart < 1) {
+            throw new IllegalArgumentException("Shards, parallelism and rows per part must be positive");
+        }
+        this.connectionManager = DatabaseConnectionManager.getInstance();
+        this.transactionService = new TransactionService();
+        this.directory = directory;
+        this.format = format;
+        this.compression = compression;
+        this.shards = shards;
+        this.parallelism = parallelism;
+        this.rowsPerPart = rowsPerPart;
+    }
+    
+    /**
+     * Exports the period, resuming an interrupted export in the same directory.
+     *
+     * @param startDate Start of the period
+     * @param endDate End of the period
+     * @return Summary with rows, shards, parts and elapsedMillis
+     */
+    public Map<String, Object> export(Date startDate, Date endDate) {
+        long start = System.nanoTime();
+        List<Shard> shardList;
+        try {
+            Files.createDirectories(directory);
+            shardList = loadOrCreateManifest(startDate, endDate);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error preparing export in " + directory, e);
+        }
+        
+        AtomicLong rows = new AtomicLong();
+        Semaphore permits = new Semaphore(Math.min(parallelism, connectionManager.getMaxConnections(ConnectionLane.REPORTING)));
+        List<Future<?>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Shard shard : shardList) {
+                futures.add(executor.submit(() -> {
+                    permits.acquireUninterruptibly();
+                    try {
+                        exportShard(shard, startDate, endDate, rows);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Error exporting shard " + shard.id, e);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("Statement export interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new DatabaseException("Statement export failed: " + e.getCause().getMessage(), e.getCause());
+        }
+        
+        long totalRows = 0;
+        int parts = 0;
+        for (Shard shard : shardList) {
+            totalRows += shard.rows;
+            parts += shard.parts;
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        logger.info("Exported {} transactions ({} in this run) to {} parts in {} in {} ms ({} rows/s)", totalRows,
+                    rows.get(), parts, directory, elapsedMillis, rows.get() * 1000 / Math.max(1, elapsedMillis));
+        
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("rows", totalRows);
+        summary.put("shards", shardList.size());
+        summary.put("parts", parts);
+        summary.put("elapsedMillis", elapsedMillis);
+        return summary;
+    }
+    
+    private List<Shard> loadOrCreateManifest(Date startDate, Date endDate) throws IOException {
+        Path manifestFile = directory.resolve(MANIFEST);
+        Properties manifest = new Properties();
+        if (Files.exists(manifestFile)) {
+            try (InputStream in = Files.newInputStream(manifestFile)) {
+                manifest.load(in);
+            }
+            if (!String.valueOf(startDate.getTime()).equals(manifest.getProperty("start")) ||
+                !String.valueOf(endDate.getTime()).equals(manifest.getProperty("end")) ||
+                !format.name().equals(manifest.getProperty("format")) ||
+                !compression.name().equals(manifest.getProperty("compression"))) {
+                throw new IllegalStateException(directory + " holds an export with different parameters");
+            }
+            logger.info("Resuming statement export in {}", directory);
+        } else {
+            List<String> upperBounds;
+            Connection connection = connectionManager.getConnection(ConnectionLane.REPORTING);
+            try {
+                upperBounds = AccountRanges.upperBounds(connection, shards, "accounts.export_bounds");
+            } catch (SQLException e) {
+                throw new DatabaseException("Error splitting accounts for export: " + e.getMessage(), e);
+            } finally {
+                connectionManager.releaseConnection(connection);
+            }
+            manifest.setProperty("start", String.valueOf(startDate.getTime()));
+            manifest.setProperty("end", String.valueOf(endDate.getTime()));
+            manifest.setProperty("format", format.name());
+            manifest.setProperty("compression", compression.name());
+            manifest.setProperty("shards", String.valueOf(upperBounds.size()));
+            String lower = null;
+            for (int i = 0; i < upperBounds.size(); i++) {
+                setIfNotNull(manifest, "shard." + i + ".lower", lower);
+                setIfNotNull(manifest, "shard." + i + ".upper", upperBounds.get(i));
+                lower = upperBounds.get(i);
+            }
+            store(manifest, manifestFile);
+        }
+        
+        List<Shard> shardList = new ArrayList<>();
+        int count = Integer.parseInt(manifest.getProperty("shards"));
+        for (int i = 0; i < count; i++) {
+            Shard shard = new Shard(i, manifest.getProperty("shard." + i + ".lower"),
+                                    manifest.getProperty("shard." + i + ".upper"));
+            Path checkpointFile = shard.checkpointFile();
+            if (Files.exists(checkpointFile)) {
+                Properties checkpoint = new Properties();
+                try (InputStream in = Files.newInputStream(checkpointFile)) {
+                    checkpoint.load(in);
+                }
+                shard.lastAccountId = checkpoint.getProperty("lastAccountId");
+                shard.parts = Integer.parseInt(checkpoint.getProperty("parts"));
+                shard.rows = Long.parseLong(checkpoint.getProperty("rows"));
+                shard.completed = Boolean.parseBoolean(checkpoint.getProperty("completed"));
+            }
+            shardList.add(shard);
+        }
+        return shardList;
+    }
+    
+    private void exportShard(Shard shard, Date startDate, Date endDate, AtomicLong rows) throws IOException {
+        if (shard.completed) {
+            return;
+        }
+        // Parts past the checkpoint were interrupted before it was saved
+        String partPrefix = String.format("shard-%03d-part-", shard.id);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(partPrefix) &&
+                    Integer.parseInt(name.substring(partPrefix.length(), partPrefix.length() + 5)) >= shard.parts) {
+                    Files.delete(file);
+                }
+            }
+        }
+        
+        String after = shard.lastAccountId != null ? shard.lastAccountId : shard.lowerBound;
+        try (ShardWriter writer = new ShardWriter(shard, rows)) {
+            transactionService.streamTransactions(after, shard.upperBound, startDate, endDate, writer);
+            writer.finish();
+        }
+    }
+    
+    private void saveCheckpoint(Shard shard) throws IOException {
+        Properties checkpoint = new Properties();
+        setIfNotNull(checkpoint, "lastAccountId", shard.lastAccountId);
+        checkpoint.setProperty("parts", String.valueOf(shard.parts));
+        checkpoint.setProperty("rows", String.valueOf(shard.rows));
+        checkpoint.setProperty("completed", String.valueOf(shard.completed));
+        store(checkpoint, shard.checkpointFile());
+    }
+    
+    private static void setIfNotNull(Properties properties, String key, String value) {
+        if (value != null) {
+            properties.setProperty(key, value);
+        }
+    }
+    
+    /**
+     * Writes a properties file atomically, so a crash never leaves a torn checkpoint.
+     */
+    private static void store(Properties properties, Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            properties.store(out, null);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    /**
+     * An account ID shard (lowerBound, upperBound]; null bounds are open.
+     */
+    private final class Shard {
+        final int id;
+        final String lowerBound;
+        final String upperBound;
+        String lastAccountId;
+        int parts;
+        long rows;
+        boolean completed;
+        
+        Shard(int id, String lowerBound, String upperBound) {
+            this.id = id;
+            this.lowerBound = lowerBound;
+            this.upperBound = upperBound;
+        }
+        
+        Path checkpointFile() {
+            return directory.resolve(String.format("shard-%03d.checkpoint", id));
+        }
+        
+        Path partFile(int part) {
+            String extension = (format == Format.CSV ? ".csv" : ".bin") + (compression == Compression.GZIP ? ".gz" : "");
+            return directory.resolve(String.format("shard-%03d-part-%05d%s", id, part, extension));
+        }
+    }
+    
+    /**
+     * Receives a shard's rows and rolls part files at account boundaries.
+     */
+    private final class ShardWriter implements TransactionService.TransactionSink, AutoCloseable {
+        private final Shard shard;
+        private final AtomicLong totalRows;
+        private OutputStream part;
+        private BufferedWriter csv;
+        private DataOutputStream binary;
+        private long partRows;
+        private String currentAccount;
+        
+        ShardWriter(Shard shard, AtomicLong totalRows) {
+            this.shard = shard;
+            this.totalRows = totalRows;
+        }
+        
+        @Override
+        public void accept(TransactionSegment.Row row) throws IOException {
+            if (!row.accountId.equals(currentAccount)) {
+                if (part != null && partRows >= rowsPerPart) {
+                    closePart();
+                }
+                currentAccount = row.accountId;
+            }
+            if (part == null) {
+                openPart();
+            }
+            if (csv != null) {
+                csv.write(row.accountId);
+                csv.write(',');
+                csv.write(Long.toString(row.id));
+                csv.write(',');
+                csv.write(DATE_FORMAT.format(Instant.ofEpochMilli(row.dateMillis).atZone(ZoneId.systemDefault())));
+                csv.write(',');
+                csv.write(row.type);
+                csv.write(',');
+                csv.write(row.amount.toPlainString());
+                csv.write(',');
+                csv.write(row.relatedAccountId != null ? row.relatedAccountId : "");
+                csv.write('\n');
+            } else {
+                binary.writeUTF(row.accountId);
+                binary.writeLong(row.id);
+                binary.writeLong(row.dateMillis);
+                binary.writeUTF(row.type);
+                binary.writeLong(row.amount.setScale(AMOUNT_SCALE).unscaledValue().longValueExact());
+                binary.writeUTF(row.relatedAccountId != null ? row.relatedAccountId : "");
+            }
+            partRows++;
+            totalRows.incrementAndGet();
+        }
+        
+        private void openPart() throws IOException {
+            OutputStream out = new BufferedOutputStream(Files.newOutputStream(shard.partFile(shard.parts)), 64 * 1024);
+            part = compression == Compression.GZIP ? new GZIPOutputStream(out, 64 * 1024) : out;
+            if (format == Format.CSV) {
+                csv = new BufferedWriter(new OutputStreamWriter(part, StandardCharsets.UTF_8), 64 * 1024);
+                csv.write("account_id,transaction_id,transaction_date,transaction_type,amount,related_account_id\n");
+            } else {
+                binary = new DataOutputStream(part);
+                binary.writeInt(BINARY_MAGIC);
+                binary.writeShort(BINARY_VERSION);
+            }
+            partRows = 0;
+        }
+        
+        /**
+         * Completes the current part and checkpoints everything up to the
+         * account written last.
+         */
+        private void closePart() throws IOException {
+            if (csv != null) {
+                csv.close();
+            } else {
+                binary.close();
+            }
+            part = null;
+            csv = null;
+            binary = null;
+            shard.parts++;
+            shard.rows += partRows;
+            shard.lastAccountId = currentAccount;
+            saveCheckpoint(shard);
+        }
+        
+        /**
+         * Closes the last part and marks the shard complete.
+         */
+        void finish() throws IOException {
+            if (part != null) {
+                closePart();
+            }
+            shard.completed = true;
+            saveCheckpoint(shard);
+            logger.info("Exported shard {}: {} transactions in {} parts", shard.id, shard.rows, shard.parts);
+        }
+        
+        /**
+         * Releases an unfinished part after a failure; the next run deletes it.
+         */
+        @Override
+        public void close() throws IOException {
+            if (part != null) {
+                part.close();
+                part = null;
+            }
+        }
+    }
+    
+    /**
+     * Usage: {@code StatementExporter --from 2026-01-01 --to 2026-03-31 [--dir export] [--format CSV|BINARY]
+     * [--compression GZIP|NONE] [--shards 32] [--parallelism 8] [--part-rows 1000000]}.
+     * The period covers both dates in full.
+     */
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Expected --option value pairs, got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        if (!options.containsKey("from") || !options.containsKey("to")) {
+            throw new IllegalArgumentException("--from and --to are required");
+        }
+        
+        ZoneId zone = ZoneId.systemDefault();
+        Date startDate = Date.from(LocalDate.parse(options.get("from")).atStartOfDay(zone).toInstant());
+        Date endDate = Date.from(LocalDate.parse(options.get("to")).plusDays(1).atStartOfDay(zone).toInstant()
+                                          .minusMillis(1));
+        StatementExporter exporter = new StatementExporter(
+            Paths.get(options.getOrDefault("dir", "export")),
+            Format.valueOf(options.getOrDefault("format", "CSV").toUpperCase()),
+            Compression.valueOf(options.getOrDefault("compression", "GZIP").toUpperCase()),
+            Integer.parseInt(options.getOrDefault("shards", "32")),
+            Integer.parseInt(options.getOrDefault("parallelism", "8")),
+            Long.parseLong(options.getOrDefault("part-rows", "1000000")));
+        Map<String, Object> summary = exporter.export(startDate, endDate);
+        System.out.println("Exported " + summary.get("rows") + " transactions in " + summary.get("parts") +
+                           " parts across " + summary.get("shards") + " shards in " + summary.get("elapsedMillis") + " ms");
+        DatabaseConnectionManager.getInstance().closeAllConnections();
+    }
+}
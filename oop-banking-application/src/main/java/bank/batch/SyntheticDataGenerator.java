@@ -0,0 +1,185 @@
+package bank.batch;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Writes a consistent synthetic dataset in the CSV layout read by
+ * {@link BulkLoader}.
+ * <p>
+ * Every customer owns one account, one in ten of them corporate with up to
+ * two co-owners. Each account's history starts with an opening deposit and
+ * continues with random deposits, withdrawals and transfers spread over the
+ * past year in date order. Withdrawals and transfers never overdraw, and the
+ * final balances in {@code accounts.csv} equal the replayed history, so the
+ * {@link LedgerReconciliationJob} finds no discrepancies after a load.
+ * <p>
+ * Usage: {@code SyntheticDataGenerator [--dir data] [--customers 100000]
+ * [--transactions 20] [--seed 42]}, where {@code --transactions} is the average
+ * number of postings per account.
+ */
+public class SyntheticDataGenerator {
+    private static final String[] FIRST_NAMES = {
+        "Ada", "Alan", "Barbara", "Claude", "Donald", "Edsger", "Frances", "Grace", "John", "Katherine",
+        "Leslie", "Margaret", "Niklaus", "Radia", "Shafi", "Tim"
+    };
+    private static final String[] LAST_NAMES = {
+        "Allen", "Dijkstra", "Hamilton", "Hopper", "Johnson", "Knuth", "Lamport", "Liskov", "Lovelace",
+        "McCarthy", "Perlman", "Shannon", "Turing", "Wirth"
+    };
+    
+    private final SplittableRandom random;
+    private final int customers;
+    private final int transactionsPerAccount;
+    
+    public SyntheticDataGenerator(int customers, int transactionsPerAccount, long seed) {
+        this.random = new SplittableRandom(seed);
+        this.customers = customers;
+        this.transactionsPerAccount = transactionsPerAccount;
+    }
+    
+    /**
+     * Writes customers.csv, accounts.csv, account_owners.csv and transactions.csv.
+     * @return Number of transaction rows written
+     */
+    public long generate(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        String[] accountIds = new String[customers];
+        long[] balanceCents = new long[customers];
+        
+        try (BufferedWriter customerOut = writer(directory.resolve(BulkLoader.Table.CUSTOMERS.fileName()));
+             BufferedWriter ownerOut = writer(directory.resolve(BulkLoader.Table.ACCOUNT_OWNERS.fileName()))) {
+            customerOut.write("id,first_name,last_name,birth_day\n");
+            ownerOut.write("account_id,customer_id\n");
+            LocalDate earliestBirthDay = LocalDate.of(1940, 1, 1);
+            for (int i = 0; i < customers; i++) {
+                String firstName = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+                String lastName = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+                customerOut.write(customerId(i) + "," + firstName + "," + lastName + "," +
+                                  earliestBirthDay.plusDays(random.nextInt(60 * 365)) + "\n");
+                accountIds[i] = (isCorporate(i) ? "C-" : "P-") + String.format("%010d", i);
+            }
+            for (int i = 0; i < customers; i++) {
+                if (isCorporate(i)) {
+                    // Ownership rows include the primary owner, as Bank records them
+                    ownerOut.write(accountIds[i] + "," + customerId(i) + "\n");
+                    int coOwners = customers > 1 ? random.nextInt(3) : 0;
+                    Map<Integer, Boolean> seen = new HashMap<>();
+                    seen.put(i, true);
+                    for (int k = 0; k < coOwners; k++) {
+                        int owner = random.nextInt(customers);
+                        if (seen.putIfAbsent(owner, true) == null) {
+                            ownerOut.write(accountIds[i] + "," + customerId(owner) + "\n");
+                        }
+                    }
+                }
+            }
+        }
+        
+        long rows = 0;
+        LocalDateTime start = LocalDateTime.now().minusYears(1).truncatedTo(ChronoUnit.DAYS);
+        long spanSeconds = ChronoUnit.SECONDS.between(start, LocalDateTime.now().minusMinutes(1));
+        long postings = (long) customers * Math.max(0, transactionsPerAccount - 1);
+        try (BufferedWriter out = writer(directory.resolve(BulkLoader.Table.TRANSACTIONS.fileName()))) {
+            out.write("account_id,transaction_type,amount,transaction_date,related_account_id\n");
+            // Opening deposits at the start of the period
+            String opening = timestamp(start);
+            for (int i = 0; i < customers; i++) {
+                balanceCents[i] = 10_000 + random.nextLong(1_000_000);
+                out.write(accountIds[i] + ",DEPOSIT," + amount(balanceCents[i]) + "," + opening + ",\n");
+                rows++;
+            }
+            for (long n = 0; n < postings; n++) {
+                String date = timestamp(start.plusSeconds(1 + spanSeconds * n / Math.max(1, postings)));
+                int account = random.nextInt(customers);
+                int kind = random.nextInt(10);
+                if (kind < 4) {
+                    long cents = 100 + random.nextLong(50_000);
+                    balanceCents[account] += cents;
+                    out.write(accountIds[account] + ",DEPOSIT," + amount(cents) + "," + date + ",\n");
+                    rows++;
+                } else if (kind < 7) {
+                    long cents = Math.min(balanceCents[account], 100 + random.nextLong(30_000));
+                    if (cents > 0) {
+                        balanceCents[account] -= cents;
+                        out.write(accountIds[account] + ",WITHDRAWAL," + amount(cents) + "," + date + ",\n");
+                        rows++;
+                    }
+                } else {
+                    int target = random.nextInt(customers);
+                    long cents = Math.min(balanceCents[account], 100 + random.nextLong(20_000));
+                    if (target != account && cents > 0) {
+                        balanceCents[account] -= cents;
+                        balanceCents[target] += cents;
+                        out.write(accountIds[account] + ",TRANSFER_OUT," + amount(cents) + "," + date + "," +
+                                  accountIds[target] + "\n");
+                        out.write(accountIds[target] + ",TRANSFER_IN," + amount(cents) + "," + date + "," +
+                                  accountIds[account] + "\n");
+                        rows += 2;
+                    }
+                }
+            }
+        }
+        
+        try (BufferedWriter out = writer(directory.resolve(BulkLoader.Table.ACCOUNTS.fileName()))) {
+            out.write("id,customer_id,account_type,balance,opening_balance\n");
+            for (int i = 0; i < customers; i++) {
+                out.write(accountIds[i] + "," + customerId(i) + "," + (isCorporate(i) ? "CORPORATE" : "PERSONAL") + "," +
+                          amount(balanceCents[i]) + ",0\n");
+            }
+        }
+        return rows;
+    }
+    
+    private static boolean isCorporate(int index) {
+        return index % 10 == 0;
+    }
+    
+    private static String customerId(int index) {
+        return "CUST" + String.format("%010d", index);
+    }
+    
+    private static String amount(long cents) {
+        return BigDecimal.valueOf(cents, 2).toPlainString();
+    }
+    
+    private static String timestamp(LocalDateTime dateTime) {
+        return Timestamp.valueOf(dateTime).toString().substring(0, 19);
+    }
+    
+    private static BufferedWriter writer(Path file) throws IOException {
+        return Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+    }
+    
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Expected --option value pairs, got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        
+        Path directory = Paths.get(options.getOrDefault("dir", "data"));
+        SyntheticDataGenerator generator =
+            new SyntheticDataGenerator(Integer.parseInt(options.getOrDefault("customers", "100000")),
+                                       Integer.parseInt(options.getOrDefault("transactions", "20")),
+                                       Long.parseLong(options.getOrDefault("seed", "42")));
+        long start = System.nanoTime();
+        long rows = generator.generate(directory);
+        System.out.println("Wrote " + rows + " transactions for " + options.getOrDefault("customers", "100000") +
+                           " customers to " + directory + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+}
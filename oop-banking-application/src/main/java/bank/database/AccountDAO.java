@@ -2,8 +2,11 @@ package bank.database;
 
 import bank.Account;
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Specific DAO interface for Account entity with additional methods.
@@ -17,6 +20,13 @@ public interface AccountDAO extends DAO<Account, String> {
      */
     List<String> findByCustomerId(String customerId);
     
+    /**
+     * Finds several accounts in one query.
+     * @param ids The account IDs
+     * @return Map of account ID to account; IDs not found are absent
+     */
+    Map<String, Account> findAllById(Collection<String> ids);
+    
     /**
      * Calculates the total balance across all accounts for a customer.
      * @param customerId The customer ID
@@ -31,4 +41,11 @@ public interface AccountDAO extends DAO<Account, String> {
      * @return true if updated successfully
      */
     boolean updateBalance(String accountId, BigDecimal newBalance);
+    
+    /**
+     * Retrieves the owners of every account, combining the primary owner
+     * with the co-owners recorded in account_owners.
+     * @return Map of account ID to owning customer IDs
+     */
+    Map<String, Set<String>> findAllOwners();
 }
\ No newline at end of file
@@ -9,14 +9,23 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Implementation of the AccountDAO interface for database operations.
  */
 public class AccountDAOImpl implements AccountDAO {
     
+    private static final String SLOT_TOTAL =
+        "COALESCE((SELECT SUM(s.balance) FROM account_slots s WHERE s.account_id = ?), 0)";
+    
     private DatabaseConnectionManager connectionManager;
     
     public AccountDAOImpl() {
@@ -25,17 +34,18 @@ public class AccountDAOImpl implements AccountDAO {
     
     @Override
     public Account save(Account account) {
-        String sql = "INSERT INTO accounts (id, balance, customer_id, account_type) VALUES (?, ?, ?, ?)";
+        String sql = "INSERT INTO accounts (id, balance, opening_balance, customer_id, account_type) VALUES (?, ?, ?, ?, ?)";
         
-        Connection connection = connectionManager.getConnection();
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        Connection connection = connectionManager.getConnection(ConnectionLane.TRANSACTIONAL);
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "accounts.insert", sql)) {
             stmt.setString(1, account.getId());
             stmt.setBigDecimal(2, account.getBalance());
-            stmt.setString(3, account.getCustomerId());
+            stmt.setBigDecimal(3, account.getBalance());
+            stmt.setString(4, account.getCustomerId());
             
             // Determine account type
             String accountType = account instanceof PersonalAccount ? "PERSONAL" : "CORPORATE";
-            stmt.setString(4, accountType);
+            stmt.setString(5, accountType);
             
             int affectedRows = stmt.executeUpdate();
             if (affectedRows == 0) {
@@ -52,10 +62,11 @@ public class AccountDAOImpl implements AccountDAO {
     
     @Override
     public Optional<Account> findById(String id) {
-        String sql = "SELECT id, balance, customer_id, account_type FROM accounts WHERE id = ?";
+        String sql = "SELECT a.id, " + AccountSlots.balanceExpression("a") + " AS balance, a.customer_id, a.account_type " +
+                     "FROM accounts a WHERE a.id = ?";
         
-        Connection connection = connectionManager.getConnection();
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        Connection connection = connectionManager.getConnection(ConnectionLane.POINT_READ);
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "accounts.find_by_id", sql)) {
             stmt.setString(1, id);
             
             ResultSet rs = stmt.executeQuery();
@@ -81,13 +92,51 @@ public class AccountDAOImpl implements AccountDAO {
         }
     }
     
+    @Override
+    public Map<String, Account> findAllById(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        String sql = "SELECT a.id, " + AccountSlots.balanceExpression("a") + " AS balance, a.customer_id, a.account_type " +
+                     "FROM accounts a WHERE a.id IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+        Map<String, Account> accounts = new HashMap<>();
+        
+        Connection connection = connectionManager.getConnection(ConnectionLane.POINT_READ);
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "accounts.find_all_by_id", sql)) {
+            int index = 1;
+            for (String id : ids) {
+                stmt.setString(index++, id);
+            }
+            
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                String accountId = rs.getString("id");
+                BigDecimal balance = rs.getBigDecimal("balance");
+                String customerId = rs.getString("customer_id");
+                String accountType = rs.getString("account_type");
+                
+                if ("PERSONAL".equals(accountType)) {
+                    accounts.put(accountId, new PersonalAccount(accountId, balance, customerId));
+                } else {
+                    accounts.put(accountId, new CorporateAccount(accountId, balance, customerId));
+                }
+            }
+            return accounts;
+        } catch (SQLException e) {
+            throw new DatabaseException("Error finding accounts: " + e.getMessage(), e);
+        } finally {
+            connectionManager.releaseConnection(connection);
+        }
+    }
+    
     @Override
     public List<Account> findAll() {
-        String sql = "SELECT id, balance, customer_id, account_type FROM accounts";
+        String sql = "SELECT a.id, " + AccountSlots.balanceExpression("a") + " AS balance, a.customer_id, a.account_type " +
+                     "FROM accounts a";
         List<Account> accounts = new ArrayList<>();
         
-        Connection connection = connectionManager.getConnection();
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        Connection connection = connectionManager.getConnection(ConnectionLane.REPORTING);
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "accounts.find_all", sql)) {
             ResultSet rs = stmt.executeQuery();
             
             while (rs.next()) {
@@ -114,13 +163,15 @@ public class AccountDAOImpl implements AccountDAO {
     
     @Override
     public Account update(Account account) {
-        String sql = "UPDATE accounts SET balance = ?, customer_id = ? WHERE id = ?";
+        // The account row holds whatever part of the balance is not in sub-ledger slots
+        String sql = "UPDATE accounts SET balance = ? - " + SLOT_TOTAL + ", customer_id = ? WHERE id = ?";
         
-        Connection connection = connectionManager.getConnection();
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        Connection connection = connectionManager.getConnection(ConnectionLane.TRANSACTIONAL);
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "accounts.update", sql)) {
             stmt.setBigDecimal(1, account.getBalance());
-            stmt.setString(2, account.getCustomerId());
-            stmt.setString(3, account.getId());
+            stmt.setString(2, account.getId());
+            stmt.setString(3, account.getCustomerId());
+            stmt.setString(4, account.getId());
             
             int affectedRows = stmt.executeUpdate();
             if (affectedRows == 0) {
@@ -137,18 +188,45 @@ public class AccountDAOImpl implements AccountDAO {
     
     @Override
     public boolean deleteById(String id) {
+        // Single-row transfers live on the source account and would cascade away with it;
+        // keep them as TRANSFER_IN rows of the destination, as a transfer pair would be
+        String keepTransfersSql = "UPDATE transactions SET account_id = related_account_id, related_account_id = NULL, " +
+                                  "transaction_type = 'TRANSFER_IN' WHERE account_id = ? AND transaction_type = 'TRANSFER' " +
+                                  "AND related_account_id IS NOT NULL";
         String sql = "DELETE FROM accounts WHERE id = ?";
         
-        Connection connection = connectionManager.getConnection();
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, id);
+        Connection connection = connectionManager.getConnection(ConnectionLane.TRANSACTIONAL);
+        try {
+            connection.setAutoCommit(false);
             
-            int affectedRows = stmt.executeUpdate();
+            try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "transactions.keep_transfers", keepTransfersSql)) {
+                stmt.setString(1, id);
+                stmt.executeUpdate();
+            }
+            
+            int affectedRows;
+            try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "accounts.delete", sql)) {
+                stmt.setString(1, id);
+                
+                affectedRows = stmt.executeUpdate();
+            }
+            
+            connection.commit();
             return affectedRows > 0;
         } catch (SQLException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackEx) {
+                throw new DatabaseException("Error rolling back transaction", rollbackEx);
+            }
             throw new DatabaseException("Error deleting account: " + e.getMessage(), e);
         } finally {
-            connectionManager.releaseConnection(connection);
+            try {
+                connection.setAutoCommit(true);
+                connectionManager.releaseConnection(connection);
+            } catch (SQLException e) {
+                throw new DatabaseException("Error resetting auto-commit", e);
+            }
         }
     }
     
@@ -157,8 +235,8 @@ public class AccountDAOImpl implements AccountDAO {
         String sql = "SELECT id FROM accounts WHERE customer_id = ?";
         List<String> accountIds = new ArrayList<>();
         
-        Connection connection = connectionManager.getConnection();
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        Connection connection = connectionManager.getConnection(ConnectionLane.POINT_READ);
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "accounts.find_by_customer", sql)) {
             stmt.setString(1, customerId);
             
             ResultSet rs = stmt.executeQuery();
@@ -175,10 +253,10 @@ public class AccountDAOImpl implements AccountDAO {
     
     @Override
     public BigDecimal getTotalBalanceByCustomerId(String customerId) {
-        String sql = "SELECT SUM(balance) as total FROM accounts WHERE customer_id = ?";
+        String sql = "SELECT SUM(" + AccountSlots.balanceExpression("a") + ") as total FROM accounts a WHERE a.customer_id = ?";
         
-        Connection connection = connectionManager.getConnection();
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        Connection connection = connectionManager.getConnection(ConnectionLane.POINT_READ);
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "accounts.total_balance_by_customer", sql)) {
             stmt.setString(1, customerId);
             
             ResultSet rs = stmt.executeQuery();
@@ -195,12 +273,13 @@ public class AccountDAOImpl implements AccountDAO {
     
     @Override
     public boolean updateBalance(String accountId, BigDecimal newBalance) {
-        String sql = "UPDATE accounts SET balance = ? WHERE id = ?";
+        String sql = "UPDATE accounts SET balance = ? - " + SLOT_TOTAL + " WHERE id = ?";
         
-        Connection connection = connectionManager.getConnection();
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        Connection connection = connectionManager.getConnection(ConnectionLane.TRANSACTIONAL);
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "accounts.update_balance", sql)) {
             stmt.setBigDecimal(1, newBalance);
             stmt.setString(2, accountId);
+            stmt.setString(3, accountId);
             
             int affectedRows = stmt.executeUpdate();
             return affectedRows > 0;
@@ -210,4 +289,25 @@ public class AccountDAOImpl implements AccountDAO {
             connectionManager.releaseConnection(connection);
         }
     }
-}
\ No newline at end of file
+    
+    @Override
+    public Map<String, Set<String>> findAllOwners() {
+        String sql = "SELECT id AS account_id, customer_id FROM accounts " +
+                     "UNION SELECT account_id, customer_id FROM account_owners";
+        Map<String, Set<String>> owners = new HashMap<>();
+        
+        Connection connection = connectionManager.getConnection(ConnectionLane.REPORTING);
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "accounts.find_all_owners", sql)) {
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                owners.computeIfAbsent(rs.getString("account_id"), id -> new HashSet<>())
+                      .add(rs.getString("customer_id"));
+            }
+            return owners;
+        } catch (SQLException e) {
+            throw new DatabaseException("Error retrieving account owners: " + e.getMessage(), e);
+        } finally {
+            connectionManager.releaseConnection(connection);
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package bank.database;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sub-ledger striping for hot accounts, following the Singleton pattern.
+ * <p>
+ * A striped account keeps its balance spread over N rows of
+ * {@code account_slots} instead of its single {@code accounts} row, so
+ * concurrent postings lock different rows. Credits go to a random slot;
+ * debits take from a slot that holds enough funds, and only lock every slot
+ * when no single slot can cover the amount or, for accounts that may not be
+ * overdrawn, when the account row itself is negative. The account's balance is always
+ * {@code accounts.balance} plus the sum of its slots, which is what
+ * {@link #balanceExpression(String)} computes for queries; striping moves the
+ * whole balance into the slots, and anything posted to the account row
+ * afterwards still counts.
+ * <p>
+ * Which accounts are striped is read once from the database and then kept in
+ * memory, like the rest of the application's caches.
+ */
+public class AccountSlots {
+    private static AccountSlots instance;
+    
+    private final DatabaseConnectionManager connectionManager;
+    private final Map<String, Integer> slotCounts = new ConcurrentHashMap<>();
+    
+    /**
+     * Outcome of a debit against a striped account.
+     */
+    public enum Debit {
+        DONE,
+        INSUFFICIENT_FUNDS,
+        /** The account has no slots; post to the account row instead */
+        NOT_STRIPED
+    }
+    
+    private AccountSlots() {
+        this.connectionManager = DatabaseConnectionManager.getInstance();
+        loadSlotCounts();
+    }
+    
+    public static synchronized AccountSlots getInstance() {
+        if (instance == null) {
+            instance = new AccountSlots();
+        }
+        return instance;
+    }
+    
+    private void loadSlotCounts() {
+        String sql = "SELECT account_id, COUNT(*) AS slots FROM account_slots GROUP BY account_id";
+        Connection connection = connectionManager.getConnection(ConnectionLane.POINT_READ);
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "account_slots.count", sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                slotCounts.put(rs.getString("account_id"), rs.getInt("slots"));
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException("Error loading striped accounts: " + e.getMessage(), e);
+        } finally {
+            connectionManager.releaseConnection(connection);
+        }
+    }
+    
+    /**
+     * SQL expression for the full balance of the accounts row with the given alias.
+     */
+    public static String balanceExpression(String alias) {
+        return "(" + alias + ".balance + COALESCE((SELECT SUM(s.balance) FROM account_slots s " +
+               "WHERE s.account_id = " + alias + ".id), 0))";
+    }
+    
+    public boolean isStriped(String accountId) {
+        return slotCounts.containsKey(accountId);
+    }
+    
+    /**
+     * @return The number of slots, or 0 if the account is not striped
+     */
+    public int getSlotCount(String accountId) {
+        return slotCounts.getOrDefault(accountId, 0);
+    }
+    
+    /**
+     * Credits a random slot within the caller's transaction.
+     * @return false if the account has no slots
+     */
+    public boolean credit(Connection connection, String accountId, BigDecimal amount) throws SQLException {
+        int slots = getSlotCount(accountId);
+        if (slots == 0) {
+            return false;
+        }
+        String sql = "UPDATE account_slots SET balance = balance + ? WHERE account_id = ? AND slot = ?";
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "account_slots.credit", sql)) {
+            stmt.setBigDecimal(1, amount);
+            stmt.setString(2, accountId);
+            stmt.setInt(3, ThreadLocalRandom.current().nextInt(slots));
+            // No row means the account was unstriped concurrently
+            return stmt.executeUpdate() > 0;
+        }
+    }
+    
+    /**
+     * Debits the account's slots within the caller's transaction.
+     *
+     * @param allowNegativeBalance Whether the account may be overdrawn
+     * @return Whether the debit was made, refused, or must go to the account row
+     */
+    public Debit debit(Connection connection, String accountId, BigDecimal amount,
+                       boolean allowNegativeBalance) throws SQLException {
+        if (!isStriped(accountId)) {
+            return Debit.NOT_STRIPED;
+        }
+        List<Integer> slots = new ArrayList<>();
+        List<BigDecimal> balances = new ArrayList<>();
+        BigDecimal base = readSlotsAndBase(connection, accountId, slots, balances);
+        if (slots.isEmpty()) {
+            return Debit.NOT_STRIPED;
+        }
+        // A slot alone covers the debit only while the account row is not overdrawn;
+        // otherwise the row's deficit counts against the slots and only the locked path sees both
+        if (base.signum() >= 0 || allowNegativeBalance) {
+            // Try the funded slots one at a time, starting at a random one so debits spread out
+            String debitSql = "UPDATE account_slots SET balance = balance - ? " +
+                              "WHERE account_id = ? AND slot = ? AND balance >= ?";
+            int start = ThreadLocalRandom.current().nextInt(slots.size());
+            try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "account_slots.debit", debitSql)) {
+                for (int i = 0; i < slots.size(); i++) {
+                    int index = (start + i) % slots.size();
+                    if (balances.get(index).compareTo(amount) < 0) {
+                        continue;
+                    }
+                    stmt.setBigDecimal(1, amount);
+                    stmt.setString(2, accountId);
+                    stmt.setInt(3, slots.get(index));
+                    stmt.setBigDecimal(4, amount);
+                    if (stmt.executeUpdate() > 0) {
+                        return Debit.DONE;
+                    }
+                    // Another debit drained the slot since it was read; try the next one
+                }
+            }
+        }
+        
+        // No single slot covers the amount: lock the account and all its slots, and take from several
+        String lockSql = "SELECT balance FROM accounts WHERE id = ? FOR UPDATE";
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "accounts.lock", lockSql)) {
+            stmt.setString(1, accountId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return Debit.NOT_STRIPED;
+                }
+                base = rs.getBigDecimal("balance");
+            }
+        }
+        slots.clear();
+        balances.clear();
+        lockSlotRows(connection, accountId, slots, balances);
+        if (slots.isEmpty()) {
+            return Debit.NOT_STRIPED;
+        }
+        BigDecimal total = base;
+        for (BigDecimal balance : balances) {
+            total = total.add(balance);
+        }
+        if (total.compareTo(amount) < 0 && !allowNegativeBalance) {
+            return Debit.INSUFFICIENT_FUNDS;
+        }
+        BigDecimal remaining = amount;
+        String takeSql = "UPDATE account_slots SET balance = balance - ? WHERE account_id = ? AND slot = ?";
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "account_slots.drain", takeSql)) {
+            for (int i = 0; i < slots.size() && remaining.signum() > 0; i++) {
+                BigDecimal take = remaining.min(balances.get(i).max(BigDecimal.ZERO));
+                if (take.signum() > 0) {
+                    stmt.setBigDecimal(1, take);
+                    stmt.setString(2, accountId);
+                    stmt.setInt(3, slots.get(i));
+                    stmt.addBatch();
+                    remaining = remaining.subtract(take);
+                }
+            }
+            stmt.executeBatch();
+        }
+        if (remaining.signum() > 0) {
+            // Whatever the slots cannot cover comes from the account row, possibly overdrawing it
+            String overdraftSql = "UPDATE accounts SET balance = balance - ? WHERE id = ?";
+            try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "accounts.debit", overdraftSql)) {
+                stmt.setBigDecimal(1, remaining);
+                stmt.setString(2, accountId);
+                stmt.executeUpdate();
+            }
+        }
+        return Debit.DONE;
+    }
+    
+    /**
+     * Locks an account's slots within the caller's transaction. Callers lock
+     * the account row first, as every path that locks several slots does.
+     * @return The sum of the slot balances, 0 if the account is not striped
+     */
+    public BigDecimal lockSlots(Connection connection, String accountId) throws SQLException {
+        List<Integer> slots = new ArrayList<>();
+        List<BigDecimal> balances = new ArrayList<>();
+        lockSlotRows(connection, accountId, slots, balances);
+        BigDecimal total = BigDecimal.ZERO;
+        for (BigDecimal balance : balances) {
+            total = total.add(balance);
+        }
+        return total;
+    }
+    
+    /**
+     * Reads an account's slots and the balance of its account row without locking.
+     * @return The account row's balance, or null if the account has no slots
+     */
+    private static BigDecimal readSlotsAndBase(Connection connection, String accountId, List<Integer> slots,
+                                               List<BigDecimal> balances) throws SQLException {
+        String sql = "SELECT s.slot, s.balance, a.balance AS base FROM account_slots s " +
+                     "JOIN accounts a ON a.id = s.account_id WHERE s.account_id = ? ORDER BY s.slot";
+        BigDecimal base = null;
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "account_slots.select", sql)) {
+            stmt.setString(1, accountId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    slots.add(rs.getInt("slot"));
+                    balances.add(rs.getBigDecimal("balance"));
+                    base = rs.getBigDecimal("base");
+                }
+            }
+        }
+        return base;
+    }
+    
+    private static void lockSlotRows(Connection connection, String accountId, List<Integer> slots,
+                                     List<BigDecimal> balances) throws SQLException {
+        String sql = "SELECT slot, balance FROM account_slots WHERE account_id = ? ORDER BY slot FOR UPDATE";
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "account_slots.lock", sql)) {
+            stmt.setString(1, accountId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    slots.add(rs.getInt("slot"));
+                    balances.add(rs.getBigDecimal("balance"));
+                }
+            }
+        }
+    }
+    
+    /**
+     * Spreads an account's balance evenly over the given number of slots,
+     * first folding back any existing slots. A negative balance goes to slot 0.
+     *
+     * @param accountId The account ID
+     * @param slotCount Number of slots, at least 1
+     * @return false if the account does not exist
+     */
+    public boolean stripe(String accountId, int slotCount) {
+        if (slotCount < 1) {
+            throw new IllegalArgumentException("An account needs at least one slot");
+        }
+        Connection connection = connectionManager.getConnection(ConnectionLane.TRANSACTIONAL);
+        try {
+            connection.setAutoCommit(false);
+            
+            BigDecimal balance = lockAndFold(connection, accountId);
+            if (balance == null) {
+                connection.rollback();
+                return false;
+            }
+            
+            BigDecimal share = balance.signum() > 0
+                ? balance.divide(BigDecimal.valueOf(slotCount), balance.scale(), RoundingMode.DOWN)
+                : BigDecimal.ZERO;
+            String insertSql = "INSERT INTO account_slots (account_id, slot, balance) VALUES (?, ?, ?)";
+            try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "account_slots.insert", insertSql)) {
+                for (int slot = 0; slot < slotCount; slot++) {
+                    // Slot 0 takes the rounding remainder, or the whole balance when it is negative
+                    BigDecimal slotBalance = slot == 0
+                        ? balance.subtract(share.multiply(BigDecimal.valueOf(slotCount - 1)))
+                        : share;
+                    stmt.setString(1, accountId);
+                    stmt.setInt(2, slot);
+                    stmt.setBigDecimal(3, slotBalance);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+            String clearSql = "UPDATE accounts SET balance = 0 WHERE id = ?";
+            try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "accounts.clear_balance", clearSql)) {
+                stmt.setString(1, accountId);
+                stmt.executeUpdate();
+            }
+            audit(connection, "STRIPE", accountId, "Balance of " + balance + " spread over " + slotCount + " slots");
+            
+            connection.commit();
+            slotCounts.put(accountId, slotCount);
+            return true;
+        } catch (SQLException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackEx) {
+                throw new DatabaseException("Error rolling back transaction", rollbackEx);
+            }
+            throw new DatabaseException("Error striping account: " + e.getMessage(), e);
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+                connectionManager.releaseConnection(connection);
+            } catch (SQLException e) {
+                throw new DatabaseException("Error resetting auto-commit", e);
+            }
+        }
+    }
+    
+    /**
+     * Folds an account's slots back into its accounts row and removes them.
+     * @return false if the account does not exist
+     */
+    public boolean unstripe(String accountId) {
+        Connection connection = connectionManager.getConnection(ConnectionLane.TRANSACTIONAL);
+        try {
+            connection.setAutoCommit(false);
+            
+            BigDecimal balance = lockAndFold(connection, accountId);
+            if (balance == null) {
+                connection.rollback();
+                return false;
+            }
+            String updateSql = "UPDATE accounts SET balance = ? WHERE id = ?";
+            try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "accounts.update_balance", updateSql)) {
+                stmt.setBigDecimal(1, balance);
+                stmt.setString(2, accountId);
+                stmt.executeUpdate();
+            }
+            audit(connection, "UNSTRIPE", accountId, "Slots folded back into a balance of " + balance);
+            
+            connection.commit();
+            slotCounts.remove(accountId);
+            return true;
+        } catch (SQLException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackEx) {
+                throw new DatabaseException("Error rolling back transaction", rollbackEx);
+            }
+            throw new DatabaseException("Error unstriping account: " + e.getMessage(), e);
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+                connectionManager.releaseConnection(connection);
+            } catch (SQLException e) {
+                throw new DatabaseException("Error resetting auto-commit", e);
+            }
+        }
+    }
+    
+    /**
+     * Locks the account row and its slots, deletes the slots and returns the
+     * full balance, or null if the account does not exist.
+     */
+    private static BigDecimal lockAndFold(Connection connection, String accountId) throws SQLException {
+        BigDecimal balance;
+        String lockSql = "SELECT balance FROM accounts WHERE id = ? FOR UPDATE";
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "accounts.lock", lockSql)) {
+            stmt.setString(1, accountId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                balance = rs.getBigDecimal("balance");
+            }
+        }
+        List<Integer> slots = new ArrayList<>();
+        List<BigDecimal> balances = new ArrayList<>();
+        lockSlotRows(connection, accountId, slots, balances);
+        for (BigDecimal slotBalance : balances) {
+            balance = balance.add(slotBalance);
+        }
+        String deleteSql = "DELETE FROM account_slots WHERE account_id = ?";
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "account_slots.delete", deleteSql)) {
+            stmt.setString(1, accountId);
+            stmt.executeUpdate();
+        }
+        return balance;
+    }
+    
+    private static void audit(Connection connection, String action, String accountId, String description) throws SQLException {
+        String auditSql = "INSERT INTO audit_log (action_type, entity_type, entity_id, description) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement auditStmt = InstrumentedStatements.prepare(connection, "audit_log.insert", auditSql)) {
+            auditStmt.setString(1, action);
+            auditStmt.setString(2, "ACCOUNT");
+            auditStmt.setString(3, accountId);
+            auditStmt.setString(4, description);
+            auditStmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package bank.database;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Merges concurrent point lookups into batched queries.
+ * <p>
+ * The first key requested opens a batch. Keys requested within the batch
+ * window join it, and the batch is loaded with a single call to the batch
+ * function when the window closes or the batch reaches its size cap,
+ * whichever comes first. A key that is already queued or being loaded is not
+ * requested again: its callers share the pending result. Once a result is
+ * delivered the key is forgotten, so the next request reads fresh data.
+ *
+ * @param <K> The key type
+ * @param <V> The value type; keys the batch function does not return load as null
+ */
+public class CoalescingLoader<K, V> {
+    
+    private final Function<Set<K>, Map<K, V>> batchFunction;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    
+    // Guarded by this
+    private Map<K, CompletableFuture<V>> pending = new LinkedHashMap<>();
+    private ScheduledFuture<?> pendingDispatch;
+    
+    /**
+     * @param name Name of the loader, used for its timer thread
+     * @param batchFunction Loads a batch of keys, returning the values found
+     * @param window How long a batch stays open for more keys
+     * @param maxBatchSize Number of keys that closes a batch early
+     */
+    public CoalescingLoader(String name, Function<Set<K>, Map<K, V>> batchFunction, Duration window, int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.batchFunction = batchFunction;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Loads a value, waiting for the batch it joins.
+     * @param key The key to load
+     * @return The value, or null if the batch function did not return one
+     * @throws DatabaseException If the batch failed
+     */
+    public V load(K key) {
+        try {
+            return loadAsync(key).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * Queues a key for loading.
+     * @param key The key to load
+     * @return A future completed with the value, or null if the batch function did not return one
+     */
+    public CompletableFuture<V> loadAsync(K key) {
+        loads.incrementAndGet();
+        CompletableFuture<V> future = inFlight.get(key);
+        if (future != null) {
+            coalesced.incrementAndGet();
+            return future;
+        }
+        
+        Map<K, CompletableFuture<V>> fullBatch = null;
+        synchronized (this) {
+            future = inFlight.get(key);
+            if (future != null) {
+                coalesced.incrementAndGet();
+                return future;
+            }
+            future = new CompletableFuture<>();
+            inFlight.put(key, future);
+            pending.put(key, future);
+            if (pending.size() >= maxBatchSize) {
+                fullBatch = takePending();
+            } else if (pending.size() == 1) {
+                pendingDispatch = scheduler.schedule(this::dispatchPending, windowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (fullBatch != null) {
+            // The caller would wait for this batch anyway, so it runs the query itself
+            dispatch(fullBatch);
+        }
+        return future;
+    }
+    
+    private Map<K, CompletableFuture<V>> takePending() {
+        Map<K, CompletableFuture<V>> batch = pending;
+        pending = new LinkedHashMap<>();
+        if (pendingDispatch != null) {
+            pendingDispatch.cancel(false);
+            pendingDispatch = null;
+        }
+        return batch;
+    }
+    
+    private void dispatchPending() {
+        Map<K, CompletableFuture<V>> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = takePending();
+        }
+        // Query off the timer thread so a slow batch does not hold back the next window
+        Thread.ofVirtual().name("coalesced-batch").start(() -> dispatch(batch));
+    }
+    
+    private void dispatch(Map<K, CompletableFuture<V>> batch) {
+        batches.incrementAndGet();
+        Map<K, V> values;
+        try {
+            values = batchFunction.apply(batch.keySet());
+        } catch (RuntimeException e) {
+            batch.forEach((key, future) -> {
+                inFlight.remove(key, future);
+                future.completeExceptionally(e);
+            });
+            return;
+        }
+        batch.forEach((key, future) -> {
+            inFlight.remove(key, future);
+            future.complete(values.get(key));
+        });
+    }
+    
+    /**
+     * Number of batch queries issued.
+     */
+    public long getBatchCount() {
+        return batches.get();
+    }
+    
+    /**
+     * Number of keys requested.
+     */
+    public long getLoadCount() {
+        return loads.get();
+    }
+    
+    /**
+     * Number of requests that shared another request's pending result.
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+    
+    /**
+     * Loads any open batch and stops the timer thread.
+     */
+    public void close() {
+        Map<K, CompletableFuture<V>> batch;
+        synchronized (this) {
+            batch = takePending();
+        }
+        scheduler.shutdownNow();
+        if (!batch.isEmpty()) {
+            dispatch(batch);
+        }
+    }
+}
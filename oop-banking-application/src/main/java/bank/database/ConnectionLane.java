@@ -0,0 +1,23 @@
+package bank.database;
+
+/**
+ * Workload classes that borrow connections from the pool.
+ * <p>
+ * Each lane has a reserved number of connections that no other lane can
+ * take, and a maximum it never exceeds. Beyond its reservation a lane
+ * borrows idle connections not reserved for the others. Lanes are configured
+ * with {@code db.lane.<name>.reserved} and {@code db.lane.<name>.max}, where
+ * {@code <name>} is the lower-case constant name.
+ */
+public enum ConnectionLane {
+    /** Deposits, withdrawals, transfers and other short writes */
+    TRANSACTIONAL,
+    /** Lookups of single customers, accounts and balances, and one account's history or statement */
+    POINT_READ,
+    /** Full scans, exports and batch jobs */
+    REPORTING;
+
+    String propertyPrefix() {
+        return "db.lane." + name().toLowerCase() + ".";
+    }
+}
@@ -1,8 +1,10 @@
 package bank.database;
 
 import bank.Customer;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Specific DAO interface for Customer entity with additional methods.
@@ -24,4 +26,11 @@ public interface CustomerDAO extends DAO<Customer, String> {
      * @return true if the customer exists
      */
     boolean exists(String customerId);
+    
+    /**
+     * Checks which of several customers exist in one query.
+     * @param customerIds The customer IDs to check
+     * @return The IDs that exist
+     */
+    Set<String> findExisting(Collection<String> customerIds);
 }
\ No newline at end of file
@@ -7,9 +7,13 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Implementation of the CustomerDAO interface for database operations.
@@ -26,8 +30,8 @@ public class CustomerDAOImpl implements CustomerDAO {
     public Customer save(Customer customer) {
         String sql = "INSERT INTO customers (id, first_name, last_name, birth_day) VALUES (?, ?, ?, ?)";
         
-        Connection connection = connectionManager.getConnection();
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        Connection connection = connectionManager.getConnection(ConnectionLane.TRANSACTIONAL);
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "customers.insert", sql)) {
             stmt.setString(1, customer.getId());
             stmt.setString(2, customer.getFirstName());
             stmt.setString(3, customer.getLastName());
@@ -50,8 +54,8 @@ public class CustomerDAOImpl implements CustomerDAO {
     public Optional<Customer> findById(String id) {
         String sql = "SELECT id, first_name, last_name, birth_day FROM customers WHERE id = ?";
         
-        Connection connection = connectionManager.getConnection();
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        Connection connection = connectionManager.getConnection(ConnectionLane.POINT_READ);
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "customers.find_by_id", sql)) {
             stmt.setString(1, id);
             
             ResultSet rs = stmt.executeQuery();
@@ -77,8 +81,8 @@ public class CustomerDAOImpl implements CustomerDAO {
         String sql = "SELECT id, first_name, last_name, birth_day FROM customers";
         List<Customer> customers = new ArrayList<>();
         
-        Connection connection = connectionManager.getConnection();
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        Connection connection = connectionManager.getConnection(ConnectionLane.REPORTING);
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "customers.find_all", sql)) {
             ResultSet rs = stmt.executeQuery();
             
             while (rs.next()) {
@@ -102,8 +106,8 @@ public class CustomerDAOImpl implements CustomerDAO {
     public Customer update(Customer customer) {
         String sql = "UPDATE customers SET first_name = ?, last_name = ?, birth_day = ? WHERE id = ?";
         
-        Connection connection = connectionManager.getConnection();
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        Connection connection = connectionManager.getConnection(ConnectionLane.TRANSACTIONAL);
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "customers.update", sql)) {
             stmt.setString(1, customer.getFirstName());
             stmt.setString(2, customer.getLastName());
             stmt.setTimestamp(3, new Timestamp(customer.getBirthDay().getTime()));
@@ -126,8 +130,8 @@ public class CustomerDAOImpl implements CustomerDAO {
     public boolean deleteById(String id) {
         String sql = "DELETE FROM customers WHERE id = ?";
         
-        Connection connection = connectionManager.getConnection();
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        Connection connection = connectionManager.getConnection(ConnectionLane.TRANSACTIONAL);
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "customers.delete", sql)) {
             stmt.setString(1, id);
             
             int affectedRows = stmt.executeUpdate();
@@ -144,8 +148,8 @@ public class CustomerDAOImpl implements CustomerDAO {
         String sql = "SELECT id FROM customers WHERE first_name = ? AND last_name = ? AND birth_day = ?";
         List<String> customerIds = new ArrayList<>();
         
-        Connection connection = connectionManager.getConnection();
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        Connection connection = connectionManager.getConnection(ConnectionLane.POINT_READ);
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "customers.find_by_name_and_birth_day", sql)) {
             stmt.setString(1, firstName);
             stmt.setString(2, lastName);
             stmt.setTimestamp(3, new Timestamp(birthDay.getTime()));
@@ -166,8 +170,8 @@ public class CustomerDAOImpl implements CustomerDAO {
     public boolean exists(String customerId) {
         String sql = "SELECT COUNT(*) FROM customers WHERE id = ?";
         
-        Connection connection = connectionManager.getConnection();
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        Connection connection = connectionManager.getConnection(ConnectionLane.POINT_READ);
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "customers.exists", sql)) {
             stmt.setString(1, customerId);
             
             ResultSet rs = stmt.executeQuery();
@@ -181,4 +185,32 @@ public class CustomerDAOImpl implements CustomerDAO {
             connectionManager.releaseConnection(connection);
         }
     }
+    
+    @Override
+    public Set<String> findExisting(Collection<String> customerIds) {
+        if (customerIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+        String sql = "SELECT id FROM customers WHERE id IN (" +
+                     String.join(", ", Collections.nCopies(customerIds.size(), "?")) + ")";
+        Set<String> existing = new HashSet<>();
+        
+        Connection connection = connectionManager.getConnection(ConnectionLane.POINT_READ);
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "customers.find_existing", sql)) {
+            int index = 1;
+            for (String customerId : customerIds) {
+                stmt.setString(index++, customerId);
+            }
+            
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                existing.add(rs.getString("id"));
+            }
+            return existing;
+        } catch (SQLException e) {
+            throw new DatabaseException("Error checking customer existence: " + e.getMessage(), e);
+        } finally {
+            connectionManager.releaseConnection(connection);
+        }
+    }
 }
\ No newline at end of file
@@ -1,24 +1,67 @@
 package bank.database;
 
+import bank.monitoring.ConnectionBorrowEvent;
+import bank.monitoring.ConnectionReleaseEvent;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.io.FileInputStream;
 import java.io.IOException;
 
 /**
  * Manages database connections following the Singleton pattern.
  * Handles connection creation, pooling and configuration.
+ * <p>
+ * Startup opens {@code db.minPoolSize} connections in parallel; further
+ * connections are opened on demand up to {@code db.maxPoolSize}, outside the
+ * pool lock so other borrowers are not held up. A background thread runs
+ * every {@code db.validationInterval} milliseconds: it checks idle
+ * connections with {@link Connection#isValid(int)}, replaces broken ones and
+ * closes connections beyond the minimum that have been idle longer than
+ * {@code db.idleTimeout} milliseconds. Borrowing does no validation.
+ * <p>
+ * Callers borrow through a {@link ConnectionLane}. Every lane has reserved
+ * connections that other lanes cannot take and a maximum it cannot exceed,
+ * so long reporting queries cannot starve transactional writes; see
+ * {@link #getConnection(ConnectionLane)}. A borrower the lane cannot serve
+ * yet waits up to {@code db.connectionTimeout} milliseconds.
  */
 public class DatabaseConnectionManager {
     private static DatabaseConnectionManager instance;
+    
+    // System property that points to an alternative configuration file
+    public static final String CONFIG_PROPERTY = "bank.db.config";
+    private static final String DEFAULT_CONFIG_PATH = "config/database.properties";
+    private static final String DEFAULT_DRIVER = "com.mysql.cj.jdbc.Driver";
+    
     private String url;
     private String username;
     private String password;
+    private String driver = DEFAULT_DRIVER;
     private int maxPoolSize = 10;
+    private int minPoolSize = 2;
+    private long idleTimeoutMillis = 600_000;
+    private long validationIntervalMillis = 30_000;
+    private long connectionTimeoutMillis = 30_000;
     private Connection[] connectionPool;
     private boolean[] connectionStatus;
+    private long[] borrowedAt;
+    private long[] releasedAt;
+    private ConnectionLane[] slotLane;
+    private int inUseCount;
+    private final int[] laneReserved = new int[ConnectionLane.values().length];
+    private final int[] laneMax = new int[ConnectionLane.values().length];
+    private final int[] laneInUse = new int[ConnectionLane.values().length];
+    private ScheduledExecutorService maintenance;
 
     private DatabaseConnectionManager() {
         loadDatabaseProperties();
@@ -34,15 +77,29 @@ public class DatabaseConnectionManager {
 
     private void loadDatabaseProperties() {
         Properties props = new Properties();
-        try (FileInputStream fis = new FileInputStream("config/database.properties")) {
+        String configPath = System.getProperty(CONFIG_PROPERTY, DEFAULT_CONFIG_PATH);
+        try (FileInputStream fis = new FileInputStream(configPath)) {
             props.load(fis);
             this.url = props.getProperty("db.url");
             this.username = props.getProperty("db.username");
             this.password = props.getProperty("db.password");
+            this.driver = props.getProperty("db.driver", DEFAULT_DRIVER);
             
             if (props.getProperty("db.maxPoolSize") != null) {
                 this.maxPoolSize = Integer.parseInt(props.getProperty("db.maxPoolSize"));
             }
+            if (props.getProperty("db.minPoolSize") != null) {
+                this.minPoolSize = Integer.parseInt(props.getProperty("db.minPoolSize"));
+            }
+            if (props.getProperty("db.idleTimeout") != null) {
+                this.idleTimeoutMillis = Long.parseLong(props.getProperty("db.idleTimeout"));
+            }
+            if (props.getProperty("db.validationInterval") != null) {
+                this.validationIntervalMillis = Long.parseLong(props.getProperty("db.validationInterval"));
+            }
+            if (props.getProperty("db.connectionTimeout") != null) {
+                this.connectionTimeoutMillis = Long.parseLong(props.getProperty("db.connectionTimeout"));
+            }
         } catch (IOException e) {
             // Fallback to default values if properties file is not found
             this.url = "jdbc:mysql://localhost:3306/bankdb";
@@ -50,26 +107,103 @@ public class DatabaseConnectionManager {
             this.password = "bankpassword";
             System.err.println("Warning: Could not load database properties file. Using default values.");
         }
+        configureLanes(props);
+    }
+
+    /**
+     * Reads each lane's reserved and maximum connections. By default writes
+     * reserve 40% of the pool and point reads 20%, and reporting may use at
+     * most half of it. A maximum is capped at what the pool holds beyond the
+     * other lanes' reservations, the most the lane can ever get.
+     */
+    private void configureLanes(Properties props) {
+        int totalReserved = 0;
+        for (ConnectionLane lane : ConnectionLane.values()) {
+            int defaultReserved;
+            int defaultMax;
+            switch (lane) {
+                case TRANSACTIONAL:
+                    defaultReserved = maxPoolSize * 4 / 10;
+                    defaultMax = maxPoolSize;
+                    break;
+                case POINT_READ:
+                    defaultReserved = maxPoolSize * 2 / 10;
+                    defaultMax = maxPoolSize;
+                    break;
+                default:
+                    defaultReserved = 0;
+                    defaultMax = Math.max(1, maxPoolSize / 2);
+                    break;
+            }
+            int reserved = Integer.parseInt(props.getProperty(lane.propertyPrefix() + "reserved",
+                                                              String.valueOf(defaultReserved)));
+            int max = Math.min(maxPoolSize, Integer.parseInt(props.getProperty(lane.propertyPrefix() + "max",
+                                                                               String.valueOf(defaultMax))));
+            if (reserved < 0 || reserved > max) {
+                throw new DatabaseException("Lane " + lane + " reserves " + reserved + " of at most " + max + " connections");
+            }
+            laneReserved[lane.ordinal()] = reserved;
+            laneMax[lane.ordinal()] = max;
+            totalReserved += reserved;
+        }
+        if (totalReserved > maxPoolSize) {
+            throw new DatabaseException("Lanes reserve " + totalReserved + " connections but the pool holds " + maxPoolSize);
+        }
+        for (ConnectionLane lane : ConnectionLane.values()) {
+            int capacity = maxPoolSize - (totalReserved - laneReserved[lane.ordinal()]);
+            if (laneMax[lane.ordinal()] > capacity) {
+                if (props.getProperty(lane.propertyPrefix() + "max") != null) {
+                    System.err.println("Warning: lane " + lane + " can hold at most " + capacity + " connections; " +
+                                       "capping its maximum of " + laneMax[lane.ordinal()]);
+                }
+                laneMax[lane.ordinal()] = capacity;
+            }
+        }
     }
 
     private void initializeConnectionPool() {
         try {
             // Load the database driver
-            Class.forName("com.mysql.cj.jdbc.Driver");
+            Class.forName(driver);
             
             // Initialize the connection pool
+            minPoolSize = Math.max(0, Math.min(minPoolSize, maxPoolSize));
             connectionPool = new Connection[maxPoolSize];
             connectionStatus = new boolean[maxPoolSize];
+            borrowedAt = new long[maxPoolSize];
+            releasedAt = new long[maxPoolSize];
+            slotLane = new ConnectionLane[maxPoolSize];
             
-            // Create connections
-            for (int i = 0; i < maxPoolSize; i++) {
-                connectionPool[i] = createNewConnection();
-                connectionStatus[i] = false; // Not in use
+            // Open the minimum connections in parallel; the rest are opened on demand
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<Connection>> connections = new ArrayList<>();
+                for (int i = 0; i < minPoolSize; i++) {
+                    connections.add(executor.submit(this::createNewConnection));
+                }
+                for (int i = 0; i < minPoolSize; i++) {
+                    connectionPool[i] = connections.get(i).get();
+                    releasedAt[i] = System.nanoTime();
+                }
             }
         } catch (ClassNotFoundException e) {
             throw new DatabaseException("Database driver not found", e);
-        } catch (SQLException e) {
-            throw new DatabaseException("Error initializing connection pool", e);
+        } catch (ExecutionException e) {
+            closeAllConnections();
+            throw new DatabaseException("Error initializing connection pool", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            closeAllConnections();
+            throw new DatabaseException("Interrupted initializing connection pool", e);
+        }
+        
+        if (validationIntervalMillis > 0) {
+            maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "connection-pool-maintenance");
+                thread.setDaemon(true);
+                return thread;
+            });
+            maintenance.scheduleWithFixedDelay(this::maintainPool, validationIntervalMillis,
+                                               validationIntervalMillis, TimeUnit.MILLISECONDS);
         }
     }
 
@@ -77,35 +211,295 @@ public class DatabaseConnectionManager {
         return DriverManager.getConnection(url, username, password);
     }
 
-    public synchronized Connection getConnection() {
+    /**
+     * Maximum number of connections the pool will hand out at once.
+     */
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    /**
+     * Number of connections currently open, in use or idle.
+     */
+    public synchronized int getOpenConnections() {
+        int open = 0;
         for (int i = 0; i < maxPoolSize; i++) {
-            if (!connectionStatus[i]) {
+            if (connectionPool[i] != null) {
+                open++;
+            }
+        }
+        return open;
+    }
+
+    /**
+     * Borrows a connection for short transactional work.
+     */
+    public Connection getConnection() {
+        return getConnection(ConnectionLane.TRANSACTIONAL);
+    }
+
+    /**
+     * Borrows a connection for the given lane. The lane gets a connection
+     * while it is below its reservation, or below its maximum when enough
+     * connections are free to leave every other lane's unused reservation
+     * intact. Otherwise the caller waits for a release, up to the
+     * connection timeout.
+     *
+     * @throws DatabaseException If the lane has no capacity left within the timeout
+     */
+    public Connection getConnection(ConnectionLane lane) {
+        ConnectionBorrowEvent event = new ConnectionBorrowEvent();
+        event.begin();
+        int emptySlot = -1;
+        synchronized (this) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(connectionTimeoutMillis);
+            // Slots being validated count as in use without belonging to a lane
+            while (!admits(lane) || inUseCount >= maxPoolSize) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    commitBorrow(event, lane, -1, false);
+                    throw new DatabaseException("Connection pool exhausted for lane " + lane + " after waiting " +
+                                                connectionTimeoutMillis + " ms");
+                }
                 try {
-                    // Check if connection is still valid
-                    if (connectionPool[i] == null || connectionPool[i].isClosed()) {
-                        connectionPool[i] = createNewConnection();
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    commitBorrow(event, lane, -1, false);
+                    throw new DatabaseException("Interrupted waiting for a connection on lane " + lane, e);
+                }
+            }
+            for (int i = 0; i < maxPoolSize; i++) {
+                if (!connectionStatus[i]) {
+                    if (connectionPool[i] != null) {
+                        markBorrowed(i, lane);
+                        commitBorrow(event, lane, i, true);
+                        return connectionPool[i];
+                    }
+                    if (emptySlot < 0) {
+                        emptySlot = i;
                     }
-                    
-                    connectionStatus[i] = true;
-                    return connectionPool[i];
-                } catch (SQLException e) {
-                    throw new DatabaseException("Error getting database connection", e);
                 }
             }
+            if (emptySlot < 0) {
+                commitBorrow(event, lane, -1, false);
+                throw new DatabaseException("Connection pool exhausted");
+            }
+            // Reserve the slot while its connection is opened
+            markBorrowed(emptySlot, lane);
         }
-        throw new DatabaseException("Connection pool exhausted");
+        
+        // Grow the pool without holding the lock, so idle connections can still be borrowed meanwhile
+        try {
+            Connection connection = createNewConnection();
+            synchronized (this) {
+                connectionPool[emptySlot] = connection;
+                borrowedAt[emptySlot] = System.nanoTime();
+                commitBorrow(event, lane, emptySlot, true);
+            }
+            return connection;
+        } catch (SQLException e) {
+            synchronized (this) {
+                connectionStatus[emptySlot] = false;
+                inUseCount--;
+                laneInUse[lane.ordinal()]--;
+                slotLane[emptySlot] = null;
+                notifyAll();
+            }
+            throw new DatabaseException("Error getting database connection", e);
+        }
+    }
+
+    private boolean admits(ConnectionLane lane) {
+        int inUse = laneInUse[lane.ordinal()];
+        if (inUse >= laneMax[lane.ordinal()]) {
+            return false;
+        }
+        if (inUse < laneReserved[lane.ordinal()]) {
+            return true;
+        }
+        int heldForOthers = 0;
+        for (ConnectionLane other : ConnectionLane.values()) {
+            if (other != lane) {
+                heldForOthers += Math.max(0, laneReserved[other.ordinal()] - laneInUse[other.ordinal()]);
+            }
+        }
+        return maxPoolSize - inUseCount > heldForOthers;
+    }
+
+    private void markBorrowed(int slot, ConnectionLane lane) {
+        connectionStatus[slot] = true;
+        borrowedAt[slot] = System.nanoTime();
+        slotLane[slot] = lane;
+        inUseCount++;
+        laneInUse[lane.ordinal()]++;
+    }
+
+    /**
+     * Most connections a lane can hold at once: its configured maximum,
+     * capped at the pool size less the other lanes' reservations.
+     */
+    public int getMaxConnections(ConnectionLane lane) {
+        return laneMax[lane.ordinal()];
+    }
+
+    /**
+     * Number of connections a lane currently holds.
+     */
+    public synchronized int getInUse(ConnectionLane lane) {
+        return laneInUse[lane.ordinal()];
     }
 
     public synchronized void releaseConnection(Connection connection) {
         for (int i = 0; i < maxPoolSize; i++) {
             if (connectionPool[i] == connection) {
+                ConnectionLane lane = slotLane[i];
+                if (connectionStatus[i] && lane != null) {
+                    inUseCount--;
+                    laneInUse[lane.ordinal()]--;
+                }
                 connectionStatus[i] = false;
+                slotLane[i] = null;
+                releasedAt[i] = System.nanoTime();
+                notifyAll();
+                
+                ConnectionReleaseEvent event = new ConnectionReleaseEvent();
+                if (event.shouldCommit()) {
+                    event.slot = i;
+                    event.lane = lane == null ? null : lane.name();
+                    event.holdTime = System.nanoTime() - borrowedAt[i];
+                    event.inUse = inUseCount;
+                    event.commit();
+                }
                 break;
             }
         }
     }
+    
+    private void commitBorrow(ConnectionBorrowEvent event, ConnectionLane lane, int slot, boolean succeeded) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.slot = slot;
+            event.lane = lane.name();
+            event.inUse = inUseCount;
+            event.succeeded = succeeded;
+            event.commit();
+        }
+    }
+
+    /**
+     * Validates idle connections, replacing broken ones, and retires
+     * connections idle longer than the idle timeout while the pool is above
+     * its minimum size. Each connection is taken out of the pool while it is
+     * checked, so borrowers never see one mid-validation.
+     */
+    private void maintainPool() {
+        try {
+            for (int i = 0; i < maxPoolSize; i++) {
+                Connection connection;
+                boolean retire;
+                synchronized (this) {
+                    connection = connectionPool[i];
+                    if (connectionStatus[i] || connection == null) {
+                        continue;
+                    }
+                    long idleMillis = (System.nanoTime() - releasedAt[i]) / 1_000_000;
+                    retire = idleMillis > idleTimeoutMillis && getOpenConnections() > minPoolSize;
+                    // Count the slot as in use so borrowers do not see it as free capacity
+                    connectionStatus[i] = true;
+                    inUseCount++;
+                }
+                
+                boolean valid = !retire && isValid(connection);
+                if (!valid) {
+                    closeQuietly(connection);
+                }
+                
+                synchronized (this) {
+                    if (!valid) {
+                        connectionPool[i] = null;
+                    }
+                    connectionStatus[i] = false;
+                    inUseCount--;
+                    notifyAll();
+                }
+                if (!valid && !retire) {
+                    System.err.println("Replacing broken pooled database connection");
+                }
+            }
+            
+            // Keep the minimum open, e.g. after broken connections were dropped
+            int slot;
+            while ((slot = claimEmptySlot()) >= 0) {
+                Connection connection;
+                try {
+                    connection = createNewConnection();
+                } catch (SQLException e) {
+                    synchronized (this) {
+                        connectionStatus[slot] = false;
+                        inUseCount--;
+                        notifyAll();
+                    }
+                    System.err.println("Could not reopen pooled database connection: " + e.getMessage());
+                    break;
+                }
+                synchronized (this) {
+                    connectionPool[slot] = connection;
+                    connectionStatus[slot] = false;
+                    inUseCount--;
+                    releasedAt[slot] = System.nanoTime();
+                    notifyAll();
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Connection pool maintenance failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Claims an empty slot for a replacement connection while the pool is
+     * below its minimum size. The slot counts as in use until the
+     * connection is in place, so neither borrowers nor another claim take it.
+     * @return The slot, or -1 if the pool is at its minimum or has no empty slot
+     */
+    private synchronized int claimEmptySlot() {
+        int open = 0;
+        int empty = -1;
+        for (int i = 0; i < maxPoolSize; i++) {
+            if (connectionPool[i] != null || connectionStatus[i]) {
+                open++;
+            } else if (empty < 0) {
+                empty = i;
+            }
+        }
+        if (open >= minPoolSize || empty < 0) {
+            return -1;
+        }
+        connectionStatus[empty] = true;
+        inUseCount++;
+        return empty;
+    }
+
+    private static boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(5);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing connection: " + e.getMessage());
+        }
+    }
 
     public void closeAllConnections() {
+        if (maintenance != null) {
+            maintenance.shutdownNow();
+        }
         for (int i = 0; i < maxPoolSize; i++) {
             try {
                 if (connectionPool[i] != null && !connectionPool[i].isClosed()) {
@@ -116,4 +510,4 @@ public class DatabaseConnectionManager {
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -5,6 +5,7 @@ package bank.database;
  * Encapsulates SQL exceptions and provides clearer error messages.
  */
 public class DatabaseException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
     
     public DatabaseException(String message) {
         super(message);
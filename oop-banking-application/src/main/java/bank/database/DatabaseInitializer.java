@@ -26,7 +26,7 @@ public class DatabaseInitializer {
      * @return true if schema was initialized successfully
      */
     public boolean initializeSchema(String schemaFilePath) {
-        Connection connection = connectionManager.getConnection();
+        Connection connection = connectionManager.getConnection(ConnectionLane.TRANSACTIONAL);
         try {
             // Read SQL from file
             StringBuilder sql = new StringBuilder();
@@ -0,0 +1,181 @@
+package bank.database;
+
+import bank.monitoring.BankMetrics;
+import bank.monitoring.OperationContext;
+import bank.monitoring.SlowStatementLog;
+import bank.monitoring.SqlStatementEvent;
+import bank.monitoring.StatementMetrics;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates prepared statements whose executions are timed under a logical
+ * statement name and reported as {@link SqlStatementEvent}s, tagged with the
+ * thread's {@link OperationContext}. Bind values are remembered so executions
+ * over the slow threshold can be written to the {@link SlowStatementLog}. All
+ * other calls are passed straight to the driver's statement, so callers use
+ * the result exactly like a normal {@link PreparedStatement}.
+ * <p>
+ * Plans of the slowest statements are captured on a background thread with
+ * a reporting connection of its own, so the caller's connection and open
+ * transaction are left alone. Plans requested while that thread is busy and
+ * a few are queued are dropped.
+ */
+public final class InstrumentedStatements {
+    private static final ExecutorService PLAN_CAPTURE = new ThreadPoolExecutor(
+        1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(16),
+        runnable -> {
+            Thread thread = new Thread(runnable, "slow-sql-explain");
+            thread.setDaemon(true);
+            return thread;
+        },
+        new ThreadPoolExecutor.DiscardPolicy());
+    // Resolved once, so preparing a statement costs neither a registry lookup nor a proxy class lookup
+    private static final Map<String, StatementMetrics> METRICS = new ConcurrentHashMap<>();
+    private static final Constructor<?> PROXY_CONSTRUCTOR = proxyConstructor();
+    
+    private InstrumentedStatements() {
+    }
+    
+    /**
+     * Prepares an instrumented statement.
+     * @param connection The connection to prepare on
+     * @param name Logical statement name used in metrics, e.g. "accounts.credit"
+     * @param sql The SQL text
+     * @return A prepared statement that records execution metrics
+     * @throws SQLException If the driver fails to prepare the statement
+     */
+    public static PreparedStatement prepare(Connection connection, String name, String sql) throws SQLException {
+        StatementMetrics metrics = METRICS.computeIfAbsent(name, key -> BankMetrics.getInstance().statement(key));
+        PreparedStatement statement = connection.prepareStatement(sql);
+        try {
+            return (PreparedStatement) PROXY_CONSTRUCTOR.newInstance(new TimingHandler(statement, name, sql, metrics));
+        } catch (ReflectiveOperationException e) {
+            statement.close();
+            throw new IllegalStateException("Cannot create instrumented statement", e);
+        }
+    }
+    
+    private static Constructor<?> proxyConstructor() {
+        Class<?> proxyClass = Proxy.newProxyInstance(
+            InstrumentedStatements.class.getClassLoader(),
+            new Class<?>[] {PreparedStatement.class},
+            (proxy, method, args) -> null).getClass();
+        try {
+            return proxyClass.getConstructor(InvocationHandler.class);
+        } catch (NoSuchMethodException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+    
+    private static final class TimingHandler implements InvocationHandler {
+        private final PreparedStatement target;
+        private final String name;
+        private final String sql;
+        private final StatementMetrics metrics;
+        private Object[] binds;
+        private int bindCount;
+        
+        TimingHandler(PreparedStatement target, String name, String sql, StatementMetrics metrics) {
+            this.target = target;
+            this.name = name;
+            this.sql = sql;
+            this.metrics = metrics;
+        }
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String methodName = method.getName();
+            if (!methodName.startsWith("execute")) {
+                if (methodName.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                    rememberBind((Integer) args[0], "setNull".equals(methodName) ? null : args[1]);
+                } else if ("clearParameters".equals(methodName)) {
+                    binds = null;
+                    bindCount = 0;
+                }
+                return call(method, args);
+            }
+            
+            SqlStatementEvent event = new SqlStatementEvent();
+            event.begin();
+            long start = System.nanoTime();
+            boolean failed = true;
+            try {
+                Object result = call(method, args);
+                failed = false;
+                return result;
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                metrics.record(elapsed, failed);
+                SlowStatementLog slowLog = SlowStatementLog.getInstance();
+                if (slowLog.isSlow(elapsed)) {
+                    Object[] boundValues = binds == null ? null : Arrays.copyOf(binds, bindCount + 1);
+                    if (slowLog.record(name, sql, boundValues, elapsed)) {
+                        PLAN_CAPTURE.execute(() -> capturePlan(slowLog, name, sql, boundValues));
+                    }
+                }
+                event.end();
+                if (event.shouldCommit()) {
+                    event.statement = name;
+                    event.sql = sql;
+                    event.succeeded = !failed;
+                    OperationContext context = OperationContext.current();
+                    if (context != null) {
+                        event.operation = context.operation;
+                        event.accountId = context.accountId;
+                        event.relatedAccountId = context.relatedAccountId;
+                        event.amount = context.amount == null ? 0.0 : context.amount.doubleValue();
+                    }
+                    event.commit();
+                }
+            }
+        }
+        
+        private static void capturePlan(SlowStatementLog slowLog, String name, String sql, Object[] binds) {
+            String plan;
+            try {
+                DatabaseConnectionManager connectionManager = DatabaseConnectionManager.getInstance();
+                Connection connection = connectionManager.getConnection(ConnectionLane.REPORTING);
+                try {
+                    plan = SlowStatementLog.explain(sql, binds, connection);
+                } finally {
+                    connectionManager.releaseConnection(connection);
+                }
+            } catch (DatabaseException e) {
+                plan = "EXPLAIN failed: " + e.getMessage();
+            }
+            slowLog.recordPlan(name, plan);
+        }
+        
+        private void rememberBind(int index, Object value) {
+            if (binds == null) {
+                binds = new Object[Math.max(index + 1, 8)];
+            } else if (index >= binds.length) {
+                binds = Arrays.copyOf(binds, Math.max(index + 1, binds.length * 2));
+            }
+            binds[index] = value;
+            bindCount = Math.max(bindCount, index);
+        }
+        
+        private Object call(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
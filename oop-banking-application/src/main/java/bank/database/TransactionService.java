@@ -1,5 +1,8 @@
 package bank.database;
 
+import bank.archive.TransactionArchive;
+import bank.archive.TransactionSegment;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -7,10 +10,13 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Service class for handling banking transactions with proper transaction management.
@@ -18,9 +24,59 @@ import java.util.Map;
 public class TransactionService {
     
     private DatabaseConnectionManager connectionManager;
+    private TransactionArchive archive;
+    private AccountSlots accountSlots;
+    private volatile boolean singleRowTransfers;
+    private volatile boolean outboxEnabled;
     
     public TransactionService() {
         this.connectionManager = DatabaseConnectionManager.getInstance();
+        this.archive = TransactionArchive.getInstance();
+        this.accountSlots = AccountSlots.getInstance();
+    }
+    
+    /**
+     * Chooses how transfers are stored. In single-row mode a transfer is one
+     * TRANSFER row on the source account referencing the destination,
+     * instead of a TRANSFER_OUT and TRANSFER_IN pair. Readers handle both
+     * forms, so the mode can be switched at any time.
+     * @param singleRowTransfers true to write one row per transfer
+     */
+    public void setSingleRowTransfers(boolean singleRowTransfers) {
+        this.singleRowTransfers = singleRowTransfers;
+    }
+    
+    /**
+     * Chooses whether each committed change also writes an event to the
+     * {@code outbox} table, in the same transaction, for
+     * {@link bank.outbox.OutboxRelay} to publish.
+     * @param outboxEnabled true to write outbox events
+     */
+    public void setOutboxEnabled(boolean outboxEnabled) {
+        this.outboxEnabled = outboxEnabled;
+    }
+    
+    /**
+     * Builds a query over every account's view of the transactions table:
+     * rows as stored, except that a single-row TRANSFER appears as
+     * TRANSFER_OUT on its source account and, with the same ID, as
+     * TRANSFER_IN on its destination account. The result has the columns of
+     * the transactions table and can be used as a derived table.
+     * <p>
+     * The condition is applied to both halves of the view, with {@code %1$s}
+     * standing for the view's account ID column, so its parameters must be
+     * bound twice in a row.
+     * @param condition Filter on the view, e.g. {@code "%1$s = ? AND transaction_date >= ?"}
+     * @return The SQL text
+     */
+    public static String accountEntriesSql(String condition) {
+        return "SELECT id, account_id, CASE WHEN transaction_type = 'TRANSFER' THEN 'TRANSFER_OUT' " +
+               "ELSE transaction_type END AS transaction_type, amount, related_account_id, transaction_date " +
+               "FROM transactions WHERE " + String.format(condition, "account_id") +
+               " UNION ALL " +
+               "SELECT id, related_account_id AS account_id, 'TRANSFER_IN' AS transaction_type, amount, " +
+               "account_id AS related_account_id, transaction_date " +
+               "FROM transactions WHERE transaction_type = 'TRANSFER' AND " + String.format(condition, "related_account_id");
     }
     
     /**
@@ -30,26 +86,19 @@ public class TransactionService {
      * @return true if successful
      */
     public boolean recordDeposit(String accountId, BigDecimal amount) {
-        Connection connection = connectionManager.getConnection();
+        Connection connection = connectionManager.getConnection(ConnectionLane.TRANSACTIONAL);
         try {
             connection.setAutoCommit(false);
             
             // First, update the account balance
-            String updateSql = "UPDATE accounts SET balance = balance + ? WHERE id = ?";
-            try (PreparedStatement updateStmt = connection.prepareStatement(updateSql)) {
-                updateStmt.setBigDecimal(1, amount);
-                updateStmt.setString(2, accountId);
-                
-                int rowsAffected = updateStmt.executeUpdate();
-                if (rowsAffected == 0) {
-                    connection.rollback();
-                    return false;
-                }
+            if (!credit(connection, accountId, amount)) {
+                connection.rollback();
+                return false;
             }
             
             // Then, record the transaction
             String insertSql = "INSERT INTO transactions (account_id, transaction_type, amount) VALUES (?, 'DEPOSIT', ?)";
-            try (PreparedStatement insertStmt = connection.prepareStatement(insertSql)) {
+            try (PreparedStatement insertStmt = InstrumentedStatements.prepare(connection, "transactions.insert", insertSql)) {
                 insertStmt.setString(1, accountId);
                 insertStmt.setBigDecimal(2, amount);
                 
@@ -58,7 +107,7 @@ public class TransactionService {
             
             // Finally, add an audit log entry
             String auditSql = "INSERT INTO audit_log (action_type, entity_type, entity_id, description) VALUES (?, ?, ?, ?)";
-            try (PreparedStatement auditStmt = connection.prepareStatement(auditSql)) {
+            try (PreparedStatement auditStmt = InstrumentedStatements.prepare(connection, "audit_log.insert", auditSql)) {
                 auditStmt.setString(1, "DEPOSIT");
                 auditStmt.setString(2, "ACCOUNT");
                 auditStmt.setString(3, accountId);
@@ -67,6 +116,9 @@ public class TransactionService {
                 auditStmt.executeUpdate();
             }
             
+            // Queue a change event for the outbox relay
+            appendOutbox(connection, "DEPOSIT", accountId, null, amount);
+            
             connection.commit();
             return true;
         } catch (SQLException e) {
@@ -94,46 +146,19 @@ public class TransactionService {
      * @return true if successful
      */
     public boolean recordWithdrawal(String accountId, BigDecimal amount, boolean allowNegativeBalance) {
-        Connection connection = connectionManager.getConnection();
+        Connection connection = connectionManager.getConnection(ConnectionLane.TRANSACTIONAL);
         try {
             connection.setAutoCommit(false);
             
-            // Check current balance if negative balance is not allowed
-            if (!allowNegativeBalance) {
-                String checkSql = "SELECT balance FROM accounts WHERE id = ?";
-                try (PreparedStatement checkStmt = connection.prepareStatement(checkSql)) {
-                    checkStmt.setString(1, accountId);
-                    
-                    ResultSet rs = checkStmt.executeQuery();
-                    if (rs.next()) {
-                        BigDecimal currentBalance = rs.getBigDecimal("balance");
-                        if (currentBalance.compareTo(amount) < 0) {
-                            connection.rollback();
-                            return false; // Insufficient funds
-                        }
-                    } else {
-                        connection.rollback();
-                        return false; // Account not found
-                    }
-                }
-            }
-            
-            // Update account balance
-            String updateSql = "UPDATE accounts SET balance = balance - ? WHERE id = ?";
-            try (PreparedStatement updateStmt = connection.prepareStatement(updateSql)) {
-                updateStmt.setBigDecimal(1, amount);
-                updateStmt.setString(2, accountId);
-                
-                int rowsAffected = updateStmt.executeUpdate();
-                if (rowsAffected == 0) {
-                    connection.rollback();
-                    return false;
-                }
+            // Update account balance, checking funds if negative balance is not allowed
+            if (!debit(connection, accountId, amount, allowNegativeBalance)) {
+                connection.rollback();
+                return false;
             }
             
             // Record the transaction
             String insertSql = "INSERT INTO transactions (account_id, transaction_type, amount) VALUES (?, 'WITHDRAWAL', ?)";
-            try (PreparedStatement insertStmt = connection.prepareStatement(insertSql)) {
+            try (PreparedStatement insertStmt = InstrumentedStatements.prepare(connection, "transactions.insert", insertSql)) {
                 insertStmt.setString(1, accountId);
                 insertStmt.setBigDecimal(2, amount);
                 
@@ -142,7 +167,7 @@ public class TransactionService {
             
             // Add an audit log entry
             String auditSql = "INSERT INTO audit_log (action_type, entity_type, entity_id, description) VALUES (?, ?, ?, ?)";
-            try (PreparedStatement auditStmt = connection.prepareStatement(auditSql)) {
+            try (PreparedStatement auditStmt = InstrumentedStatements.prepare(connection, "audit_log.insert", auditSql)) {
                 auditStmt.setString(1, "WITHDRAWAL");
                 auditStmt.setString(2, "ACCOUNT");
                 auditStmt.setString(3, accountId);
@@ -151,6 +176,9 @@ public class TransactionService {
                 auditStmt.executeUpdate();
             }
             
+            // Queue a change event for the outbox relay
+            appendOutbox(connection, "WITHDRAWAL", accountId, null, amount);
+            
             connection.commit();
             return true;
         } catch (SQLException e) {
@@ -179,87 +207,138 @@ public class TransactionService {
      * @return true if successful
      */
     public boolean recordTransfer(String fromAccountId, String toAccountId, BigDecimal amount, boolean allowNegativeBalance) {
-        Connection connection = connectionManager.getConnection();
+        Connection connection = connectionManager.getConnection(ConnectionLane.TRANSACTIONAL);
         try {
             connection.setAutoCommit(false);
             
-            // Check current balance if negative balance is not allowed
-            if (!allowNegativeBalance) {
-                String checkSql = "SELECT balance FROM accounts WHERE id = ?";
-                try (PreparedStatement checkStmt = connection.prepareStatement(checkSql)) {
-                    checkStmt.setString(1, fromAccountId);
-                    
-                    ResultSet rs = checkStmt.executeQuery();
-                    if (rs.next()) {
-                        BigDecimal currentBalance = rs.getBigDecimal("balance");
-                        if (currentBalance.compareTo(amount) < 0) {
-                            connection.rollback();
-                            return false; // Insufficient funds
-                        }
-                    } else {
-                        connection.rollback();
-                        return false; // Account not found
-                    }
-                }
+            // Update source account balance, checking funds if negative balance is not allowed
+            if (!debit(connection, fromAccountId, amount, allowNegativeBalance)) {
+                connection.rollback();
+                return false;
             }
             
-            // Update source account balance
-            String updateSourceSql = "UPDATE accounts SET balance = balance - ? WHERE id = ?";
-            try (PreparedStatement updateStmt = connection.prepareStatement(updateSourceSql)) {
-                updateStmt.setBigDecimal(1, amount);
-                updateStmt.setString(2, fromAccountId);
-                
-                int rowsAffected = updateStmt.executeUpdate();
-                if (rowsAffected == 0) {
-                    connection.rollback();
-                    return false;
-                }
+            // Update destination account balance
+            if (!credit(connection, toAccountId, amount)) {
+                connection.rollback();
+                return false;
             }
             
-            // Update destination account balance
-            String updateDestSql = "UPDATE accounts SET balance = balance + ? WHERE id = ?";
-            try (PreparedStatement updateStmt = connection.prepareStatement(updateDestSql)) {
-                updateStmt.setBigDecimal(1, amount);
-                updateStmt.setString(2, toAccountId);
+            if (singleRowTransfers) {
+                // One ledger row; readers derive the destination's TRANSFER_IN view from it
+                String insertTransferSql = "INSERT INTO transactions (account_id, transaction_type, amount, related_account_id) VALUES (?, 'TRANSFER', ?, ?)";
+                try (PreparedStatement insertStmt = InstrumentedStatements.prepare(connection, "transactions.insert", insertTransferSql)) {
+                    insertStmt.setString(1, fromAccountId);
+                    insertStmt.setBigDecimal(2, amount);
+                    insertStmt.setString(3, toAccountId);
+                    
+                    insertStmt.executeUpdate();
+                }
+            } else {
+                // Record withdrawal transaction
+                String insertWithdrawalSql = "INSERT INTO transactions (account_id, transaction_type, amount, related_account_id) VALUES (?, 'TRANSFER_OUT', ?, ?)";
+                try (PreparedStatement insertStmt = InstrumentedStatements.prepare(connection, "transactions.insert", insertWithdrawalSql)) {
+                    insertStmt.setString(1, fromAccountId);
+                    insertStmt.setBigDecimal(2, amount);
+                    insertStmt.setString(3, toAccountId);
+                    
+                    insertStmt.executeUpdate();
+                }
                 
-                int rowsAffected = updateStmt.executeUpdate();
-                if (rowsAffected == 0) {
-                    connection.rollback();
-                    return false;
+                // Record deposit transaction
+                String insertDepositSql = "INSERT INTO transactions (account_id, transaction_type, amount, related_account_id) VALUES (?, 'TRANSFER_IN', ?, ?)";
+                try (PreparedStatement insertStmt = InstrumentedStatements.prepare(connection, "transactions.insert", insertDepositSql)) {
+                    insertStmt.setString(1, toAccountId);
+                    insertStmt.setBigDecimal(2, amount);
+                    insertStmt.setString(3, fromAccountId);
+                    
+                    insertStmt.executeUpdate();
                 }
+                
             }
             
-            // Record withdrawal transaction
-            String insertWithdrawalSql = "INSERT INTO transactions (account_id, transaction_type, amount, related_account_id) VALUES (?, 'TRANSFER_OUT', ?, ?)";
-            try (PreparedStatement insertStmt = connection.prepareStatement(insertWithdrawalSql)) {
-                insertStmt.setString(1, fromAccountId);
-                insertStmt.setBigDecimal(2, amount);
-                insertStmt.setString(3, toAccountId);
+            // Add an audit log entry
+            String auditSql = "INSERT INTO audit_log (action_type, entity_type, entity_id, description) VALUES (?, ?, ?, ?)";
+            try (PreparedStatement auditStmt = InstrumentedStatements.prepare(connection, "audit_log.insert", auditSql)) {
+                auditStmt.setString(1, "TRANSFER");
+                auditStmt.setString(2, "ACCOUNT");
+                auditStmt.setString(3, fromAccountId + "," + toAccountId);
+                auditStmt.setString(4, "Transfer of " + amount + " from " + fromAccountId + " to " + toAccountId);
                 
-                insertStmt.executeUpdate();
+                auditStmt.executeUpdate();
             }
             
-            // Record deposit transaction
-            String insertDepositSql = "INSERT INTO transactions (account_id, transaction_type, amount, related_account_id) VALUES (?, 'TRANSFER_IN', ?, ?)";
-            try (PreparedStatement insertStmt = connection.prepareStatement(insertDepositSql)) {
-                insertStmt.setString(1, toAccountId);
-                insertStmt.setBigDecimal(2, amount);
-                insertStmt.setString(3, fromAccountId);
+            // Queue a change event for the outbox relay
+            appendOutbox(connection, "TRANSFER", fromAccountId, toAccountId, amount);
+            
+            connection.commit();
+            return true;
+        } catch (SQLException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackEx) {
+                throw new DatabaseException("Error rolling back transaction", rollbackEx);
+            }
+            throw new DatabaseException("Error recording transfer: " + e.getMessage(), e);
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+                connectionManager.releaseConnection(connection);
+            } catch (SQLException e) {
+                throw new DatabaseException("Error resetting auto-commit", e);
+            }
+        }
+    }
+    
+    /**
+     * Records a back-dated correction: a deposit or withdrawal dated at the
+     * time it should have happened, applied to the current balance. The
+     * balance may go negative, since the correction restates what already
+     * happened. A correction dated in an archived month stays in the
+     * {@code transactions} table until the next tiering run merges it into
+     * the month's segment.
+     * @param accountId The account ID
+     * @param amount The correction, positive to credit and negative to debit
+     * @param effectiveDate When the corrected transaction took place
+     * @return false if the account does not exist
+     */
+    public boolean recordCorrection(String accountId, BigDecimal amount, Date effectiveDate) {
+        Connection connection = connectionManager.getConnection(ConnectionLane.TRANSACTIONAL);
+        try {
+            connection.setAutoCommit(false);
+            
+            boolean credit = amount.signum() > 0;
+            boolean updated = credit ? credit(connection, accountId, amount)
+                                     : debit(connection, accountId, amount.negate(), true);
+            if (!updated) {
+                connection.rollback();
+                return false;
+            }
+            
+            // Record the transaction at its effective date
+            String insertSql = "INSERT INTO transactions (account_id, transaction_type, amount, transaction_date) VALUES (?, ?, ?, ?)";
+            try (PreparedStatement insertStmt = InstrumentedStatements.prepare(connection, "transactions.insert_dated", insertSql)) {
+                insertStmt.setString(1, accountId);
+                insertStmt.setString(2, credit ? "DEPOSIT" : "WITHDRAWAL");
+                insertStmt.setBigDecimal(3, amount.abs());
+                insertStmt.setTimestamp(4, new java.sql.Timestamp(effectiveDate.getTime()));
                 
                 insertStmt.executeUpdate();
             }
             
             // Add an audit log entry
             String auditSql = "INSERT INTO audit_log (action_type, entity_type, entity_id, description) VALUES (?, ?, ?, ?)";
-            try (PreparedStatement auditStmt = connection.prepareStatement(auditSql)) {
-                auditStmt.setString(1, "TRANSFER");
+            try (PreparedStatement auditStmt = InstrumentedStatements.prepare(connection, "audit_log.insert", auditSql)) {
+                auditStmt.setString(1, "CORRECTION");
                 auditStmt.setString(2, "ACCOUNT");
-                auditStmt.setString(3, fromAccountId + "," + toAccountId);
-                auditStmt.setString(4, "Transfer of " + amount + " from " + fromAccountId + " to " + toAccountId);
+                auditStmt.setString(3, accountId);
+                auditStmt.setString(4, "Correction of " + amount + " effective " + new java.sql.Timestamp(effectiveDate.getTime()));
                 
                 auditStmt.executeUpdate();
             }
             
+            // Queue a change event for the outbox relay
+            appendOutbox(connection, "CORRECTION", accountId, null, amount);
+            
             connection.commit();
             return true;
         } catch (SQLException e) {
@@ -268,7 +347,7 @@ public class TransactionService {
             } catch (SQLException rollbackEx) {
                 throw new DatabaseException("Error rolling back transaction", rollbackEx);
             }
-            throw new DatabaseException("Error recording transfer: " + e.getMessage(), e);
+            throw new DatabaseException("Error recording correction: " + e.getMessage(), e);
         } finally {
             try {
                 connection.setAutoCommit(true);
@@ -280,17 +359,231 @@ public class TransactionService {
     }
     
     /**
-     * Gets transaction history for an account.
+     * Identifies the latest change to past transactions: the ID of the
+     * newest audit entry of a back-dated correction or a bulk load of
+     * transactions. It changes whenever one is recorded, by any process.
+     * @return The revision, or 0 if there has been none
+     */
+    public long getHistoryRevision() {
+        String sql = "SELECT MAX(id) FROM audit_log WHERE action_type IN ('CORRECTION', 'BULK_LOAD')";
+        Connection connection = connectionManager.getConnection(ConnectionLane.POINT_READ);
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "audit_log.history_revision", sql);
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            throw new DatabaseException("Error reading history revision: " + e.getMessage(), e);
+        } finally {
+            connectionManager.releaseConnection(connection);
+        }
+    }
+    
+    /**
+     * Applies several deposits and withdrawals to one account in a single
+     * transaction, in order. The balance is read once under a row lock, each
+     * withdrawal is checked against the running balance, and the accepted
+     * postings are applied with one balance update and batched transaction
+     * and audit inserts.
      * @param accountId The account ID
-     * @return List of transaction details as maps
+     * @param amounts Deposits as positive amounts, withdrawals as negative amounts
+     * @param allowNegativeBalance Whether withdrawals may take the balance below zero
+     * @return Whether each posting was applied; all false if the account does not exist
+     */
+    public boolean[] recordPostings(String accountId, List<BigDecimal> amounts, boolean allowNegativeBalance) {
+        boolean[] applied = new boolean[amounts.size()];
+        Connection connection = connectionManager.getConnection(ConnectionLane.TRANSACTIONAL);
+        try {
+            connection.setAutoCommit(false);
+            
+            // Lock the account and read its balance, including any sub-ledger slots
+            BigDecimal balance;
+            String lockSql = "SELECT balance FROM accounts WHERE id = ? FOR UPDATE";
+            try (PreparedStatement lockStmt = InstrumentedStatements.prepare(connection, "accounts.lock", lockSql)) {
+                lockStmt.setString(1, accountId);
+                
+                ResultSet rs = lockStmt.executeQuery();
+                if (!rs.next()) {
+                    connection.rollback();
+                    return applied; // Account not found
+                }
+                balance = rs.getBigDecimal("balance");
+            }
+            if (accountSlots.isStriped(accountId)) {
+                balance = balance.add(accountSlots.lockSlots(connection, accountId));
+            }
+            
+            // Accept postings in order against the running balance
+            BigDecimal net = BigDecimal.ZERO;
+            for (int i = 0; i < applied.length; i++) {
+                BigDecimal amount = amounts.get(i);
+                if (amount.signum() > 0 || allowNegativeBalance || balance.add(amount).signum() >= 0) {
+                    applied[i] = true;
+                    balance = balance.add(amount);
+                    net = net.add(amount);
+                }
+            }
+            
+            // One balance update for the whole batch; funds were already checked above
+            if (net.signum() > 0) {
+                credit(connection, accountId, net);
+            } else if (net.signum() < 0) {
+                debit(connection, accountId, net.negate(), true);
+            }
+            
+            String insertSql = "INSERT INTO transactions (account_id, transaction_type, amount) VALUES (?, ?, ?)";
+            String auditSql = "INSERT INTO audit_log (action_type, entity_type, entity_id, description) VALUES (?, ?, ?, ?)";
+            try (PreparedStatement insertStmt = InstrumentedStatements.prepare(connection, "transactions.insert_batch", insertSql);
+                 PreparedStatement auditStmt = InstrumentedStatements.prepare(connection, "audit_log.insert_batch", auditSql)) {
+                for (int i = 0; i < applied.length; i++) {
+                    if (!applied[i]) {
+                        continue;
+                    }
+                    BigDecimal amount = amounts.get(i);
+                    boolean deposit = amount.signum() > 0;
+                    insertStmt.setString(1, accountId);
+                    insertStmt.setString(2, deposit ? "DEPOSIT" : "WITHDRAWAL");
+                    insertStmt.setBigDecimal(3, amount.abs());
+                    insertStmt.addBatch();
+                    
+                    auditStmt.setString(1, deposit ? "DEPOSIT" : "WITHDRAWAL");
+                    auditStmt.setString(2, "ACCOUNT");
+                    auditStmt.setString(3, accountId);
+                    auditStmt.setString(4, (deposit ? "Deposit of " : "Withdrawal of ") + amount.abs());
+                    auditStmt.addBatch();
+                }
+                insertStmt.executeBatch();
+                auditStmt.executeBatch();
+            }
+            
+            // Queue a change event per applied posting for the outbox relay
+            if (outboxEnabled) {
+                String outboxSql = "INSERT INTO outbox (event_type, account_id, amount) VALUES (?, ?, ?)";
+                try (PreparedStatement outboxStmt = InstrumentedStatements.prepare(connection, "outbox.insert_batch", outboxSql)) {
+                    for (int i = 0; i < applied.length; i++) {
+                        if (applied[i]) {
+                            BigDecimal amount = amounts.get(i);
+                            outboxStmt.setString(1, amount.signum() > 0 ? "DEPOSIT" : "WITHDRAWAL");
+                            outboxStmt.setString(2, accountId);
+                            outboxStmt.setBigDecimal(3, amount.abs());
+                            outboxStmt.addBatch();
+                        }
+                    }
+                    outboxStmt.executeBatch();
+                }
+            }
+            
+            connection.commit();
+            return applied;
+        } catch (SQLException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackEx) {
+                throw new DatabaseException("Error rolling back transaction", rollbackEx);
+            }
+            throw new DatabaseException("Error recording postings: " + e.getMessage(), e);
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+                connectionManager.releaseConnection(connection);
+            } catch (SQLException e) {
+                throw new DatabaseException("Error resetting auto-commit", e);
+            }
+        }
+    }
+    
+    /**
+     * Writes a change event to the outbox within the current transaction,
+     * if outbox events are enabled, so the event commits or rolls back with
+     * the change. Written after the balance updates, while the accounts are
+     * locked, so one account's events are numbered in commit order.
+     */
+    private void appendOutbox(Connection connection, String eventType, String accountId, String relatedAccountId,
+                              BigDecimal amount) throws SQLException {
+        if (!outboxEnabled) {
+            return;
+        }
+        String outboxSql = "INSERT INTO outbox (event_type, account_id, related_account_id, amount) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement outboxStmt = InstrumentedStatements.prepare(connection, "outbox.insert", outboxSql)) {
+            outboxStmt.setString(1, eventType);
+            outboxStmt.setString(2, accountId);
+            outboxStmt.setString(3, relatedAccountId);
+            outboxStmt.setBigDecimal(4, amount);
+            
+            outboxStmt.executeUpdate();
+        }
+    }
+    
+    /**
+     * Credits an account within the current transaction, using a random
+     * sub-ledger slot if the account is striped.
+     * @return false if the account does not exist
+     */
+    private boolean credit(Connection connection, String accountId, BigDecimal amount) throws SQLException {
+        if (accountSlots.credit(connection, accountId, amount)) {
+            return true;
+        }
+        String updateSql = "UPDATE accounts SET balance = balance + ? WHERE id = ?";
+        try (PreparedStatement updateStmt = InstrumentedStatements.prepare(connection, "accounts.credit", updateSql)) {
+            updateStmt.setBigDecimal(1, amount);
+            updateStmt.setString(2, accountId);
+            
+            return updateStmt.executeUpdate() > 0;
+        }
+    }
+    
+    /**
+     * Debits an account within the current transaction, from its sub-ledger
+     * slots if the account is striped.
+     * @return false if the account does not exist or has insufficient funds
+     */
+    private boolean debit(Connection connection, String accountId, BigDecimal amount,
+                          boolean allowNegativeBalance) throws SQLException {
+        switch (accountSlots.debit(connection, accountId, amount, allowNegativeBalance)) {
+            case DONE:
+                return true;
+            case INSUFFICIENT_FUNDS:
+                return false;
+            default:
+                break;
+        }
+        
+        // Check current balance if negative balance is not allowed
+        if (!allowNegativeBalance) {
+            String checkSql = "SELECT balance FROM accounts WHERE id = ?";
+            try (PreparedStatement checkStmt = InstrumentedStatements.prepare(connection, "accounts.select_balance", checkSql)) {
+                checkStmt.setString(1, accountId);
+                
+                ResultSet rs = checkStmt.executeQuery();
+                if (!rs.next()) {
+                    return false; // Account not found
+                }
+                if (rs.getBigDecimal("balance").compareTo(amount) < 0) {
+                    return false; // Insufficient funds
+                }
+            }
+        }
+        
+        String updateSql = "UPDATE accounts SET balance = balance - ? WHERE id = ?";
+        try (PreparedStatement updateStmt = InstrumentedStatements.prepare(connection, "accounts.debit", updateSql)) {
+            updateStmt.setBigDecimal(1, amount);
+            updateStmt.setString(2, accountId);
+            
+            return updateStmt.executeUpdate() > 0;
+        }
+    }
+    
+    /**
+     * Gets transaction history for an account, including archived months.
+     * @param accountId The account ID
+     * @return List of transaction details as maps, newest first
      */
     public List<Map<String, Object>> getTransactionHistory(String accountId) {
-        String sql = "SELECT * FROM transactions WHERE account_id = ? ORDER BY transaction_date DESC";
+        String sql = "SELECT * FROM (" + accountEntriesSql("%1$s = ?") + ") t ORDER BY transaction_date DESC";
         List<Map<String, Object>> transactions = new ArrayList<>();
         
-        Connection connection = connectionManager.getConnection();
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        Connection connection = connectionManager.getConnection(ConnectionLane.POINT_READ);
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "transactions.history", sql)) {
             stmt.setString(1, accountId);
+            stmt.setString(2, accountId);
             
             ResultSet rs = stmt.executeQuery();
             while (rs.next()) {
@@ -305,6 +598,11 @@ public class TransactionService {
                 transactions.add(transaction);
             }
             
+            List<TransactionSegment.Row> archived = archive.read(accountId, Long.MIN_VALUE, Long.MAX_VALUE);
+            if (!archived.isEmpty()) {
+                mergeArchived(transactions, archived, false);
+                transactions.sort(Comparator.comparing((Map<String, Object> t) -> (Date) t.get("date")).reversed());
+            }
             return transactions;
         } catch (SQLException e) {
             throw new DatabaseException("Error retrieving transaction history: " + e.getMessage(), e);
@@ -314,7 +612,28 @@ public class TransactionService {
     }
     
     /**
-     * Gets the account statement for a specific time period.
+     * Adds archived rows not already present among the database rows. A month
+     * being tiered is briefly in both places, so rows are matched by ID.
+     */
+    private static void mergeArchived(List<Map<String, Object>> transactions, List<TransactionSegment.Row> archived,
+                                      boolean statement) {
+        Set<Object> ids = new HashSet<>();
+        for (Map<String, Object> transaction : transactions) {
+            ids.add(transaction.get("id"));
+        }
+        for (TransactionSegment.Row row : archived) {
+            if (ids.add(row.id)) {
+                Map<String, Object> transaction = row.toMap();
+                if (statement) {
+                    transaction.remove("accountId");
+                }
+                transactions.add(transaction);
+            }
+        }
+    }
+    
+    /**
+     * Gets the account statement for a specific time period, including archived months.
      * @param accountId The account ID
      * @param startDate Start date of the statement period
      * @param endDate End date of the statement period
@@ -323,16 +642,16 @@ public class TransactionService {
     public Map<String, Object> getAccountStatement(String accountId, Date startDate, Date endDate) {
         Map<String, Object> statement = new HashMap<>();
         
-        String transactionSql = "SELECT * FROM transactions WHERE account_id = ? AND " +
-                                "transaction_date BETWEEN ? AND ? ORDER BY transaction_date";
+        String transactionSql = "SELECT * FROM (" + accountEntriesSql("%1$s = ? AND transaction_date BETWEEN ? AND ?") +
+                                ") t ORDER BY transaction_date";
                                 
-        String balanceSql = "SELECT balance FROM accounts WHERE id = ?";
+        String balanceSql = "SELECT " + AccountSlots.balanceExpression("a") + " AS balance FROM accounts a WHERE a.id = ?";
         
-        Connection connection = connectionManager.getConnection();
+        Connection connection = connectionManager.getConnection(ConnectionLane.POINT_READ);
         try {
             // Get current balance
             BigDecimal currentBalance = BigDecimal.ZERO;
-            try (PreparedStatement balanceStmt = connection.prepareStatement(balanceSql)) {
+            try (PreparedStatement balanceStmt = InstrumentedStatements.prepare(connection, "accounts.select_balance", balanceSql)) {
                 balanceStmt.setString(1, accountId);
                 
                 ResultSet balanceRs = balanceStmt.executeQuery();
@@ -346,10 +665,12 @@ public class TransactionService {
             BigDecimal totalDeposits = BigDecimal.ZERO;
             BigDecimal totalWithdrawals = BigDecimal.ZERO;
             
-            try (PreparedStatement transactionStmt = connection.prepareStatement(transactionSql)) {
-                transactionStmt.setString(1, accountId);
-                transactionStmt.setTimestamp(2, new java.sql.Timestamp(startDate.getTime()));
-                transactionStmt.setTimestamp(3, new java.sql.Timestamp(endDate.getTime()));
+            try (PreparedStatement transactionStmt = InstrumentedStatements.prepare(connection, "transactions.statement_range", transactionSql)) {
+                for (int half = 0, index = 1; half < 2; half++) {
+                    transactionStmt.setString(index++, accountId);
+                    transactionStmt.setTimestamp(index++, new java.sql.Timestamp(startDate.getTime()));
+                    transactionStmt.setTimestamp(index++, new java.sql.Timestamp(endDate.getTime()));
+                }
                 
                 ResultSet rs = transactionStmt.executeQuery();
                 while (rs.next()) {
@@ -361,15 +682,24 @@ public class TransactionService {
                     transaction.put("date", rs.getTimestamp("transaction_date"));
                     
                     transactions.add(transaction);
-                    
-                    // Calculate totals
-                    BigDecimal amount = rs.getBigDecimal("amount");
-                    String type = rs.getString("transaction_type");
-                    if ("DEPOSIT".equals(type) || "TRANSFER_IN".equals(type)) {
-                        totalDeposits = totalDeposits.add(amount);
-                    } else if ("WITHDRAWAL".equals(type) || "TRANSFER_OUT".equals(type)) {
-                        totalWithdrawals = totalWithdrawals.add(amount);
-                    }
+                }
+            }
+            
+            // Older months of the period may live in the archive
+            List<TransactionSegment.Row> archived = archive.read(accountId, startDate.getTime(), endDate.getTime());
+            if (!archived.isEmpty()) {
+                mergeArchived(transactions, archived, true);
+                transactions.sort(Comparator.comparing(t -> (Date) t.get("date")));
+            }
+            
+            // Calculate totals
+            for (Map<String, Object> transaction : transactions) {
+                BigDecimal amount = (BigDecimal) transaction.get("amount");
+                String type = (String) transaction.get("type");
+                if ("DEPOSIT".equals(type) || "TRANSFER_IN".equals(type) || "INTEREST".equals(type)) {
+                    totalDeposits = totalDeposits.add(amount);
+                } else if ("WITHDRAWAL".equals(type) || "TRANSFER_OUT".equals(type)) {
+                    totalWithdrawals = totalWithdrawals.add(amount);
                 }
             }
             
@@ -391,6 +721,130 @@ public class TransactionService {
         }
     }
     
+    /**
+     * Receives the rows of {@link #streamTransactions}.
+     */
+    public interface TransactionSink {
+        void accept(TransactionSegment.Row row) throws IOException;
+    }
+    
+    /**
+     * Streams the transactions of a range of accounts within a period,
+     * including archived months, grouped by account in ascending ID order and
+     * in date order within each account. Database rows are read through a
+     * cursor and archived rows one account at a time, so memory use does not
+     * grow with the size of the range.
+     *
+     * @param afterAccountId Exclusive lower bound on account IDs, or null
+     * @param lastAccountId Inclusive upper bound on account IDs, or null
+     * @param startDate Start date of the period
+     * @param endDate End date of the period
+     * @param sink Receives each row
+     * @return Number of rows streamed
+     * @throws IOException If the sink fails; the stream stops at the failing row
+     */
+    public long streamTransactions(String afterAccountId, String lastAccountId, Date startDate, Date endDate,
+                                   TransactionSink sink) throws IOException {
+        // Driving from accounts includes accounts whose rows in the period are all archived
+        String rangeFilter = (afterAccountId != null ? " AND %1$s > ?" : "") + (lastAccountId != null ? " AND %1$s <= ?" : "");
+        String sql = "SELECT a.id AS account_id, t.id, t.transaction_type, t.amount, t.related_account_id, " +
+                     "t.transaction_date FROM accounts a LEFT JOIN (" +
+                     accountEntriesSql("transaction_date BETWEEN ? AND ?" + rangeFilter) + ") t ON t.account_id = a.id " +
+                     "WHERE 1 = 1" + String.format(rangeFilter, "a.id") +
+                     " ORDER BY a.id, t.transaction_date, t.id";
+        
+        Connection connection = connectionManager.getConnection(ConnectionLane.REPORTING);
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "transactions.stream_range", sql)) {
+            int index = 1;
+            for (int pass = 0; pass < 3; pass++) {
+                // Both halves of the view take the period and the range; the outer query only the range
+                if (pass < 2) {
+                    stmt.setTimestamp(index++, new java.sql.Timestamp(startDate.getTime()));
+                    stmt.setTimestamp(index++, new java.sql.Timestamp(endDate.getTime()));
+                }
+                if (afterAccountId != null) {
+                    stmt.setString(index++, afterAccountId);
+                }
+                if (lastAccountId != null) {
+                    stmt.setString(index++, lastAccountId);
+                }
+            }
+            stmt.setFetchSize(1000);
+            
+            long rows = 0;
+            String currentAccount = null;
+            Set<Long> archivedIds = new HashSet<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String accountId = rs.getString("account_id");
+                    if (!accountId.equals(currentAccount)) {
+                        // Archived months precede the rows still in the database
+                        currentAccount = accountId;
+                        archivedIds.clear();
+                        for (TransactionSegment.Row row : archive.read(accountId, startDate.getTime(), endDate.getTime())) {
+                            archivedIds.add(row.id);
+                            sink.accept(row);
+                            rows++;
+                        }
+                    }
+                    long id = rs.getLong("id");
+                    if (rs.wasNull() || archivedIds.contains(id)) {
+                        continue;  // No database rows, or a row also in a month being tiered
+                    }
+                    sink.accept(new TransactionSegment.Row(id, accountId, rs.getString("transaction_type"),
+                                                           rs.getBigDecimal("amount"), rs.getString("related_account_id"),
+                                                           rs.getTimestamp("transaction_date").getTime()));
+                    rows++;
+                }
+            }
+            return rows;
+        } catch (SQLException e) {
+            throw new DatabaseException("Error streaming transactions: " + e.getMessage(), e);
+        } finally {
+            connectionManager.releaseConnection(connection);
+        }
+    }
+    
+    /**
+     * Streams the withdrawals and outgoing transfers made since a time, in
+     * no particular order. Single-row transfers are reported as
+     * TRANSFER_OUT. Archived months are not read, so the time should fall
+     * within the hot months.
+     *
+     * @param since Earliest transaction date to include
+     * @param sink Receives each row
+     * @return Number of rows streamed
+     * @throws IOException If the sink fails; the stream stops at the failing row
+     */
+    public long streamDebitsSince(Date since, TransactionSink sink) throws IOException {
+        String sql = "SELECT id, account_id, CASE WHEN transaction_type = 'TRANSFER' THEN 'TRANSFER_OUT' " +
+                     "ELSE transaction_type END AS transaction_type, amount, related_account_id, transaction_date " +
+                     "FROM transactions WHERE transaction_date >= ? " +
+                     "AND transaction_type IN ('WITHDRAWAL', 'TRANSFER_OUT', 'TRANSFER')";
+
+        Connection connection = connectionManager.getConnection(ConnectionLane.REPORTING);
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "transactions.stream_debits", sql)) {
+            stmt.setTimestamp(1, new java.sql.Timestamp(since.getTime()));
+            stmt.setFetchSize(1000);
+
+            long rows = 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    sink.accept(new TransactionSegment.Row(rs.getLong("id"), rs.getString("account_id"),
+                                                           rs.getString("transaction_type"), rs.getBigDecimal("amount"),
+                                                           rs.getString("related_account_id"),
+                                                           rs.getTimestamp("transaction_date").getTime()));
+                    rows++;
+                }
+            }
+            return rows;
+        } catch (SQLException e) {
+            throw new DatabaseException("Error streaming recent debits: " + e.getMessage(), e);
+        } finally {
+            connectionManager.releaseConnection(connection);
+        }
+    }
+
     /**
      * Records account ownership for corporate accounts.
      * @param accountId The account ID
@@ -398,20 +852,20 @@ public class TransactionService {
      * @return true if successful
      */
     public boolean recordAccountOwnership(String accountId, String[] customerIds) {
-        Connection connection = connectionManager.getConnection();
+        Connection connection = connectionManager.getConnection(ConnectionLane.TRANSACTIONAL);
         try {
             connection.setAutoCommit(false);
             
             // First, delete existing ownership records
             String deleteSql = "DELETE FROM account_owners WHERE account_id = ?";
-            try (PreparedStatement deleteStmt = connection.prepareStatement(deleteSql)) {
+            try (PreparedStatement deleteStmt = InstrumentedStatements.prepare(connection, "account_owners.delete", deleteSql)) {
                 deleteStmt.setString(1, accountId);
                 deleteStmt.executeUpdate();
             }
             
             // Then, insert new ownership records
             String insertSql = "INSERT INTO account_owners (account_id, customer_id) VALUES (?, ?)";
-            try (PreparedStatement insertStmt = connection.prepareStatement(insertSql)) {
+            try (PreparedStatement insertStmt = InstrumentedStatements.prepare(connection, "account_owners.insert", insertSql)) {
                 for (String customerId : customerIds) {
                     insertStmt.setString(1, accountId);
                     insertStmt.setString(2, customerId);
@@ -422,7 +876,7 @@ public class TransactionService {
             
             // Add audit log entry
             String auditSql = "INSERT INTO audit_log (action_type, entity_type, entity_id, description) VALUES (?, ?, ?, ?)";
-            try (PreparedStatement auditStmt = connection.prepareStatement(auditSql)) {
+            try (PreparedStatement auditStmt = InstrumentedStatements.prepare(connection, "audit_log.insert", auditSql)) {
                 auditStmt.setString(1, "UPDATE_OWNERSHIP");
                 auditStmt.setString(2, "ACCOUNT");
                 auditStmt.setString(3, accountId);
@@ -431,6 +885,9 @@ public class TransactionService {
                 auditStmt.executeUpdate();
             }
             
+            // Queue a change event for the outbox relay
+            appendOutbox(connection, "OWNERSHIP", accountId, null, null);
+            
             connection.commit();
             return true;
         } catch (SQLException e) {
@@ -0,0 +1,105 @@
+package bank.monitoring;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry of operation, SQL statement and cache metrics following the
+ * Singleton pattern. Every metric is registered with the platform MBean
+ * server when first created. Callers should keep references to the metrics
+ * they update so the hot path never goes through the registry maps.
+ */
+public class BankMetrics {
+    private static final Logger logger = LoggerFactory.getLogger(BankMetrics.class);
+    private static final String JMX_DOMAIN = "bank";
+    private static BankMetrics instance;
+    
+    private final Map<String, OperationMetrics> operations = new ConcurrentSkipListMap<>();
+    private final Map<String, StatementMetrics> statements = new ConcurrentSkipListMap<>();
+    private final Map<String, CacheMetrics> caches = new ConcurrentSkipListMap<>();
+    
+    private BankMetrics() {
+    }
+    
+    public static synchronized BankMetrics getInstance() {
+        if (instance == null) {
+            instance = new BankMetrics();
+        }
+        return instance;
+    }
+    
+    /**
+     * Gets or creates the metrics for a Bank operation.
+     * @param name Operation name, e.g. "deposit"
+     */
+    public OperationMetrics operation(String name) {
+        return getOrRegister(operations, "Operation", name, OperationMetrics::new);
+    }
+    
+    /**
+     * Gets or creates the metrics for a named SQL statement.
+     * @param name Statement name, e.g. "accounts.credit"
+     */
+    public StatementMetrics statement(String name) {
+        return getOrRegister(statements, "Statement", name, StatementMetrics::new);
+    }
+    
+    /**
+     * Gets or creates the metrics for a cache.
+     * @param name Cache name, e.g. "account"
+     */
+    public CacheMetrics cache(String name) {
+        return getOrRegister(caches, "Cache", name, CacheMetrics::new);
+    }
+    
+    public Collection<OperationMetrics> getOperations() {
+        return operations.values();
+    }
+    
+    public Collection<StatementMetrics> getStatements() {
+        return statements.values();
+    }
+    
+    public Collection<CacheMetrics> getCaches() {
+        return caches.values();
+    }
+    
+    /**
+     * Returns the registered metrics for a name, creating and registering them
+     * if absent. Concurrent callers may each create an instance, but only the
+     * one that wins the map insert is registered with JMX.
+     */
+    private static <T> T getOrRegister(Map<String, T> registry, String type, String name, Function<String, T> factory) {
+        T metrics = registry.get(name);
+        if (metrics != null) {
+            return metrics;
+        }
+        T created = factory.apply(name);
+        metrics = registry.putIfAbsent(name, created);
+        if (metrics != null) {
+            return metrics;
+        }
+        register(type, name, created);
+        return created;
+    }
+    
+    private static void register(String type, String name, Object metrics) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(metrics, objectName);
+            }
+        } catch (JMException e) {
+            logger.warn("Could not register {} metrics '{}' with JMX: {}", type, name, e.getMessage());
+        }
+    }
+}
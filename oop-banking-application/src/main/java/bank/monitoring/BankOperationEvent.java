@@ -0,0 +1,37 @@
+package bank.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for a public Bank operation.
+ * Disabled by default; enable it with the bank.jfc settings file.
+ */
+@Name("bank.Operation")
+@Label("Bank Operation")
+@Category({"Bank", "Operations"})
+@Description("A public Bank API call with its accounts, amount and outcome")
+@Enabled(false)
+@StackTrace(false)
+public class BankOperationEvent extends Event {
+    @Label("Operation")
+    public String operation;
+    
+    @Label("Account ID")
+    public String accountId;
+    
+    @Label("Related Account ID")
+    @Description("Destination account of a transfer")
+    public String relatedAccountId;
+    
+    @Label("Amount")
+    public double amount;
+    
+    @Label("Outcome")
+    public String outcome;
+}
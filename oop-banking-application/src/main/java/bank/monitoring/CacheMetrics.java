@@ -0,0 +1,59 @@
+package bank.monitoring;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hit and miss counters for one cache.
+ */
+public class CacheMetrics implements CacheMetricsMXBean {
+    private final String name;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    
+    CacheMetrics(String name) {
+        this.name = name;
+    }
+    
+    public void hit() {
+        hits.increment();
+    }
+    
+    public void miss() {
+        misses.increment();
+    }
+    
+    /**
+     * Records a lookup result.
+     * @param hit true for a hit, false for a miss
+     * @return the given hit flag, so lookups can be recorded inline
+     */
+    public boolean record(boolean hit) {
+        if (hit) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return hit;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+    
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+    
+    @Override
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+}
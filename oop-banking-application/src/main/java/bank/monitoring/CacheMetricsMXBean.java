@@ -0,0 +1,10 @@
+package bank.monitoring;
+
+/**
+ * JMX view of a monitored cache.
+ */
+public interface CacheMetricsMXBean {
+    long getHits();
+    long getMisses();
+    double getHitRatio();
+}
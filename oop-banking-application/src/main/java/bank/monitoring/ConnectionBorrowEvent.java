@@ -0,0 +1,37 @@
+package bank.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for taking a connection from the pool. The event
+ * duration is the time spent inside the pool, including opening a
+ * replacement connection.
+ */
+@Name("bank.ConnectionBorrow")
+@Label("Connection Borrow")
+@Category({"Bank", "Connection Pool"})
+@Description("A connection taken from the DatabaseConnectionManager pool")
+@Enabled(false)
+@StackTrace(false)
+public class ConnectionBorrowEvent extends Event {
+    @Label("Slot")
+    public int slot;
+    
+    @Label("Lane")
+    @Description("Workload lane the connection was borrowed for")
+    public String lane;
+    
+    @Label("Connections In Use")
+    @Description("Connections in use after this borrow")
+    public int inUse;
+    
+    @Label("Succeeded")
+    @Description("False when the pool was exhausted")
+    public boolean succeeded;
+}
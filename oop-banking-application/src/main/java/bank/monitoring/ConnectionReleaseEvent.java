@@ -0,0 +1,37 @@
+package bank.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for returning a connection to the pool.
+ */
+@Name("bank.ConnectionRelease")
+@Label("Connection Release")
+@Category({"Bank", "Connection Pool"})
+@Description("A connection returned to the DatabaseConnectionManager pool")
+@Enabled(false)
+@StackTrace(false)
+public class ConnectionReleaseEvent extends Event {
+    @Label("Slot")
+    public int slot;
+    
+    @Label("Lane")
+    @Description("Workload lane the connection was borrowed for")
+    public String lane;
+    
+    @Label("Hold Time")
+    @Description("How long the connection was borrowed")
+    @Timespan(Timespan.NANOSECONDS)
+    public long holdTime;
+    
+    @Label("Connections In Use")
+    @Description("Connections in use after this release")
+    public int inUse;
+}
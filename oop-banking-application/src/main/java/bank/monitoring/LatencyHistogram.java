@@ -0,0 +1,97 @@
+package bank.monitoring;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with power-of-two nanosecond buckets.
+ * Recording is a couple of striped counter increments, so it is safe to call
+ * from hot paths on many threads. Percentiles are approximated by the upper
+ * bound of the bucket they fall into.
+ */
+public class LatencyHistogram {
+    // Bucket i holds values <= 2^(MIN_EXPONENT + i) ns; from ~1 us up to ~34 s
+    private static final int MIN_EXPONENT = 10;
+    private static final int MAX_EXPONENT = 35;
+    private static final int BUCKETS = MAX_EXPONENT - MIN_EXPONENT + 1;
+    
+    private final LongAdder[] buckets = new LongAdder[BUCKETS + 1];
+    private final LongAdder totalNanos = new LongAdder();
+    
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+    
+    /**
+     * Records one observation.
+     * @param nanos Duration in nanoseconds
+     */
+    public void record(long nanos) {
+        buckets[bucketIndex(nanos)].increment();
+        totalNanos.add(nanos);
+    }
+    
+    private static int bucketIndex(long nanos) {
+        if (nanos <= 1L << MIN_EXPONENT) {
+            return 0;
+        }
+        int exponent = 64 - Long.numberOfLeadingZeros(nanos - 1);
+        return Math.min(exponent - MIN_EXPONENT, BUCKETS);
+    }
+    
+    /** Number of buckets, including the overflow bucket. */
+    public int bucketCount() {
+        return buckets.length;
+    }
+    
+    /**
+     * Upper bound of a bucket in nanoseconds, or {@link Long#MAX_VALUE} for the overflow bucket.
+     */
+    public long bucketUpperBound(int index) {
+        return index < BUCKETS ? 1L << (MIN_EXPONENT + index) : Long.MAX_VALUE;
+    }
+    
+    /** Number of observations in a single (non-cumulative) bucket. */
+    public long bucketValue(int index) {
+        return buckets[index].sum();
+    }
+    
+    public long count() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+    
+    public long totalNanos() {
+        return totalNanos.sum();
+    }
+    
+    /**
+     * Approximates a percentile as the upper bound of the bucket containing it.
+     * @param percentile Percentile between 0 and 100
+     * @return The latency in nanoseconds, 0 if nothing was recorded
+     */
+    public long percentile(double percentile) {
+        long[] counts = new long[buckets.length];
+        long total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return bucketUpperBound(Math.min(i, BUCKETS - 1));
+            }
+        }
+        return bucketUpperBound(BUCKETS - 1);
+    }
+}
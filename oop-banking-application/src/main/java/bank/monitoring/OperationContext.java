@@ -0,0 +1,56 @@
+package bank.monitoring;
+
+import java.math.BigDecimal;
+
+/**
+ * The Bank operation running on the current thread, so work done further
+ * down, such as a {@link SqlStatementEvent}, can be attributed to its
+ * accounts and amount. Work handed to another thread, for example a posting
+ * merged into an account lane's batch, runs without a context.
+ */
+public final class OperationContext {
+    private static final ThreadLocal<OperationContext> CURRENT = new ThreadLocal<>();
+    
+    public final String operation;
+    public final String accountId;
+    /** The destination account of a transfer, otherwise null */
+    public final String relatedAccountId;
+    /** The amount involved, or null if the operation has none */
+    public final BigDecimal amount;
+    
+    private OperationContext(String operation, String accountId, String relatedAccountId, BigDecimal amount) {
+        this.operation = operation;
+        this.accountId = accountId;
+        this.relatedAccountId = relatedAccountId;
+        this.amount = amount;
+    }
+    
+    /**
+     * Makes an operation the current thread's context.
+     * @return The context it replaces, to be passed to {@link #restore}
+     */
+    public static OperationContext enter(String operation, String accountId, String relatedAccountId,
+                                         BigDecimal amount) {
+        OperationContext previous = CURRENT.get();
+        CURRENT.set(new OperationContext(operation, accountId, relatedAccountId, amount));
+        return previous;
+    }
+    
+    /**
+     * Ends the current operation, reinstating the context returned by {@link #enter}.
+     */
+    public static void restore(OperationContext previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+    
+    /**
+     * @return The current thread's operation, or null outside Bank operations
+     */
+    public static OperationContext current() {
+        return CURRENT.get();
+    }
+}
@@ -0,0 +1,89 @@
+package bank.monitoring;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram and outcome counters for one Bank operation.
+ */
+public class OperationMetrics implements OperationMetricsMXBean {
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final Map<Outcome, LongAdder> outcomes = new EnumMap<>(Outcome.class);
+    
+    OperationMetrics(String name) {
+        this.name = name;
+        for (Outcome outcome : Outcome.values()) {
+            outcomes.put(outcome, new LongAdder());
+        }
+    }
+    
+    /**
+     * Records a completed operation.
+     * @param outcome How the operation ended
+     * @param nanos Duration in nanoseconds
+     */
+    public void record(Outcome outcome, long nanos) {
+        latency.record(nanos);
+        outcomes.get(outcome).increment();
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+    
+    public long getOutcomeCount(Outcome outcome) {
+        return outcomes.get(outcome).sum();
+    }
+    
+    @Override
+    public long getCount() {
+        return latency.count();
+    }
+    
+    @Override
+    public long getSuccessCount() {
+        return getOutcomeCount(Outcome.SUCCESS);
+    }
+    
+    @Override
+    public long getInsufficientFundsCount() {
+        return getOutcomeCount(Outcome.INSUFFICIENT_FUNDS);
+    }
+    
+    @Override
+    public long getNotFoundCount() {
+        return getOutcomeCount(Outcome.NOT_FOUND);
+    }
+    
+    @Override
+    public long getInvalidCount() {
+        return getOutcomeCount(Outcome.INVALID);
+    }
+    
+    @Override
+    public long getLimitExceededCount() {
+        return getOutcomeCount(Outcome.LIMIT_EXCEEDED);
+    }
+    
+    @Override
+    public long getErrorCount() {
+        return getOutcomeCount(Outcome.ERROR);
+    }
+    
+    @Override
+    public double getMeanMillis() {
+        long count = latency.count();
+        return count == 0 ? 0.0 : latency.totalNanos() / 1e6 / count;
+    }
+    
+    @Override
+    public double getP99Millis() {
+        return latency.percentile(99) / 1e6;
+    }
+}
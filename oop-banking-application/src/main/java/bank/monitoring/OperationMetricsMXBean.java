@@ -0,0 +1,16 @@
+package bank.monitoring;
+
+/**
+ * JMX view of a monitored Bank operation.
+ */
+public interface OperationMetricsMXBean {
+    long getCount();
+    long getSuccessCount();
+    long getInsufficientFundsCount();
+    long getNotFoundCount();
+    long getInvalidCount();
+    long getLimitExceededCount();
+    long getErrorCount();
+    double getMeanMillis();
+    double getP99Millis();
+}
@@ -0,0 +1,18 @@
+package bank.monitoring;
+
+/**
+ * Result classification for monitored banking operations.
+ */
+public enum Outcome {
+    SUCCESS,
+    INSUFFICIENT_FUNDS,
+    NOT_FOUND,
+    INVALID,
+    LIMIT_EXCEEDED,
+    ERROR;
+    
+    /** Label value used in exported metrics. */
+    public String label() {
+        return name().toLowerCase();
+    }
+}
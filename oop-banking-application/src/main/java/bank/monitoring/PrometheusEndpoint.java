@@ -0,0 +1,141 @@
+package bank.monitoring;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves {@link BankMetrics} in the Prometheus text exposition format on
+ * {@code /metrics}, using only the JDK's built-in HTTP server.
+ */
+public class PrometheusEndpoint {
+    private static final Logger logger = LoggerFactory.getLogger(PrometheusEndpoint.class);
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    
+    private final BankMetrics metrics;
+    private HttpServer server;
+    
+    public PrometheusEndpoint(BankMetrics metrics) {
+        this.metrics = metrics;
+    }
+    
+    /**
+     * Starts listening on the given port.
+     * @param port TCP port, 0 for an ephemeral port
+     */
+    public synchronized void start(int port) {
+        try {
+            server = HttpServer.create(new InetSocketAddress(port), 0);
+            server.createContext("/metrics", this::handle);
+            server.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metrics-http");
+                thread.setDaemon(true);
+                return thread;
+            }));
+            server.start();
+            logger.info("Metrics endpoint listening on port {}", server.getAddress().getPort());
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not start metrics endpoint on port " + port, e);
+        }
+    }
+    
+    public synchronized int getPort() {
+        return server == null ? -1 : server.getAddress().getPort();
+    }
+    
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        byte[] body = render().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+    
+    /**
+     * Renders all metrics in the Prometheus text format.
+     */
+    public String render() {
+        StringBuilder out = new StringBuilder(8192);
+        
+        out.append("# HELP bank_operation_seconds Latency of Bank operations.\n");
+        out.append("# TYPE bank_operation_seconds histogram\n");
+        for (OperationMetrics operation : metrics.getOperations()) {
+            appendHistogram(out, "bank_operation_seconds", "operation", operation.getName(), operation.getLatency());
+        }
+        
+        out.append("# HELP bank_operation_total Completed Bank operations by outcome.\n");
+        out.append("# TYPE bank_operation_total counter\n");
+        for (OperationMetrics operation : metrics.getOperations()) {
+            for (Outcome outcome : Outcome.values()) {
+                out.append("bank_operation_total{operation=\"").append(escape(operation.getName()))
+                   .append("\",outcome=\"").append(outcome.label()).append("\"} ")
+                   .append(operation.getOutcomeCount(outcome)).append('\n');
+            }
+        }
+        
+        out.append("# HELP bank_sql_seconds Latency of SQL statement executions.\n");
+        out.append("# TYPE bank_sql_seconds histogram\n");
+        for (StatementMetrics statement : metrics.getStatements()) {
+            appendHistogram(out, "bank_sql_seconds", "statement", statement.getName(), statement.getLatency());
+        }
+        
+        out.append("# HELP bank_sql_errors_total Failed SQL statement executions.\n");
+        out.append("# TYPE bank_sql_errors_total counter\n");
+        for (StatementMetrics statement : metrics.getStatements()) {
+            out.append("bank_sql_errors_total{statement=\"").append(escape(statement.getName())).append("\"} ")
+               .append(statement.getErrorCount()).append('\n');
+        }
+        
+        out.append("# HELP bank_cache_requests_total Cache lookups by result.\n");
+        out.append("# TYPE bank_cache_requests_total counter\n");
+        for (CacheMetrics cache : metrics.getCaches()) {
+            String label = escape(cache.getName());
+            out.append("bank_cache_requests_total{cache=\"").append(label).append("\",result=\"hit\"} ")
+               .append(cache.getHits()).append('\n');
+            out.append("bank_cache_requests_total{cache=\"").append(label).append("\",result=\"miss\"} ")
+               .append(cache.getMisses()).append('\n');
+        }
+        
+        out.append("# HELP bank_cache_hit_ratio Fraction of cache lookups that were hits.\n");
+        out.append("# TYPE bank_cache_hit_ratio gauge\n");
+        for (CacheMetrics cache : metrics.getCaches()) {
+            out.append("bank_cache_hit_ratio{cache=\"").append(escape(cache.getName())).append("\"} ")
+               .append(cache.getHitRatio()).append('\n');
+        }
+        return out.toString();
+    }
+    
+    private static void appendHistogram(StringBuilder out, String metric, String labelName, String labelValue,
+                                        LatencyHistogram histogram) {
+        String labels = labelName + "=\"" + escape(labelValue) + "\"";
+        long cumulative = 0;
+        for (int i = 0; i < histogram.bucketCount(); i++) {
+            cumulative += histogram.bucketValue(i);
+            long bound = histogram.bucketUpperBound(i);
+            String le = bound == Long.MAX_VALUE ? "+Inf" : Double.toString(bound / 1e9);
+            out.append(metric).append("_bucket{").append(labels).append(",le=\"").append(le).append("\"} ")
+               .append(cumulative).append('\n');
+        }
+        out.append(metric).append("_sum{").append(labels).append("} ")
+           .append(histogram.totalNanos() / 1e9).append('\n');
+        out.append(metric).append("_count{").append(labels).append("} ").append(cumulative).append('\n');
+    }
+    
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,126 @@
+package bank.monitoring;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Logs SQL statements that exceed a latency threshold, with their bind values,
+ * following the Singleton pattern. The worst offenders additionally get their
+ * execution plan captured with {@code EXPLAIN}, at most once per statement name
+ * per sampling interval so plan capture never adds load of its own. The caller
+ * runs the {@code EXPLAIN} in the background on a connection of its own, never
+ * on the connection and transaction of the slow statement.
+ * <p>
+ * Records go to the {@code bank.sql.slow} logger, which logback routes to a
+ * dedicated asynchronous appender. Thresholds are read from system properties:
+ * {@code bank.sql.slowThresholdMs} (default 100), {@code bank.sql.explainThresholdMs}
+ * (default 5x the slow threshold) and {@code bank.sql.explainIntervalMs} (default 60000).
+ */
+public class SlowStatementLog {
+    private static final Logger logger = LoggerFactory.getLogger("bank.sql.slow");
+    private static SlowStatementLog instance;
+    
+    private final long thresholdNanos;
+    private final long explainThresholdNanos;
+    private final long explainIntervalNanos;
+    private final Map<String, Long> lastExplained = new ConcurrentHashMap<>();
+    
+    private SlowStatementLog() {
+        long thresholdMillis = Long.getLong("bank.sql.slowThresholdMs", 100);
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.explainThresholdNanos = TimeUnit.MILLISECONDS.toNanos(
+            Long.getLong("bank.sql.explainThresholdMs", thresholdMillis * 5));
+        this.explainIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong("bank.sql.explainIntervalMs", 60_000));
+    }
+    
+    public static synchronized SlowStatementLog getInstance() {
+        if (instance == null) {
+            instance = new SlowStatementLog();
+        }
+        return instance;
+    }
+    
+    /**
+     * Whether an execution of the given duration should be recorded.
+     * Cheap enough to call after every statement.
+     */
+    public boolean isSlow(long nanos) {
+        return nanos >= thresholdNanos && logger.isWarnEnabled();
+    }
+    
+    /**
+     * Records a slow statement execution and decides whether it is among
+     * the worst offenders, whose plan the caller should capture with
+     * {@link #explain} and pass to {@link #recordPlan}.
+     * 
+     * @param name Logical statement name
+     * @param sql The SQL text
+     * @param binds Bind values by parameter index (index 0 unused), may be null
+     * @param nanos Execution time in nanoseconds
+     * @return Whether to capture the statement's plan
+     */
+    public boolean record(String name, String sql, Object[] binds, long nanos) {
+        String bindText = binds == null ? "[]" : Arrays.toString(Arrays.copyOfRange(binds, 1, binds.length));
+        logger.warn("slow statement={} duration_ms={} sql=\"{}\" binds={}",
+            name, String.format("%.3f", nanos / 1e6), sql, bindText);
+        
+        return nanos >= explainThresholdNanos && claimExplain(name);
+    }
+    
+    /**
+     * Logs a plan captured for a statement {@link #record} selected.
+     */
+    public void recordPlan(String name, String plan) {
+        logger.warn("plan for statement={}:\n{}", name, plan);
+    }
+    
+    private boolean claimExplain(String name) {
+        long now = System.nanoTime();
+        Long previous = lastExplained.get(name);
+        if (previous != null && now - previous < explainIntervalNanos) {
+            return false;
+        }
+        return previous == null
+            ? lastExplained.putIfAbsent(name, now) == null
+            : lastExplained.replace(name, previous, now);
+    }
+    
+    /**
+     * Runs {@code EXPLAIN} for a statement with its bind values.
+     * @return The plan, one row per line, or the reason it could not be captured
+     */
+    public static String explain(String sql, Object[] binds, Connection connection) {
+        try (PreparedStatement stmt = connection.prepareStatement("EXPLAIN " + sql)) {
+            if (binds != null) {
+                for (int i = 1; i < binds.length; i++) {
+                    stmt.setObject(i, binds[i]);
+                }
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = stmt.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                while (rs.next()) {
+                    for (int column = 1; column <= meta.getColumnCount(); column++) {
+                        if (column > 1) {
+                            plan.append(" | ");
+                        }
+                        plan.append(meta.getColumnLabel(column)).append('=').append(rs.getObject(column));
+                    }
+                    plan.append('\n');
+                }
+            }
+            return plan.toString();
+        } catch (SQLException e) {
+            return "EXPLAIN failed: " + e.getMessage();
+        }
+    }
+}
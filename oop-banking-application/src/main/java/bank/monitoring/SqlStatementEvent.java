@@ -0,0 +1,44 @@
+package bank.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for one SQL statement execution (a database round trip),
+ * with the accounts and amount of the Bank operation that ran it, if any.
+ */
+@Name("bank.SqlStatement")
+@Label("SQL Statement")
+@Category({"Bank", "SQL"})
+@Description("Execution of a named SQL statement")
+@Enabled(false)
+@StackTrace(false)
+public class SqlStatementEvent extends Event {
+    @Label("Statement")
+    public String statement;
+    
+    @Label("SQL")
+    public String sql;
+    
+    @Label("Succeeded")
+    public boolean succeeded;
+    
+    @Label("Operation")
+    @Description("Bank operation the statement ran for, empty for background work")
+    public String operation;
+    
+    @Label("Account ID")
+    public String accountId;
+    
+    @Label("Related Account ID")
+    @Description("Destination account of a transfer")
+    public String relatedAccountId;
+    
+    @Label("Amount")
+    public double amount;
+}
@@ -0,0 +1,57 @@
+package bank.monitoring;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram and error counter for one named SQL statement.
+ */
+public class StatementMetrics implements StatementMetricsMXBean {
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    
+    StatementMetrics(String name) {
+        this.name = name;
+    }
+    
+    /**
+     * Records one statement execution.
+     * @param nanos Duration in nanoseconds
+     * @param failed Whether the execution threw
+     */
+    public void record(long nanos, boolean failed) {
+        latency.record(nanos);
+        if (failed) {
+            errors.increment();
+        }
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+    
+    @Override
+    public long getCount() {
+        return latency.count();
+    }
+    
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+    
+    @Override
+    public double getMeanMillis() {
+        long count = latency.count();
+        return count == 0 ? 0.0 : latency.totalNanos() / 1e6 / count;
+    }
+    
+    @Override
+    public double getP99Millis() {
+        return latency.percentile(99) / 1e6;
+    }
+}
@@ -0,0 +1,11 @@
+package bank.monitoring;
+
+/**
+ * JMX view of a monitored SQL statement.
+ */
+public interface StatementMetricsMXBean {
+    long getCount();
+    long getErrorCount();
+    double getMeanMillis();
+    double getP99Millis();
+}
@@ -0,0 +1,39 @@
+package bank.outbox;
+
+import java.math.BigDecimal;
+
+/**
+ * One committed change, as written to the {@code outbox} table.
+ */
+public final class OutboxEvent {
+    /** Position in the outbox; events are published in ascending order */
+    public final long id;
+    /** DEPOSIT, WITHDRAWAL, TRANSFER, CORRECTION, OWNERSHIP, INTEREST, LEDGER_REPAIR or ACCOUNT_LOADED */
+    public final String type;
+    /** The account changed; the source account of a transfer */
+    public final String accountId;
+    /** The destination account of a transfer, otherwise null */
+    public final String relatedAccountId;
+    /**
+     * The amount moved, signed for corrections and ledger repairs, the
+     * loaded balance for ACCOUNT_LOADED, or null for ownership changes
+     */
+    public final BigDecimal amount;
+    public final long createdAtMillis;
+    
+    public OutboxEvent(long id, String type, String accountId, String relatedAccountId, BigDecimal amount,
+                       long createdAtMillis) {
+        this.id = id;
+        this.type = type;
+        this.accountId = accountId;
+        this.relatedAccountId = relatedAccountId;
+        this.amount = amount;
+        this.createdAtMillis = createdAtMillis;
+    }
+    
+    @Override
+    public String toString() {
+        return id + ":" + type + " " + accountId + (relatedAccountId != null ? "->" + relatedAccountId : "") +
+               (amount != null ? " " + amount : "");
+    }
+}
@@ -0,0 +1,23 @@
+package bank.outbox;
+
+import java.util.List;
+
+/**
+ * In-process subscriber to the change events published by an
+ * {@link OutboxRelay}.
+ */
+@FunctionalInterface
+public interface OutboxListener {
+    
+    /**
+     * Receives the next batch of committed events, in outbox order. Called
+     * on the relay thread, so a slow listener holds back every subscriber.
+     * <p>
+     * If any listener throws, the relay does not record the batch as
+     * published and delivers it again to every listener, so listeners must
+     * tolerate seeing an event more than once.
+     *
+     * @param events The events, unmodifiable
+     */
+    void onEvents(List<OutboxEvent> events);
+}
@@ -0,0 +1,303 @@
+package bank.outbox;
+
+import bank.database.ConnectionLane;
+import bank.database.DatabaseConnectionManager;
+import bank.database.DatabaseException;
+import bank.database.InstrumentedStatements;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Publishes the change events committed to the {@code outbox} table to
+ * in-process {@link OutboxListener}s, in batches and in outbox ID order.
+ * <p>
+ * The relay remembers the last ID it published in {@code outbox_offsets},
+ * under its name, after every batch all listeners accepted, and resumes
+ * after that ID when restarted. Delivery is at least once: a crash between
+ * delivering a batch and recording it repeats the batch.
+ * <p>
+ * IDs are assigned when an event is inserted but become visible when its
+ * transaction commits, so a later ID can be seen before an earlier one. The
+ * relay therefore stops at a missing ID and waits for it. An ID still
+ * missing after the gap timeout belonged to a rolled-back transaction and
+ * is skipped; the timeout must be longer than any transaction that writes
+ * to the outbox.
+ * <p>
+ * Events every relay has published are deleted from the outbox from time to
+ * time.
+ */
+public class OutboxRelay implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+    private static final long PRUNE_EVERY_EVENTS = 10_000;
+    
+    private final DatabaseConnectionManager connectionManager;
+    private final String name;
+    private final int batchSize;
+    private final long gapTimeoutMillis;
+    private final List<OutboxListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private ScheduledExecutorService scheduler;
+    
+    // Guarded by this
+    private volatile long offset;
+    private long gapId;
+    private long gapSeenAt;
+    private long publishedSincePrune;
+    
+    /**
+     * Loads the relay's offset, starting before the oldest event in the
+     * outbox if the relay has never run.
+     * @param name Name the relay's offset is stored under
+     * @param batchSize Most events read and delivered at once
+     * @param gapTimeout How long to wait for a missing ID before skipping it
+     */
+    public OutboxRelay(String name, int batchSize, Duration gapTimeout) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.connectionManager = DatabaseConnectionManager.getInstance();
+        this.name = name;
+        this.batchSize = batchSize;
+        this.gapTimeoutMillis = gapTimeout.toMillis();
+        this.offset = loadOffset();
+    }
+    
+    /**
+     * Adds a listener; it receives every batch published from now on.
+     */
+    public void subscribe(OutboxListener listener) {
+        listeners.add(listener);
+    }
+    
+    public void unsubscribe(OutboxListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Publishes on a background thread, draining the outbox and then
+     * polling it at a fixed interval.
+     * @param pollInterval Delay between polls of an empty outbox
+     */
+    public synchronized void start(Duration pollInterval) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "outbox-relay-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                while (publishOnce() == batchSize) {
+                    // A full batch means more events are probably waiting
+                }
+            } catch (RuntimeException e) {
+                logger.error("Outbox relay {} failed", name, e);
+            }
+        }, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Reads the next batch of committed events, delivers it to every
+     * listener and records it as published.
+     * @return Number of events published; 0 if none were ready, no listener is subscribed or a listener failed
+     */
+    public synchronized int publishOnce() {
+        if (listeners.isEmpty()) {
+            return 0;  // Keep events in the outbox until someone is listening
+        }
+        List<OutboxEvent> ready = new ArrayList<>();
+        long expected = offset + 1;
+        long last = offset;
+        for (OutboxEvent event : readAfter(offset)) {
+            if (event.id != expected) {
+                long now = System.currentTimeMillis();
+                if (gapId != expected) {
+                    gapId = expected;
+                    gapSeenAt = now;
+                }
+                if (now - gapSeenAt < gapTimeoutMillis) {
+                    break;  // The missing IDs may still commit
+                }
+                skipped.addAndGet(event.id - expected);
+            }
+            ready.add(event);
+            expected = event.id + 1;
+            last = event.id;
+        }
+        if (ready.isEmpty()) {
+            return 0;
+        }
+        
+        List<OutboxEvent> batch = Collections.unmodifiableList(ready);
+        for (OutboxListener listener : listeners) {
+            try {
+                listener.onEvents(batch);
+            } catch (RuntimeException e) {
+                logger.warn("Outbox listener failed on events {}-{}; redelivering", ready.get(0).id, last, e);
+                return 0;
+            }
+        }
+        saveOffset(last);
+        offset = last;
+        published.addAndGet(ready.size());
+        publishedSincePrune += ready.size();
+        if (publishedSincePrune >= PRUNE_EVERY_EVENTS) {
+            publishedSincePrune = 0;
+            prune();
+        }
+        return ready.size();
+    }
+    
+    /**
+     * ID of the last event published.
+     */
+    public long getOffset() {
+        return offset;
+    }
+    
+    /**
+     * Number of events published since the relay was created.
+     */
+    public long getPublishedCount() {
+        return published.get();
+    }
+    
+    /**
+     * Number of IDs skipped as rolled back.
+     */
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+    
+    private List<OutboxEvent> readAfter(long afterId) {
+        String sql = "SELECT id, event_type, account_id, related_account_id, amount, created_at FROM outbox " +
+                     "WHERE id > ? ORDER BY id LIMIT ?";
+        List<OutboxEvent> events = new ArrayList<>();
+        Connection connection = connectionManager.getConnection(ConnectionLane.REPORTING);
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "outbox.select", sql)) {
+            stmt.setLong(1, afterId);
+            stmt.setInt(2, batchSize);
+            
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                events.add(new OutboxEvent(rs.getLong("id"), rs.getString("event_type"), rs.getString("account_id"),
+                                           rs.getString("related_account_id"), rs.getBigDecimal("amount"),
+                                           rs.getTimestamp("created_at").getTime()));
+            }
+            return events;
+        } catch (SQLException e) {
+            throw new DatabaseException("Error reading outbox: " + e.getMessage(), e);
+        } finally {
+            connectionManager.releaseConnection(connection);
+        }
+    }
+    
+    private long loadOffset() {
+        String selectSql = "SELECT last_id FROM outbox_offsets WHERE relay_name = ?";
+        String insertSql = "INSERT INTO outbox_offsets (relay_name, last_id) " +
+                           "SELECT ?, COALESCE(MIN(id) - 1, 0) FROM outbox";
+        Connection connection = connectionManager.getConnection(ConnectionLane.TRANSACTIONAL);
+        try {
+            for (int attempt = 0; attempt < 2; attempt++) {
+                try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "outbox_offsets.select", selectSql)) {
+                    stmt.setString(1, name);
+                    
+                    ResultSet rs = stmt.executeQuery();
+                    if (rs.next()) {
+                        return rs.getLong("last_id");
+                    }
+                }
+                // First run of this relay: start with the oldest event still in the outbox
+                try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "outbox_offsets.insert", insertSql)) {
+                    stmt.setString(1, name);
+                    
+                    stmt.executeUpdate();
+                }
+            }
+            throw new DatabaseException("Outbox offset for relay " + name + " was not created");
+        } catch (SQLException e) {
+            throw new DatabaseException("Error loading outbox offset: " + e.getMessage(), e);
+        } finally {
+            connectionManager.releaseConnection(connection);
+        }
+    }
+    
+    private void saveOffset(long lastId) {
+        String sql = "UPDATE outbox_offsets SET last_id = ? WHERE relay_name = ?";
+        Connection connection = connectionManager.getConnection(ConnectionLane.TRANSACTIONAL);
+        try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "outbox_offsets.update", sql)) {
+            stmt.setLong(1, lastId);
+            stmt.setString(2, name);
+            
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new DatabaseException("Error saving outbox offset: " + e.getMessage(), e);
+        } finally {
+            connectionManager.releaseConnection(connection);
+        }
+    }
+    
+    /**
+     * Deletes the events every relay has published.
+     */
+    private void prune() {
+        String minSql = "SELECT MIN(last_id) FROM outbox_offsets";
+        String deleteSql = "DELETE FROM outbox WHERE id <= ?";
+        Connection connection = connectionManager.getConnection(ConnectionLane.REPORTING);
+        try {
+            long lowest;
+            try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "outbox_offsets.min", minSql)) {
+                ResultSet rs = stmt.executeQuery();
+                rs.next();
+                lowest = rs.getLong(1);
+            }
+            try (PreparedStatement stmt = InstrumentedStatements.prepare(connection, "outbox.prune", deleteSql)) {
+                stmt.setLong(1, lowest);
+                
+                int deleted = stmt.executeUpdate();
+                logger.debug("Pruned {} published outbox events", deleted);
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException("Error pruning outbox: " + e.getMessage(), e);
+        } finally {
+            connectionManager.releaseConnection(connection);
+        }
+    }
+    
+    /**
+     * Stops the background thread after the batch in progress.
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService stopping;
+        synchronized (this) {
+            stopping = scheduler;
+            scheduler = null;
+        }
+        // Wait outside the lock, which the batch in progress holds
+        if (stopping != null) {
+            stopping.shutdown();
+            try {
+                stopping.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package bank.server;
+
+import bank.OverloadedException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Client library for {@link BankServer}.
+ * <p>
+ * Calls return immediately with a future and may be issued from any thread;
+ * requests are pipelined over a single connection and a background reader
+ * completes each future when its response arrives. Results mirror the
+ * {@link bank.Bank} API. Server-side failures complete the future
+ * exceptionally with a {@link RemoteBankException}.
+ */
+public class BankClient implements AutoCloseable {
+    private static final int MAX_RESPONSE_SIZE = 64 << 20;
+    
+    private final SocketChannel channel;
+    private final AtomicLong nextRequestId = new AtomicLong();
+    private final Map<Long, PendingRequest<?>> pending = new ConcurrentHashMap<>();
+    private final Thread reader;
+    private volatile boolean closed;
+    
+    /**
+     * Connects to a bank server.
+     * @param host Server host name
+     * @param port Server port
+     */
+    public BankClient(String host, int port) throws IOException {
+        channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.socket().setTcpNoDelay(true);
+        reader = new Thread(this::readResponses, "bank-client-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+    
+    public CompletableFuture<Boolean> deposit(String accountId, BigDecimal amount) {
+        return send(BankProtocol.DEPOSIT, BankClient::isOk, accountId, amount.toPlainString());
+    }
+    
+    public CompletableFuture<Boolean> withdraw(String accountId, BigDecimal amount) {
+        return send(BankProtocol.WITHDRAW, BankClient::isOk, accountId, amount.toPlainString());
+    }
+    
+    public CompletableFuture<Boolean> transfer(String fromAccountId, String toAccountId, BigDecimal amount) {
+        return send(BankProtocol.TRANSFER, BankClient::isOk, fromAccountId, toAccountId, amount.toPlainString());
+    }
+    
+    public CompletableFuture<Optional<BigDecimal>> getBalance(String accountId) {
+        return send(BankProtocol.BALANCE, BankClient::decodeBalance, accountId);
+    }
+    
+    /**
+     * Retrieves the transaction history in the same map layout as
+     * {@link bank.Bank#getTransactionHistory(String)}.
+     */
+    public CompletableFuture<List<Map<String, Object>>> getTransactionHistory(String accountId) {
+        return send(BankProtocol.HISTORY, BankClient::decodeHistory, accountId);
+    }
+    
+    private <T> CompletableFuture<T> send(byte opcode, Function<ByteBuffer, T> decoder, String... args) {
+        long requestId = nextRequestId.incrementAndGet();
+        PendingRequest<T> request = new PendingRequest<>(decoder);
+        pending.put(requestId, request);
+        try {
+            ByteBuffer frame = BankProtocol.encodeRequest(requestId, opcode, args);
+            synchronized (channel) {
+                while (frame.hasRemaining()) {
+                    channel.write(frame);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            pending.remove(requestId);
+            request.future.completeExceptionally(e);
+        }
+        return request.future;
+    }
+    
+    private void readResponses() {
+        ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+        try {
+            while (!closed) {
+                header.clear();
+                readFully(header);
+                int length = header.getInt(0);
+                if (length <= 0 || length > MAX_RESPONSE_SIZE) {
+                    throw new IOException("Invalid response frame length " + length);
+                }
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                readFully(payload);
+                payload.flip();
+                
+                long requestId = payload.getLong();
+                PendingRequest<?> request = pending.remove(requestId);
+                if (request != null) {
+                    request.complete(payload);
+                }
+            }
+        } catch (IOException e) {
+            failPending(closed ? new IOException("Client closed") : e);
+        }
+    }
+    
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Connection closed by server");
+            }
+        }
+    }
+    
+    private void failPending(Throwable cause) {
+        for (Long requestId : pending.keySet()) {
+            PendingRequest<?> request = pending.remove(requestId);
+            if (request != null) {
+                request.future.completeExceptionally(cause);
+            }
+        }
+    }
+    
+    private static Boolean isOk(ByteBuffer body) {
+        return Boolean.TRUE;
+    }
+    
+    private static Optional<BigDecimal> decodeBalance(ByteBuffer body) {
+        return Optional.of(new BigDecimal(BankProtocol.getString(body)));
+    }
+    
+    private static List<Map<String, Object>> decodeHistory(ByteBuffer body) {
+        int count = body.getInt();
+        List<Map<String, Object>> transactions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> transaction = new HashMap<>();
+            transaction.put("id", body.getLong());
+            transaction.put("type", BankProtocol.getString(body));
+            transaction.put("amount", new BigDecimal(BankProtocol.getString(body)));
+            String related = BankProtocol.getString(body);
+            transaction.put("relatedAccountId", related.isEmpty() ? null : related);
+            transaction.put("date", new Timestamp(body.getLong()));
+            transactions.add(transaction);
+        }
+        return transactions;
+    }
+    
+    /**
+     * Closes the connection. Requests still waiting for a response fail.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        channel.close();
+        try {
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * A request awaiting its response, with the decoder for its OK body.
+     */
+    private static final class PendingRequest<T> {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final Function<ByteBuffer, T> decoder;
+        
+        PendingRequest(Function<ByteBuffer, T> decoder) {
+            this.decoder = decoder;
+        }
+        
+        void complete(ByteBuffer payload) {
+            try {
+                switch (payload.get()) {
+                    case BankProtocol.STATUS_OK:
+                        future.complete(decoder.apply(payload));
+                        break;
+                    case BankProtocol.STATUS_REJECTED:
+                        future.complete(rejected());
+                        break;
+                    case BankProtocol.STATUS_NOT_FOUND:
+                        future.complete(notFound());
+                        break;
+                    case BankProtocol.STATUS_OVERLOADED:
+                        future.completeExceptionally(new OverloadedException(BankProtocol.getString(payload)));
+                        break;
+                    default:
+                        String message = payload.hasRemaining() ? BankProtocol.getString(payload) : "Server error";
+                        future.completeExceptionally(new RemoteBankException(message));
+                }
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }
+        
+        /** REJECTED only answers deposit, withdraw and transfer. */
+        @SuppressWarnings("unchecked")
+        private T rejected() {
+            return (T) Boolean.FALSE;
+        }
+        
+        /** NOT_FOUND only answers balance lookups. */
+        @SuppressWarnings("unchecked")
+        private T notFound() {
+            return (T) Optional.empty();
+        }
+    }
+}
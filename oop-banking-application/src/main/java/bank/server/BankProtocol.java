@@ -0,0 +1,136 @@
+package bank.server;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact length-prefixed binary protocol spoken by {@link BankServer} and
+ * {@link BankClient}.
+ * <p>
+ * Every frame starts with a 4-byte big-endian payload length.
+ * <pre>
+ * request:  long requestId | byte opcode | byte argCount | argCount x string
+ * response: long requestId | byte status | body
+ * string:   unsigned short byteLength | UTF-8 bytes
+ * </pre>
+ * Request IDs are chosen by the client and echoed back, so a connection may
+ * pipeline many requests and receive the responses in any order. Amounts
+ * travel as decimal strings to keep full precision. Response bodies:
+ * BALANCE carries the balance string, HISTORY carries an int count followed by
+ * (long id, string type, string amount, string relatedAccountId, long dateMillis)
+ * entries, and ERROR/BAD_REQUEST/OVERLOADED carry a message string. OVERLOADED
+ * means the server shed the request without running it, so it may be retried.
+ */
+public final class BankProtocol {
+    public static final int MAX_FRAME_SIZE = 1 << 20;
+    
+    // Opcodes
+    public static final byte DEPOSIT = 1;
+    public static final byte WITHDRAW = 2;
+    public static final byte TRANSFER = 3;
+    public static final byte BALANCE = 4;
+    public static final byte HISTORY = 5;
+    
+    // Response status codes
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_REJECTED = 1;
+    public static final byte STATUS_NOT_FOUND = 2;
+    public static final byte STATUS_ERROR = 3;
+    public static final byte STATUS_BAD_REQUEST = 4;
+    public static final byte STATUS_OVERLOADED = 5;
+    
+    private BankProtocol() {
+    }
+    
+    /**
+     * Encodes a complete request frame, ready to be written.
+     */
+    public static ByteBuffer encodeRequest(long requestId, byte opcode, String... args) {
+        byte[][] encoded = new byte[args.length][];
+        int size = Long.BYTES + 2;
+        for (int i = 0; i < args.length; i++) {
+            encoded[i] = args[i].getBytes(StandardCharsets.UTF_8);
+            size += 2 + encoded[i].length;
+        }
+        ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + size);
+        frame.putInt(size).putLong(requestId).put(opcode).put((byte) args.length);
+        for (byte[] arg : encoded) {
+            putBytes(frame, arg);
+        }
+        return frame.flip();
+    }
+    
+    /**
+     * Starts a response frame; the caller appends the body and calls {@link #finishFrame}.
+     */
+    public static ByteBuffer beginResponse(long requestId, byte status, int bodyCapacity) {
+        ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + Long.BYTES + 1 + bodyCapacity);
+        frame.putInt(0).putLong(requestId).put(status);
+        return frame;
+    }
+    
+    /**
+     * Writes the length prefix and flips the frame for writing.
+     */
+    public static ByteBuffer finishFrame(ByteBuffer frame) {
+        frame.putInt(0, frame.position() - Integer.BYTES);
+        return frame.flip();
+    }
+    
+    public static void putString(ByteBuffer buffer, String value) {
+        putBytes(buffer, value.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("String too long for protocol: " + bytes.length + " bytes");
+        }
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+    
+    public static String getString(ByteBuffer buffer) {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    /** Encoded size of a string, for sizing response buffers. */
+    public static int stringSize(String value) {
+        return 2 + value.getBytes(StandardCharsets.UTF_8).length;
+    }
+    
+    /**
+     * A decoded request.
+     */
+    public static final class Request {
+        public final long requestId;
+        public final byte opcode;
+        public final String[] args;
+        
+        Request(long requestId, byte opcode, String[] args) {
+            this.requestId = requestId;
+            this.opcode = opcode;
+            this.args = args;
+        }
+        
+        /**
+         * Decodes a request payload (without the length prefix).
+         * @throws IllegalArgumentException If the payload is malformed
+         */
+        public static Request decode(ByteBuffer payload) {
+            try {
+                long requestId = payload.getLong();
+                byte opcode = payload.get();
+                String[] args = new String[Byte.toUnsignedInt(payload.get())];
+                for (int i = 0; i < args.length; i++) {
+                    args[i] = getString(payload);
+                }
+                return new Request(requestId, opcode, args);
+            } catch (BufferUnderflowException e) {
+                throw new IllegalArgumentException("Truncated request frame", e);
+            }
+        }
+    }
+}
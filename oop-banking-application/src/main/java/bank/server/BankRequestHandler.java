@@ -0,0 +1,161 @@
+package bank.server;
+
+import bank.AdmissionController;
+import bank.Bank;
+import bank.OverloadedException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Executes decoded protocol requests against a {@link Bank} and encodes the
+ * response frames. With an {@link AdmissionController}, each request must be
+ * admitted within the request timeout; shed requests are answered with
+ * {@link BankProtocol#STATUS_OVERLOADED}, history reads before writes.
+ */
+public class BankRequestHandler {
+    private final Bank bank;
+    private final AdmissionController admission;
+    private final Duration requestTimeout;
+    
+    public BankRequestHandler(Bank bank) {
+        this(bank, null, null);
+    }
+    
+    /**
+     * @param bank The bank to run requests against
+     * @param admission Decides when each request may run, or null to run them at once
+     * @param requestTimeout Time a request may wait for admission, or null for no limit
+     */
+    public BankRequestHandler(Bank bank, AdmissionController admission, Duration requestTimeout) {
+        this.bank = bank;
+        this.admission = admission;
+        this.requestTimeout = requestTimeout;
+    }
+    
+    /**
+     * Runs one request. Never throws; failures are encoded as error responses.
+     * @return The complete response frame, flipped for writing
+     */
+    public ByteBuffer handle(BankProtocol.Request request) {
+        if (admission == null) {
+            return execute(request);
+        }
+        try {
+            return admission.execute(priority(request.opcode), requestTimeout, () -> execute(request));
+        } catch (OverloadedException e) {
+            return message(request, BankProtocol.STATUS_OVERLOADED, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return message(request, BankProtocol.STATUS_ERROR, "Interrupted waiting for admission");
+        }
+    }
+    
+    private static AdmissionController.Priority priority(byte opcode) {
+        switch (opcode) {
+            case BankProtocol.DEPOSIT:
+            case BankProtocol.WITHDRAW:
+            case BankProtocol.TRANSFER:
+                return AdmissionController.Priority.CRITICAL;
+            case BankProtocol.HISTORY:
+                return AdmissionController.Priority.LOW;
+            default:
+                return AdmissionController.Priority.NORMAL;
+        }
+    }
+    
+    private ByteBuffer execute(BankProtocol.Request request) {
+        try {
+            switch (request.opcode) {
+                case BankProtocol.DEPOSIT:
+                    requireArgs(request, 2);
+                    return status(request, bank.deposit(request.args[0], new BigDecimal(request.args[1])));
+                case BankProtocol.WITHDRAW:
+                    requireArgs(request, 2);
+                    return status(request, bank.withdraw(request.args[0], new BigDecimal(request.args[1])));
+                case BankProtocol.TRANSFER:
+                    requireArgs(request, 3);
+                    return status(request, bank.transfer(request.args[0], request.args[1], new BigDecimal(request.args[2])));
+                case BankProtocol.BALANCE:
+                    requireArgs(request, 1);
+                    return balance(request, bank.getBalance(request.args[0]));
+                case BankProtocol.HISTORY:
+                    requireArgs(request, 1);
+                    return history(request, bank.getTransactionHistory(request.args[0]));
+                default:
+                    return message(request, BankProtocol.STATUS_BAD_REQUEST, "Unknown opcode " + request.opcode);
+            }
+        } catch (IllegalArgumentException e) {
+            // Includes NumberFormatException for malformed amounts
+            return message(request, BankProtocol.STATUS_BAD_REQUEST, String.valueOf(e.getMessage()));
+        } catch (RuntimeException e) {
+            return message(request, BankProtocol.STATUS_ERROR, String.valueOf(e.getMessage()));
+        }
+    }
+    
+    private static void requireArgs(BankProtocol.Request request, int count) {
+        if (request.args.length != count) {
+            throw new IllegalArgumentException("Expected " + count + " arguments, got " + request.args.length);
+        }
+    }
+    
+    private static ByteBuffer status(BankProtocol.Request request, boolean success) {
+        byte status = success ? BankProtocol.STATUS_OK : BankProtocol.STATUS_REJECTED;
+        return BankProtocol.finishFrame(BankProtocol.beginResponse(request.requestId, status, 0));
+    }
+    
+    private static ByteBuffer balance(BankProtocol.Request request, Optional<BigDecimal> balance) {
+        if (!balance.isPresent()) {
+            return BankProtocol.finishFrame(BankProtocol.beginResponse(request.requestId, BankProtocol.STATUS_NOT_FOUND, 0));
+        }
+        String value = balance.get().toPlainString();
+        ByteBuffer frame = BankProtocol.beginResponse(request.requestId, BankProtocol.STATUS_OK, BankProtocol.stringSize(value));
+        BankProtocol.putString(frame, value);
+        return BankProtocol.finishFrame(frame);
+    }
+    
+    private static ByteBuffer history(BankProtocol.Request request, List<Map<String, Object>> transactions) {
+        int size = Integer.BYTES;
+        String[][] fields = new String[transactions.size()][];
+        for (int i = 0; i < fields.length; i++) {
+            Map<String, Object> transaction = transactions.get(i);
+            Object related = transaction.get("relatedAccountId");
+            fields[i] = new String[] {
+                String.valueOf(transaction.get("type")),
+                ((BigDecimal) transaction.get("amount")).toPlainString(),
+                related == null ? "" : related.toString()
+            };
+            size += 2 * Long.BYTES;
+            for (String field : fields[i]) {
+                size += BankProtocol.stringSize(field);
+            }
+        }
+        
+        ByteBuffer frame = BankProtocol.beginResponse(request.requestId, BankProtocol.STATUS_OK, size);
+        frame.putInt(fields.length);
+        for (int i = 0; i < fields.length; i++) {
+            Map<String, Object> transaction = transactions.get(i);
+            frame.putLong((Long) transaction.get("id"));
+            for (String field : fields[i]) {
+                BankProtocol.putString(frame, field);
+            }
+            Date date = (Timestamp) transaction.get("date");
+            frame.putLong(date == null ? 0L : date.getTime());
+        }
+        return BankProtocol.finishFrame(frame);
+    }
+    
+    /**
+     * Builds a response carrying only a message, such as an error description.
+     */
+    static ByteBuffer message(BankProtocol.Request request, byte status, String message) {
+        ByteBuffer frame = BankProtocol.beginResponse(request.requestId, status, BankProtocol.stringSize(message));
+        BankProtocol.putString(frame, message);
+        return BankProtocol.finishFrame(frame);
+    }
+}
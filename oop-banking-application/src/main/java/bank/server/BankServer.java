@@ -0,0 +1,250 @@
+package bank.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Non-blocking network front end for the banking engine.
+ * <p>
+ * A single selector thread accepts connections, reads and frames requests
+ * (see {@link BankProtocol}) and writes responses. Decoded requests are handed
+ * to a worker pool, so slow database calls never stall the selector. Clients
+ * may pipeline: every complete frame in the read buffer is dispatched at once
+ * and responses are sent as soon as each one completes, matched to its request
+ * by ID. A connection stops being read while it has too many requests in
+ * flight, which pushes back on clients through TCP flow control.
+ */
+public class BankServer implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(BankServer.class);
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_IN_FLIGHT_PER_CONNECTION = 1024;
+    
+    private final BankRequestHandler handler;
+    private final ExecutorService workers;
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private volatile boolean running;
+    
+    /**
+     * @param handler Executes decoded requests
+     * @param workers Pool that runs requests off the selector thread
+     */
+    public BankServer(BankRequestHandler handler, ExecutorService workers) {
+        this.handler = handler;
+        this.workers = workers;
+    }
+    
+    /**
+     * Binds the server and starts the selector thread.
+     * @param port TCP port, 0 for an ephemeral port
+     */
+    public synchronized void start(int port) throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        
+        running = true;
+        selectorThread = new Thread(this::runSelector, "bank-server-selector");
+        selectorThread.start();
+        logger.info("Bank server listening on port {}", getPort());
+    }
+    
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+    
+    private void runSelector() {
+        while (running) {
+            try {
+                selector.select();
+                
+                // Enable write interest for connections that have new responses queued
+                Connection pending;
+                while ((pending = pendingWrites.poll()) != null) {
+                    if (pending.key.isValid()) {
+                        pending.key.interestOps(pending.key.interestOps() | SelectionKey.OP_WRITE);
+                    }
+                }
+                
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            ((Connection) key.attachment()).read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            ((Connection) key.attachment()).write();
+                        }
+                    } catch (IOException | IllegalArgumentException e) {
+                        logger.debug("Closing connection: {}", e.getMessage());
+                        closeKey(key);
+                    }
+                }
+            } catch (IOException e) {
+                if (running) {
+                    logger.error("Selector failure", e);
+                }
+            }
+        }
+    }
+    
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(channel, key));
+    }
+    
+    private static void closeKey(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            logger.debug("Error closing channel: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Stops accepting requests, closes all connections and waits briefly for
+     * running requests. The worker pool is shut down as well.
+     */
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (selector == null) {
+            return;
+        }
+        selector.wakeup();
+        try {
+            selectorThread.join(TimeUnit.SECONDS.toMillis(5));
+            for (SelectionKey key : selector.keys()) {
+                closeKey(key);
+            }
+            selector.close();
+            serverChannel.close();
+        } catch (IOException e) {
+            logger.warn("Error closing server: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdown();
+    }
+    
+    /**
+     * Per-connection framing and response queue. Reads and interest changes
+     * happen on the selector thread only; workers just enqueue responses.
+     */
+    private final class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final Queue<ByteBuffer> responses = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+        
+        void read() throws IOException {
+            if (channel.read(readBuffer) < 0) {
+                closeKey(key);
+                return;
+            }
+            readBuffer.flip();
+            
+            // Dispatch every complete frame currently buffered
+            while (readBuffer.remaining() >= Integer.BYTES) {
+                int length = readBuffer.getInt(readBuffer.position());
+                if (length <= 0 || length > BankProtocol.MAX_FRAME_SIZE) {
+                    throw new IllegalArgumentException("Invalid frame length " + length);
+                }
+                if (readBuffer.remaining() < Integer.BYTES + length) {
+                    break;
+                }
+                readBuffer.position(readBuffer.position() + Integer.BYTES);
+                ByteBuffer payload = readBuffer.slice(readBuffer.position(), length);
+                readBuffer.position(readBuffer.position() + length);
+                dispatch(BankProtocol.Request.decode(payload));
+            }
+            readBuffer.compact();
+            
+            // Grow the buffer when a single frame does not fit
+            if (!readBuffer.hasRemaining()) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.min(readBuffer.capacity() * 2,
+                                                                 BankProtocol.MAX_FRAME_SIZE + Integer.BYTES));
+                readBuffer.flip();
+                larger.put(readBuffer);
+                readBuffer = larger;
+            }
+            
+            if (inFlight.get() >= MAX_IN_FLIGHT_PER_CONNECTION) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            }
+        }
+        
+        private void dispatch(BankProtocol.Request request) {
+            inFlight.incrementAndGet();
+            try {
+                workers.execute(() -> respond(handler.handle(request)));
+            } catch (RejectedExecutionException e) {
+                // The worker pool is shut down or its queue is full; the client may retry later
+                respond(BankRequestHandler.message(request, BankProtocol.STATUS_OVERLOADED,
+                                                   "Server is not accepting work"));
+            }
+        }
+        
+        private void respond(ByteBuffer response) {
+            responses.add(response);
+            pendingWrites.add(this);
+            selector.wakeup();
+        }
+        
+        void write() throws IOException {
+            ByteBuffer response;
+            while ((response = responses.peek()) != null) {
+                channel.write(response);
+                if (response.hasRemaining()) {
+                    return;  // Socket buffer full; wait for the next OP_WRITE
+                }
+                responses.poll();
+                inFlight.decrementAndGet();
+            }
+            int ops = key.interestOps() & ~SelectionKey.OP_WRITE;
+            if (inFlight.get() < MAX_IN_FLIGHT_PER_CONNECTION / 2) {
+                ops |= SelectionKey.OP_READ;
+            }
+            key.interestOps(ops);
+        }
+    }
+}
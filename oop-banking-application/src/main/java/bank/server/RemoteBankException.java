@@ -0,0 +1,17 @@
+package bank.server;
+
+/**
+ * Raised by {@link BankClient} when the server reports an error or the
+ * connection fails.
+ */
+public class RemoteBankException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    
+    public RemoteBankException(String message) {
+        super(message);
+    }
+    
+    public RemoteBankException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,180 @@
+package bank;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import bank.database.TransactionService;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+class AccountLanesTest {
+    // With two lanes "A" (hash 65) runs on lane 1 and "B" (hash 66) on lane 0
+    private static final String A = "A";
+    private static final String B = "B";
+    
+    private final TransactionService service = mock(TransactionService.class);
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private AccountLanes lanes;
+    
+    @AfterEach
+    void shutDown() {
+        release.countDown();
+        if (lanes != null) {
+            lanes.shutdown();
+        }
+    }
+    
+    @Test
+    void mergedPostingsFollowRunningBalance() throws Exception {
+        BigDecimal[] balance = {new BigDecimal("100")};
+        AtomicBoolean first = new AtomicBoolean(true);
+        // Stands in for the balance check TransactionService makes inside its transaction
+        when(service.recordPostings(eq(A), anyList(), anyBoolean())).thenAnswer(invocation -> {
+            if (first.getAndSet(false)) {
+                entered.countDown();
+                release.await();
+            }
+            List<BigDecimal> amounts = invocation.getArgument(1);
+            boolean[] applied = new boolean[amounts.size()];
+            for (int i = 0; i < applied.length; i++) {
+                BigDecimal after = balance[0].add(amounts.get(i));
+                if (amounts.get(i).signum() > 0 || after.signum() >= 0) {
+                    applied[i] = true;
+                    balance[0] = after;
+                }
+            }
+            return applied;
+        });
+        lanes = new AccountLanes(service, 2, 64);
+        
+        Thread blocker = start(() -> lanes.deposit(A, new BigDecimal("1")));
+        entered.await();
+        // Queued in this order behind the blocked batch, then merged into one
+        boolean[] results = new boolean[3];
+        List<Thread> callers = new ArrayList<>();
+        callers.add(start(() -> results[0] = lanes.withdraw(A, new BigDecimal("60"), false)));
+        callers.add(start(() -> results[1] = lanes.withdraw(A, new BigDecimal("60"), false)));
+        callers.add(start(() -> results[2] = lanes.deposit(A, new BigDecimal("30"))));
+        release.countDown();
+        blocker.join();
+        for (Thread caller : callers) {
+            caller.join();
+        }
+        
+        assertArrayEquals(new boolean[] {true, false, true}, results);
+        assertEquals(new BigDecimal("71"), balance[0]);
+        verify(service).recordPostings(A, List.of(new BigDecimal("-60"), new BigDecimal("-60"), new BigDecimal("30")),
+                                       false);
+        verify(service, times(2)).recordPostings(eq(A), anyList(), anyBoolean());
+        assertEquals(2.0, lanes.getAverageBatchSize());
+    }
+    
+    @Test
+    void postingQueuedAfterTransferWaitsForIt() throws Exception {
+        when(service.recordTransfer(A, B, BigDecimal.TEN, false)).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await();
+            return true;
+        });
+        when(service.recordPostings(anyString(), anyList(), anyBoolean())).thenReturn(new boolean[] {true});
+        lanes = new AccountLanes(service, 2, 64);
+        
+        Thread transfer = start(() -> lanes.transfer(A, B, BigDecimal.TEN, false));
+        entered.await();
+        // Lane 0 runs the transfer while lane 1 holds still, so deposits on either lane queue behind it
+        Thread depositTo = start(() -> lanes.deposit(B, BigDecimal.ONE));
+        Thread depositFrom = start(() -> lanes.deposit(A, BigDecimal.ONE));
+        verify(service, never()).recordPostings(anyString(), anyList(), anyBoolean());
+        
+        release.countDown();
+        transfer.join();
+        depositTo.join();
+        depositFrom.join();
+        InOrder toOrder = inOrder(service);
+        toOrder.verify(service).recordTransfer(A, B, BigDecimal.TEN, false);
+        toOrder.verify(service).recordPostings(B, List.of(BigDecimal.ONE), false);
+        InOrder fromOrder = inOrder(service);
+        fromOrder.verify(service).recordTransfer(A, B, BigDecimal.TEN, false);
+        fromOrder.verify(service).recordPostings(A, List.of(BigDecimal.ONE), false);
+    }
+    
+    @Test
+    void crossLaneTransfersInBothDirectionsDoNotDeadlock() {
+        AtomicInteger applied = new AtomicInteger();
+        when(service.recordTransfer(anyString(), anyString(), any(), anyBoolean())).thenAnswer(invocation -> {
+            applied.incrementAndGet();
+            return true;
+        });
+        lanes = new AccountLanes(service, 4, 64);
+        String[] accounts = {"ACC0", "ACC1", "ACC2", "ACC3", "ACC4", "ACC5", "ACC6", "ACC7"};
+        
+        AtomicInteger refused = new AtomicInteger();
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                Thread thread = new Thread(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 500; i++) {
+                        String from = accounts[random.nextInt(accounts.length)];
+                        String to = accounts[random.nextInt(accounts.length)];
+                        if (!lanes.transfer(from, to, BigDecimal.ONE, false)) {
+                            refused.incrementAndGet();
+                        }
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        });
+        assertEquals(0, refused.get());
+        assertEquals(8 * 500, applied.get());
+    }
+    
+    @Test
+    void rejectsWorkAfterShutdown() {
+        lanes = new AccountLanes(service, 2, 64);
+        lanes.shutdown();
+        assertThrows(IllegalStateException.class, () -> lanes.deposit(A, BigDecimal.ONE));
+        assertThrows(IllegalStateException.class, () -> lanes.transfer(A, B, BigDecimal.ONE, false));
+    }
+    
+    /**
+     * Runs a call on a new thread and returns once the thread is waiting for
+     * its result, so calls started one after another are queued in that order.
+     */
+    private static Thread start(BooleanSupplier call) throws InterruptedException {
+        Thread thread = new Thread(call::getAsBoolean);
+        thread.start();
+        while (thread.getState() != Thread.State.WAITING && thread.isAlive()) {
+            Thread.sleep(1);
+        }
+        return thread;
+    }
+}
@@ -0,0 +1,80 @@
+package bank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class CuckooFilterTest {
+    
+    @Test
+    void keepsEveryIdAfterKicksAndRemovals() {
+        CuckooFilter filter = new CuckooFilter(1000);
+        // Past 50% load most inserts find both candidate buckets full and must kick
+        int count = filter.capacity() * 85 / 100;
+        for (int i = 0; i < count; i++) {
+            assertTrue(filter.add("ACC" + i), "add ACC" + i);
+        }
+        assertFalse(filter.isSaturated());
+        assertEquals(count, filter.size());
+        for (int i = 0; i < count; i++) {
+            assertTrue(filter.mightContain("ACC" + i), "lookup ACC" + i);
+        }
+        
+        for (int i = 0; i < count; i += 2) {
+            assertTrue(filter.remove("ACC" + i), "remove ACC" + i);
+        }
+        assertEquals(count - (count + 1) / 2, filter.size());
+        for (int i = 1; i < count; i += 2) {
+            assertTrue(filter.mightContain("ACC" + i), "lookup ACC" + i + " after removals");
+        }
+    }
+    
+    @Test
+    void rejectsIdsThatWereNeverAdded() {
+        CuckooFilter filter = new CuckooFilter(1000);
+        for (int i = 0; i < 1000; i++) {
+            filter.add("ACC" + i);
+        }
+        int passed = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("MISSING" + i)) {
+                passed++;
+            }
+        }
+        // About 0.1% expected at this load
+        assertTrue(passed < 100, passed + " false positives");
+        assertEquals(10_000 - passed, filter.getRejectedCount());
+    }
+    
+    @Test
+    void saturatesThenRebuildsLarger() {
+        CuckooFilter filter = new CuckooFilter(16);
+        List<String> added = new ArrayList<>();
+        for (int i = 0; i < filter.capacity() * 2; i++) {
+            String id = "ACC" + i;
+            if (!filter.add(id)) {
+                break;
+            }
+            added.add(id);
+        }
+        assertTrue(filter.isSaturated());
+        assertFalse(filter.add("ACC-late"));
+        // A saturated filter can no longer rule anything out
+        assertTrue(filter.mightContain("MISSING"));
+        assertEquals(1.0, filter.getExpectedFalsePositiveRate());
+        
+        CuckooFilter rebuilt = new CuckooFilter(added.size() * 2);
+        for (String id : added) {
+            assertTrue(rebuilt.add(id));
+        }
+        assertFalse(rebuilt.isSaturated());
+        assertEquals(added.size(), rebuilt.size());
+        for (String id : added) {
+            assertTrue(rebuilt.mightContain(id));
+        }
+    }
+}
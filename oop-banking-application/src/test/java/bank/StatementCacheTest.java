@@ -0,0 +1,133 @@
+package bank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StatementCacheTest {
+    private static final String ACCOUNT = "ACC/1";
+    private static final Date JANUARY_START = date(2024, 1, 1);
+    private static final Date JANUARY_END = date(2024, 2, 1);
+    private static final Date FEBRUARY_END = date(2024, 3, 1);
+    private static final Date MID_JANUARY = date(2024, 1, 15);
+    
+    @TempDir
+    Path directory;
+    
+    @Test
+    void invalidationDuringComputationPreventsPut() {
+        StatementCache cache = new StatementCache(10, null, 0);
+        
+        long generationBefore = cache.getGeneration();
+        // A correction lands while the statement is being computed
+        cache.invalidate(ACCOUNT, MID_JANUARY);
+        cache.put(ACCOUNT, JANUARY_START, JANUARY_END, statement("100.00", "0.00"), generationBefore);
+        assertNull(cache.get(ACCOUNT, JANUARY_START, JANUARY_END));
+        assertEquals(0, cache.size());
+        
+        cache.put(ACCOUNT, JANUARY_START, JANUARY_END, statement("100.00", "0.00"), cache.getGeneration());
+        assertNotNull(cache.get(ACCOUNT, JANUARY_START, JANUARY_END));
+    }
+    
+    @Test
+    void invalidationDropsOnlyPeriodsContainingTheDate() {
+        StatementCache cache = new StatementCache(10, directory, 0);
+        cache.put(ACCOUNT, JANUARY_START, JANUARY_END, statement("100.00", "0.00"), cache.getGeneration());
+        cache.put(ACCOUNT, JANUARY_END, FEBRUARY_END, statement("50.00", "0.00"), cache.getGeneration());
+        cache.put("ACC2", JANUARY_START, JANUARY_END, statement("10.00", "0.00"), cache.getGeneration());
+        
+        cache.invalidate(ACCOUNT, MID_JANUARY);
+        assertNull(cache.get(ACCOUNT, JANUARY_START, JANUARY_END));
+        assertNotNull(cache.get(ACCOUNT, JANUARY_END, FEBRUARY_END));
+        assertNotNull(cache.get("ACC2", JANUARY_START, JANUARY_END));
+        
+        // The file went with the entry, so a restarted cache does not serve it either
+        StatementCache restarted = new StatementCache(10, directory, 0);
+        assertNull(restarted.get(ACCOUNT, JANUARY_START, JANUARY_END));
+        assertNotNull(restarted.get(ACCOUNT, JANUARY_END, FEBRUARY_END));
+    }
+    
+    @Test
+    void statementSurvivesRestartOnDisk() {
+        StatementCache cache = new StatementCache(10, directory, 5);
+        Map<String, Object> original = statement("100.00", "25.50");
+        original.put("currentBalance", new BigDecimal("74.50"));
+        cache.put(ACCOUNT, JANUARY_START, JANUARY_END, original, cache.getGeneration());
+        
+        StatementCache restarted = new StatementCache(10, directory, 5);
+        Map<String, Object> read = restarted.get(ACCOUNT, JANUARY_START, JANUARY_END);
+        assertNotNull(read);
+        assertEquals(1, restarted.getDiskHitCount());
+        assertEquals(new BigDecimal("100.00"), read.get("totalDeposits"));
+        assertEquals(new BigDecimal("25.50"), read.get("totalWithdrawals"));
+        assertEquals(new BigDecimal("74.50"), read.get("netChange"));
+        // The balance is live and filled in by the caller
+        assertFalse(read.containsKey("currentBalance"));
+        
+        List<?> transactions = (List<?>) read.get("transactions");
+        assertEquals(2, transactions.size());
+        Map<?, ?> deposit = (Map<?, ?>) transactions.get(0);
+        assertEquals(1L, deposit.get("id"));
+        assertEquals("DEPOSIT", deposit.get("type"));
+        assertEquals(new BigDecimal("100.00"), deposit.get("amount"));
+        assertNull(deposit.get("relatedAccountId"));
+        assertEquals(MID_JANUARY.getTime(), ((Date) deposit.get("date")).getTime());
+        Map<?, ?> transfer = (Map<?, ?>) transactions.get(1);
+        assertEquals("TRANSFER_OUT", transfer.get("type"));
+        assertEquals("ACC2", transfer.get("relatedAccountId"));
+        assertThrows(UnsupportedOperationException.class, () -> transactions.remove(0));
+        
+        // Now in memory, so the next hit does not touch the disk
+        restarted.get(ACCOUNT, JANUARY_START, JANUARY_END);
+        assertEquals(1, restarted.getDiskHitCount());
+    }
+    
+    @Test
+    void newHistoryRevisionClearsDisk() {
+        StatementCache cache = new StatementCache(10, directory, 5);
+        cache.put(ACCOUNT, JANUARY_START, JANUARY_END, statement("100.00", "0.00"), cache.getGeneration());
+        
+        // Corrections were recorded while no cache was running
+        StatementCache restarted = new StatementCache(10, directory, 6);
+        assertNull(restarted.get(ACCOUNT, JANUARY_START, JANUARY_END));
+        assertEquals(0, restarted.getDiskHitCount());
+    }
+    
+    private static Map<String, Object> statement(String deposits, String withdrawals) {
+        Map<String, Object> deposit = new HashMap<>();
+        deposit.put("id", 1L);
+        deposit.put("type", "DEPOSIT");
+        deposit.put("amount", new BigDecimal("100.00"));
+        deposit.put("relatedAccountId", null);
+        deposit.put("date", MID_JANUARY);
+        Map<String, Object> transfer = new HashMap<>();
+        transfer.put("id", 2L);
+        transfer.put("type", "TRANSFER_OUT");
+        transfer.put("amount", new BigDecimal("25.50"));
+        transfer.put("relatedAccountId", "ACC2");
+        transfer.put("date", date(2024, 1, 20));
+        
+        Map<String, Object> statement = new HashMap<>();
+        statement.put("transactions", List.of(deposit, transfer));
+        statement.put("totalDeposits", new BigDecimal(deposits));
+        statement.put("totalWithdrawals", new BigDecimal(withdrawals));
+        return statement;
+    }
+    
+    private static Date date(int year, int month, int day) {
+        return Date.from(LocalDate.of(year, month, day).atStartOfDay().toInstant(ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,96 @@
+package bank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import bank.VelocityLimits.Kind;
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class VelocityLimitsTest {
+    private static final long MINUTE = 60_000L;
+    private static final long HOUR = 3_600_000L;
+    // Start on an hour boundary so each step lands in a known bucket
+    private static final long START = 1_700_000_000_000L / HOUR * HOUR;
+    
+    private final AtomicLong now = new AtomicLong(START);
+    
+    @Test
+    void hourlyWindowRollsOverMinuteBuckets() {
+        VelocityLimits limits = new VelocityLimits(new BigDecimal("100"), null, null, null, now::get);
+        
+        assertTrue(limits.tryRecord("ACC1", Kind.WITHDRAWAL, new BigDecimal("60")) >= 0);
+        now.addAndGet(30 * MINUTE);
+        assertEquals(-1, limits.tryRecord("ACC1", Kind.WITHDRAWAL, new BigDecimal("50")));
+        
+        now.set(START + 59 * MINUTE);
+        assertEquals(new BigDecimal("60.00"), limits.getHourlyTotal("ACC1", Kind.WITHDRAWAL));
+        now.set(START + 60 * MINUTE);
+        assertEquals(new BigDecimal("0.00"), limits.getHourlyTotal("ACC1", Kind.WITHDRAWAL));
+        assertTrue(limits.tryRecord("ACC1", Kind.WITHDRAWAL, new BigDecimal("50")) >= 0);
+    }
+    
+    @Test
+    void dailyWindowSumsHourBuckets() {
+        VelocityLimits limits = new VelocityLimits(null, new BigDecimal("250"), null, null, now::get);
+        
+        assertTrue(limits.tryRecord("ACC1", Kind.WITHDRAWAL, new BigDecimal("100")) >= 0);
+        now.set(START + 5 * HOUR);
+        assertTrue(limits.tryRecord("ACC1", Kind.WITHDRAWAL, new BigDecimal("100")) >= 0);
+        now.set(START + 23 * HOUR);
+        assertEquals(-1, limits.tryRecord("ACC1", Kind.WITHDRAWAL, new BigDecimal("100")));
+        assertEquals(new BigDecimal("200.00"), limits.getDailyTotal("ACC1", Kind.WITHDRAWAL));
+        // Kinds and accounts are counted separately
+        assertEquals(new BigDecimal("0.00"), limits.getDailyTotal("ACC1", Kind.TRANSFER));
+        assertEquals(new BigDecimal("0.00"), limits.getDailyTotal("ACC2", Kind.WITHDRAWAL));
+        
+        now.set(START + 24 * HOUR);
+        assertEquals(new BigDecimal("100.00"), limits.getDailyTotal("ACC1", Kind.WITHDRAWAL));
+        assertTrue(limits.tryRecord("ACC1", Kind.WITHDRAWAL, new BigDecimal("100")) >= 0);
+        assertEquals(new BigDecimal("200.00"), limits.getDailyTotal("ACC1", Kind.WITHDRAWAL));
+    }
+    
+    @Test
+    void releaseTakesBackDebitAfterRefusal() {
+        VelocityLimits limits = new VelocityLimits(null, null, new BigDecimal("100"), null, now::get);
+        
+        long recordedAt = limits.tryRecord("ACC1", Kind.TRANSFER, new BigDecimal("70"));
+        assertTrue(recordedAt >= 0);
+        now.addAndGet(MINUTE);
+        // A refused debit leaves nothing counted
+        assertEquals(-1, limits.tryRecord("ACC1", Kind.TRANSFER, new BigDecimal("50")));
+        assertEquals(new BigDecimal("70.00"), limits.getHourlyTotal("ACC1", Kind.TRANSFER));
+        
+        // The first debit failed downstream, so its amount is released
+        limits.release("ACC1", Kind.TRANSFER, new BigDecimal("70"), recordedAt);
+        assertEquals(new BigDecimal("0.00"), limits.getHourlyTotal("ACC1", Kind.TRANSFER));
+        assertTrue(limits.tryRecord("ACC1", Kind.TRANSFER, new BigDecimal("100")) >= 0);
+    }
+    
+    @Test
+    void replayIgnoresDebitsOlderThanADay() {
+        VelocityLimits limits = new VelocityLimits(null, null, null, null, now::get);
+        now.set(START + 30 * HOUR);
+        
+        limits.replay("ACC1", Kind.WITHDRAWAL, new BigDecimal("10"), START);
+        limits.replay("ACC1", Kind.WITHDRAWAL, new BigDecimal("20"), START + 10 * HOUR);
+        limits.replay("ACC1", Kind.WITHDRAWAL, new BigDecimal("30"), START + 30 * HOUR - 10 * MINUTE);
+        
+        assertEquals(new BigDecimal("30.00"), limits.getHourlyTotal("ACC1", Kind.WITHDRAWAL));
+        assertEquals(new BigDecimal("50.00"), limits.getDailyTotal("ACC1", Kind.WITHDRAWAL));
+    }
+    
+    @Test
+    void purgeDropsOnlyIdleAccounts() {
+        VelocityLimits limits = new VelocityLimits(null, null, null, null, now::get);
+        limits.tryRecord("ACC1", Kind.WITHDRAWAL, new BigDecimal("10"));
+        now.set(START + 20 * HOUR);
+        limits.tryRecord("ACC2", Kind.WITHDRAWAL, new BigDecimal("10"));
+        
+        now.set(START + 24 * HOUR);
+        limits.purgeIdle();
+        assertEquals(1, limits.getTrackedAccountCount());
+        assertEquals(new BigDecimal("10.00"), limits.getDailyTotal("ACC2", Kind.WITHDRAWAL));
+    }
+}
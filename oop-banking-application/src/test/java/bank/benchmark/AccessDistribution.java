@@ -0,0 +1,41 @@
+package bank.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How benchmark and load-test operations choose the accounts they touch.
+ */
+public enum AccessDistribution {
+    /** Every account is equally likely. */
+    UNIFORM {
+        @Override
+        public int nextIndex(int accountCount) {
+            return ThreadLocalRandom.current().nextInt(accountCount);
+        }
+    },
+    
+    /** 90% of operations hit the first 1% of accounts (at least one). */
+    HOT {
+        @Override
+        public int nextIndex(int accountCount) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int hotCount = Math.max(1, accountCount / 100);
+            return random.nextInt(10) < 9 ? random.nextInt(hotCount) : random.nextInt(accountCount);
+        }
+    };
+    
+    /**
+     * Picks the index of the next account to operate on.
+     * @param accountCount Number of seeded accounts
+     * @return An index in [0, accountCount)
+     */
+    public abstract int nextIndex(int accountCount);
+    
+    /**
+     * Picks an index different from {@code excluded}, for transfer destinations.
+     */
+    public int nextIndexExcluding(int accountCount, int excluded) {
+        int index = nextIndex(accountCount);
+        return index != excluded ? index : (index + 1) % accountCount;
+    }
+}
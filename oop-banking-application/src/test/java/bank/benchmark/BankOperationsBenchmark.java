@@ -0,0 +1,58 @@
+package bank.benchmark;
+
+import bank.database.DatabaseException;
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the public transaction paths of {@link bank.Bank}. Subclasses
+ * choose the number of concurrent threads.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public abstract class BankOperationsBenchmark {
+    
+    @Benchmark
+    public boolean deposit(BankState state) {
+        return state.bank.deposit(state.nextAccount(), BankState.AMOUNT);
+    }
+    
+    @Benchmark
+    public boolean withdraw(BankState state) {
+        return state.bank.withdraw(state.nextAccount(), BankState.AMOUNT);
+    }
+    
+    @Benchmark
+    public boolean transfer(BankState state) {
+        String[] pair = state.nextPair();
+        try {
+            return state.bank.transfer(pair[0], pair[1], BankState.AMOUNT);
+        } catch (DatabaseException e) {
+            // Opposing transfers on hot accounts can deadlock; count as a failed operation
+            return false;
+        }
+    }
+    
+    @Benchmark
+    public Optional<BigDecimal> getBalance(BankState state) {
+        return state.bank.getBalance(state.nextAccount());
+    }
+    
+    @Benchmark
+    public Map<String, Object> getAccountStatement(BankState state) {
+        return state.bank.getAccountStatement(state.nextAccount(), state.statementStart(), new Date());
+    }
+}
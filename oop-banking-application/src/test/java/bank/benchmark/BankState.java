@@ -0,0 +1,57 @@
+package bank.benchmark;
+
+import bank.Bank;
+import java.math.BigDecimal;
+import java.util.Date;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Shared benchmark state: an embedded database seeded with funded accounts.
+ */
+@State(Scope.Benchmark)
+public class BankState {
+    static final BigDecimal OPENING_BALANCE = new BigDecimal("1000000000.00");
+    static final BigDecimal AMOUNT = new BigDecimal("1.00");
+    private static final int POOL_SIZE = 32;
+    
+    @Param({"UNIFORM", "HOT"})
+    public AccessDistribution distribution;
+    
+    @Param({"1000"})
+    public int accountCount;
+    
+    Bank bank;
+    String[] accountIds;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        EmbeddedBankDatabase.start(POOL_SIZE);
+        bank = new Bank();
+        accountIds = EmbeddedBankDatabase.seedAccounts(bank, accountCount, OPENING_BALANCE)
+                                         .toArray(new String[0]);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        bank.shutdown();
+    }
+    
+    String nextAccount() {
+        return accountIds[distribution.nextIndex(accountIds.length)];
+    }
+    
+    String[] nextPair() {
+        int from = distribution.nextIndex(accountIds.length);
+        int to = distribution.nextIndexExcluding(accountIds.length, from);
+        return new String[] {accountIds[from], accountIds[to]};
+    }
+    
+    Date statementStart() {
+        return new Date(System.currentTimeMillis() - 3_600_000L);
+    }
+}
@@ -0,0 +1,11 @@
+package bank.benchmark;
+
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Runs the Bank operation benchmarks on eight threads sharing the same
+ * accounts, so the HOT distribution exposes row-lock and pool contention.
+ */
+@Threads(8)
+public class ContendedBankBenchmark extends BankOperationsBenchmark {
+}
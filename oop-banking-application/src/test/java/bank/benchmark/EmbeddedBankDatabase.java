@@ -0,0 +1,96 @@
+package bank.benchmark;
+
+import bank.Bank;
+import bank.database.DatabaseConnectionManager;
+import bank.database.DatabaseInitializer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Boots an in-memory H2 database in MySQL mode and points the
+ * {@link DatabaseConnectionManager} singleton at it. Used by the benchmarks
+ * and load generators so they run without an external MySQL server.
+ */
+public final class EmbeddedBankDatabase {
+    private static final String URL =
+        "jdbc:h2:mem:bankdb;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000";
+    private static final String SCHEMA_RESOURCE = "/h2-schema.sql";
+    
+    private static boolean started;
+    
+    private EmbeddedBankDatabase() {
+    }
+    
+    /**
+     * Creates the schema and configures the connection manager. Must run before
+     * the first call to {@link DatabaseConnectionManager#getInstance()}.
+     * 
+     * @param poolSize Maximum number of pooled connections
+     */
+    public static synchronized void start(int poolSize) {
+        if (started) {
+            return;
+        }
+        try {
+            Properties props = new Properties();
+            props.setProperty("db.url", URL);
+            props.setProperty("db.username", "sa");
+            props.setProperty("db.password", "");
+            props.setProperty("db.driver", "org.h2.Driver");
+            props.setProperty("db.maxPoolSize", String.valueOf(poolSize));
+            // Open the whole pool up front so measurements do not include connection setup
+            props.setProperty("db.minPoolSize", String.valueOf(poolSize));
+            
+            Path config = Files.createTempFile("bank-h2", ".properties");
+            config.toFile().deleteOnExit();
+            try (Writer writer = Files.newBufferedWriter(config)) {
+                props.store(writer, "Embedded H2 benchmark database");
+            }
+            System.setProperty(DatabaseConnectionManager.CONFIG_PROPERTY, config.toString());
+            
+            Path schema = Files.createTempFile("bank-h2-schema", ".sql");
+            schema.toFile().deleteOnExit();
+            try (InputStream in = EmbeddedBankDatabase.class.getResourceAsStream(SCHEMA_RESOURCE)) {
+                Files.copy(in, schema, StandardCopyOption.REPLACE_EXISTING);
+            }
+            new DatabaseInitializer().initializeSchema(schema.toString());
+            started = true;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not start embedded database", e);
+        }
+    }
+    
+    /**
+     * Registers one customer per account and funds each account. Every tenth
+     * account is corporate, the rest are personal.
+     * 
+     * @param bank The bank to seed
+     * @param count Number of accounts to create
+     * @param openingBalance Amount deposited into each account
+     * @return The created account IDs
+     */
+    public static List<String> seedAccounts(Bank bank, int count, BigDecimal openingBalance) {
+        List<String> accountIds = new ArrayList<>(count);
+        Date birthDay = new Date(0);
+        for (int i = 0; i < count; i++) {
+            String customerId = bank.registerCustomer("Load", "Customer" + i, birthDay);
+            Optional<String> accountId = i % 10 == 0
+                ? bank.registerCorporateAccount(new String[] {customerId})
+                : bank.registerPersonalAccount(customerId);
+            String id = accountId.orElseThrow(() -> new IllegalStateException("Could not seed account"));
+            bank.deposit(id, openingBalance);
+            accountIds.add(id);
+        }
+        return accountIds;
+    }
+}
@@ -0,0 +1,237 @@
+package bank.benchmark;
+
+import bank.Bank;
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Multi-threaded workload driver for the {@link Bank} API.
+ * <p>
+ * Seeds customers and accounts, then issues a weighted mix of deposits,
+ * withdrawals, transfers and statement reads. Two modes are supported:
+ * <ul>
+ *   <li><b>open</b>: requests follow a fixed global schedule at the target rate and
+ *       latency is measured from each request's intended start time, so stalls are
+ *       not hidden by the workers falling behind (coordinated omission).</li>
+ *   <li><b>closed</b>: each worker issues its next request after the previous one
+ *       completes. With a target rate the workers are paced and latencies are
+ *       corrected against the expected interval; without one, raw service times
+ *       are reported.</li>
+ * </ul>
+ * Example: {@code --mode open --rate 2000 --threads 32 --accounts 1000
+ * --mix deposit=40,withdraw=30,transfer=20,statement=10 --distribution HOT
+ * --warmup 10 --duration 60}
+ */
+public class LoadGenerator {
+    private static final BigDecimal OPENING_BALANCE = new BigDecimal("1000000000.00");
+    private static final long REPORT_INTERVAL_SECONDS = 5;
+
+    private final Map<String, String> options;
+    private final Map<WorkloadOperation, OperationStats> stats = new EnumMap<>(WorkloadOperation.class);
+    private final WorkloadOperation[] operations;
+    private final int[] cumulativeWeights;
+    private Bank bank;
+    private String[] accounts;
+    private AccessDistribution distribution;
+
+    public LoadGenerator(Map<String, String> options) {
+        this.options = options;
+        for (WorkloadOperation operation : WorkloadOperation.values()) {
+            stats.put(operation, new OperationStats());
+        }
+
+        // Parse the operation mix into a cumulative weight table
+        Map<WorkloadOperation, Integer> mix = parseMix(option("mix", "deposit=40,withdraw=30,transfer=20,statement=10"));
+        operations = mix.keySet().toArray(new WorkloadOperation[0]);
+        cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += mix.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("Operation mix must have a positive total weight");
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Expected --option value pairs, got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        new LoadGenerator(options).run();
+    }
+
+    /**
+     * Seeds the database, runs warm-up and measurement phases and prints the report.
+     */
+    public void run() throws InterruptedException {
+        int threads = Integer.parseInt(option("threads", "16"));
+        int accountCount = Integer.parseInt(option("accounts", "1000"));
+        long rate = Long.parseLong(option("rate", "0"));
+        long warmupSeconds = Long.parseLong(option("warmup", "10"));
+        long durationSeconds = Long.parseLong(option("duration", "60"));
+        boolean openLoop = "open".equalsIgnoreCase(option("mode", "closed"));
+        distribution = AccessDistribution.valueOf(option("distribution", "UNIFORM").toUpperCase());
+
+        if (openLoop && rate <= 0) {
+            throw new IllegalArgumentException("Open-loop mode requires --rate");
+        }
+
+        if (!"configured".equalsIgnoreCase(option("database", "embedded"))) {
+            EmbeddedBankDatabase.start(Integer.parseInt(option("pool", String.valueOf(threads))));
+        }
+        bank = new Bank();
+        System.out.printf("Seeding %d customers and accounts...%n", accountCount);
+        accounts = EmbeddedBankDatabase.seedAccounts(bank, accountCount, OPENING_BALANCE).toArray(new String[0]);
+
+        System.out.printf("Running %s loop, %d threads, %s, %s distribution%n",
+            openLoop ? "open" : "closed", threads, rate > 0 ? rate + " ops/s" : "unthrottled", distribution);
+
+        long start = System.nanoTime();
+        long measureStart = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureStart + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        if (openLoop) {
+            long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+            AtomicLong ticket = new AtomicLong();
+            for (int i = 0; i < threads; i++) {
+                workers.execute(() -> runOpenLoop(start, end, interval, ticket));
+            }
+        } else {
+            long interval = rate > 0 ? TimeUnit.SECONDS.toNanos(1) * threads / rate : 0;
+            for (int i = 0; i < threads; i++) {
+                long offset = interval * i / threads;
+                workers.execute(() -> runClosedLoop(start + offset, end, interval));
+            }
+        }
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        reporter.scheduleAtFixedRate(this::printProgress, REPORT_INTERVAL_SECONDS, REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+
+        // Discard warm-up results once the measurement window opens
+        LockSupport.parkNanos(measureStart - System.nanoTime());
+        stats.values().forEach(OperationStats::reset);
+
+        workers.shutdown();
+        workers.awaitTermination(durationSeconds + 60, TimeUnit.SECONDS);
+        reporter.shutdownNow();
+
+        printReport((System.nanoTime() - measureStart) / 1e9);
+        bank.shutdown();
+    }
+
+    /**
+     * Open loop: requests are taken from a shared schedule and latency is measured
+     * from the intended start time.
+     */
+    private void runOpenLoop(long start, long end, long interval, AtomicLong ticket) {
+        while (true) {
+            long intended = start + ticket.getAndIncrement() * interval;
+            if (intended >= end) {
+                return;
+            }
+            waitUntil(intended);
+            execute(nextOperation(), intended, 0);
+        }
+    }
+
+    /**
+     * Closed loop: one request at a time, optionally paced to the per-worker interval.
+     */
+    private void runClosedLoop(long start, long end, long interval) {
+        long next = start;
+        while (System.nanoTime() < end) {
+            if (interval > 0) {
+                waitUntil(next);
+                next += interval;
+            }
+            execute(nextOperation(), System.nanoTime(), interval);
+        }
+    }
+
+    private void execute(WorkloadOperation operation, long startNanos, long expectedInterval) {
+        OperationStats operationStats = stats.get(operation);
+        try {
+            boolean success = operation.execute(bank, accounts, distribution);
+            operationStats.record(System.nanoTime() - startNanos, expectedInterval, success);
+        } catch (RuntimeException e) {
+            operationStats.recordError(System.nanoTime() - startNanos, expectedInterval);
+        }
+    }
+
+    private WorkloadOperation nextOperation() {
+        int pick = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private void printProgress() {
+        long completed = stats.values().stream().mapToLong(OperationStats::completed).sum();
+        long failed = stats.values().stream().mapToLong(OperationStats::failed).sum();
+        System.out.printf("... %d operations completed, %d errors%n", completed, failed);
+    }
+
+    private void printReport(double seconds) {
+        System.out.printf("%nMeasured %.1f s%n", seconds);
+        System.out.printf("%-10s %10s %10s %9s %9s %9s %10s %10s %10s %10s%n",
+            "operation", "ops", "ops/s", "ok", "rejected", "errors", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        long totalOps = 0;
+        for (Map.Entry<WorkloadOperation, OperationStats> entry : stats.entrySet()) {
+            OperationStats s = entry.getValue();
+            Histogram histogram = s.drainHistogram();
+            long ops = s.completed();
+            totalOps += ops;
+            if (ops == 0) {
+                continue;
+            }
+            System.out.printf("%-10s %10d %10.1f %9d %9d %9d %10.3f %10.3f %10.3f %10.3f%n",
+                entry.getKey(), ops, ops / seconds, s.succeeded(), s.rejected(), s.failed(),
+                millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMaxValue()));
+        }
+        System.out.printf("%-10s %10d %10.1f%n", "total", totalOps, totalOps / seconds);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private String option(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    private static Map<WorkloadOperation, Integer> parseMix(String mix) {
+        Map<WorkloadOperation, Integer> weights = new EnumMap<>(WorkloadOperation.class);
+        for (String part : mix.split(",")) {
+            String[] pair = part.split("=");
+            weights.put(WorkloadOperation.valueOf(pair[0].trim().toUpperCase()), Integer.parseInt(pair[1].trim()));
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,73 @@
+package bank.benchmark;
+
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Latency recorder and outcome counters for one {@link WorkloadOperation}.
+ * All methods are safe to call from many worker threads.
+ */
+class OperationStats {
+    private final Recorder latencies = new Recorder(3);
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    
+    /**
+     * Records a completed operation.
+     * @param latencyNanos Latency, measured from the intended start time in open-loop mode
+     * @param expectedIntervalNanos Pacing interval for coordinated-omission correction, 0 if unpaced
+     * @param success Whether the bank reported success
+     */
+    void record(long latencyNanos, long expectedIntervalNanos, boolean success) {
+        if (expectedIntervalNanos > 0) {
+            latencies.recordValueWithExpectedInterval(latencyNanos, expectedIntervalNanos);
+        } else {
+            latencies.recordValue(latencyNanos);
+        }
+        if (success) {
+            succeeded.increment();
+        } else {
+            rejected.increment();
+        }
+    }
+    
+    void recordError(long latencyNanos, long expectedIntervalNanos) {
+        if (expectedIntervalNanos > 0) {
+            latencies.recordValueWithExpectedInterval(latencyNanos, expectedIntervalNanos);
+        } else {
+            latencies.recordValue(latencyNanos);
+        }
+        failed.increment();
+    }
+    
+    long completed() {
+        return succeeded.sum() + rejected.sum() + failed.sum();
+    }
+    
+    long succeeded() {
+        return succeeded.sum();
+    }
+    
+    long rejected() {
+        return rejected.sum();
+    }
+    
+    long failed() {
+        return failed.sum();
+    }
+    
+    /** Discards everything recorded so far (used at the end of warm-up). */
+    void reset() {
+        latencies.reset();
+        succeeded.reset();
+        rejected.reset();
+        failed.reset();
+    }
+    
+    /** Returns the latencies recorded since the last call or reset. */
+    Histogram drainHistogram() {
+        return latencies.getIntervalHistogram();
+    }
+}
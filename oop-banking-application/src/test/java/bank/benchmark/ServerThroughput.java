@@ -0,0 +1,150 @@
+package bank.benchmark;
+
+import bank.Bank;
+import bank.server.BankClient;
+import bank.server.BankRequestHandler;
+import bank.server.BankServer;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * End-to-end throughput test for {@link BankServer}.
+ * <p>
+ * Starts the server on an ephemeral port against the embedded database and
+ * drives it with several {@link BankClient} connections, each keeping up to
+ * {@code --depth} pipelined requests in flight. Requests are a mix of deposits,
+ * withdrawals, transfers and balance reads. Reports requests per second and
+ * round-trip latency percentiles.
+ * Example: {@code --connections 8 --depth 64 --workers 32 --accounts 1000
+ * --distribution HOT --warmup 5 --duration 30}
+ */
+public class ServerThroughput {
+    private static final BigDecimal OPENING_BALANCE = new BigDecimal("1000000000.00");
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+    
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final Recorder latency = new Recorder(TimeUnit.MINUTES.toNanos(1), 3);
+    private String[] accounts;
+    private AccessDistribution distribution;
+    private volatile boolean running = true;
+    
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Expected --option value pairs, got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        new ServerThroughput().run(options);
+    }
+    
+    public void run(Map<String, String> options) throws Exception {
+        int connections = Integer.parseInt(options.getOrDefault("connections", "8"));
+        int depth = Integer.parseInt(options.getOrDefault("depth", "64"));
+        int workers = Integer.parseInt(options.getOrDefault("workers", "32"));
+        int accountCount = Integer.parseInt(options.getOrDefault("accounts", "1000"));
+        long warmupSeconds = Long.parseLong(options.getOrDefault("warmup", "5"));
+        long durationSeconds = Long.parseLong(options.getOrDefault("duration", "30"));
+        distribution = AccessDistribution.valueOf(options.getOrDefault("distribution", "UNIFORM").toUpperCase());
+        
+        EmbeddedBankDatabase.start(workers);
+        Bank bank = new Bank();
+        System.out.printf("Seeding %d customers and accounts...%n", accountCount);
+        accounts = EmbeddedBankDatabase.seedAccounts(bank, accountCount, OPENING_BALANCE).toArray(new String[0]);
+        
+        BankServer server = new BankServer(new BankRequestHandler(bank), Executors.newFixedThreadPool(workers));
+        server.start(0);
+        System.out.printf("Driving port %d with %d connections x %d in flight, %d workers, %s distribution%n",
+            server.getPort(), connections, depth, workers, distribution);
+        
+        List<BankClient> clients = new ArrayList<>();
+        List<Thread> drivers = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            BankClient client = new BankClient("localhost", server.getPort());
+            clients.add(client);
+            Thread driver = new Thread(() -> drive(client, depth), "throughput-driver-" + i);
+            driver.start();
+            drivers.add(driver);
+        }
+        
+        // Discard warm-up results
+        TimeUnit.SECONDS.sleep(warmupSeconds);
+        completed.reset();
+        failed.reset();
+        latency.reset();
+        long start = System.nanoTime();
+        TimeUnit.SECONDS.sleep(durationSeconds);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long ops = completed.sum();
+        long errors = failed.sum();
+        Histogram histogram = latency.getIntervalHistogram();
+        
+        running = false;
+        for (Thread driver : drivers) {
+            driver.join();
+        }
+        for (BankClient client : clients) {
+            client.close();
+        }
+        server.close();
+        bank.shutdown();
+        
+        System.out.printf("%nMeasured %.1f s%n", seconds);
+        System.out.printf("%10s %12s %9s %10s %10s %10s %10s%n", "requests", "requests/s", "errors", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        System.out.printf("%10d %12.1f %9d %10.3f %10.3f %10.3f %10.3f%n", ops, ops / seconds, errors,
+            histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(99) / 1e6,
+            histogram.getValueAtPercentile(99.9) / 1e6, histogram.getMaxValue() / 1e6);
+    }
+    
+    /**
+     * Keeps up to {@code depth} requests in flight on one connection.
+     */
+    private void drive(BankClient client, int depth) {
+        Semaphore window = new Semaphore(depth);
+        while (running) {
+            try {
+                window.acquire();
+            } catch (InterruptedException e) {
+                return;
+            }
+            long startNanos = System.nanoTime();
+            next(client).whenComplete((result, error) -> {
+                latency.recordValue(Math.min(System.nanoTime() - startNanos, TimeUnit.MINUTES.toNanos(1)));
+                if (error != null) {
+                    failed.increment();
+                }
+                completed.increment();
+                window.release();
+            });
+        }
+        // Let the outstanding requests drain before the connection closes
+        window.acquireUninterruptibly(depth);
+    }
+    
+    private CompletableFuture<?> next(BankClient client) {
+        int from = distribution.nextIndex(accounts.length);
+        int pick = ThreadLocalRandom.current().nextInt(100);
+        if (pick < 30) {
+            return client.deposit(accounts[from], AMOUNT);
+        } else if (pick < 55) {
+            return client.withdraw(accounts[from], AMOUNT);
+        } else if (pick < 70) {
+            int to = distribution.nextIndexExcluding(accounts.length, from);
+            return client.transfer(accounts[from], accounts[to], AMOUNT);
+        }
+        return client.getBalance(accounts[from]);
+    }
+}
@@ -0,0 +1,10 @@
+package bank.benchmark;
+
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Runs the Bank operation benchmarks on a single thread (no contention).
+ */
+@Threads(1)
+public class SingleThreadedBankBenchmark extends BankOperationsBenchmark {
+}
@@ -0,0 +1,91 @@
+package bank.benchmark;
+
+import bank.Bank;
+import bank.database.DatabaseException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures postings to a single hot account on eight threads with the
+ * account striped over 0 (not striped), 4 and 16 sub-ledger slots.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(8)
+public class StripedAccountBenchmark {
+    
+    @State(Scope.Benchmark)
+    public static class HotAccountState {
+        private static final int POOL_SIZE = 32;
+        
+        @Param({"0", "4", "16"})
+        public int slots;
+        
+        @Param({"100"})
+        public int accountCount;
+        
+        Bank bank;
+        String[] accountIds;
+        String hotAccountId;
+        
+        @Setup(Level.Trial)
+        public void setUp() {
+            EmbeddedBankDatabase.start(POOL_SIZE);
+            bank = new Bank();
+            accountIds = EmbeddedBankDatabase.seedAccounts(bank, accountCount, BankState.OPENING_BALANCE)
+                                             .toArray(new String[0]);
+            // A personal account, so withdrawals check funds across the slots
+            hotAccountId = accountIds[1];
+            if (slots > 0) {
+                bank.stripeAccount(hotAccountId, slots);
+            }
+        }
+        
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            bank.shutdown();
+        }
+        
+        String nextPayer() {
+            int index = ThreadLocalRandom.current().nextInt(accountIds.length - 1);
+            return accountIds[index >= 1 ? index + 1 : index];
+        }
+    }
+    
+    @Benchmark
+    public boolean deposit(HotAccountState state) {
+        return state.bank.deposit(state.hotAccountId, BankState.AMOUNT);
+    }
+    
+    @Benchmark
+    public boolean withdraw(HotAccountState state) {
+        return state.bank.withdraw(state.hotAccountId, BankState.AMOUNT);
+    }
+    
+    @Benchmark
+    public boolean transferIn(HotAccountState state) {
+        try {
+            return state.bank.transfer(state.nextPayer(), state.hotAccountId, BankState.AMOUNT);
+        } catch (DatabaseException e) {
+            // Lock timeouts under contention count as a failed operation
+            return false;
+        }
+    }
+}
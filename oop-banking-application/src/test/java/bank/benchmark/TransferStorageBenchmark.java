@@ -0,0 +1,93 @@
+package bank.benchmark;
+
+import bank.Bank;
+import bank.database.DatabaseException;
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares transfers stored as TRANSFER_OUT / TRANSFER_IN pairs with
+ * transfers stored as a single TRANSFER row, on four threads over uniformly
+ * chosen accounts, and the cost of reading a history back in each layout.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+public class TransferStorageBenchmark {
+    
+    @State(Scope.Benchmark)
+    public static class TransferState {
+        private static final int POOL_SIZE = 32;
+        
+        @Param({"false", "true"})
+        public boolean singleRow;
+        
+        @Param({"1000"})
+        public int accountCount;
+        
+        Bank bank;
+        String[] accountIds;
+        
+        @Setup(Level.Trial)
+        public void setUp() {
+            EmbeddedBankDatabase.start(POOL_SIZE);
+            bank = new Bank();
+            accountIds = EmbeddedBankDatabase.seedAccounts(bank, accountCount, BankState.OPENING_BALANCE)
+                                             .toArray(new String[0]);
+            bank.setSingleRowTransfers(singleRow);
+        }
+        
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            bank.shutdown();
+        }
+        
+        String nextAccount() {
+            return accountIds[ThreadLocalRandom.current().nextInt(accountIds.length)];
+        }
+    }
+    
+    @Benchmark
+    public boolean transfer(TransferState state) {
+        String from = state.nextAccount();
+        String to = state.nextAccount();
+        try {
+            return state.bank.transfer(from, to, BankState.AMOUNT);
+        } catch (DatabaseException e) {
+            // Opposing transfers can deadlock; count as a failed operation
+            return false;
+        }
+    }
+    
+    @Benchmark
+    public List<Map<String, Object>> getTransactionHistory(TransferState state) {
+        return state.bank.getTransactionHistory(state.nextAccount());
+    }
+    
+    @Benchmark
+    public Map<String, Object> getAccountStatement(TransferState state) {
+        return state.bank.getAccountStatement(state.nextAccount(), new Date(System.currentTimeMillis() - 3_600_000L),
+                                              new Date());
+    }
+}
@@ -0,0 +1,48 @@
+package bank.benchmark;
+
+import bank.Bank;
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * Operation types issued by the {@link LoadGenerator}.
+ */
+public enum WorkloadOperation {
+    DEPOSIT {
+        @Override
+        boolean execute(Bank bank, String[] accounts, AccessDistribution distribution) {
+            return bank.deposit(accounts[distribution.nextIndex(accounts.length)], AMOUNT);
+        }
+    },
+    WITHDRAW {
+        @Override
+        boolean execute(Bank bank, String[] accounts, AccessDistribution distribution) {
+            return bank.withdraw(accounts[distribution.nextIndex(accounts.length)], AMOUNT);
+        }
+    },
+    TRANSFER {
+        @Override
+        boolean execute(Bank bank, String[] accounts, AccessDistribution distribution) {
+            int from = distribution.nextIndex(accounts.length);
+            int to = distribution.nextIndexExcluding(accounts.length, from);
+            return bank.transfer(accounts[from], accounts[to], AMOUNT);
+        }
+    },
+    STATEMENT {
+        @Override
+        boolean execute(Bank bank, String[] accounts, AccessDistribution distribution) {
+            Date end = new Date();
+            Date start = new Date(end.getTime() - STATEMENT_WINDOW_MILLIS);
+            return bank.getAccountStatement(accounts[distribution.nextIndex(accounts.length)], start, end) != null;
+        }
+    };
+    
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+    private static final long STATEMENT_WINDOW_MILLIS = 24L * 3_600_000L;
+    
+    /**
+     * Runs one operation against the bank.
+     * @return true if the bank reported success
+     */
+    abstract boolean execute(Bank bank, String[] accounts, AccessDistribution distribution);
+}
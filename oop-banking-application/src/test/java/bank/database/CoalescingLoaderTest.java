@@ -0,0 +1,119 @@
+package bank.database;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class CoalescingLoaderTest {
+    private static final Duration LONG_WINDOW = Duration.ofHours(1);
+    
+    private final List<List<String>> requested = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean failing = new AtomicBoolean();
+    private CoalescingLoader<String, String> loader;
+    
+    @AfterEach
+    void close() {
+        if (loader != null) {
+            loader.close();
+        }
+    }
+    
+    /**
+     * Records each batch and returns an upper-cased value for every key
+     * except "missing".
+     */
+    private Map<String, String> loadBatch(Set<String> keys) {
+        requested.add(new ArrayList<>(keys));
+        if (failing.get()) {
+            throw new DatabaseException("Batch failed");
+        }
+        Map<String, String> values = new HashMap<>();
+        for (String key : keys) {
+            if (!key.equals("missing")) {
+                values.put(key, key.toUpperCase());
+            }
+        }
+        return values;
+    }
+    
+    @Test
+    void sharesPendingResultForRepeatedKey() {
+        loader = new CoalescingLoader<>("test", this::loadBatch, LONG_WINDOW, 100);
+        
+        CompletableFuture<String> first = loader.loadAsync("a");
+        CompletableFuture<String> repeat = loader.loadAsync("a");
+        CompletableFuture<String> other = loader.loadAsync("b");
+        assertSame(first, repeat);
+        assertFalse(first.isDone());
+        assertEquals(3, loader.getLoadCount());
+        assertEquals(1, loader.getCoalescedCount());
+        
+        // Closing loads the open batch
+        loader.close();
+        assertEquals(List.of(List.of("a", "b")), requested);
+        assertEquals("A", first.join());
+        assertEquals("B", other.join());
+        assertEquals(1, loader.getBatchCount());
+    }
+    
+    @Test
+    void sizeCapDispatchesBatchOnCallerThread() {
+        loader = new CoalescingLoader<>("test", this::loadBatch, LONG_WINDOW, 3);
+        
+        CompletableFuture<String> a = loader.loadAsync("a");
+        CompletableFuture<String> b = loader.loadAsync("b");
+        assertEquals(0, loader.getBatchCount());
+        CompletableFuture<String> c = loader.loadAsync("c");
+        
+        // The third key filled the batch, so it was loaded before loadAsync returned
+        assertTrue(a.isDone() && b.isDone() && c.isDone());
+        assertEquals(List.of(List.of("a", "b", "c")), requested);
+        assertEquals("C", c.join());
+        
+        // The next key opens a new batch
+        assertFalse(loader.loadAsync("d").isDone());
+        assertEquals(1, loader.getBatchCount());
+    }
+    
+    @Test
+    void windowClosesBatchAndForgetsDeliveredKeys() {
+        loader = new CoalescingLoader<>("test", this::loadBatch, Duration.ofMillis(10), 100);
+        
+        assertEquals("A", loader.load("a"));
+        assertNull(loader.load("missing"));
+        // A delivered key is requested again rather than served from the last batch
+        assertEquals("A", loader.load("a"));
+        assertEquals(List.of(List.of("a"), List.of("missing"), List.of("a")), requested);
+        assertEquals(0, loader.getCoalescedCount());
+    }
+    
+    @Test
+    void failedBatchFailsEveryCallerAndIsRetried() {
+        loader = new CoalescingLoader<>("test", this::loadBatch, LONG_WINDOW, 2);
+        failing.set(true);
+        
+        CompletableFuture<String> a = loader.loadAsync("a");
+        assertThrows(DatabaseException.class, () -> loader.load("b"));
+        assertTrue(a.isCompletedExceptionally());
+        
+        failing.set(false);
+        loader.loadAsync("a");
+        assertEquals("B", loader.load("b"));
+        assertEquals(2, loader.getBatchCount());
+    }
+}
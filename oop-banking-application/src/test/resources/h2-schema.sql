@@ -0,0 +1,102 @@
+-- Embedded H2 (MySQL mode) variant of config/schema.sql used by benchmarks and load tests
+
+-- Customers table
+CREATE TABLE IF NOT EXISTS customers (
+    id VARCHAR(100) PRIMARY KEY,
+    first_name VARCHAR(100) NOT NULL,
+    last_name VARCHAR(100) NOT NULL,
+    birth_day TIMESTAMP NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
+
+-- Accounts table
+CREATE TABLE IF NOT EXISTS accounts (
+    id VARCHAR(100) PRIMARY KEY,
+    balance DECIMAL(19, 4) NOT NULL DEFAULT 0,
+    opening_balance DECIMAL(19, 4) NOT NULL DEFAULT 0,
+    customer_id VARCHAR(100) NOT NULL,
+    account_type ENUM('PERSONAL', 'CORPORATE') NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    FOREIGN KEY (customer_id) REFERENCES customers(id) ON DELETE CASCADE
+);
+
+-- Account ownership for corporate accounts (many-to-many relationship)
+CREATE TABLE IF NOT EXISTS account_owners (
+    account_id VARCHAR(100) NOT NULL,
+    customer_id VARCHAR(100) NOT NULL,
+    PRIMARY KEY (account_id, customer_id),
+    FOREIGN KEY (account_id) REFERENCES accounts(id) ON DELETE CASCADE,
+    FOREIGN KEY (customer_id) REFERENCES customers(id) ON DELETE CASCADE
+);
+
+-- Sub-ledger slots of striped hot accounts. A striped account's balance is
+-- accounts.balance plus the sum of its slots; see AccountSlots.
+CREATE TABLE IF NOT EXISTS account_slots (
+    account_id VARCHAR(100) NOT NULL,
+    slot INT NOT NULL,
+    balance DECIMAL(19, 4) NOT NULL DEFAULT 0,
+    PRIMARY KEY (account_id, slot),
+    FOREIGN KEY (account_id) REFERENCES accounts(id) ON DELETE CASCADE
+);
+
+-- Transaction history table
+CREATE TABLE IF NOT EXISTS transactions (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    account_id VARCHAR(100) NOT NULL,
+    transaction_type ENUM('DEPOSIT', 'WITHDRAWAL', 'TRANSFER_IN', 'TRANSFER_OUT', 'INTEREST', 'TRANSFER') NOT NULL,
+    amount DECIMAL(19, 4) NOT NULL,
+    related_account_id VARCHAR(100),
+    transaction_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (account_id) REFERENCES accounts(id) ON DELETE CASCADE,
+    FOREIGN KEY (related_account_id) REFERENCES accounts(id) ON DELETE SET NULL
+);
+
+-- Audit log table for security tracking
+CREATE TABLE IF NOT EXISTS audit_log (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    action_type VARCHAR(50) NOT NULL,
+    entity_type VARCHAR(50) NOT NULL,
+    entity_id VARCHAR(100) NOT NULL,
+    description TEXT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Progress of resumable batch jobs, one row per job run and partition
+CREATE TABLE IF NOT EXISTS batch_checkpoints (
+    job_name VARCHAR(100) NOT NULL,
+    run_date DATE NOT NULL,
+    partition_id INT NOT NULL,
+    lower_bound VARCHAR(100),
+    upper_bound VARCHAR(100),
+    last_account_id VARCHAR(100),
+    accounts_processed BIGINT NOT NULL DEFAULT 0,
+    completed BOOLEAN NOT NULL DEFAULT FALSE,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    PRIMARY KEY (job_name, run_date, partition_id)
+);
+
+-- Change events written in the same transaction as the change they describe,
+-- published in ID order by OutboxRelay
+CREATE TABLE IF NOT EXISTS outbox (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    event_type VARCHAR(20) NOT NULL,
+    account_id VARCHAR(100) NOT NULL,
+    related_account_id VARCHAR(100),
+    amount DECIMAL(19, 4),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Last outbox ID each relay has published
+CREATE TABLE IF NOT EXISTS outbox_offsets (
+    relay_name VARCHAR(100) PRIMARY KEY,
+    last_id BIGINT NOT NULL
+);
+
+-- Indexes for performance optimization
+CREATE INDEX IF NOT EXISTS idx_customers_names ON customers(first_name, last_name);
+CREATE INDEX IF NOT EXISTS idx_accounts_customer ON accounts(customer_id);
+CREATE INDEX IF NOT EXISTS idx_transactions_account ON transactions(account_id);
+CREATE INDEX IF NOT EXISTS idx_transactions_date ON transactions(transaction_date);
+CREATE INDEX IF NOT EXISTS idx_audit_entity ON audit_log(entity_type, entity_id);